@@ -0,0 +1,66 @@
+package com.ipi.jva350.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût des congés pris pour un salarié dont on ne modifie que les compteurs (clotureMois() hors juin), tel que
+ * Hibernate le paie : chargement, instantané pour le dirty checking, comparaison et réécriture de la colonne.
+ * Ancien format texte et binaire décodé d'emblée, contre le set paresseux actuel.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CongesPayesPrisChargementBenchmark {
+
+    @Param({"10", "50", "200"})
+    private int nbCongesPayesPris;
+
+    private final LinkedHashSetStringConverter converterTexte = new LinkedHashSetStringConverter();
+    private final LinkedHashSetBinaryConverter converterBinaire = new LinkedHashSetBinaryConverter();
+    private String texte;
+    private byte[] binaire;
+
+    @Setup
+    public void setUp() {
+        LinkedHashSet<LocalDate> dates = new LinkedHashSet<>();
+        for (LocalDate jour = LocalDate.of(2023, 6, 1); dates.size() < nbCongesPayesPris; jour = jour.plusDays(1)) {
+            if (Calendrier.estHabituellementTravaille((int) jour.toEpochDay())) {
+                dates.add(jour);
+            }
+        }
+        texte = converterTexte.convertToDatabaseColumn(dates);
+        binaire = converterBinaire.convertToDatabaseColumn(dates);
+    }
+
+    @Benchmark
+    public Object texte() {
+        LinkedHashSet<LocalDate> charge = converterTexte.convertToEntityAttribute(texte);
+        LinkedHashSet<LocalDate> instantane = converterTexte.convertToEntityAttribute(
+                converterTexte.convertToDatabaseColumn(charge));
+        return charge.equals(instantane) ? converterTexte.convertToDatabaseColumn(charge) : null;
+    }
+
+    @Benchmark
+    public Object binaireDecodeDEmblee() {
+        LinkedHashSet<LocalDate> charge = LinkedHashSetBinaryConverter.decodeDates(binaire);
+        LinkedHashSet<LocalDate> instantane = LinkedHashSetBinaryConverter.decodeDates(
+                converterBinaire.convertToDatabaseColumn(charge));
+        return charge.equals(instantane) ? converterBinaire.convertToDatabaseColumn(charge) : null;
+    }
+
+    @Benchmark
+    public Object binaireParesseux() {
+        Set<LocalDate> charge = converterBinaire.convertToEntityAttribute(binaire);
+        Set<LocalDate> instantane = converterBinaire.convertToEntityAttribute(
+                converterBinaire.convertToDatabaseColumn(charge));
+        return charge.equals(instantane) ? converterBinaire.convertToDatabaseColumn(charge) : null;
+    }
+}
@@ -0,0 +1,50 @@
+package com.ipi.jva350.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût d'une lecture de date de Pâques à chaud : ancienne table HashMap (2012-2035)
+ * contre le comput mis en cache de {@link Entreprise#datePaque(int)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DatePaqueBenchmark {
+
+    @Param({"2012", "2023", "2035"})
+    private int annee;
+
+    private final Map<Integer, LocalDate> tableDatesPaque = new HashMap<>();
+
+    @Setup
+    public void setUp() {
+        for (int a = 2012; a <= 2035; a++) {
+            tableDatesPaque.put(a, Entreprise.calculeDatePaque(a));
+        }
+        // préchauffe le cache
+        Entreprise.datePaque(annee);
+    }
+
+    @Benchmark
+    public LocalDate ancienneTable() {
+        return tableDatesPaque.get(annee);
+    }
+
+    @Benchmark
+    public LocalDate computEnCache() {
+        return Entreprise.datePaque(annee);
+    }
+
+    @Benchmark
+    public LocalDate computSansCache() {
+        return Entreprise.calculeDatePaque(annee);
+    }
+}
@@ -0,0 +1,53 @@
+package com.ipi.jva350.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fonctions calendaires de {@link Entreprise}, sur une année et un mois donnés.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EntrepriseBenchmark {
+
+    @Param({"2023", "2024", "2045"})
+    private int annee;
+
+    @Param({"1", "7", "12"})
+    private int mois;
+
+    private LocalDate jourFerie;
+    private LocalDate jourOrdinaire;
+
+    @Setup
+    public void setUp() {
+        jourFerie = LocalDate.of(annee, 7, 14);
+        jourOrdinaire = LocalDate.of(annee, mois, 16);
+    }
+
+    @Benchmark
+    public boolean estJourFerie() {
+        return Entreprise.estJourFerie(jourFerie);
+    }
+
+    @Benchmark
+    public boolean estJourFerieJourOrdinaire() {
+        return Entreprise.estJourFerie(jourOrdinaire);
+    }
+
+    @Benchmark
+    public double proportionPondereeDuMois() {
+        return Entreprise.proportionPondereeDuMois(jourOrdinaire);
+    }
+
+    @Benchmark
+    public boolean bissextile() {
+        return Entreprise.bissextile(annee);
+    }
+}
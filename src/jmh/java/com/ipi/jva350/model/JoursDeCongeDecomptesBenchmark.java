@@ -0,0 +1,62 @@
+package com.ipi.jva350.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Décompte des jours de congé d'une plage selon sa longueur, son année et le nombre
+ * de jours de congé déjà pris par le salarié.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JoursDeCongeDecomptesBenchmark {
+
+    @Param({"1", "7", "30", "180"})
+    private int longueurPlage;
+
+    @Param({"2023", "2045"})
+    private int annee;
+
+    @Param({"0", "20", "200"})
+    private int nbCongesPayesPris;
+
+    private SalarieAideADomicile salarie;
+    private LocalDate debut;
+    private LocalDate fin;
+
+    @Setup
+    public void setUp() {
+        debut = LocalDate.of(annee, 6, 12);
+        fin = debut.plusDays(longueurPlage - 1L);
+        salarie = new SalarieAideADomicile();
+        salarie.setMoisEnCours(LocalDate.of(annee, 6, 1));
+        Set<LocalDate> congesPayesPris = new LinkedHashSet<>();
+        for (int i = nbCongesPayesPris; i > 0; i--) {
+            congesPayesPris.add(debut.minusDays(i));
+        }
+        salarie.setCongesPayesPris(congesPayesPris);
+    }
+
+    @Benchmark
+    public Set<LocalDate> calculeJoursDeCongeDecomptesPourPlage() {
+        return salarie.calculeJoursDeCongeDecomptesPourPlage(debut, fin);
+    }
+
+    @Benchmark
+    public int[] calculeJoursEpochDeCongeDecomptesPourPlage() {
+        return salarie.calculeJoursEpochDeCongeDecomptesPourPlage(debut, fin);
+    }
+
+    @Benchmark
+    public int compteJoursDeCongeDecomptesPourPlage() {
+        return salarie.compteJoursDeCongeDecomptesPourPlage(debut, fin);
+    }
+}
@@ -0,0 +1,105 @@
+package com.ipi.jva350.repository;
+
+import com.ipi.jva350.Jva350Application;
+import com.ipi.jva350.model.CompteurCongesEntreprise;
+import com.ipi.jva350.model.SalarieAideADomicile;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Passage à l'échelle des écritures de salariés, que {@link CompteurCongesListener} répercute sur les compteurs de
+ * l'entreprise : chaque thread modifie son propre salarié dans sa propre transaction, les threads ne partagent donc
+ * que les lignes de {@link CompteurCongesEntreprise}. Lancer avec -t 1 puis -t 8 : avec une seule ligne, le débit
+ * reste plat (chaque transaction attend la validation de celle qui tient la ligne), avec
+ * {@link CompteurCongesEntreprise#NB_LIGNES} lignes il ne doit plus être limité que par la base. La transaction
+ * reste ouverte tenueMs après l'écriture, comme une transaction qui a d'autres allers-retours à faire : l'attente
+ * d'une ligne partagée se voit alors même sur un seul cœur. Base H2 fichier.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g"})
+@State(Scope.Benchmark)
+public class CompteurCongesBenchmark {
+
+    /** au moins le nombre de threads */
+    private static final int NB_SALARIES = 64;
+
+    /** durée pendant laquelle la transaction reste ouverte après l'écriture */
+    @Param({"0", "1"})
+    private long tenueMs;
+
+    private ConfigurableApplicationContext contexte;
+    private SalarieAideADomicileRepository salarieAideADomicileRepository;
+    private TransactionTemplate transactionTemplate;
+    private long[] ids;
+
+    @State(Scope.Thread)
+    public static class Salarie {
+
+        private long id;
+        private double congesPayesPris;
+
+        @Setup(Level.Trial)
+        public void choisit(CompteurCongesBenchmark benchmark, ThreadParams threadParams) {
+            id = benchmark.ids[threadParams.getThreadIndex()];
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void demarre() {
+        contexte = new SpringApplicationBuilder(Jva350Application.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:file:./target/jmh-h2/compteurs;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.jpa.show-sql=false",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN")
+                .run();
+        salarieAideADomicileRepository = contexte.getBean(SalarieAideADomicileRepository.class);
+        transactionTemplate = new TransactionTemplate(contexte.getBean(PlatformTransactionManager.class));
+        ids = new long[NB_SALARIES];
+        for (int i = 0; i < NB_SALARIES; i++) {
+            ids[i] = salarieAideADomicileRepository.save(new SalarieAideADomicile.Builder("Salarie" + i,
+                    LocalDate.of(2015, 1, 1), LocalDate.of(2022, 12, 1))
+                    .joursTravaillesAnneeNMoins1(220)
+                    .congesPayesAcquisAnneeNMoins1(25)
+                    .build()).getId();
+        }
+        // crée les lignes des compteurs, que les écritures incrémentent ensuite
+        salarieAideADomicileRepository.reconcilieCompteurConges();
+    }
+
+    @TearDown(Level.Trial)
+    public void arrete() {
+        contexte.close();
+    }
+
+    @Benchmark
+    public SalarieAideADomicile modifie(Salarie salarie) {
+        salarie.congesPayesPris = salarie.congesPayesPris == 0 ? 1 : 0;
+        return transactionTemplate.execute(statut -> {
+            SalarieAideADomicile modifie = salarieAideADomicileRepository.findById(salarie.id)
+                    .orElseThrow(IllegalStateException::new);
+            modifie.setCongesPayesPrisAnneeNMoins1(salarie.congesPayesPris);
+            modifie = salarieAideADomicileRepository.saveAndFlush(modifie);
+            if (tenueMs > 0) {
+                try {
+                    Thread.sleep(tenueMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return modifie;
+        });
+    }
+}
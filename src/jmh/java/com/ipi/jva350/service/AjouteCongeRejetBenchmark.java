@@ -0,0 +1,92 @@
+package com.ipi.jva350.service;
+
+import com.ipi.jva350.exception.SalarieException;
+import com.ipi.jva350.model.SalarieAideADomicile;
+import com.ipi.jva350.repository.SalarieAideADomicileRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût d'une demande de congé refusée, selon son motif : levée et capture de la {@link SalarieException}
+ * d'ajouteConge() (message et pile d'appel construits à chaque refus), comparée au résultat de valideConge().
+ * Sans base : le repository ne sert que la part des congés pris de l'entreprise.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AjouteCongeRejetBenchmark {
+
+    @Param({"PAS_DE_DROIT_LEGAL", "AVANT_MOIS_EN_COURS", "DEPASSE_ACQUIS_ANNEE_N_MOINS1",
+            "DEPASSE_LIMITE_ENTREPRISE"})
+    private MotifRejetConge motif;
+
+    private SalarieAideADomicileService salarieService;
+    private SalarieAideADomicile salarie;
+    private LocalDate jourDebut;
+    private LocalDate jourFin;
+
+    @Setup
+    public void setUp() {
+        SalarieAideADomicileRepository repository = (SalarieAideADomicileRepository) Proxy.newProxyInstance(
+                SalarieAideADomicileRepository.class.getClassLoader(),
+                new Class<?>[]{SalarieAideADomicileRepository.class}, (proxy, methode, arguments) -> {
+                    if (methode.getName().equals("partCongesPrisTotauxAnneeNMoins1EnLecture")) {
+                        return 0.5;
+                    }
+                    throw new UnsupportedOperationException(methode.getName());
+                });
+        salarieService = new SalarieAideADomicileService(repository);
+        LocalDate moisEnCours = LocalDate.of(2022, 12, 1);
+        double joursTravaillesAnneeNMoins1 = 200;
+        double congesPayesAcquisAnneeNMoins1 = 25;
+        jourDebut = LocalDate.of(2022, 12, 5);
+        jourFin = LocalDate.of(2022, 12, 10);
+        switch (motif) {
+            case PAS_DE_DROIT_LEGAL:
+                joursTravaillesAnneeNMoins1 = 5;
+                break;
+            case AVANT_MOIS_EN_COURS:
+                jourDebut = LocalDate.of(2022, 11, 14);
+                break;
+            case DEPASSE_ACQUIS_ANNEE_N_MOINS1:
+                congesPayesAcquisAnneeNMoins1 = 2;
+                break;
+            case DEPASSE_LIMITE_ENTREPRISE:
+                moisEnCours = LocalDate.of(2022, 6, 1);
+                jourDebut = LocalDate.of(2022, 6, 6);
+                jourFin = LocalDate.of(2022, 6, 18);
+                break;
+            default:
+                throw new IllegalArgumentException("Motif sans scénario : " + motif);
+        }
+        salarie = new SalarieAideADomicile.Builder("Salarie", LocalDate.of(2022, 1, 1), moisEnCours)
+                .joursTravaillesAnneeNMoins1(joursTravaillesAnneeNMoins1)
+                .congesPayesAcquisAnneeNMoins1(congesPayesAcquisAnneeNMoins1)
+                .build();
+        MotifRejetConge obtenu = valideConge().getMotif();
+        if (obtenu != motif) {
+            throw new IllegalStateException("Scénario " + motif + " refusé pour " + obtenu);
+        }
+    }
+
+    @Benchmark
+    public Object ajouteCongeAvecException() {
+        try {
+            salarieService.ajouteConge(salarie, jourDebut, jourFin);
+            return null;
+        } catch (SalarieException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public ValidationConge valideConge() {
+        return salarieService.valideConge(salarie, jourDebut, jourFin);
+    }
+}
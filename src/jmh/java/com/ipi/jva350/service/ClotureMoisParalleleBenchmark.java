@@ -0,0 +1,83 @@
+package com.ipi.jva350.service;
+
+import com.ipi.jva350.Jva350Application;
+import com.ipi.jva350.model.ClotureMoisSalarie;
+import com.ipi.jva350.model.ExecutionClotureMois;
+import com.ipi.jva350.model.SalarieAideADomicile;
+import com.ipi.jva350.repository.SalarieAideADomicileRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Passage à l'échelle de {@link ClotureMoisParallele} avec le nombre de threads, jusqu'à la taille du pool de
+ * connexions (16 ici), sur une base H2 fichier (les écritures vont jusqu'au disque, contrairement au mode mémoire).
+ * Chaque mesure clôture tous les salariés, remis dans le même mois (exécution et clés d'idempotence effacées) avant
+ * chaque itération ; le débit de la dernière clôture est affiché à la fin de chaque essai.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class ClotureMoisParalleleBenchmark {
+
+    private static final LocalDate MOIS = LocalDate.of(2023, 11, 1);
+    private static final int TAILLE_POOL_CONNEXIONS = 16;
+
+    @Param({"100000"})
+    private int nbSalaries;
+
+    @Param({"1", "2", "4", "8", "16"})
+    private int parallelisme;
+
+    private ConfigurableApplicationContext contexte;
+    private ClotureMoisParallele clotureMoisParallele;
+    private JdbcTemplate jdbcTemplate;
+    private ClotureMoisParallele.RapportCloture dernierRapport;
+
+    @Setup(Level.Trial)
+    public void demarre() {
+        contexte = new SpringApplicationBuilder(Jva350Application.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:file:./target/jmh-h2/cloture;DB_CLOSE_DELAY=-1",
+                        "spring.datasource.hikari.maximum-pool-size=" + TAILLE_POOL_CONNEXIONS,
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.jpa.show-sql=false",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN")
+                .run();
+        clotureMoisParallele = contexte.getBean(ClotureMoisParallele.class);
+        clotureMoisParallele.setParallelisme(parallelisme);
+        jdbcTemplate = contexte.getBean(JdbcTemplate.class);
+        SalarieAideADomicileServiceBenchmark.peuple(contexte.getBean(SalarieAideADomicileRepository.class),
+                nbSalaries);
+    }
+
+    @Setup(Level.Iteration)
+    public void remetDansLeMois() {
+        jdbcTemplate.update("update " + SalarieAideADomicile.TABLE + " set mois_en_cours = ?", MOIS);
+        jdbcTemplate.update("delete from " + ClotureMoisSalarie.TABLE);
+        jdbcTemplate.update("delete from " + ExecutionClotureMois.TABLE);
+    }
+
+    @TearDown(Level.Trial)
+    public void arrete() {
+        System.out.println();
+        System.out.printf("%d threads : %d salariés, %.0f/s%n", dernierRapport.getParallelisme(),
+                dernierRapport.getNbClotures(), dernierRapport.getDebitParSeconde());
+        contexte.close();
+    }
+
+    @Benchmark
+    public ClotureMoisParallele.RapportCloture clotureMois() {
+        dernierRapport = clotureMoisParallele.clotureMois(MOIS, salarie -> 20);
+        return dernierRapport;
+    }
+}
@@ -0,0 +1,89 @@
+package com.ipi.jva350.service;
+
+import com.ipi.jva350.Jva350Application;
+import com.ipi.jva350.exception.SalarieException;
+import com.ipi.jva350.model.SalarieAideADomicile;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Création de nbSalaries salariés aux noms nouveaux, dont un sur dix déjà pris : un par un par
+ * creerSalarieAideADomicile() (une requête sur le nom et un INSERT et un UPDATE des compteurs par salarié, chacun dans
+ * sa transaction), ou tous ensemble par creerSalariesAideADomicile() (une requête par lot de noms, INSERT en lots
+ * JDBC et un UPDATE des compteurs par lot). Base H2 fichier, qui grossit d'un essai à l'autre.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+@State(Scope.Benchmark)
+public class CreationSalariesEnLotBenchmark {
+
+    @Param({"1000"})
+    private int nbSalaries;
+
+    private ConfigurableApplicationContext contexte;
+    private SalarieAideADomicileService salarieAideADomicileService;
+    private long serie;
+
+    @Setup(Level.Trial)
+    public void demarre() {
+        contexte = new SpringApplicationBuilder(Jva350Application.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:file:./target/jmh-h2/creation;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.jpa.show-sql=false",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN")
+                .run();
+        salarieAideADomicileService = contexte.getBean(SalarieAideADomicileService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void arrete() {
+        contexte.close();
+    }
+
+    @Benchmark
+    public int unParUn() {
+        int nbCrees = 0;
+        for (SalarieAideADomicile salarie : nouveauxSalaries()) {
+            try {
+                salarieAideADomicileService.creerSalarieAideADomicile(salarie);
+                nbCrees++;
+            } catch (SalarieException e) {
+                // nom déjà pris
+            }
+        }
+        return nbCrees;
+    }
+
+    @Benchmark
+    public int enLot() {
+        return nbSalaries - salarieAideADomicileService.creerSalariesAideADomicile(nouveauxSalaries()).size();
+    }
+
+    /**
+     * @return nbSalaries salariés de la série suivante, un sur dix portant un nom de la série précédente
+     */
+    private List<SalarieAideADomicile> nouveauxSalaries() {
+        serie++;
+        List<SalarieAideADomicile> salaries = new ArrayList<>(nbSalaries);
+        for (int i = 0; i < nbSalaries; i++) {
+            String nom = "Salarie" + (i % 10 == 0 ? serie - 1 : serie) + "-" + i;
+            salaries.add(new SalarieAideADomicile.Builder(nom, LocalDate.of(2015, 1, 1), LocalDate.of(2022, 12, 1))
+                    .joursTravaillesAnneeNMoins1(220)
+                    .congesPayesAcquisAnneeNMoins1(25)
+                    .build());
+        }
+        return salaries;
+    }
+}
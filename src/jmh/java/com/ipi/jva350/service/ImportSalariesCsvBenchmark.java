@@ -0,0 +1,89 @@
+package com.ipi.jva350.service;
+
+import com.ipi.jva350.Jva350Application;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Import d'un fichier CSV de nbLignes salariés (avec leurs congés pris) selon le nombre de threads d'analyse. Chaque
+ * mesure importe un nouveau fichier aux noms nouveaux, dans une base H2 fichier qui grossit d'une mesure à l'autre ;
+ * le débit et la mémoire utilisée sont affichés après chaque import.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx512m"})
+@State(Scope.Benchmark)
+public class ImportSalariesCsvBenchmark {
+
+    @Param({"100000"})
+    private int nbLignes;
+
+    @Param({"1", "4"})
+    private int parallelisme;
+
+    private ConfigurableApplicationContext contexte;
+    private ImportSalariesCsv importSalariesCsv;
+    private Path fichier;
+    private int serie;
+
+    @Setup(Level.Trial)
+    public void demarre() {
+        contexte = new SpringApplicationBuilder(Jva350Application.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:file:./target/jmh-h2/import;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.jpa.show-sql=false",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN")
+                .run();
+        importSalariesCsv = contexte.getBean(ImportSalariesCsv.class);
+        importSalariesCsv.setParallelisme(parallelisme);
+    }
+
+    @Setup(Level.Iteration)
+    public void ecritFichier() throws IOException {
+        serie++;
+        fichier = Paths.get("target", "jmh-import-" + serie + ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(fichier, StandardCharsets.UTF_8)) {
+            writer.write(ImportSalariesCsv.ENTETE);
+            writer.newLine();
+            for (int i = 0; i < nbLignes; i++) {
+                writer.write("Salarié " + serie + "-" + i + ";2015-01-01;2022-12-01;" + (i % 20) + ".5;2.25;220;25;"
+                        + (i % 10) + ";2022-06-0" + (1 + i % 9) + "|2022-07-11|2022-11-21");
+                writer.newLine();
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void supprimeFichier() throws IOException {
+        Files.delete(fichier);
+    }
+
+    @TearDown(Level.Trial)
+    public void arrete() {
+        contexte.close();
+    }
+
+    @Benchmark
+    public ImportSalariesCsv.RapportImport importe() throws IOException {
+        ImportSalariesCsv.RapportImport rapport = importSalariesCsv.importe(fichier);
+        Runtime runtime = Runtime.getRuntime();
+        System.out.println();
+        System.out.println(rapport + ", " + (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024)
+                + " Mo utilisés");
+        return rapport;
+    }
+}
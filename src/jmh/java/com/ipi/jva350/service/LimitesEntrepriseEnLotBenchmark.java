@@ -0,0 +1,81 @@
+package com.ipi.jva350.service;
+
+import com.ipi.jva350.model.Calendrier;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limite de l'entreprise pour un lot de demandes (salarié, plage) : calculeLimiteEntrepriseCongesPermis() appelée
+ * pour chacune (dates déjà construites), comparée à calculeLimitesEntrepriseCongesPermis() sur des tableaux.
+ * Résultat par demande avec {@code -prof gc} pour les allocations ; {@code -prof perfasm} montre la vectorisation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LimitesEntrepriseEnLotBenchmark {
+
+    private static final double PART_CONGES_PRIS = 0.4;
+
+    @Param({"1000", "1000000"})
+    private int nbDemandes;
+
+    private int[] anneeMoisEnCours;
+    private double[] acquis;
+    private int[] anneeDebutContrat;
+    private int[] moisPremierJour;
+    private int[] moisDernierJour;
+    private long[] limites;
+
+    private LocalDate[] moisEnCours;
+    private LocalDate[] moisDebutContrat;
+    private LocalDate[] premierJour;
+    private LocalDate[] dernierJour;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(20);
+        anneeMoisEnCours = new int[nbDemandes];
+        acquis = new double[nbDemandes];
+        anneeDebutContrat = new int[nbDemandes];
+        moisPremierJour = new int[nbDemandes];
+        moisDernierJour = new int[nbDemandes];
+        limites = new long[nbDemandes];
+        moisEnCours = new LocalDate[nbDemandes];
+        moisDebutContrat = new LocalDate[nbDemandes];
+        premierJour = new LocalDate[nbDemandes];
+        dernierJour = new LocalDate[nbDemandes];
+        for (int i = 0; i < nbDemandes; i++) {
+            moisEnCours[i] = LocalDate.of(2023, 1 + random.nextInt(12), 1);
+            anneeMoisEnCours[i] = Calendrier.anneeMois(moisEnCours[i].getYear(), moisEnCours[i].getMonthValue());
+            acquis[i] = random.nextInt(61) / 2d;
+            anneeDebutContrat[i] = 2005 + random.nextInt(19);
+            moisDebutContrat[i] = LocalDate.of(anneeDebutContrat[i], 1, 1);
+            moisPremierJour[i] = 1 + random.nextInt(12);
+            moisDernierJour[i] = 1 + random.nextInt(12);
+            premierJour[i] = LocalDate.of(2023, moisPremierJour[i], 10);
+            dernierJour[i] = LocalDate.of(2023, moisDernierJour[i], 20);
+        }
+    }
+
+    @Benchmark
+    public long[] formuleParDemande() {
+        for (int i = 0; i < nbDemandes; i++) {
+            limites[i] = SalarieAideADomicileService.calculeLimiteEntrepriseCongesPermis(moisEnCours[i], acquis[i],
+                    moisDebutContrat[i], premierJour[i], dernierJour[i], PART_CONGES_PRIS);
+        }
+        return limites;
+    }
+
+    @Benchmark
+    public long[] enLot() {
+        SalarieAideADomicileService.calculeLimitesEntrepriseCongesPermis(anneeMoisEnCours, acquis,
+                anneeDebutContrat, moisPremierJour, moisDernierJour, limites, PART_CONGES_PRIS);
+        return limites;
+    }
+}
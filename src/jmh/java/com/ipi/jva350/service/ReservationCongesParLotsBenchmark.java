@@ -0,0 +1,122 @@
+package com.ipi.jva350.service;
+
+import com.ipi.jva350.Jva350Application;
+import com.ipi.jva350.model.SalarieAideADomicile;
+import com.ipi.jva350.repository.SalarieAideADomicileRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Débit et latence de la réservation de congés sous un pic de demandes concurrentes (8 threads) : chaque demande
+ * pose un jour ouvré pour un salarié au hasard, soit dans sa propre transaction ({@link #direct()}), soit par
+ * {@link ReservationCongesParLots} ({@link #parLots()}) selon la taille de lot et la latence maximale.
+ * {@link #direct()} ne dépend pas de ces paramètres : le lancer avec un seul couple (-p tailleLot=1 -p latenceMaxMs=1).
+ * Base H2 fichier, les salariés ont assez de congés acquis pour que les demandes soient acceptées.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+@State(Scope.Benchmark)
+public class ReservationCongesParLotsBenchmark {
+
+    private static final LocalDate MOIS_EN_COURS = LocalDate.of(2022, 12, 1);
+
+    @Param({"10000"})
+    private int nbSalaries;
+
+    @Param({"1", "50", "200"})
+    private int tailleLot;
+
+    @Param({"1", "5"})
+    private long latenceMaxMs;
+
+    private ConfigurableApplicationContext contexte;
+    private SalarieAideADomicileService salarieAideADomicileService;
+    private SalarieAideADomicileRepository salarieAideADomicileRepository;
+    private ReservationCongesParLots reservationCongesParLots;
+    private TransactionTemplate transactionTemplate;
+    private long[] ids;
+    /** jours ouvrés de décembre à mai, candidats aux demandes */
+    private LocalDate[] jours;
+
+    @Setup(Level.Trial)
+    public void demarre() {
+        contexte = new SpringApplicationBuilder(Jva350Application.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:file:./target/jmh-h2/reservation;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.jpa.show-sql=false",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN")
+                .run();
+        salarieAideADomicileService = contexte.getBean(SalarieAideADomicileService.class);
+        salarieAideADomicileRepository = contexte.getBean(SalarieAideADomicileRepository.class);
+        reservationCongesParLots = contexte.getBean(ReservationCongesParLots.class);
+        reservationCongesParLots.setTailleLot(tailleLot);
+        reservationCongesParLots.setLatenceMaxMs(latenceMaxMs);
+        transactionTemplate = new TransactionTemplate(contexte.getBean(PlatformTransactionManager.class));
+
+        ids = new long[nbSalaries];
+        List<SalarieAideADomicile> lot = new ArrayList<>();
+        for (int i = 0; i < nbSalaries; i++) {
+            lot.add(new SalarieAideADomicile.Builder("Salarie" + i, LocalDate.of(2015, 1, 1), MOIS_EN_COURS)
+                    .joursTravaillesAnneeNMoins1(220)
+                    .congesPayesAcquisAnneeNMoins1(1000)
+                    .build());
+            if (lot.size() == 1000 || i == nbSalaries - 1) {
+                int premier = i + 1 - lot.size();
+                List<SalarieAideADomicile> sauves = salarieAideADomicileRepository.saveAll(lot);
+                for (int j = 0; j < sauves.size(); j++) {
+                    ids[premier + j] = sauves.get(j).getId();
+                }
+                lot.clear();
+            }
+        }
+        List<LocalDate> ouvres = new ArrayList<>();
+        for (LocalDate jour = MOIS_EN_COURS; jour.isBefore(LocalDate.of(2023, 6, 1)); jour = jour.plusDays(1)) {
+            if (jour.getDayOfWeek() != DayOfWeek.SATURDAY && jour.getDayOfWeek() != DayOfWeek.SUNDAY) {
+                ouvres.add(jour);
+            }
+        }
+        jours = ouvres.toArray(new LocalDate[0]);
+    }
+
+    @TearDown(Level.Trial)
+    public void arrete() {
+        System.out.println();
+        System.out.printf("lots de %d au plus, %d ms : %d demandes en %d lots (%.1f par lot)%n", tailleLot,
+                latenceMaxMs, reservationCongesParLots.getNbDemandes(), reservationCongesParLots.getNbLots(),
+                reservationCongesParLots.getNbDemandes() / (double) Math.max(1, reservationCongesParLots.getNbLots()));
+        contexte.close();
+    }
+
+    @Benchmark
+    public ValidationConge direct() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long id = ids[random.nextInt(ids.length)];
+        LocalDate jour = jours[random.nextInt(jours.length)];
+        return transactionTemplate.execute(statut -> salarieAideADomicileService.tryAjouteConge(
+                salarieAideADomicileRepository.findById(id).orElseThrow(IllegalStateException::new), jour, jour));
+    }
+
+    @Benchmark
+    public ValidationConge parLots() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LocalDate jour = jours[random.nextInt(jours.length)];
+        return reservationCongesParLots.ajouteConge(ids[random.nextInt(ids.length)], jour, jour).get();
+    }
+}
@@ -0,0 +1,156 @@
+package com.ipi.jva350.service;
+
+import com.ipi.jva350.Jva350Application;
+import com.ipi.jva350.exception.SalarieException;
+import com.ipi.jva350.model.SalarieAideADomicile;
+import com.ipi.jva350.repository.SalarieAideADomicileRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coût de bout en bout des opérations de {@link SalarieAideADomicileService}, flush JPA et
+ * requête d'agrégat compris, sur une base H2 en mémoire pré-remplie de salariés ayant un
+ * historique de congés réaliste.
+ * Débit et percentiles de latence (mode SampleTime) ; appelants concurrents avec
+ * {@code -Djmh.threads=8}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class SalarieAideADomicileServiceBenchmark {
+
+    private static final LocalDate MOIS_EN_COURS = LocalDate.of(2023, 6, 1);
+
+    @Param({"1000", "100000", "1000000"})
+    private int nbSalaries;
+
+    private ConfigurableApplicationContext contexte;
+    private SalarieAideADomicileService salarieService;
+    private SalarieAideADomicileRepository salarieRepository;
+    private long[] ids;
+    private final AtomicLong compteurNouveauxSalaries = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void demarre() {
+        contexte = new SpringApplicationBuilder(Jva350Application.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.jpa.show-sql=false",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN")
+                .run();
+        salarieService = contexte.getBean(SalarieAideADomicileService.class);
+        salarieRepository = contexte.getBean(SalarieAideADomicileRepository.class);
+        ids = peuple(salarieRepository, nbSalaries);
+    }
+
+    @TearDown(Level.Trial)
+    public void arrete() {
+        contexte.close();
+    }
+
+    /**
+     * Crée les salariés par lots, avec ancienneté, jours travaillés et congés déjà pris variés.
+     */
+    static long[] peuple(SalarieAideADomicileRepository salarieRepository, int nbSalaries) {
+        Random random = new Random(350);
+        long[] ids = new long[nbSalaries];
+        List<SalarieAideADomicile> lot = new ArrayList<>();
+        for (int i = 0; i < nbSalaries; i++) {
+            double acquisNMoins1 = 20 + random.nextInt(11);
+            SalarieAideADomicile salarie = new SalarieAideADomicile.Builder("Salarie" + i,
+                    MOIS_EN_COURS.minusMonths(random.nextInt(240)), MOIS_EN_COURS.plusMonths(random.nextInt(3)))
+                    .joursTravaillesAnneeNMoins1(100 + random.nextInt(150))
+                    .congesPayesAcquisAnneeNMoins1(acquisNMoins1)
+                    .congesPayesPrisAnneeNMoins1(random.nextInt((int) acquisNMoins1 / 2))
+                    .joursTravaillesAnneeN(random.nextInt(60))
+                    .congesPayesAcquisAnneeN(2.5 * random.nextInt(3))
+                    .build();
+            LocalDate jour = MOIS_EN_COURS.plusDays(random.nextInt(20));
+            for (int j = random.nextInt(10); j > 0; j--) {
+                salarie.getCongesPayesPris().add(jour);
+                jour = jour.plusDays(1);
+            }
+            lot.add(salarie);
+            if (lot.size() == 1000 || i == nbSalaries - 1) {
+                int premier = i + 1 - lot.size();
+                List<SalarieAideADomicile> sauves = salarieRepository.saveAll(lot);
+                for (int j = 0; j < sauves.size(); j++) {
+                    ids[premier + j] = sauves.get(j).getId();
+                }
+                lot.clear();
+            }
+        }
+        return ids;
+    }
+
+    private SalarieAideADomicile salarieAuHasard() {
+        return salarieRepository.findById(ids[ThreadLocalRandom.current().nextInt(ids.length)]).orElseThrow(
+                IllegalStateException::new);
+    }
+
+    @Benchmark
+    public Object ajouteConge() {
+        SalarieAideADomicile salarie = salarieAuHasard();
+        LocalDate debut = salarie.getMoisEnCours().plusDays(ThreadLocalRandom.current().nextInt(25));
+        try {
+            salarieService.ajouteConge(salarie, debut, debut.plusDays(ThreadLocalRandom.current().nextInt(5)));
+            return salarie;
+        } catch (SalarieException e) {
+            // demande refusée par les règles métier : son coût fait partie de la mesure
+            return e;
+        }
+    }
+
+    @Benchmark
+    public SalarieAideADomicile clotureMois() {
+        SalarieAideADomicile salarie = salarieAuHasard();
+        salarieService.clotureMois(salarie, 20);
+        return salarie;
+    }
+
+    @Benchmark
+    public SalarieAideADomicile clotureAnnee() {
+        SalarieAideADomicile salarie = salarieAuHasard();
+        salarieService.clotureAnnee(salarie);
+        return salarie;
+    }
+
+    @Benchmark
+    public Object creerSalarieAideADomicile() {
+        SalarieAideADomicile salarie = new SalarieAideADomicile.Builder(
+                "Nouveau" + compteurNouveauxSalaries.incrementAndGet(), MOIS_EN_COURS, MOIS_EN_COURS)
+                .build();
+        try {
+            salarieService.creerSalarieAideADomicile(salarie);
+            return salarie;
+        } catch (SalarieException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Double partCongesPrisTotauxAnneeNMoins1() {
+        return salarieRepository.partCongesPrisTotauxAnneeNMoins1();
+    }
+
+    @Benchmark
+    public Set<LocalDate> chargeSalarie() {
+        return salarieAuHasard().getCongesPayesPris();
+    }
+}
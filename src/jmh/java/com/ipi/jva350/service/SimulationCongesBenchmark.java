@@ -0,0 +1,70 @@
+package com.ipi.jva350.service;
+
+import com.ipi.jva350.model.SalarieAideADomicile;
+import com.ipi.jva350.repository.SalarieAideADomicileRepository;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulation d'un lot de plages de congé par {@link SimulationConges}, comparée à un appel de valideConge() par
+ * plage. Sans base : le repository ne sert que la part des congés pris de l'entreprise, relue à chaque demande
+ * (cache désactivé) comme quand elle vient de changer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SimulationCongesBenchmark {
+
+    @Param({"1", "100"})
+    private int nbPlages;
+
+    private SalarieAideADomicileService salarieService;
+    private SimulationConges simulationConges;
+    private SalarieAideADomicile salarie;
+    private List<SimulationConges.Plage> plages;
+
+    @Setup
+    public void setUp() {
+        SalarieAideADomicileRepository repository = (SalarieAideADomicileRepository) Proxy.newProxyInstance(
+                SalarieAideADomicileRepository.class.getClassLoader(),
+                new Class<?>[]{SalarieAideADomicileRepository.class}, (proxy, methode, arguments) -> {
+                    if (methode.getName().equals("partCongesPrisTotauxAnneeNMoins1EnLecture")) {
+                        return 0.5;
+                    }
+                    throw new UnsupportedOperationException(methode.getName());
+                });
+        salarieService = new SalarieAideADomicileService(repository);
+        salarieService.setDureeCachePartCongesPrisMs(0);
+        simulationConges = new SimulationConges(salarieService);
+        salarie = new SalarieAideADomicile.Builder("Salarie", LocalDate.of(2015, 1, 1), LocalDate.of(2022, 12, 1))
+                .joursTravaillesAnneeNMoins1(200)
+                .congesPayesAcquisAnneeNMoins1(25)
+                .build();
+        plages = new ArrayList<>();
+        for (int i = 0; i < nbPlages; i++) {
+            LocalDate jourDebut = LocalDate.of(2022, 12, 5).plusDays(i);
+            plages.add(new SimulationConges.Plage(jourDebut, jourDebut.plusDays(i % 10)));
+        }
+    }
+
+    @Benchmark
+    public List<SimulationConges.Simulation> simule() {
+        return simulationConges.simule(salarie, plages);
+    }
+
+    @Benchmark
+    public void valideCongeParPlage(Blackhole blackhole) {
+        for (SimulationConges.Plage plage : plages) {
+            blackhole.consume(salarieService.valideConge(salarie, plage.getJourDebut(), plage.getJourFin()));
+        }
+    }
+}
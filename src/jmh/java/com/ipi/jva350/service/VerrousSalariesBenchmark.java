@@ -0,0 +1,75 @@
+package com.ipi.jva350.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût et passage à l'échelle de {@link VerrousSalaries} : chaque opération tient le verrou d'un salarié le temps
+ * d'un travail fixe, soit chaque thread sur son propre salarié ({@link #salariesDistincts}), soit tous sur le même
+ * ({@link #memeSalarie}). Lancer avec -t 1, 2, 4... : le débit des salariés distincts doit croître avec le nombre de
+ * threads (jusqu'au nombre de cœurs), celui du même salarié rester plat. L'histogramme des attentes est affiché à la
+ * fin de chaque essai.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VerrousSalariesBenchmark {
+
+    @Param({"256"})
+    private int nbBandes;
+
+    @Param({"false", "true"})
+    private boolean equitables;
+
+    /** travail fait en tenant le verrou (unités de Blackhole.consumeCPU) */
+    @Param({"500"})
+    private int travail;
+
+    private VerrousSalaries verrous;
+
+    @State(Scope.Thread)
+    public static class Salarie {
+
+        private Long id;
+
+        @Setup(Level.Trial)
+        public void choisit(ThreadParams threadParams) {
+            id = (long) threadParams.getThreadIndex();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void cree() {
+        verrous = new VerrousSalaries(nbBandes, equitables);
+    }
+
+    @TearDown(Level.Trial)
+    public void affiche() {
+        HistogrammeAttentes histogramme = verrous.getHistogramme();
+        System.out.println();
+        System.out.printf("attente moyenne %.0f ns, p99 < %d µs : %s%n", histogramme.getAttenteMoyenneNanos(),
+                histogramme.quantileMicros(0.99), histogramme);
+    }
+
+    @Benchmark
+    public Long salariesDistincts(Salarie salarie) {
+        return verrous.execute(salarie.id, () -> {
+            Blackhole.consumeCPU(travail);
+            return salarie.id;
+        });
+    }
+
+    @Benchmark
+    public Long memeSalarie() {
+        return verrous.execute(0L, () -> {
+            Blackhole.consumeCPU(travail);
+            return 0L;
+        });
+    }
+}
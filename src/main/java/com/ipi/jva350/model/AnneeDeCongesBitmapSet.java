@@ -0,0 +1,322 @@
+package com.ipi.jva350.model;
+
+import java.time.LocalDate;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+
+/**
+ * Set des jours de congés pris, pour l'essentiel d'une année de congés (du 1er juin au 31 mai, plus le premier jour
+ * de l'année suivante toléré par ajouteConge()), sous forme d'un bitmap de 367 bits indexé depuis le 1er juin.
+ * Ajout, test et taille en temps constant pour les jours de cette année, itération dans l'ordre chronologique.
+ * L'année est celle de la première date ajoutée ; une date plus ancienne ramène le bitmap à son année si les
+ * dates déjà présentes y tiennent encore. Les jours d'autres années (jour ouvré qui suit un lundi de Pentecôte le
+ * 1er juin, historique de plusieurs années) sont gardés à part dans un set trié : comme tout Set, celui-ci accepte
+ * n'importe quelle date.
+ */
+public class AnneeDeCongesBitmapSet extends AbstractSet<LocalDate> implements OrderedLocalDateSet {
+
+    static final int NB_JOURS = 367;
+
+    private static final int NB_MOTS = (NB_JOURS + 63) / 64;
+    private static final int AUCUN = Integer.MIN_VALUE;
+
+    private final long[] mots = new long[NB_MOTS];
+    /** jour epoch du 1er juin de l'année de congés du bitmap, AUCUN tant que le set est vide */
+    private int premierJour = AUCUN;
+    /** jours hors de l'année du bitmap, null tant qu'il n'y en a pas */
+    private TreeSet<Integer> horsAnnee;
+    private int nbDansAnnee;
+    private int taille;
+    private int modifications;
+
+    public AnneeDeCongesBitmapSet() {
+    }
+
+    /**
+     * @param joursEpoch   jours à ajouter
+     * @param nb           nombre de jours à prendre au début du tableau
+     */
+    AnneeDeCongesBitmapSet(int[] joursEpoch, int nb) {
+        for (int i = 0; i < nb; i++) {
+            ajouteJourEpoch(joursEpoch[i]);
+        }
+    }
+
+    /**
+     * @return si les jours donnés tiennent dans une même année de congés (plus le premier jour de la suivante)
+     */
+    static boolean tiennentDansUneAnnee(int[] joursEpoch, int nb) {
+        if (nb == 0) {
+            return true;
+        }
+        int min = joursEpoch[0];
+        int max = joursEpoch[0];
+        for (int i = 1; i < nb; i++) {
+            min = Math.min(min, joursEpoch[i]);
+            max = Math.max(max, joursEpoch[i]);
+        }
+        return max - Calendrier.premierJourAnneeDeConges(min) < NB_JOURS;
+    }
+
+    /**
+     * @return le 1er juin de l'année de congés du bitmap, null s'il est vide
+     */
+    public LocalDate getPremierJourAnneeDeConges() {
+        return nbDansAnnee == 0 ? null : LocalDate.ofEpochDay(premierJour);
+    }
+
+    /**
+     * @param jourEpoch jour à ajouter
+     * @return si le jour n'était pas déjà présent
+     */
+    public boolean ajouteJourEpoch(int jourEpoch) {
+        if (nbDansAnnee == 0) {
+            changeAnnee(Calendrier.premierJourAnneeDeConges(jourEpoch));
+        }
+        int index = jourEpoch - premierJour;
+        if ((index < 0 || index >= NB_JOURS) && rebase(jourEpoch)) {
+            index = jourEpoch - premierJour;
+        }
+        if (index < 0 || index >= NB_JOURS) {
+            if (horsAnnee == null) {
+                horsAnnee = new TreeSet<>();
+            }
+            if (!horsAnnee.add(jourEpoch)) {
+                return false;
+            }
+        } else {
+            long masque = 1L << index;
+            if ((mots[index >>> 6] & masque) != 0) {
+                return false;
+            }
+            mots[index >>> 6] |= masque;
+            nbDansAnnee++;
+        }
+        taille++;
+        modifications++;
+        return true;
+    }
+
+    /**
+     * Ramène le bitmap à l'année de congés du jour donné, plus ancienne, si les jours déjà présents y tiennent.
+     *
+     * @return si le bitmap a été ramené
+     */
+    private boolean rebase(int jourEpoch) {
+        int nouveauPremierJour = Calendrier.premierJourAnneeDeConges(jourEpoch);
+        int decalage = premierJour - nouveauPremierJour;
+        if (decalage <= 0 || dernierIndex() + decalage >= NB_JOURS) {
+            return false;
+        }
+        long[] anciens = mots.clone();
+        Arrays.fill(mots, 0);
+        for (int index = indexSuivant(anciens, 0); index >= 0; index = indexSuivant(anciens, index + 1)) {
+            int nouvelIndex = index + decalage;
+            mots[nouvelIndex >>> 6] |= 1L << nouvelIndex;
+        }
+        changeAnnee(nouveauPremierJour);
+        return true;
+    }
+
+    /**
+     * Place le bitmap sur l'année de congés commençant au jour donné, et y rapatrie les jours hors année qui s'y
+     * trouvent.
+     */
+    private void changeAnnee(int nouveauPremierJour) {
+        premierJour = nouveauPremierJour;
+        if (horsAnnee != null) {
+            for (Iterator<Integer> it = horsAnnee.subSet(premierJour, premierJour + NB_JOURS).iterator();
+                    it.hasNext(); ) {
+                int index = it.next() - premierJour;
+                it.remove();
+                mots[index >>> 6] |= 1L << index;
+                nbDansAnnee++;
+            }
+        }
+    }
+
+    /**
+     * @return si le jour est présent
+     */
+    public boolean contientJourEpoch(int jourEpoch) {
+        int index = jourEpoch - premierJour;
+        if (premierJour != AUCUN && index >= 0 && index < NB_JOURS) {
+            return (mots[index >>> 6] & (1L << index)) != 0;
+        }
+        return horsAnnee != null && horsAnnee.contains(jourEpoch);
+    }
+
+    @Override
+    public boolean add(LocalDate date) {
+        return ajouteJourEpoch((int) date.toEpochDay());
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof LocalDate && contientJourEpoch((int) ((LocalDate) o).toEpochDay());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof LocalDate && retireJourEpoch((int) ((LocalDate) o).toEpochDay());
+    }
+
+    /**
+     * Retire le jour sans changer l'année du bitmap, même vide : les itérations en cours restent valides.
+     */
+    private boolean retireJourEpoch(int jourEpoch) {
+        if (!contientJourEpoch(jourEpoch)) {
+            return false;
+        }
+        int index = jourEpoch - premierJour;
+        if (index >= 0 && index < NB_JOURS) {
+            mots[index >>> 6] &= ~(1L << index);
+            nbDansAnnee--;
+        } else {
+            horsAnnee.remove(jourEpoch);
+        }
+        taille--;
+        modifications++;
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return taille;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(mots, 0);
+        premierJour = AUCUN;
+        horsAnnee = null;
+        nbDansAnnee = 0;
+        taille = 0;
+        modifications++;
+    }
+
+    @Override
+    public LocalDate dernier() {
+        return taille == 0 ? null : LocalDate.ofEpochDay(dernierJourEpoch());
+    }
+
+    @Override
+    public long dernierJourEpoch() {
+        long dernier = nbDansAnnee == 0 ? Long.MIN_VALUE : premierJour + (long) dernierIndex();
+        if (horsAnnee != null && !horsAnnee.isEmpty()) {
+            dernier = Math.max(dernier, horsAnnee.last());
+        }
+        return dernier;
+    }
+
+    private int dernierIndex() {
+        for (int i = NB_MOTS - 1; i >= 0; i--) {
+            if (mots[i] != 0) {
+                return (i << 6) + 63 - Long.numberOfLeadingZeros(mots[i]);
+            }
+        }
+        return -1;
+    }
+
+    private static int indexSuivant(long[] mots, int depuis) {
+        int i = depuis >>> 6;
+        if (i >= NB_MOTS) {
+            return -1;
+        }
+        long mot = mots[i] & (-1L << depuis);
+        while (mot == 0) {
+            if (++i == NB_MOTS) {
+                return -1;
+            }
+            mot = mots[i];
+        }
+        return (i << 6) + Long.numberOfTrailingZeros(mot);
+    }
+
+    /**
+     * @return le premier jour présent après celui donné, Long.MAX_VALUE s'il n'y en a pas
+     */
+    private long jourSuivant(int jourEpoch) {
+        long suivant = Long.MAX_VALUE;
+        long depuis = Math.max(0, (long) jourEpoch + 1 - premierJour);
+        if (nbDansAnnee > 0 && depuis < NB_JOURS) {
+            int index = indexSuivant(mots, (int) depuis);
+            if (index >= 0) {
+                suivant = premierJour + (long) index;
+            }
+        }
+        if (horsAnnee != null) {
+            Integer horsAnneeSuivant = horsAnnee.higher(jourEpoch);
+            if (horsAnneeSuivant != null) {
+                suivant = Math.min(suivant, horsAnneeSuivant);
+            }
+        }
+        return suivant;
+    }
+
+    @Override
+    public Iterator<LocalDate> iterator() {
+        return new Iterator<LocalDate>() {
+            private int courant = AUCUN;
+            private long suivant = jourSuivant(courant);
+            private boolean retirable;
+            private int modificationsAttendues = modifications;
+
+            @Override
+            public boolean hasNext() {
+                return suivant != Long.MAX_VALUE;
+            }
+
+            @Override
+            public LocalDate next() {
+                if (modifications != modificationsAttendues) {
+                    throw new ConcurrentModificationException();
+                }
+                if (suivant == Long.MAX_VALUE) {
+                    throw new NoSuchElementException();
+                }
+                courant = (int) suivant;
+                suivant = jourSuivant(courant);
+                retirable = true;
+                return LocalDate.ofEpochDay(courant);
+            }
+
+            @Override
+            public void remove() {
+                if (!retirable) {
+                    throw new IllegalStateException();
+                }
+                if (modifications != modificationsAttendues) {
+                    throw new ConcurrentModificationException();
+                }
+                retireJourEpoch(courant);
+                modificationsAttendues = modifications;
+                retirable = false;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof AnneeDeCongesBitmapSet) {
+            AnneeDeCongesBitmapSet autre = (AnneeDeCongesBitmapSet) o;
+            if (taille != autre.taille) {
+                return false;
+            }
+            boolean sansHorsAnnee = nbDansAnnee == taille && autre.nbDansAnnee == autre.taille;
+            if (taille == 0 || sansHorsAnnee && premierJour == autre.premierJour) {
+                return Arrays.equals(mots, autre.mots);
+            }
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+}
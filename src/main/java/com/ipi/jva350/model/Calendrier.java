@@ -0,0 +1,173 @@
+package com.ipi.jva350.model;
+
+/**
+ * Noyau de calcul calendaire sur types primitifs, sans aucune allocation.
+ * Les jours sont des jours epoch (nombre de jours depuis le 01/01/1970, comme
+ * {@link java.time.LocalDate#toEpochDay()}) et les mois des années-mois compactées
+ * ({@code annee * 12 + mois - 1}), dans le calendrier grégorien proleptique.
+ */
+public final class Calendrier {
+
+    /** Mois (juin) du premier jour d'une année de congés */
+    public static final int MOIS_DEBUT_ANNEE_DE_CONGES = 6;
+
+    /** Jours habituellement travaillés : du lundi au vendredi (bit i = jour ISO i) */
+    private static final int JOURS_HABITUELLEMENT_TRAVAILLES = 0b111110;
+
+    private static final int DIMANCHE = 7;
+    private static final int JOURS_PAR_CYCLE_400_ANS = 146097;
+    private static final int JOURS_0000_03_01_A_1970 = 719468;
+
+    private Calendrier() {
+
+    }
+
+    public static boolean estBissextile(int annee) {
+        return (annee & 3) == 0 && (annee % 100 != 0 || annee % 400 == 0);
+    }
+
+    /**
+     * @return jour epoch de la date donnée
+     */
+    public static int jourEpoch(int annee, int mois, int jour) {
+        // année commençant le 1er mars, pour que le 29 février en soit le dernier jour
+        int anneeDepuisMars = mois <= 2 ? annee - 1 : annee;
+        int cycle = Math.floorDiv(anneeDepuisMars, 400);
+        int anneeDuCycle = anneeDepuisMars - cycle * 400;
+        int jourDeLAnnee = (153 * (mois > 2 ? mois - 3 : mois + 9) + 2) / 5 + jour - 1;
+        int jourDuCycle = anneeDuCycle * 365 + anneeDuCycle / 4 - anneeDuCycle / 100 + jourDeLAnnee;
+        return cycle * JOURS_PAR_CYCLE_400_ANS + jourDuCycle - JOURS_0000_03_01_A_1970;
+    }
+
+    /**
+     * @return jour epoch du 1er janvier de l'année
+     */
+    public static int premierJourEpoch(int annee) {
+        return jourEpoch(annee, 1, 1);
+    }
+
+    public static int annee(int jourEpoch) {
+        return anneeMoisJour(jourEpoch) >> 9;
+    }
+
+    /**
+     * @return mois (1 à 12) du jour
+     */
+    public static int mois(int jourEpoch) {
+        return (anneeMoisJour(jourEpoch) >> 5) & 0xF;
+    }
+
+    /**
+     * @return jour du mois (1 à 31)
+     */
+    public static int jourDuMois(int jourEpoch) {
+        return anneeMoisJour(jourEpoch) & 0x1F;
+    }
+
+    /**
+     * @return jour de l'année (1 à 366)
+     */
+    public static int jourDeLAnnee(int jourEpoch) {
+        return jourEpoch - premierJourEpoch(annee(jourEpoch)) + 1;
+    }
+
+    /**
+     * @return année-mois compactée du jour ({@code annee * 12 + mois - 1})
+     */
+    public static int anneeMois(int jourEpoch) {
+        int anneeMoisJour = anneeMoisJour(jourEpoch);
+        return anneeMois(anneeMoisJour >> 9, (anneeMoisJour >> 5) & 0xF);
+    }
+
+    /**
+     * @return année-mois compactée ({@code annee * 12 + mois - 1})
+     */
+    public static int anneeMois(int annee, int mois) {
+        return annee * 12 + mois - 1;
+    }
+
+    public static int anneeDeLAnneeMois(int anneeMois) {
+        return Math.floorDiv(anneeMois, 12);
+    }
+
+    public static int moisDeLAnneeMois(int anneeMois) {
+        return Math.floorMod(anneeMois, 12) + 1;
+    }
+
+    /**
+     * @return jour de la semaine ISO (1 = lundi, 7 = dimanche)
+     */
+    public static int jourDeLaSemaine(int jourEpoch) {
+        // le 01/01/1970 est un jeudi
+        return Math.floorMod(jourEpoch + 3, 7) + 1;
+    }
+
+    /**
+     * @return année civile du 1er juin qui ouvre l'année de congés contenant le jour
+     */
+    public static int anneeDeConges(int jourEpoch) {
+        int anneeMoisJour = anneeMoisJour(jourEpoch);
+        int annee = anneeMoisJour >> 9;
+        return ((anneeMoisJour >> 5) & 0xF) >= MOIS_DEBUT_ANNEE_DE_CONGES ? annee : annee - 1;
+    }
+
+    /**
+     * @return jour epoch du 1er juin ouvrant l'année de congés contenant le jour
+     */
+    public static int premierJourAnneeDeConges(int jourEpoch) {
+        return jourEpoch(anneeDeConges(jourEpoch), MOIS_DEBUT_ANNEE_DE_CONGES, 1);
+    }
+
+    /**
+     * @return jour epoch du 31 mai fermant l'année de congés contenant le jour
+     */
+    public static int dernierJourAnneeDeConges(int jourEpoch) {
+        return jourEpoch(anneeDeConges(jourEpoch) + 1, MOIS_DEBUT_ANNEE_DE_CONGES, 1) - 1;
+    }
+
+    /**
+     * @return true si le jour est dans l'intervalle [debut, fin]
+     */
+    public static boolean estDansPlage(int jourEpoch, int debut, int fin) {
+        return jourEpoch >= debut && jourEpoch <= fin;
+    }
+
+    public static boolean estJourFerie(int jourEpoch) {
+        int annee = annee(jourEpoch);
+        return CalendrierJoursFeries.estJourFerie(annee, jourEpoch - premierJourEpoch(annee) + 1);
+    }
+
+    /**
+     * @return true si le jour n'est ni un dimanche ni un jour férié
+     */
+    public static boolean estJourOuvrable(int jourEpoch) {
+        return IndexJoursOuvrables.estJourOuvrable(jourEpoch);
+    }
+
+    /**
+     * @return true si le jour est habituellement travaillé (du lundi au vendredi)
+     */
+    public static boolean estHabituellementTravaille(int jourEpoch) {
+        return (JOURS_HABITUELLEMENT_TRAVAILLES & (1 << jourDeLaSemaine(jourEpoch))) != 0;
+    }
+
+    public static boolean estDimanche(int jourEpoch) {
+        return jourDeLaSemaine(jourEpoch) == DIMANCHE;
+    }
+
+    /**
+     * Conversion jour epoch vers date civile, compactée en {@code annee << 9 | mois << 5 | jour}.
+     */
+    private static int anneeMoisJour(int jourEpoch) {
+        int jours = jourEpoch + JOURS_0000_03_01_A_1970;
+        int cycle = Math.floorDiv(jours, JOURS_PAR_CYCLE_400_ANS);
+        int jourDuCycle = jours - cycle * JOURS_PAR_CYCLE_400_ANS;
+        int anneeDuCycle = (jourDuCycle - jourDuCycle / 1460 + jourDuCycle / 36524 - jourDuCycle / 146096) / 365;
+        int jourDeLAnnee = jourDuCycle - (365 * anneeDuCycle + anneeDuCycle / 4 - anneeDuCycle / 100);
+        int moisDepuisMars = (5 * jourDeLAnnee + 2) / 153;
+        int jour = jourDeLAnnee - (153 * moisDepuisMars + 2) / 5 + 1;
+        int mois = moisDepuisMars < 10 ? moisDepuisMars + 3 : moisDepuisMars - 9;
+        int annee = anneeDuCycle + cycle * 400 + (mois <= 2 ? 1 : 0);
+        return annee << 9 | mois << 5 | jour;
+    }
+}
@@ -0,0 +1,80 @@
+package com.ipi.jva350.model;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Calendrier des jours fériés précalculé par année.
+ * Pour chaque année, un bitset de 366 bits (un bit par jour de l'année, indexé par
+ * jour de l'année - 1) est construit une seule fois, à la première demande, à partir
+ * de {@link Entreprise#joursFeries(LocalDate)}. Un test de jour férié se résume ensuite
+ * à un test de bit, sans aucune allocation.
+ * Thread-safe : les bitsets publiés ne sont plus jamais modifiés, et deux threads qui
+ * construiraient la même année en même temps obtiennent le même résultat.
+ */
+public final class CalendrierJoursFeries {
+
+    /** Première année mise en cache (début du calendrier grégorien) */
+    public static final int ANNEE_MIN = 1583;
+
+    /** Dernière année mise en cache (années sur 4 chiffres) */
+    public static final int ANNEE_MAX = 9999;
+
+    /** 366 bits = 6 mots de 64 bits */
+    private static final int NB_MOTS = 6;
+
+    private static final AtomicReferenceArray<long[]> bitsets =
+            new AtomicReferenceArray<>(ANNEE_MAX - ANNEE_MIN + 1);
+
+    private CalendrierJoursFeries() {
+
+    }
+
+    /**
+     * @param jour Date à vérifier
+     * @return true si la date est un jour férié
+     */
+    public static boolean estJourFerie(LocalDate jour) {
+        return estJourFerie(jour.getYear(), jour.getDayOfYear());
+    }
+
+    /**
+     * @param annee       Année de la date à vérifier
+     * @param jourDeLAnnee Jour de l'année (1 à 366)
+     * @return true si le jour est férié
+     */
+    public static boolean estJourFerie(int annee, int jourDeLAnnee) {
+        int bit = jourDeLAnnee - 1;
+        return (bitset(annee)[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Renvoie le bitset des jours fériés de l'année, en le construisant si besoin.
+     * NB. le tableau renvoyé est partagé et ne doit pas être modifié.
+     *
+     * @param annee Année voulue
+     * @return bitset des jours fériés de l'année (bit i = jour de l'année i + 1)
+     */
+    static long[] bitset(int annee) {
+        if (annee < ANNEE_MIN || annee > ANNEE_MAX) {
+            return construitBitset(annee);
+        }
+        int index = annee - ANNEE_MIN;
+        long[] bitset = bitsets.get(index);
+        if (bitset == null) {
+            // construction concurrente possible mais idempotente : on garde le premier publié
+            bitsets.compareAndSet(index, null, construitBitset(annee));
+            bitset = bitsets.get(index);
+        }
+        return bitset;
+    }
+
+    private static long[] construitBitset(int annee) {
+        long[] bitset = new long[NB_MOTS];
+        for (LocalDate jourFerie : Entreprise.joursFeries(LocalDate.of(annee, 1, 1))) {
+            int bit = jourFerie.getDayOfYear() - 1;
+            bitset[bit >>> 6] |= 1L << bit;
+        }
+        return bitset;
+    }
+}
@@ -0,0 +1,77 @@
+package com.ipi.jva350.model;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Clé d'idempotence de la clôture d'un mois : le salarié a été clôturé pour ce mois, dans la même transaction que sa
+ * mise à jour. Une clôture reprise ne le reprend donc jamais, même si son mois en cours a été remis en arrière.
+ * Écrite par lots JDBC (voir SalarieAideADomicileRepositoryCustom.marqueClotures()), supprimée avec les autres clés
+ * du mois quand son exécution est terminée.
+ */
+@Entity
+@Table(name = ClotureMoisSalarie.TABLE)
+@IdClass(ClotureMoisSalarie.Cle.class)
+public class ClotureMoisSalarie {
+
+    public static final String TABLE = "cloture_mois_salarie";
+
+    @Id
+    @Column(name = "salarie_id")
+    private Long salarieId;
+
+    /** mois en cours du salarié quand il a été clôturé */
+    @Id
+    @Column(name = "mois")
+    private LocalDate mois;
+
+    /**
+     * Constructeur par défaut pour JPA
+     */
+    public ClotureMoisSalarie() {
+    }
+
+    public ClotureMoisSalarie(Long salarieId, LocalDate mois) {
+        this.salarieId = salarieId;
+        this.mois = mois;
+    }
+
+    public Long getSalarieId() {
+        return salarieId;
+    }
+
+    public LocalDate getMois() {
+        return mois;
+    }
+
+    public static class Cle implements Serializable {
+
+        private Long salarieId;
+        private LocalDate mois;
+
+        public Cle() {
+        }
+
+        public Cle(Long salarieId, LocalDate mois) {
+            this.salarieId = salarieId;
+            this.mois = mois;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Cle))
+                return false;
+            Cle cle = (Cle) o;
+            return Objects.equals(salarieId, cle.salarieId) && Objects.equals(mois, cle.mois);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(salarieId, mois);
+        }
+    }
+}
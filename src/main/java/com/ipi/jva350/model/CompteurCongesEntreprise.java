@@ -0,0 +1,73 @@
+package com.ipi.jva350.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Totaux des congés payés N-1 de tous les salariés, tenus à jour à chaque écriture d'un salarié (voir
+ * {@link com.ipi.jva350.repository.CompteurCongesListener}) pour lire la part des congés pris de l'entreprise sans
+ * parcourir toute la table. Répartis sur {@link #NB_LIGNES} lignes, d'id 0 à NB_LIGNES - 1, dont les totaux sont la
+ * somme : les transactions qui écrivent des salariés en même temps incrémentent des lignes différentes au lieu de
+ * s'attendre sur une seule.
+ */
+@Entity
+@Table(name = CompteurCongesEntreprise.TABLE)
+public class CompteurCongesEntreprise {
+
+    public static final String TABLE = "compteur_conges_entreprise";
+    public static final int NB_LIGNES = 16;
+
+    @Id
+    private Long id;
+
+    @Column(name = "nb_salaries")
+    private long nbSalaries;
+
+    @Column(name = "conges_payes_pris_annee_n_moins1")
+    private double congesPayesPrisAnneeNMoins1;
+
+    @Column(name = "conges_payes_acquis_annee_n_moins1")
+    private double congesPayesAcquisAnneeNMoins1;
+
+    /**
+     * Constructeur par défaut pour JPA
+     */
+    public CompteurCongesEntreprise() {
+    }
+
+    /**
+     * Totaux tels que calculés en base (sum() vaut null sans salarié).
+     */
+    public CompteurCongesEntreprise(Long nbSalaries, Double congesPayesPrisAnneeNMoins1,
+            Double congesPayesAcquisAnneeNMoins1) {
+        this.nbSalaries = nbSalaries == null ? 0 : nbSalaries;
+        this.congesPayesPrisAnneeNMoins1 = congesPayesPrisAnneeNMoins1 == null ? 0 : congesPayesPrisAnneeNMoins1;
+        this.congesPayesAcquisAnneeNMoins1 = congesPayesAcquisAnneeNMoins1 == null ? 0 : congesPayesAcquisAnneeNMoins1;
+    }
+
+    /**
+     * @return la part des congés acquis en N-1 qui ont été pris par l'ensemble des salariés, null s'il n'y en a aucun
+     * (comme sum(congesPayesPrisAnneeNMoins1)/sum(congesPayesAcquisAnneeNMoins1))
+     */
+    public Double getPartCongesPrisTotauxAnneeNMoins1() {
+        return nbSalaries == 0 ? null : congesPayesPrisAnneeNMoins1 / congesPayesAcquisAnneeNMoins1;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public long getNbSalaries() {
+        return nbSalaries;
+    }
+
+    public double getCongesPayesPrisAnneeNMoins1() {
+        return congesPayesPrisAnneeNMoins1;
+    }
+
+    public double getCongesPayesAcquisAnneeNMoins1() {
+        return congesPayesAcquisAnneeNMoins1;
+    }
+}
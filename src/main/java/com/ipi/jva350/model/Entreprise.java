@@ -2,40 +2,62 @@ package com.ipi.jva350.model;
 
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public final class Entreprise {
 
-    private static final Map<Integer, LocalDate> datePaque = new HashMap<>();
+    /**
+     * Cache des dates de Pâques, rempli paresseusement et sans verrou :
+     * une année déjà calculée est résolue en temps constant.
+     */
+    private static final AtomicReferenceArray<LocalDate> datesPaque = new AtomicReferenceArray<>(
+            CalendrierJoursFeries.ANNEE_MAX - CalendrierJoursFeries.ANNEE_MIN + 1);
 
     private Entreprise() {
 
     }
 
-    static {
-        datePaque.put(2012, LocalDate.of(2012, 4, 8));
-        datePaque.put(2013, LocalDate.of(2013, 3, 31));
-        datePaque.put(2014, LocalDate.of(2014, 4, 20));
-        datePaque.put(2015, LocalDate.of(2015, 4, 5));
-        datePaque.put(2016, LocalDate.of(2016, 3, 27));
-        datePaque.put(2017, LocalDate.of(2017, 4, 16));
-        datePaque.put(2018, LocalDate.of(2018, 4, 1));
-        datePaque.put(2019, LocalDate.of(2019, 4, 21));
-        datePaque.put(2020, LocalDate.of(2020, 4, 12));
-        datePaque.put(2021, LocalDate.of(2021, 4, 4));
-        datePaque.put(2022, LocalDate.of(2022, 4, 17));
-        datePaque.put(2023, LocalDate.of(2023, 4, 9));
-        datePaque.put(2024, LocalDate.of(2024, 3, 31));
-        datePaque.put(2025, LocalDate.of(2025, 4, 20));
-        datePaque.put(2026, LocalDate.of(2026, 4, 5));
-        datePaque.put(2027, LocalDate.of(2027, 3, 28));
-        datePaque.put(2028, LocalDate.of(2028, 4, 16));
-        datePaque.put(2029, LocalDate.of(2029, 4, 1));
-        datePaque.put(2030, LocalDate.of(2030, 4, 21));
-        datePaque.put(2031, LocalDate.of(2031, 4, 13));
-        datePaque.put(2032, LocalDate.of(2032, 3, 28));
-        datePaque.put(2033, LocalDate.of(2033, 4, 17));
-        datePaque.put(2034, LocalDate.of(2034, 4, 9));
-        datePaque.put(2035, LocalDate.of(2035, 3, 25));
+    /**
+     * Renvoie la date du dimanche de Pâques de l'année donnée (calendrier grégorien).
+     *
+     * @param annee Année voulue
+     * @return date du dimanche de Pâques
+     */
+    public static LocalDate datePaque(int annee) {
+        if (annee < CalendrierJoursFeries.ANNEE_MIN || annee > CalendrierJoursFeries.ANNEE_MAX) {
+            return calculeDatePaque(annee);
+        }
+        int index = annee - CalendrierJoursFeries.ANNEE_MIN;
+        LocalDate datePaque = datesPaque.get(index);
+        if (datePaque == null) {
+            // calcul concurrent possible mais idempotent, le premier publié est conservé
+            datesPaque.compareAndSet(index, null, calculeDatePaque(annee));
+            datePaque = datesPaque.get(index);
+        }
+        return datePaque;
+    }
+
+    /**
+     * Calcul de la date de Pâques grégorienne (algorithme anonyme dit de Meeus/Jones/Butcher).
+     *
+     * @param annee Année voulue
+     * @return date du dimanche de Pâques
+     */
+    static LocalDate calculeDatePaque(int annee) {
+        int a = annee % 19;
+        int b = annee / 100;
+        int c = annee % 100;
+        int d = b / 4;
+        int e = b % 4;
+        int f = (b + 8) / 25;
+        int g = (b - f + 1) / 3;
+        int h = (19 * a + b - d - g + 15) % 30;
+        int i = c / 4;
+        int k = c % 4;
+        int l = (32 + 2 * e + 2 * i - h - k) % 7;
+        int m = (a + 11 * h + 22 * l) / 451;
+        int moisEtJour = h + l - 7 * m + 114;
+        return LocalDate.of(annee, moisEtJour / 31, moisEtJour % 31 + 1);
     }
 
     public static List<LocalDate> joursFeries(LocalDate now) {
@@ -44,16 +66,16 @@ public final class Entreprise {
                 // 1er janvier Jour de l’an
                 LocalDate.of(now.getYear(), 1, 1),
                 // Lendemain du dimanche de Pâques. Lundi de Pâques
-                datePaque.get(now.getYear()).plusDays(1L),
+                datePaque(now.getYear()).plusDays(1L),
                 // 1er mai Fête du Travail
                 LocalDate.of(now.getYear(), 5, 1),
                 // 8 mai Fête de la Victoire
                 LocalDate.of(now.getYear(), 5, 8),
                 // Jeudi 40 jours après Pâques Ascension Fête chrétienne célébrant la montée de
                 // Jésus aux cieux.
-                datePaque.get(now.getYear()).plusDays(40L),
+                datePaque(now.getYear()).plusDays(40L),
                 // Le lundi suivant le dimanche de Pentecôte (le septième après Pâques).
-                datePaque.get(now.getYear()).plusDays(50L),
+                datePaque(now.getYear()).plusDays(50L),
                 // 14 juillet Fête nationale
                 LocalDate.of(now.getYear(), 7, 14),
                 // 15 août Assomption
@@ -69,18 +91,7 @@ public final class Entreprise {
     }
 
     public static boolean bissextile(int y) {
-        String tmp = String.valueOf(y);
-        if (tmp.charAt(2) == '1' || tmp.charAt(2) == '3' || tmp.charAt(2) == 5 || tmp.charAt(2) == '7'
-                || tmp.charAt(2) == '9') {
-            return tmp.charAt(3) == '2' || tmp.charAt(3) == '6';
-        } else {
-            if (tmp.charAt(2) == '0' && tmp.charAt(3) == '0') {
-                return false;
-            }
-            if (tmp.charAt(3) == '0' || tmp.charAt(3) == '4' || tmp.charAt(3) == '8')
-                return true;
-        }
-        return false;
+        return Calendrier.estBissextile(y);
     }
 
     public static double proportionPondereeDuMois(LocalDate moisDuConge) {
@@ -114,26 +125,18 @@ public final class Entreprise {
         if (d == null) {
             return null;
         }
-
-        int month = d.getMonthValue();
-        LocalDate firstDayOfYear;
-
-        if (month >= 6) {
-            firstDayOfYear = LocalDate.of(d.getYear(), 6, 1);
-        } else {
-            firstDayOfYear = LocalDate.of(d.getYear() - 1, 6, 1);
-        }
-
-        return firstDayOfYear;
+        return LocalDate.of(Calendrier.anneeDeConges((int) d.toEpochDay()), Calendrier.MOIS_DEBUT_ANNEE_DE_CONGES, 1);
     }
 
+    /**
+     * Vérifie si une date est un jour férié, via le calendrier précalculé par année
+     * (un test de bit, sans allocation).
+     *
+     * @param jour Date à vérifier
+     * @return true si la date fait partie des jours fériés de son année
+     */
     public static boolean estJourFerie(LocalDate jour) {
-        int monEntier = (int) Entreprise.joursFeries(jour).stream().filter(d -> d.equals(jour)).count();
-        int test = bissextile(jour.getYear()) ? 1 : 0;
-        if (test != 0 && monEntier <= 1) {
-            test--;
-        }
-        return monEntier != test;
+        return CalendrierJoursFeries.estJourFerie(jour);
     }
 
     /**
@@ -0,0 +1,112 @@
+package com.ipi.jva350.model;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Exécution de la clôture d'un mois pour tous les salariés (voir
+ * {@link com.ipi.jva350.service.ClotureMoisParallele}), une seule par mois. Avancée à chaque lot validé, dans la même
+ * transaction que ses salariés : après un arrêt brutal elle reste EN_COURS et la clôture relancée reprend là où les
+ * lots validés se sont arrêtés ; TERMINEE, la relancer ne fait rien.
+ */
+@Entity
+@Table(name = ExecutionClotureMois.TABLE)
+public class ExecutionClotureMois {
+
+    public static final String TABLE = "execution_cloture_mois";
+
+    public enum Statut {
+        EN_COURS,
+        TERMINEE
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "execution_cloture_mois_seq")
+    @SequenceGenerator(name = "execution_cloture_mois_seq", sequenceName = "execution_cloture_mois_seq")
+    private Long id;
+
+    /** mois en cours des salariés clôturés */
+    @Column(name = "mois", nullable = false, unique = true)
+    private LocalDate mois;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "statut", nullable = false)
+    private Statut statut = Statut.EN_COURS;
+
+    @Column(name = "nb_clotures", nullable = false)
+    private long nbClotures;
+
+    /** nombre de fois où l'exécution a été reprise après une interruption */
+    @Column(name = "nb_reprises", nullable = false)
+    private int nbReprises;
+
+    @Column(name = "debut", nullable = false)
+    private LocalDateTime debut;
+
+    /** validation du dernier lot : point de reprise */
+    @Column(name = "derniere_validation")
+    private LocalDateTime derniereValidation;
+
+    @Column(name = "fin")
+    private LocalDateTime fin;
+
+    /**
+     * Constructeur par défaut pour JPA
+     */
+    public ExecutionClotureMois() {
+    }
+
+    public ExecutionClotureMois(LocalDate mois, LocalDateTime debut) {
+        this.mois = mois;
+        this.debut = debut;
+    }
+
+    public boolean estTerminee() {
+        return statut == Statut.TERMINEE;
+    }
+
+    /**
+     * L'exécution interrompue est relancée.
+     */
+    public void reprend() {
+        nbReprises++;
+    }
+
+    public void termine(LocalDateTime fin) {
+        this.statut = Statut.TERMINEE;
+        this.fin = fin;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public LocalDate getMois() {
+        return mois;
+    }
+
+    public Statut getStatut() {
+        return statut;
+    }
+
+    public long getNbClotures() {
+        return nbClotures;
+    }
+
+    public int getNbReprises() {
+        return nbReprises;
+    }
+
+    public LocalDateTime getDebut() {
+        return debut;
+    }
+
+    public LocalDateTime getDerniereValidation() {
+        return derniereValidation;
+    }
+
+    public LocalDateTime getFin() {
+        return fin;
+    }
+}
@@ -0,0 +1,115 @@
+package com.ipi.jva350.model;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Index des jours ouvrables (ni dimanche, ni jour férié), indexé par jour epoch
+ * (nombre de jours depuis le 01/01/1970).
+ * Pour chaque année, un tableau de cumuls est construit une seule fois, à la première
+ * demande : cumul[i] est le nombre de jours ouvrables parmi les i premiers jours de
+ * l'année. Le nombre de jours ouvrables entre deux dates d'une même année ou de deux
+ * années consécutives (donc toute année de congés) s'obtient alors en temps constant
+ * par différence de cumuls ; au-delà, il en coûte une addition par année civile traversée.
+ * Thread-safe, selon le même principe que {@link CalendrierJoursFeries}.
+ */
+public final class IndexJoursOuvrables {
+
+    private static final AtomicReferenceArray<short[]> cumuls = new AtomicReferenceArray<>(
+            CalendrierJoursFeries.ANNEE_MAX - CalendrierJoursFeries.ANNEE_MIN + 1);
+
+    private IndexJoursOuvrables() {
+
+    }
+
+    /**
+     * @param jourEpoch Jour à vérifier
+     * @return true si le jour n'est ni un dimanche ni un jour férié
+     */
+    public static boolean estJourOuvrable(int jourEpoch) {
+        int annee = Calendrier.annee(jourEpoch);
+        int jour = jourEpoch - Calendrier.premierJourEpoch(annee);
+        short[] cumul = cumul(annee);
+        return cumul[jour + 1] != cumul[jour];
+    }
+
+    /**
+     * Compte les jours ouvrables entre deux jours (inclus).
+     *
+     * @param jourEpochDebut Premier jour de la plage
+     * @param jourEpochFin   Dernier jour de la plage
+     * @return nombre de jours ouvrables de la plage, 0 si elle est vide
+     */
+    public static int compteJoursOuvrables(int jourEpochDebut, int jourEpochFin) {
+        if (jourEpochDebut > jourEpochFin) {
+            return 0;
+        }
+        int anneeDebut = Calendrier.annee(jourEpochDebut);
+        int anneeFin = Calendrier.annee(jourEpochFin);
+        int jourDebut = jourEpochDebut - Calendrier.premierJourEpoch(anneeDebut);
+        int jourFin = jourEpochFin - Calendrier.premierJourEpoch(anneeFin);
+        short[] cumulFin = cumul(anneeFin);
+        if (anneeDebut == anneeFin) {
+            return cumulFin[jourFin + 1] - cumulFin[jourDebut];
+        }
+        short[] cumulDebut = cumul(anneeDebut);
+        int nb = cumulDebut[cumulDebut.length - 1] - cumulDebut[jourDebut] + cumulFin[jourFin + 1];
+        for (int annee = anneeDebut + 1; annee < anneeFin; annee++) {
+            short[] cumul = cumul(annee);
+            nb += cumul[cumul.length - 1];
+        }
+        return nb;
+    }
+
+    /**
+     * Écrit les jours ouvrables entre deux jours (inclus), dans l'ordre chronologique, sans allocation :
+     * le tableau doit avoir la place pour {@link #compteJoursOuvrables(int, int)} jours à partir de la position.
+     *
+     * @param jourEpochDebut Premier jour de la plage
+     * @param jourEpochFin   Dernier jour de la plage
+     * @param jours          Tableau où écrire les jours epoch ouvrables de la plage
+     * @param position       Position du premier jour écrit
+     * @return position qui suit le dernier jour écrit
+     */
+    public static int ecritJoursOuvrables(int jourEpochDebut, int jourEpochFin, int[] jours, int position) {
+        int n = position;
+        int fin = position + compteJoursOuvrables(jourEpochDebut, jourEpochFin);
+        int jourEpoch = jourEpochDebut;
+        while (n < fin) {
+            int annee = Calendrier.annee(jourEpoch);
+            int premierJour = Calendrier.premierJourEpoch(annee);
+            short[] cumul = cumul(annee);
+            for (int jour = jourEpoch - premierJour; jour < cumul.length - 1 && n < fin; jour++) {
+                if (cumul[jour + 1] != cumul[jour]) {
+                    jours[n++] = premierJour + jour;
+                }
+            }
+            jourEpoch = Calendrier.premierJourEpoch(annee + 1);
+        }
+        return n;
+    }
+
+    private static short[] cumul(int annee) {
+        if (annee < CalendrierJoursFeries.ANNEE_MIN || annee > CalendrierJoursFeries.ANNEE_MAX) {
+            return construitCumul(annee);
+        }
+        int index = annee - CalendrierJoursFeries.ANNEE_MIN;
+        short[] cumul = cumuls.get(index);
+        if (cumul == null) {
+            cumuls.compareAndSet(index, null, construitCumul(annee));
+            cumul = cumuls.get(index);
+        }
+        return cumul;
+    }
+
+    private static short[] construitCumul(int annee) {
+        int premierJour = Calendrier.premierJourEpoch(annee);
+        int nbJours = Calendrier.premierJourEpoch(annee + 1) - premierJour;
+        short[] cumul = new short[nbJours + 1];
+        for (int jour = 0; jour < nbJours; jour++) {
+            boolean ouvrable = !Calendrier.estDimanche(premierJour + jour)
+                    && !CalendrierJoursFeries.estJourFerie(annee, jour + 1);
+            cumul[jour + 1] = (short) (cumul[jour] + (ouvrable ? 1 : 0));
+        }
+        return cumul;
+    }
+}
@@ -0,0 +1,56 @@
+package com.ipi.jva350.model;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Jours travaillés d'un salarié dans un mois, déposés avant la clôture en masse de ce mois quand ils diffèrent d'un
+ * salarié à l'autre (voir SalarieAideADomicileService.clotureMoisEnMasseDepuisJoursTravailles()).
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"salarie_id", "mois"}))
+public class JoursTravaillesDuMois {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "jours_travailles_du_mois_seq")
+    @SequenceGenerator(name = "jours_travailles_du_mois_seq", sequenceName = "jours_travailles_du_mois_seq",
+            allocationSize = SalarieAideADomicile.TAILLE_BLOC_ID)
+    private Long id;
+
+    @Column(name = "salarie_id", nullable = false)
+    private Long salarieId;
+
+    /** moisEnCours du salarié clôturé */
+    @Column(name = "mois", nullable = false)
+    private LocalDate mois;
+
+    private double joursTravailles;
+
+    /**
+     * Constructeur par défaut pour JPA
+     */
+    public JoursTravaillesDuMois() {
+    }
+
+    public JoursTravaillesDuMois(Long salarieId, LocalDate mois, double joursTravailles) {
+        this.salarieId = salarieId;
+        this.mois = mois;
+        this.joursTravailles = joursTravailles;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getSalarieId() {
+        return salarieId;
+    }
+
+    public LocalDate getMois() {
+        return mois;
+    }
+
+    public double getJoursTravailles() {
+        return joursTravailles;
+    }
+}
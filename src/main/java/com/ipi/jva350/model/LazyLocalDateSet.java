@@ -0,0 +1,123 @@
+package com.ipi.jva350.model;
+
+import java.time.LocalDate;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Set de dates (de congés pris) chargé depuis la base mais décodé seulement au premier accès à son contenu.
+ * Tant qu'il ne l'est pas, {@link LinkedHashSetBinaryConverter} réécrit tel quel son contenu persisté, et la
+ * comparaison avec l'instantané de Hibernate (deux sets non décodés) se fait octet à octet : un salarié dont on ne
+ * touche que les compteurs (clotureMois() hors juin) ne coûte ainsi aucun parsing ni aucune allocation de dates.
+ */
+public class LazyLocalDateSet extends AbstractSet<LocalDate> implements OrderedLocalDateSet {
+
+    /** contenu persisté tant que non décodé, null ensuite */
+    private byte[] donnees;
+    private Set<LocalDate> dates;
+
+    LazyLocalDateSet(byte[] donnees) {
+        this.donnees = donnees;
+    }
+
+    /**
+     * @return si le contenu n'a pas encore été décodé
+     */
+    public boolean estNonDecode() {
+        return donnees != null;
+    }
+
+    /**
+     * @return le contenu persisté si le set n'a pas été décodé, null sinon
+     */
+    byte[] donneesNonDecodees() {
+        return donnees;
+    }
+
+    private Set<LocalDate> dates() {
+        if (donnees != null) {
+            dates = LinkedHashSetBinaryConverter.decodeSet(donnees);
+            donnees = null;
+        }
+        return dates;
+    }
+
+    @Override
+    public int size() {
+        if (donnees != null && !LinkedHashSetBinaryConverter.estFormatTexte(donnees)) {
+            // nombre de dates lu dans l'entête, sans décoder
+            return LinkedHashSetBinaryConverter.nombreDeDates(donnees);
+        }
+        return dates().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Iterator<LocalDate> iterator() {
+        return dates().iterator();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return dates().contains(o);
+    }
+
+    @Override
+    public boolean add(LocalDate date) {
+        return dates().add(date);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return dates().remove(o);
+    }
+
+    @Override
+    public void clear() {
+        donnees = null;
+        dates = new AnneeDeCongesBitmapSet();
+    }
+
+    @Override
+    public LocalDate dernier() {
+        if (dates() instanceof OrderedLocalDateSet) {
+            return ((OrderedLocalDateSet) dates).dernier();
+        }
+        LocalDate dernier = null;
+        for (LocalDate date : dates) {
+            dernier = date;
+        }
+        return dernier;
+    }
+
+    @Override
+    public long dernierJourEpoch() {
+        if (dates() instanceof OrderedLocalDateSet) {
+            return ((OrderedLocalDateSet) dates).dernierJourEpoch();
+        }
+        LocalDate dernier = dernier();
+        return dernier == null ? Long.MIN_VALUE : dernier.toEpochDay();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof LazyLocalDateSet) {
+            byte[] autresDonnees = ((LazyLocalDateSet) o).donnees;
+            if (donnees != null && autresDonnees != null && Arrays.equals(donnees, autresDonnees)) {
+                return true;
+            }
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return dates().hashCode();
+    }
+}
@@ -0,0 +1,215 @@
+package com.ipi.jva350.model;
+
+import javax.persistence.AttributeConverter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Extension JPA pour stocker des dates (de congés pris... uniques dans le set, ordonnées) sous forme binaire compacte :
+ * un octet de version, le nombre de dates, puis le jour epoch de la première date et l'écart de chaque date avec la
+ * précédente, en varint zigzag. Des jours consécutifs tiennent donc en un octet chacun, contre 11 en texte.
+ * Relit aussi le format texte de {@link LinkedHashSetStringConverter} (les anciennes lignes commencent par un
+ * chiffre), réécrit en binaire à la prochaine sauvegarde.
+ * Le set chargé est un {@link LazyLocalDateSet}, décodé seulement au premier accès à son contenu.
+ */
+public class LinkedHashSetBinaryConverter implements AttributeConverter<Set<LocalDate>, byte[]> {
+
+    public static final byte VERSION = 1;
+
+    private static final LinkedHashSetStringConverter CONVERTER_TEXTE = new LinkedHashSetStringConverter();
+
+    @Override
+    public byte[] convertToDatabaseColumn(Set<LocalDate> localDates) {
+        if (localDates == null) {
+            return null;
+        }
+        if (localDates instanceof LazyLocalDateSet) {
+            byte[] donnees = ((LazyLocalDateSet) localDates).donneesNonDecodees();
+            if (donnees != null) {
+                // jamais décodé donc inchangé, sauf l'ancien format texte qu'on migre
+                return estFormatTexte(donnees) ? encode(decodeDates(donnees)) : donnees;
+            }
+        }
+        return encode(localDates);
+    }
+
+    @Override
+    public Set<LocalDate> convertToEntityAttribute(byte[] donnees) {
+        return donnees == null ? null : new LazyLocalDateSet(donnees);
+    }
+
+    private static byte[] encode(Set<LocalDate> localDates) {
+        int[] joursEpoch = new int[localDates.size()];
+        int nb = 0;
+        for (LocalDate date : localDates) {
+            joursEpoch[nb++] = (int) date.toEpochDay();
+        }
+        return encode(joursEpoch, nb);
+    }
+
+    /**
+     * Décode immédiatement des données lues en base, binaires ou dans l'ancien format texte : dans un {@link
+     * AnneeDeCongesBitmapSet} si elles tiennent dans une année de congés (cas normal), sinon en conservant leur ordre.
+     */
+    static Set<LocalDate> decodeSet(byte[] donnees) {
+        int[] joursEpoch;
+        if (estFormatTexte(donnees)) {
+            LinkedHashSet<LocalDate> dates = decodeDates(donnees);
+            joursEpoch = new int[dates.size()];
+            int i = 0;
+            for (LocalDate date : dates) {
+                joursEpoch[i++] = (int) date.toEpochDay();
+            }
+            if (!AnneeDeCongesBitmapSet.tiennentDansUneAnnee(joursEpoch, joursEpoch.length)) {
+                return dates;
+            }
+        } else {
+            joursEpoch = decode(donnees);
+            if (!AnneeDeCongesBitmapSet.tiennentDansUneAnnee(joursEpoch, joursEpoch.length)) {
+                return decodeDates(donnees);
+            }
+        }
+        return new AnneeDeCongesBitmapSet(joursEpoch, joursEpoch.length);
+    }
+
+    /**
+     * Décode immédiatement des données lues en base, binaires ou dans l'ancien format texte, dans leur ordre.
+     */
+    static LinkedHashSet<LocalDate> decodeDates(byte[] donnees) {
+        if (estFormatTexte(donnees)) {
+            return CONVERTER_TEXTE.convertToEntityAttribute(new String(donnees, StandardCharsets.US_ASCII));
+        }
+        int[] joursEpoch = decode(donnees);
+        LinkedHashSet<LocalDate> localDates = new LinkedHashSet<>(joursEpoch.length * 4 / 3 + 1);
+        for (int jourEpoch : joursEpoch) {
+            localDates.add(LocalDate.ofEpochDay(jourEpoch));
+        }
+        return localDates;
+    }
+
+    /**
+     * Ne garde, directement sur les données persistées, que les jours à partir du jour donné (clôture d'une année
+     * de congés en masse).
+     *
+     * @param donnees         lues en base, binaires ou dans l'ancien format texte
+     * @param premierJourEpoch premier jour gardé
+     * @return les données inchangées (même tableau) si aucun jour n'est retiré, sinon les jours restants encodés
+     */
+    public static byte[] retireJoursAvant(byte[] donnees, int premierJourEpoch) {
+        int[] joursEpoch;
+        if (estFormatTexte(donnees)) {
+            LinkedHashSet<LocalDate> dates = decodeDates(donnees);
+            joursEpoch = new int[dates.size()];
+            int i = 0;
+            for (LocalDate date : dates) {
+                joursEpoch[i++] = (int) date.toEpochDay();
+            }
+        } else {
+            joursEpoch = decode(donnees);
+        }
+        int nb = 0;
+        for (int jourEpoch : joursEpoch) {
+            if (jourEpoch >= premierJourEpoch) {
+                joursEpoch[nb++] = jourEpoch;
+            }
+        }
+        return nb == joursEpoch.length && !estFormatTexte(donnees) ? donnees : encode(joursEpoch, nb);
+    }
+
+    /**
+     * @param donnees lues en base
+     * @return si elles sont dans l'ancien format texte (vide ou dates ISO séparées par {@link
+     * LinkedHashSetStringConverter#DELIMITER})
+     */
+    static boolean estFormatTexte(byte[] donnees) {
+        return donnees.length == 0 || (donnees[0] >= '0' && donnees[0] <= '9');
+    }
+
+    /**
+     * Encode les nb premiers jours epoch donnés, dans leur ordre.
+     */
+    static byte[] encode(int[] joursEpoch, int nb) {
+        // au pire 5 octets par varint
+        byte[] tampon = new byte[1 + 5 * (nb + 1)];
+        tampon[0] = VERSION;
+        int position = ecritVarint(tampon, 1, nb);
+        int precedent = 0;
+        for (int i = 0; i < nb; i++) {
+            position = ecritVarint(tampon, position, zigzag(joursEpoch[i] - precedent));
+            precedent = joursEpoch[i];
+        }
+        return Arrays.copyOf(tampon, position);
+    }
+
+    /**
+     * @param donnees binaires (pas l'ancien format texte)
+     * @return le nombre de dates, lu dans l'entête
+     */
+    static int nombreDeDates(byte[] donnees) {
+        if (donnees[0] != VERSION) {
+            throw new IllegalArgumentException("Version d'encodage des congés pris inconnue : " + donnees[0]);
+        }
+        return (int) litVarint(donnees, 1);
+    }
+
+    /**
+     * Décode des données binaires (pas l'ancien format texte, voir {@link #estFormatTexte(byte[])}).
+     *
+     * @return les jours epoch dans leur ordre d'origine
+     * @throws IllegalArgumentException si la version est inconnue ou les données tronquées
+     */
+    static int[] decode(byte[] donnees) {
+        if (donnees[0] != VERSION) {
+            throw new IllegalArgumentException("Version d'encodage des congés pris inconnue : " + donnees[0]);
+        }
+        long lu = litVarint(donnees, 1);
+        int position = (int) (lu >>> 32);
+        int[] joursEpoch = new int[(int) lu];
+        int precedent = 0;
+        for (int i = 0; i < joursEpoch.length; i++) {
+            lu = litVarint(donnees, position);
+            position = (int) (lu >>> 32);
+            precedent += dezigzag((int) lu);
+            joursEpoch[i] = precedent;
+        }
+        return joursEpoch;
+    }
+
+    private static int zigzag(int valeur) {
+        return (valeur << 1) ^ (valeur >> 31);
+    }
+
+    private static int dezigzag(int valeur) {
+        return (valeur >>> 1) ^ -(valeur & 1);
+    }
+
+    private static int ecritVarint(byte[] tampon, int position, int valeur) {
+        while ((valeur & ~0x7F) != 0) {
+            tampon[position++] = (byte) ((valeur & 0x7F) | 0x80);
+            valeur >>>= 7;
+        }
+        tampon[position++] = (byte) valeur;
+        return position;
+    }
+
+    /**
+     * @return la position suivant le varint dans les 32 bits de poids fort, sa valeur dans ceux de poids faible
+     */
+    private static long litVarint(byte[] donnees, int position) {
+        int valeur = 0;
+        int decalage = 0;
+        byte octet;
+        do {
+            if (position >= donnees.length || decalage > 28) {
+                throw new IllegalArgumentException("Encodage des congés pris tronqué ou invalide");
+            }
+            octet = donnees[position++];
+            valeur |= (octet & 0x7F) << decalage;
+            decalage += 7;
+        } while (octet < 0);
+        return ((long) position << 32) | (valeur & 0xFFFFFFFFL);
+    }
+}
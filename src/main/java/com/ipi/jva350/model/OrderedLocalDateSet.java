@@ -0,0 +1,20 @@
+package com.ipi.jva350.model;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * Set de dates qui connaît sa dernière date dans l'ordre d'itération sans avoir à le parcourir.
+ */
+public interface OrderedLocalDateSet extends Set<LocalDate> {
+
+    /**
+     * @return la dernière date dans l'ordre d'itération, null si le set est vide
+     */
+    LocalDate dernier();
+
+    /**
+     * @return le jour epoch de {@link #dernier()}, sans allouer de date ; Long.MIN_VALUE si le set est vide
+     */
+    long dernierJourEpoch();
+}
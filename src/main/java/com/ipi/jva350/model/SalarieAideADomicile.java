@@ -1,34 +1,44 @@
 package com.ipi.jva350.model;
 
 import javax.persistence.*;
-import java.time.DayOfWeek;
 import java.time.LocalDate;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashSet;
-import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 
 @Entity
+@Table(name = SalarieAideADomicile.TABLE, indexes = @Index(columnList = "nom", unique = true))
 public class SalarieAideADomicile {
 
     public static final float CONGES_PAYES_ACQUIS_PAR_MOIS = 2.5f;
 
+    /** nom de la table (celui que donne la stratégie de nommage de Spring), pour les requêtes SQL en masse */
+    public static final String TABLE = "salarie_aideadomicile";
+
+    /** séquence propre réservée par blocs de {@link #TAILLE_BLOC_ID} : ni lecture par insertion, ni lot JDBC cassé */
+    public static final int TAILLE_BLOC_ID = 50;
+
+    /** résultat partagé d'une plage vide, pour ne pas l'allouer */
+    private static final int[] AUCUN_JOUR = new int[0];
+
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "salarie_aideadomicile_seq")
+    @SequenceGenerator(name = "salarie_aideadomicile_seq", sequenceName = "salarie_aideadomicile_seq",
+            allocationSize = TAILLE_BLOC_ID)
     private Long id;
 
-    private String nom;
-
-    protected static final List<DayOfWeek> joursHabituellementTravailles = new ArrayList<>();
+    /**
+     * verrouillage optimiste : incrémentée à chaque écriture du salarié, requêtes en masse comprises ; une écriture
+     * faite sur un état périmé échoue au lieu d'écraser celle d'une autre transaction. Jamais null en base : un
+     * salarié de version null serait pris pour un nouveau par save(), et version + 1 resterait null (voir
+     * MigrationSchema pour les salariés d'avant la colonne)
+     */
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
 
-    static {
-        joursHabituellementTravailles.add(DayOfWeek.MONDAY);
-        joursHabituellementTravailles.add(DayOfWeek.TUESDAY);
-        joursHabituellementTravailles.add(DayOfWeek.WEDNESDAY);
-        joursHabituellementTravailles.add(DayOfWeek.THURSDAY);
-        joursHabituellementTravailles.add(DayOfWeek.FRIDAY);
-    }
+    private String nom;
 
     private LocalDate moisEnCours;
     private LocalDate moisDebutContrat;
@@ -37,13 +47,23 @@ public class SalarieAideADomicile {
     private double congesPayesAcquisAnneeN = 0;
 
     /** en année N sur l'acquis N-1 */
-    @Convert(converter = LinkedHashSetStringConverter.class)
-    @Column
-    private Set<LocalDate> congesPayesPris = new LinkedHashSet<>();
+    @Convert(converter = LinkedHashSetBinaryConverter.class)
+    @Column(length = 1024)
+    private Set<LocalDate> congesPayesPris = new AnneeDeCongesBitmapSet();
     private double joursTravaillesAnneeNMoins1 = 0;
     private double congesPayesAcquisAnneeNMoins1 = 0;
     private double congesPayesPrisAnneeNMoins1 = 0;
 
+    /** termes des limites de congés de l'entreprise précalculés à la clôture du mois (voir QuotasConges), null avant */
+    @Column(length = 128)
+    private byte[] quotasConges;
+
+    /** valeurs N-1 telles qu'en base, pour tenir à jour les totaux de l'entreprise (voir CompteurCongesListener) */
+    @Transient
+    private double congesPayesAcquisAnneeNMoins1Persistes = 0;
+    @Transient
+    private double congesPayesPrisAnneeNMoins1Persistes = 0;
+
     /**
      * Constructeur par défaut pour JPA
      */
@@ -62,6 +82,7 @@ public class SalarieAideADomicile {
         this.congesPayesPrisAnneeNMoins1 = builder.congesPayesPrisAnneeNMoins1;
         this.joursTravaillesAnneeN = builder.joursTravaillesAnneeN;
         this.congesPayesAcquisAnneeN = builder.congesPayesAcquisAnneeN;
+        this.congesPayesPris.addAll(builder.congesPayesPris);
     }
 
     /**
@@ -76,6 +97,7 @@ public class SalarieAideADomicile {
         private double joursTravaillesAnneeNMoins1 = 0;
         private double congesPayesAcquisAnneeNMoins1 = 0;
         private double congesPayesPrisAnneeNMoins1 = 0;
+        private final AnneeDeCongesBitmapSet congesPayesPris = new AnneeDeCongesBitmapSet();
 
         /**
          * Constructeur du Builder avec les paramètres obligatoires
@@ -145,6 +167,17 @@ public class SalarieAideADomicile {
             return this;
         }
 
+        /**
+         * Ajoute des jours de congés payés pris
+         * 
+         * @param congesPayesPris Jours de congés pris
+         * @return Builder
+         */
+        public Builder congesPayesPris(Collection<LocalDate> congesPayesPris) {
+            this.congesPayesPris.addAll(congesPayesPris);
+            return this;
+        }
+
         /**
          * Construit l'instance SalarieAideADomicile
          * 
@@ -162,20 +195,7 @@ public class SalarieAideADomicile {
      * @return First day of the leave year
      */
     public static LocalDate getPremierJourAnneeDeConges(LocalDate d) {
-        if (d == null) {
-            return null;
-        }
-
-        int month = d.getMonthValue();
-        LocalDate firstDayOfYear;
-
-        if (month >= 6) {
-            firstDayOfYear = LocalDate.of(d.getYear(), 6, 1);
-        } else {
-            firstDayOfYear = LocalDate.of(d.getYear() - 1, 6, 1);
-        }
-
-        return firstDayOfYear;
+        return Entreprise.getPremierJourAnneeDeConges(d);
     }
 
     /**
@@ -192,21 +212,11 @@ public class SalarieAideADomicile {
             return false;
         }
 
-        // Récupérer le premier jour de l'année de congés en cours
-        LocalDate debutAnneeConges = getPremierJourAnneeDeConges(this.moisEnCours);
-
-        // Vérifier si debutAnneeConges est null (cas où moisEnCours serait mal
-        // initialisé)
-        if (debutAnneeConges == null) {
-            return false;
-        }
-
-        // L'année de congés se termine le 31 mai de l'année suivante
-        LocalDate finAnneeConges = LocalDate.of(debutAnneeConges.getYear() + 1, 5, 31);
-
-        // Utiliser la méthode statique Entreprise.estDansPlage pour vérifier si la date
-        // est dans l'intervalle
-        return Entreprise.estDansPlage(date, debutAnneeConges, finAnneeConges);
+        // L'année de congés va du 1er juin au 31 mai de l'année suivante
+        int moisEnCoursEpoch = (int) this.moisEnCours.toEpochDay();
+        return Calendrier.estDansPlage((int) date.toEpochDay(),
+                Calendrier.premierJourAnneeDeConges(moisEnCoursEpoch),
+                Calendrier.dernierJourAnneeDeConges(moisEnCoursEpoch));
     }
 
     /**
@@ -238,30 +248,109 @@ public class SalarieAideADomicile {
      */
     public Set<LocalDate> calculeJoursDeCongeDecomptesPourPlage(LocalDate dateDebut, LocalDate dateFin) {
         LinkedHashSet<LocalDate> joursDeCongeDecomptes = new LinkedHashSet<>();
+        for (int jourEpoch : calculeJoursEpochDeCongeDecomptesPourPlage(dateDebut, dateFin)) {
+            joursDeCongeDecomptes.add(LocalDate.ofEpochDay(jourEpoch));
+        }
+        return joursDeCongeDecomptes;
+    }
+
+    /**
+     * Compte les jours de congé décomptés pour une plage, avec exactement les mêmes
+     * règles que {@link #calculeJoursDeCongeDecomptesPourPlage(LocalDate, LocalDate)}
+     * mais en temps constant et sans allocation grâce à {@link IndexJoursOuvrables}.
+     *
+     * @param dateDebut Date de début
+     * @param dateFin   Date de fin
+     * @return nombre de jours de congé décomptés
+     */
+    public int compteJoursDeCongeDecomptesPourPlage(LocalDate dateDebut, LocalDate dateFin) {
+        if (dateDebut.isAfter(dateFin)) {
+            return 0;
+        }
+        int debut = premierJourDecompteEpoch(dateDebut);
+        int fin = (int) dateFin.toEpochDay();
+        int prolongation = Math.max(debut, fin) + 1;
+        return (estPremierJourDecompte(debut) ? 1 : 0)
+                + IndexJoursOuvrables.compteJoursOuvrables(debut + 1, fin)
+                + (estJourDeProlongationDecompte(prolongation) ? 1 : 0);
+    }
 
+    /**
+     * Calcule les jours de congé décomptés pour une plage, sous forme de jours epoch
+     * (nombre de jours depuis le 01/01/1970) dans l'ordre chronologique :
+     * le premier jour s'il est ouvrable et habituellement travaillé (décalé d'un jour
+     * s'il ne précède pas le dernier jour de congé déjà pris), les jours ouvrables
+     * suivants jusqu'à la fin, puis encore le samedi qui suit la fin s'il est ouvrable.
+     * N'alloue que le tableau renvoyé.
+     *
+     * @param dateDebut Date de début
+     * @param dateFin   Date de fin
+     * @return jours epoch décomptés, ordonnés
+     */
+    public int[] calculeJoursEpochDeCongeDecomptesPourPlage(LocalDate dateDebut, LocalDate dateFin) {
         if (dateDebut.isAfter(dateFin)) {
-            return joursDeCongeDecomptes;
+            return AUCUN_JOUR;
+        }
+        int debut = premierJourDecompteEpoch(dateDebut);
+        int fin = (int) dateFin.toEpochDay();
+        int prolongation = Math.max(debut, fin) + 1;
+        boolean premierJour = estPremierJourDecompte(debut);
+        boolean jourDeProlongation = estJourDeProlongationDecompte(prolongation);
+
+        // seul le tableau renvoyé est alloué
+        int[] jours = new int[IndexJoursOuvrables.compteJoursOuvrables(debut + 1, fin) + (premierJour ? 1 : 0)
+                + (jourDeProlongation ? 1 : 0)];
+        int n = 0;
+        if (premierJour) {
+            jours[n++] = debut;
         }
+        n = IndexJoursOuvrables.ecritJoursOuvrables(debut + 1, fin, jours, n);
+        if (jourDeProlongation) {
+            jours[n] = prolongation;
+        }
+        return jours;
+    }
+
+    /**
+     * Le premier jour de la plage est décalé d'un jour s'il ne précède pas le dernier
+     * jour de congé déjà pris.
+     */
+    private int premierJourDecompteEpoch(LocalDate dateDebut) {
+        long dernierJourDeCongePris = dernierJourEpochDeCongePris();
+        int debut = (int) dateDebut.toEpochDay();
+        return (dernierJourDeCongePris == Long.MIN_VALUE || dernierJourDeCongePris > debut) ? debut : debut + 1;
+    }
 
-        LocalDate dernierJourDeCongePris = this.getCongesPayesPris().isEmpty() ? null
-                : this.getCongesPayesPris().stream().reduce((first, second) -> second).get();
+    /**
+     * Le premier jour n'est décompté que s'il est ouvrable et habituellement travaillé.
+     */
+    private static boolean estPremierJourDecompte(int jourEpoch) {
+        return Calendrier.estHabituellementTravaille(jourEpoch) && Calendrier.estJourOuvrable(jourEpoch);
+    }
 
-        dateDebut = (dernierJourDeCongePris == null || dernierJourDeCongePris.isAfter(dateDebut)) ? dateDebut
-                : dateDebut.plusDays(1);
+    /**
+     * Après la fin de la plage, un samedi ouvrable (non habituellement travaillé) est
+     * encore décompté.
+     */
+    private static boolean estJourDeProlongationDecompte(int jourEpoch) {
+        return !Calendrier.estHabituellementTravaille(jourEpoch) && Calendrier.estJourOuvrable(jourEpoch);
+    }
 
-        LocalDate jour = dateDebut;
-        if (dateDebut.getDayOfWeek().getValue() != DayOfWeek.SUNDAY.getValue()
-                && !Entreprise.estJourFerie(dateDebut) && estHabituellementTravaille(dateDebut)) {
-            joursDeCongeDecomptes.add(dateDebut);
+    /**
+     * @return jour epoch du dernier jour de congé pris, Long.MIN_VALUE s'il n'y en a aucun
+     */
+    private long dernierJourEpochDeCongePris() {
+        if (this.getCongesPayesPris() instanceof OrderedLocalDateSet) {
+            return ((OrderedLocalDateSet) this.getCongesPayesPris()).dernierJourEpoch();
         }
-        for (jour = jour.plusDays(1); jour.minusDays(1).isBefore(dateFin)
-                || (!estHabituellementTravaille(jour) && estJourOuvrable(jour)); jour = jour.plusDays(1)) {
-            if (jour.getDayOfWeek().getValue() != DayOfWeek.SUNDAY.getValue()
-                    && !Entreprise.estJourFerie(jour)) {
-                joursDeCongeDecomptes.add(jour);
-            }
+        if (this.getCongesPayesPris().isEmpty()) {
+            return Long.MIN_VALUE;
         }
-        return joursDeCongeDecomptes;
+        LocalDate dernierJourDeCongePris = null;
+        for (LocalDate jour : this.getCongesPayesPris()) {
+            dernierJourDeCongePris = jour;
+        }
+        return dernierJourDeCongePris.toEpochDay();
     }
 
     /**
@@ -271,8 +360,7 @@ public class SalarieAideADomicile {
      * @return true if it's a working day, false otherwise
      */
     public boolean estJourOuvrable(LocalDate jour) {
-        return jour.getDayOfWeek().getValue() != DayOfWeek.SUNDAY.getValue()
-                && !Entreprise.estJourFerie(jour);
+        return Calendrier.estJourOuvrable((int) jour.toEpochDay());
     }
 
     /**
@@ -282,7 +370,7 @@ public class SalarieAideADomicile {
      * @return true if it's usually worked, false otherwise
      */
     public boolean estHabituellementTravaille(LocalDate jour) {
-        return joursHabituellementTravailles.contains(jour.getDayOfWeek());
+        return Calendrier.estHabituellementTravaille((int) jour.toEpochDay());
     }
 
     // Getters et setters inchangés...
@@ -295,6 +383,10 @@ public class SalarieAideADomicile {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
     /**
      * @return the nom
      */
@@ -362,6 +454,22 @@ public class SalarieAideADomicile {
         this.congesPayesPrisAnneeNMoins1 = congesPayesPrisAnneeNMoins1;
     }
 
+    /**
+     * Retient les valeurs N-1 qui viennent d'être lues ou écrites en base.
+     */
+    public void memoriseCongesPayesAnneeNMoins1Persistes() {
+        this.congesPayesAcquisAnneeNMoins1Persistes = this.congesPayesAcquisAnneeNMoins1;
+        this.congesPayesPrisAnneeNMoins1Persistes = this.congesPayesPrisAnneeNMoins1;
+    }
+
+    public double getCongesPayesAcquisAnneeNMoins1Persistes() {
+        return congesPayesAcquisAnneeNMoins1Persistes;
+    }
+
+    public double getCongesPayesPrisAnneeNMoins1Persistes() {
+        return congesPayesPrisAnneeNMoins1Persistes;
+    }
+
     public LocalDate getMoisEnCours() {
         return moisEnCours;
     }
@@ -378,6 +486,14 @@ public class SalarieAideADomicile {
         this.moisDebutContrat = moisDebutContrat;
     }
 
+    public byte[] getQuotasConges() {
+        return quotasConges;
+    }
+
+    public void setQuotasConges(byte[] quotasConges) {
+        this.quotasConges = quotasConges;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o)
@@ -0,0 +1,98 @@
+package com.ipi.jva350.model;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Plage d'id de salariés à clôturer pour un mois, partagée entre les instances de l'application (voir
+ * {@link com.ipi.jva350.service.ClotureMoisDistribuee}). Une instance la réserve pour une durée limitée (bail),
+ * prolonge le bail à chaque lot et la termine ; un bail expiré (instance arrêtée) la rend réservable par une autre.
+ * Chaque réservation incrémente {@link #getJeton()}, que le détenteur doit présenter pour prolonger ou terminer : une
+ * instance qui a perdu son bail ne peut donc plus rien valider sur la tranche.
+ */
+@Entity
+@Table(name = TrancheClotureMois.TABLE, indexes = @Index(columnList = "mois, statut, fin_bail_ms"))
+public class TrancheClotureMois {
+
+    public static final String TABLE = "tranche_cloture_mois";
+
+    public enum Statut {
+        A_FAIRE,
+        TERMINEE
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tranche_cloture_mois_seq")
+    @SequenceGenerator(name = "tranche_cloture_mois_seq", sequenceName = "tranche_cloture_mois_seq",
+            allocationSize = SalarieAideADomicile.TAILLE_BLOC_ID)
+    private Long id;
+
+    @Column(name = "mois", nullable = false)
+    private LocalDate mois;
+
+    @Column(name = "id_min", nullable = false)
+    private long idMin;
+
+    @Column(name = "id_max", nullable = false)
+    private long idMax;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "statut", nullable = false)
+    private Statut statut = Statut.A_FAIRE;
+
+    /** instance qui détient ou a détenu le dernier bail */
+    @Column(name = "proprietaire")
+    private String proprietaire;
+
+    /** fin du bail, en ms depuis l'epoch (horloge de l'instance) ; 0 si la tranche n'est pas réservée */
+    @Column(name = "fin_bail_ms", nullable = false)
+    private long finBailMs;
+
+    /** nombre de réservations, jeton du bail en cours */
+    @Column(name = "jeton", nullable = false)
+    private long jeton;
+
+    /**
+     * Constructeur par défaut pour JPA
+     */
+    public TrancheClotureMois() {
+    }
+
+    public TrancheClotureMois(LocalDate mois, long idMin, long idMax) {
+        this.mois = mois;
+        this.idMin = idMin;
+        this.idMax = idMax;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public LocalDate getMois() {
+        return mois;
+    }
+
+    public long getIdMin() {
+        return idMin;
+    }
+
+    public long getIdMax() {
+        return idMax;
+    }
+
+    public Statut getStatut() {
+        return statut;
+    }
+
+    public String getProprietaire() {
+        return proprietaire;
+    }
+
+    public long getFinBailMs() {
+        return finBailMs;
+    }
+
+    public long getJeton() {
+        return jeton;
+    }
+}
@@ -0,0 +1,158 @@
+package com.ipi.jva350.repository;
+
+import com.ipi.jva350.model.CompteurCongesEntreprise;
+import com.ipi.jva350.model.SalarieAideADomicile;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reporte sur {@link CompteurCongesEntreprise} chaque création, modification et suppression d'un salarié, dans la
+ * transaction qui l'écrit. Passe par JDBC (même connexion que JPA) car on ne peut pas utiliser l'EntityManager
+ * pendant un flush ; l'incrément est fait par la base, donc sûr entre transactions concurrentes. Chaque thread
+ * incrémente toujours la même ligne des compteurs, attribuée à tour de rôle : une transaction n'en verrouille
+ * qu'une, quels que soient les salariés qu'elle écrit (pas d'interblocage entre deux transactions qui en prendraient
+ * plusieurs dans des ordres différents), et des threads concurrents n'attendent l'un l'autre que s'ils partagent la
+ * leur. Publie alors un {@link CompteurCongesModifieEvent}. Pendant une création en lot (voir
+ * {@link SalarieAideADomicileRepositoryCustom#creeEnLot(java.util.List)}), les incréments du thread sont cumulés
+ * puis écrits une seule fois.
+ * Les écritures qui contournent JPA (requêtes de masse) doivent être suivies de
+ * {@link SalarieAideADomicileRepositoryCustom#reconcilieCompteurConges()}.
+ * Enregistré auprès des événements de Hibernate au démarrage plutôt que déclaré sur l'entité, qui n'a pas à
+ * connaître la couche repository.
+ */
+@Component
+public class CompteurCongesListener implements PostLoadEventListener, PostInsertEventListener,
+        PostUpdateEventListener, PostDeleteEventListener {
+
+    private static final long serialVersionUID = 1L;
+
+    static final String INCREMENTE = "update " + CompteurCongesEntreprise.TABLE
+            + " set nb_salaries = nb_salaries + ?,"
+            + " conges_payes_pris_annee_n_moins1 = conges_payes_pris_annee_n_moins1 + ?,"
+            + " conges_payes_acquis_annee_n_moins1 = conges_payes_acquis_annee_n_moins1 + ?"
+            + " where id = ?";
+
+    private static final AtomicInteger PROCHAINE_LIGNE = new AtomicInteger();
+    private static final ThreadLocal<Integer> LIGNE = ThreadLocal.withInitial(
+            () -> Math.floorMod(PROCHAINE_LIGNE.getAndIncrement(), CompteurCongesEntreprise.NB_LIGNES));
+
+    /** incréments cumulés par ce thread pendant une création en lot (nb salariés, pris, acquis), null sinon */
+    private static final ThreadLocal<double[]> CUMUL = new ThreadLocal<>();
+
+    private final transient JdbcTemplate jdbcTemplate;
+    private final transient ApplicationEventPublisher eventPublisher;
+    private final transient EntityManagerFactory entityManagerFactory;
+
+    public CompteurCongesListener(JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher,
+            EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @PostConstruct
+    void enregistre() {
+        EventListenerRegistry registre = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registre.appendListeners(EventType.POST_LOAD, this);
+        registre.appendListeners(EventType.POST_INSERT, this);
+        registre.appendListeners(EventType.POST_UPDATE, this);
+        registre.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostLoad(PostLoadEvent event) {
+        if (event.getEntity() instanceof SalarieAideADomicile) {
+            ((SalarieAideADomicile) event.getEntity()).memoriseCongesPayesAnneeNMoins1Persistes();
+        }
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof SalarieAideADomicile) {
+            SalarieAideADomicile salarie = (SalarieAideADomicile) event.getEntity();
+            incremente(1, salarie.getCongesPayesPrisAnneeNMoins1(), salarie.getCongesPayesAcquisAnneeNMoins1());
+            salarie.memoriseCongesPayesAnneeNMoins1Persistes();
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof SalarieAideADomicile) {
+            SalarieAideADomicile salarie = (SalarieAideADomicile) event.getEntity();
+            incremente(0, salarie.getCongesPayesPrisAnneeNMoins1() - salarie.getCongesPayesPrisAnneeNMoins1Persistes(),
+                    salarie.getCongesPayesAcquisAnneeNMoins1() - salarie.getCongesPayesAcquisAnneeNMoins1Persistes());
+            salarie.memoriseCongesPayesAnneeNMoins1Persistes();
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof SalarieAideADomicile) {
+            SalarieAideADomicile salarie = (SalarieAideADomicile) event.getEntity();
+            incremente(-1, -salarie.getCongesPayesPrisAnneeNMoins1Persistes(),
+                    -salarie.getCongesPayesAcquisAnneeNMoins1Persistes());
+        }
+    }
+
+    /**
+     * Dans la transaction qui écrit, pas après sa validation.
+     */
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    /**
+     * Cumule les incréments de ce thread au lieu de les écrire, jusqu'à {@link #termineCumul()}.
+     */
+    static void demarreCumul() {
+        CUMUL.set(new double[3]);
+    }
+
+    /**
+     * @return les incréments cumulés depuis {@link #demarreCumul()} (nb salariés, pris, acquis), à écrire
+     */
+    static double[] termineCumul() {
+        double[] cumul = CUMUL.get();
+        CUMUL.remove();
+        return cumul;
+    }
+
+    /**
+     * @return id de la ligne des compteurs incrémentée par ce thread
+     */
+    static int ligne() {
+        return LIGNE.get();
+    }
+
+    private void incremente(long nbSalaries, double congesPayesPris, double congesPayesAcquis) {
+        double[] cumul = CUMUL.get();
+        if (cumul != null) {
+            cumul[0] += nbSalaries;
+            cumul[1] += congesPayesPris;
+            cumul[2] += congesPayesAcquis;
+        } else if (nbSalaries != 0 || congesPayesPris != 0 || congesPayesAcquis != 0) {
+            // sans ligne de compteurs (pas encore initialisées), rien à faire : elles seront calculées à la lecture
+            jdbcTemplate.update(INCREMENTE, nbSalaries, congesPayesPris, congesPayesAcquis, ligne());
+            eventPublisher.publishEvent(new CompteurCongesModifieEvent());
+        }
+    }
+}
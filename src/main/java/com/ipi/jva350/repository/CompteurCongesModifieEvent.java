@@ -0,0 +1,10 @@
+package com.ipi.jva350.repository;
+
+import com.ipi.jva350.model.CompteurCongesEntreprise;
+
+/**
+ * Publié quand les totaux N-1 de {@link CompteurCongesEntreprise} changent (écriture d'un salarié ou réconciliation),
+ * pour invalider ce qui en dépend.
+ */
+public class CompteurCongesModifieEvent {
+}
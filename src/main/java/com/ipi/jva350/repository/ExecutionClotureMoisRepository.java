@@ -0,0 +1,37 @@
+package com.ipi.jva350.repository;
+
+import com.ipi.jva350.model.ExecutionClotureMois;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Repository
+public interface ExecutionClotureMoisRepository extends JpaRepository<ExecutionClotureMois, Long> {
+
+    ExecutionClotureMois findByMois(LocalDate mois);
+
+    /**
+     * Comme findByMois(), en verrouillant la ligne jusqu'à la fin de la transaction (préparation d'une clôture par
+     * une seule instance à la fois).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select e from ExecutionClotureMois e where e.mois = :mois")
+    ExecutionClotureMois findByMoisPourMiseAJour(@Param("mois") LocalDate mois);
+
+    /**
+     * Avance l'exécution d'un lot validé, dans la transaction du lot ; incrément fait par la base, donc sûr entre
+     * lots concurrents.
+     */
+    @Modifying
+    @Query("update ExecutionClotureMois e set e.nbClotures = e.nbClotures + :nbClotures,"
+            + " e.derniereValidation = :maintenant where e.id = :id")
+    int enregistreLot(@Param("id") Long id, @Param("nbClotures") long nbClotures,
+            @Param("maintenant") LocalDateTime maintenant);
+}
@@ -0,0 +1,18 @@
+package com.ipi.jva350.repository;
+
+import com.ipi.jva350.model.JoursTravaillesDuMois;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+
+@Repository
+public interface JoursTravaillesDuMoisRepository extends JpaRepository<JoursTravaillesDuMois, Long> {
+
+    @Modifying
+    @Query("delete from JoursTravaillesDuMois j where j.mois = :mois")
+    int deleteByMois(@Param("mois") LocalDate mois);
+}
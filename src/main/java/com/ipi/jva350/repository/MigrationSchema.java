@@ -0,0 +1,194 @@
+package com.ipi.jva350.repository;
+
+import com.ipi.jva350.model.CompteurCongesEntreprise;
+import com.ipi.jva350.model.ExecutionClotureMois;
+import com.ipi.jva350.model.SalarieAideADomicile;
+import com.ipi.jva350.model.TrancheClotureMois;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Met une base existante au niveau du schéma des entités, au démarrage, une fois le schéma créé ou mis à jour par
+ * Hibernate et avant la première écriture. Chaque étape ne fait rien si elle a déjà été faite : sans effet sur une
+ * base neuve, sûre à chaque démarrage. À désactiver (jva350.migration.active=false) pour migrer à la main.
+ * <p>
+ * Séquences des id : les id étaient donnés par hibernate_sequence, ils le sont maintenant par une séquence par table
+ * réservée par blocs de {@link SalarieAideADomicile#TAILLE_BLOC_ID}, créée à 1 ; elle est avancée au-delà des id
+ * déjà en base, qu'elle redonnerait sinon. Séquences natives (H2) ou émulées par une table next_val (MySQL).
+ * <p>
+ * Versions des salariés : la colonne ajoutée par Hibernate vaut 0 pour les salariés existants, mais ceux d'une base
+ * où elle a été ajoutée sans valeur par défaut ont une version null, mise à 0.
+ * <p>
+ * Unicité des noms : Hibernate (ddl-auto=update) ne fait que journaliser l'échec de la création de l'index unique sur
+ * le nom quand la base a déjà des noms en double. Le démarrage échoue alors en les listant : c'est au métier de
+ * choisir quel salarié garder ou renommer. Sans doublon, la contrainte est ajoutée si aucun index unique ne porte
+ * sur le nom (base dont le schéma n'est pas mis à jour par Hibernate).
+ * <p>
+ * Compteurs de l'entreprise : leurs lignes manquantes sont créées à partir des salariés. La part des congés pris en
+ * cache est lue en lecture seule, sans pouvoir les créer elle-même (voir
+ * {@link SalarieAideADomicileRepositoryCustom#partCongesPrisTotauxAnneeNMoins1EnLecture()}).
+ */
+@Component
+@DependsOn("entityManagerFactory") // après la création du schéma par Hibernate
+public class MigrationSchema implements InitializingBean {
+
+    /** contrainte d'unicité des noms ajoutée par la migration (celle d'Hibernate a un nom généré) */
+    static final String CONTRAINTE_NOM_UNIQUE = "uk_salarie_aideadomicile_nom";
+    /** doublons cités au plus dans l'erreur de démarrage */
+    static final int NB_MAX_DOUBLONS_CITES = 20;
+
+    /** séquence des id de chaque table */
+    static final Map<String, String> SEQUENCES = new LinkedHashMap<>();
+
+    static {
+        SEQUENCES.put(SalarieAideADomicile.TABLE, "salarie_aideadomicile_seq");
+        SEQUENCES.put("jours_travailles_du_mois", "jours_travailles_du_mois_seq");
+        SEQUENCES.put(TrancheClotureMois.TABLE, "tranche_cloture_mois_seq");
+        SEQUENCES.put(ExecutionClotureMois.TABLE, "execution_cloture_mois_seq");
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SalarieAideADomicileRepository salarieAideADomicileRepository;
+    private final boolean active;
+
+    public MigrationSchema(JdbcTemplate jdbcTemplate, SalarieAideADomicileRepository salarieAideADomicileRepository,
+            @Value("${jva350.migration.active:true}") boolean active) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.salarieAideADomicileRepository = salarieAideADomicileRepository;
+        this.active = active;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (active) {
+            migre();
+        }
+    }
+
+    /**
+     * Fait les étapes de migration qui restent à faire.
+     */
+    public void migre() {
+        avanceSequences();
+        initialiseVersions();
+        verifieUniciteNoms();
+        creeCompteurs();
+    }
+
+    /**
+     * Avance chaque séquence pour que son prochain bloc d'id commence après le plus grand id de sa table.
+     *
+     * @return nombre de séquences avancées
+     * @throws IllegalStateException sur une base autre que H2 ou MySQL
+     */
+    int avanceSequences() {
+        String base = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connexion -> connexion.getMetaData().getDatabaseProductName());
+        int nbAvancees = 0;
+        for (Map.Entry<String, String> sequence : SEQUENCES.entrySet()) {
+            Long idMax = jdbcTemplate.queryForObject("select max(id) from " + sequence.getKey(), Long.class);
+            if (idMax == null) {
+                continue;
+            }
+            // optimiseur pooled d'Hibernate : la valeur lue est la fin du bloc, qui commence TAILLE_BLOC_ID - 1 avant
+            long minimum = idMax + SalarieAideADomicile.TAILLE_BLOC_ID;
+            if ("H2".equals(base)) {
+                Long prochaine = jdbcTemplate.queryForObject("select base_value from information_schema.sequences"
+                        + " where lower(sequence_name) = ?", Long.class, sequence.getValue());
+                if (prochaine == null || prochaine < minimum) {
+                    jdbcTemplate.execute("alter sequence " + sequence.getValue() + " restart with " + minimum);
+                    nbAvancees++;
+                }
+            } else if ("MySQL".equals(base)) {
+                nbAvancees += jdbcTemplate.update("update " + sequence.getValue() + " set next_val = ?"
+                        + " where next_val < ?", minimum, minimum);
+            } else {
+                throw new IllegalStateException("Séquences des id à avancer à la main sur " + base
+                        + " (au-delà de max(id) + " + SalarieAideADomicile.TAILLE_BLOC_ID
+                        + " par table), puis jva350.migration.active=false");
+            }
+        }
+        return nbAvancees;
+    }
+
+    /**
+     * @return nombre de salariés dont la version était null
+     */
+    int initialiseVersions() {
+        return jdbcTemplate.update("update " + SalarieAideADomicile.TABLE + " set version = 0 where version is null");
+    }
+
+    /**
+     * Vérifie qu'un index unique porte sur le nom des salariés, et ajoute la contrainte sinon.
+     *
+     * @return true si la contrainte a été ajoutée
+     * @throws IllegalStateException si des salariés ont le même nom : l'index ne peut pas être créé
+     */
+    boolean verifieUniciteNoms() {
+        List<String> doublons = jdbcTemplate.queryForList("select nom from " + SalarieAideADomicile.TABLE
+                + " group by nom having count(*) > 1 order by nom", String.class);
+        if (!doublons.isEmpty()) {
+            throw new IllegalStateException(doublons.size() + " noms de salariés en double, index unique sur le nom"
+                    + " impossible ; les dédoublonner puis redémarrer : "
+                    + doublons.subList(0, Math.min(doublons.size(), NB_MAX_DOUBLONS_CITES))
+                    + (doublons.size() > NB_MAX_DOUBLONS_CITES ? "..." : ""));
+        }
+        if (indexUniqueNomExiste()) {
+            return false;
+        }
+        jdbcTemplate.execute("alter table " + SalarieAideADomicile.TABLE + " add constraint " + CONTRAINTE_NOM_UNIQUE
+                + " unique (nom)");
+        return true;
+    }
+
+    /**
+     * @return si un index unique porte sur le nom seul
+     */
+    boolean indexUniqueNomExiste() {
+        return jdbcTemplate.execute((ConnectionCallback<Boolean>) connexion -> {
+            DatabaseMetaData metaData = connexion.getMetaData();
+            String table = metaData.storesUpperCaseIdentifiers() ? SalarieAideADomicile.TABLE.toUpperCase()
+                    : SalarieAideADomicile.TABLE;
+            Map<String, Set<String>> colonnesParIndex = new HashMap<>();
+            try (ResultSet index = metaData.getIndexInfo(connexion.getCatalog(), connexion.getSchema(), table, true,
+                    false)) {
+                while (index.next()) {
+                    if (index.getString("INDEX_NAME") != null && index.getString("COLUMN_NAME") != null) {
+                        colonnesParIndex.computeIfAbsent(index.getString("INDEX_NAME"), nom -> new HashSet<>())
+                                .add(index.getString("COLUMN_NAME").toLowerCase());
+                    }
+                }
+            }
+            return colonnesParIndex.containsValue(Collections.singleton("nom"));
+        });
+    }
+
+    /**
+     * Crée les lignes des compteurs de l'entreprise qui manquent, à partir de la table des salariés.
+     *
+     * @return true si elles ont été créées
+     */
+    boolean creeCompteurs() {
+        Integer nbLignes = jdbcTemplate.queryForObject("select count(*) from " + CompteurCongesEntreprise.TABLE,
+                Integer.class);
+        if (nbLignes != null && nbLignes >= CompteurCongesEntreprise.NB_LIGNES) {
+            return false;
+        }
+        salarieAideADomicileRepository.reconcilieCompteurConges();
+        return true;
+    }
+}
@@ -2,14 +2,96 @@ package com.ipi.jva350.repository;
 
 import com.ipi.jva350.model.SalarieAideADomicile;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
 @Repository
-public interface SalarieAideADomicileRepository extends JpaRepository<SalarieAideADomicile, Long> {
+public interface SalarieAideADomicileRepository extends JpaRepository<SalarieAideADomicile, Long>,
+        SalarieAideADomicileRepositoryCustom {
 
     SalarieAideADomicile findByNom(String nom);
 
-    @Query("select sum(congesPayesPrisAnneeNMoins1)/sum(congesPayesAcquisAnneeNMoins1) from SalarieAideADomicile")
-    Double partCongesPrisTotauxAnneeNMoins1();
+    /**
+     * @return ceux des noms donnés déjà pris par un salarié (index unique sur le nom)
+     */
+    @Query("select s.nom from SalarieAideADomicile s where s.nom in :noms")
+    List<String> findNomsPris(@Param("noms") Collection<String> noms);
+
+    /**
+     * clotureMois() hors juin, en une requête, pour tous les salariés dont le mois en cours est celui donné.
+     * NB. les affectations ne lisent que des colonnes non encore affectées, donc même résultat si la base les
+     * évalue de gauche à droite (MySQL).
+     *
+     * @return nombre de salariés clôturés
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update SalarieAideADomicile s set"
+            + " s.joursTravaillesAnneeN = s.joursTravaillesAnneeN + :joursTravailles,"
+            + " s.congesPayesAcquisAnneeN = s.congesPayesAcquisAnneeN + :congesPayesAcquis,"
+            + " s.moisEnCours = :moisSuivant,"
+            + " s.version = s.version + 1"
+            + " where s.moisEnCours = :mois")
+    int clotureMois(@Param("mois") LocalDate mois, @Param("moisSuivant") LocalDate moisSuivant,
+            @Param("joursTravailles") double joursTravailles, @Param("congesPayesAcquis") double congesPayesAcquis);
+
+    /**
+     * clotureMois() de mai suivi de clotureAnnee() (passage des valeurs N à N-1), en une requête, hors congés pris,
+     * retirés juste avant par
+     * {@link SalarieAideADomicileRepositoryCustom#retireCongesPayesPrisAvantClotureAnnee(LocalDate, boolean)}.
+     *
+     * @return nombre de salariés clôturés
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update SalarieAideADomicile s set"
+            + " s.joursTravaillesAnneeNMoins1 = s.joursTravaillesAnneeN + :joursTravailles,"
+            + " s.congesPayesAcquisAnneeNMoins1 = s.congesPayesAcquisAnneeN + :congesPayesAcquis,"
+            + " s.congesPayesPrisAnneeNMoins1 = 0,"
+            + " s.joursTravaillesAnneeN = 0,"
+            + " s.congesPayesAcquisAnneeN = 0,"
+            + " s.moisEnCours = :moisSuivant,"
+            + " s.version = s.version + 1"
+            + " where s.moisEnCours = :mois")
+    int clotureMoisEtAnnee(@Param("mois") LocalDate mois, @Param("moisSuivant") LocalDate moisSuivant,
+            @Param("joursTravailles") double joursTravailles, @Param("congesPayesAcquis") double congesPayesAcquis);
+
+    /**
+     * Comme {@link #clotureMois(LocalDate, LocalDate, double, double)}, avec les jours travaillés de chaque salarié
+     * déposés dans JoursTravaillesDuMois ; les salariés sans jours déposés ne sont pas clôturés.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update SalarieAideADomicile s set"
+            + " s.joursTravaillesAnneeN = s.joursTravaillesAnneeN + (select j.joursTravailles"
+            + " from JoursTravaillesDuMois j where j.salarieId = s.id and j.mois = :mois),"
+            + " s.congesPayesAcquisAnneeN = s.congesPayesAcquisAnneeN + :congesPayesAcquis,"
+            + " s.moisEnCours = :moisSuivant,"
+            + " s.version = s.version + 1"
+            + " where s.moisEnCours = :mois"
+            + " and exists (select j.id from JoursTravaillesDuMois j where j.salarieId = s.id and j.mois = :mois)")
+    int clotureMoisDepuisJoursTravailles(@Param("mois") LocalDate mois, @Param("moisSuivant") LocalDate moisSuivant,
+            @Param("congesPayesAcquis") double congesPayesAcquis);
+
+    /**
+     * Comme {@link #clotureMoisEtAnnee(LocalDate, LocalDate, double, double)}, avec les jours travaillés de chaque
+     * salarié déposés dans JoursTravaillesDuMois ; les salariés sans jours déposés ne sont pas clôturés.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update SalarieAideADomicile s set"
+            + " s.joursTravaillesAnneeNMoins1 = s.joursTravaillesAnneeN + (select j.joursTravailles"
+            + " from JoursTravaillesDuMois j where j.salarieId = s.id and j.mois = :mois),"
+            + " s.congesPayesAcquisAnneeNMoins1 = s.congesPayesAcquisAnneeN + :congesPayesAcquis,"
+            + " s.congesPayesPrisAnneeNMoins1 = 0,"
+            + " s.joursTravaillesAnneeN = 0,"
+            + " s.congesPayesAcquisAnneeN = 0,"
+            + " s.moisEnCours = :moisSuivant,"
+            + " s.version = s.version + 1"
+            + " where s.moisEnCours = :mois"
+            + " and exists (select j.id from JoursTravaillesDuMois j where j.salarieId = s.id and j.mois = :mois)")
+    int clotureMoisEtAnneeDepuisJoursTravailles(@Param("mois") LocalDate mois,
+            @Param("moisSuivant") LocalDate moisSuivant, @Param("congesPayesAcquis") double congesPayesAcquis);
 }
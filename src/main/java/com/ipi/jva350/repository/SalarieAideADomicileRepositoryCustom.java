@@ -0,0 +1,109 @@
+package com.ipi.jva350.repository;
+
+import com.ipi.jva350.model.ClotureMoisSalarie;
+import com.ipi.jva350.model.CompteurCongesEntreprise;
+import com.ipi.jva350.model.SalarieAideADomicile;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Requêtes de {@link SalarieAideADomicileRepository} implémentées à la main : part des congés pris servie par
+ * {@link CompteurCongesEntreprise} plutôt que par un parcours de la table, et traitements en masse en JDBC.
+ */
+public interface SalarieAideADomicileRepositoryCustom {
+
+    /**
+     * @return sum(congesPayesPrisAnneeNMoins1)/sum(congesPayesAcquisAnneeNMoins1) de tous les salariés, null s'il
+     * n'y en a aucun ; lu en temps constant dans les compteurs, calculés sur la table s'ils n'existent pas encore
+     */
+    Double partCongesPrisTotauxAnneeNMoins1();
+
+    /**
+     * Comme {@link #partCongesPrisTotauxAnneeNMoins1()}, sans rien écrire ni vider le contexte de persistance, pour
+     * une transaction en lecture seule : des compteurs qui n'existent pas encore ne sont pas créés, les totaux sont
+     * alors calculés sur la table.
+     */
+    Double partCongesPrisTotauxAnneeNMoins1EnLecture();
+
+    /**
+     * Recalcule entièrement les compteurs à partir de la table des salariés (initialisation, ou après des écritures
+     * qui ont contourné JPA).
+     *
+     * @return les compteurs recalculés
+     */
+    CompteurCongesEntreprise reconcilieCompteurConges();
+
+    /**
+     * Partie congés pris de clotureAnnee() pour les salariés que la clôture en masse de mai va clôturer, à appeler
+     * juste avant elle dans la même transaction : ne garde que les jours de leur nouvelle année de congés, filtrés
+     * directement sur les données persistées et réécrits par lots JDBC au fil de la lecture. Les salariés déjà
+     * passés en juin, créés directement sur ce mois par exemple, ne sont pas touchés.
+     *
+     * @param mois mois de mai clôturé
+     * @param depuisJoursTravailles seulement les salariés qui ont des jours déposés dans JoursTravaillesDuMois pour
+     *                              ce mois, comme la clôture depuis les jours travaillés
+     * @return nombre de salariés dont des jours ont été retirés
+     */
+    int retireCongesPayesPrisAvantClotureAnnee(LocalDate mois, boolean depuisJoursTravailles);
+
+    /**
+     * Parcourt les salariés dont le mois en cours est celui donné, par ordre d'id, sur un curseur de la base lu
+     * tailleLot lignes à la fois plutôt que chargé d'un bloc. À fermer ; dans une transaction. Vider régulièrement le
+     * contexte de persistance ({@link #videContexteDePersistance()}) pour garder une mémoire constante.
+     * NB. sous MySQL, n'est vraiment lu par blocs qu'avec useCursorFetch=true dans l'URL de connexion.
+     *
+     * @param moisEnCours mois en cours des salariés parcourus
+     * @param tailleLot   nombre de lignes lues à la fois (fetch size JDBC)
+     */
+    Stream<SalarieAideADomicile> parcourtParMoisEnCours(LocalDate moisEnCours, int tailleLot);
+
+    /**
+     * Écrit les modifications en attente (en lots JDBC, voir hibernate.jdbc.batch_size) puis détache tous les
+     * salariés chargés.
+     */
+    void videContexteDePersistance();
+
+    /**
+     * @param moisEnCours mois en cours des salariés
+     * @return le plus petit et le plus grand id des salariés dont le mois en cours est celui donné et qui n'ont pas
+     * encore été clôturés pour ce mois (voir {@link #marqueClotures(LocalDate, List)}), null s'il n'y en a aucun
+     * (découpage d'un traitement en plages d'id)
+     */
+    long[] bornesIdParMoisEnCours(LocalDate moisEnCours);
+
+    /**
+     * Lot suivant d'un parcours par plage d'id : les salariés du mois en cours donné dont l'id est dans
+     * ]idApres, idMax] et qui n'ont pas encore été clôturés pour ce mois, par ordre d'id.
+     *
+     * @param tailleLot nombre maximal de salariés chargés
+     */
+    List<SalarieAideADomicile> chargeLotParMoisEnCours(LocalDate moisEnCours, long idApres, long idMax,
+            int tailleLot);
+
+    /**
+     * Enregistre, par lots JDBC dans la transaction en cours, les clés d'idempotence {@link ClotureMoisSalarie} des
+     * salariés qui viennent d'être clôturés pour ce mois.
+     *
+     * @param moisEnCours mois clôturé
+     * @param idsSalaries salariés clôturés
+     */
+    void marqueClotures(LocalDate moisEnCours, List<Long> idsSalaries);
+
+    /**
+     * Supprime, dans la transaction en cours, les clés d'idempotence des salariés clôturés pour ce mois : à faire
+     * quand son exécution est terminée, qui suffit alors à ne pas le reclôturer.
+     *
+     * @param moisEnCours mois clôturé
+     * @return nombre de clés supprimées
+     */
+    int supprimeClotures(LocalDate moisEnCours);
+
+    /**
+     * Crée les salariés donnés (sans id) dans la transaction en cours : insertions en lots JDBC avec les id réservés
+     * par blocs, et un seul incrément des compteurs de l'entreprise pour tout le lot au lieu d'un par salarié. Les
+     * salariés reçoivent leur id, puis tous les salariés chargés sont détachés.
+     */
+    void creeEnLot(List<SalarieAideADomicile> salaries);
+}
@@ -0,0 +1,241 @@
+package com.ipi.jva350.repository;
+
+import com.ipi.jva350.model.Calendrier;
+import com.ipi.jva350.model.ClotureMoisSalarie;
+import com.ipi.jva350.model.CompteurCongesEntreprise;
+import com.ipi.jva350.model.LinkedHashSetBinaryConverter;
+import com.ipi.jva350.model.SalarieAideADomicile;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Implémentation de {@link SalarieAideADomicileRepositoryCustom}. Les compteurs sont lus par JDBC, pour voir les
+ * incréments de {@link CompteurCongesListener} même si la ligne est déjà dans le contexte de persistance.
+ */
+public class SalarieAideADomicileRepositoryImpl implements SalarieAideADomicileRepositoryCustom {
+
+    /** nombre de lignes des compteurs, et leurs totaux */
+    private static final String SELECTIONNE = "select count(*), sum(nb_salaries),"
+            + " sum(conges_payes_pris_annee_n_moins1), sum(conges_payes_acquis_annee_n_moins1) from "
+            + CompteurCongesEntreprise.TABLE;
+    private static final String REMPLACE = "update " + CompteurCongesEntreprise.TABLE
+            + " set nb_salaries = ?, conges_payes_pris_annee_n_moins1 = ?, conges_payes_acquis_annee_n_moins1 = ?"
+            + " where id = ?";
+    private static final String INSERE = "insert into " + CompteurCongesEntreprise.TABLE
+            + " (nb_salaries, conges_payes_pris_annee_n_moins1, conges_payes_acquis_annee_n_moins1, id)"
+            + " values (?, ?, ?, ?)";
+
+    /** salariés que la clôture en masse du mois va clôturer, mêmes conditions que ses requêtes */
+    private static final String SELECTIONNE_CONGES_PAYES_PRIS = "select s.id, s.conges_payes_pris from "
+            + SalarieAideADomicile.TABLE + " s where s.mois_en_cours = ? and s.conges_payes_pris is not null";
+    private static final String AVEC_JOURS_TRAVAILLES = " and exists (select j.id from jours_travailles_du_mois j"
+            + " where j.salarie_id = s.id and j.mois = s.mois_en_cours)";
+    private static final String REMPLACE_CONGES_PAYES_PRIS = "update " + SalarieAideADomicile.TABLE
+            + " set conges_payes_pris = ?, version = version + 1 where id = ?";
+    private static final int TAILLE_LOT = 1000;
+
+    private static final String INSERE_CLOTURE = "insert into " + ClotureMoisSalarie.TABLE
+            + " (salarie_id, mois) values (?, ?)";
+    private static final String SUPPRIME_CLOTURES = "delete from " + ClotureMoisSalarie.TABLE + " where mois = ?";
+    /** salariés pas encore clôturés pour le mois :moisEnCours */
+    private static final String NON_CLOTURE = " and not exists (select c from ClotureMoisSalarie c"
+            + " where c.salarieId = s.id and c.mois = :moisEnCours)";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public SalarieAideADomicileRepositoryImpl(JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    @Transactional
+    public Double partCongesPrisTotauxAnneeNMoins1() {
+        // les compteurs ne sont incrémentés qu'à l'écriture des salariés : la lecture JDBC ne la déclenche pas
+        entityManager.flush();
+        CompteurCongesEntreprise compteurs = lisCompteurs();
+        // lignes pas toutes créées : des incréments ont pu être perdus
+        return (compteurs == null ? reconcilieCompteurConges() : compteurs).getPartCongesPrisTotauxAnneeNMoins1();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Double partCongesPrisTotauxAnneeNMoins1EnLecture() {
+        CompteurCongesEntreprise compteurs = lisCompteurs();
+        return (compteurs == null ? calculeCompteurs() : compteurs).getPartCongesPrisTotauxAnneeNMoins1();
+    }
+
+    @Override
+    @Transactional
+    public CompteurCongesEntreprise reconcilieCompteurConges() {
+        CompteurCongesEntreprise compteurs = calculeCompteurs();
+        // totaux sur la première ligne, les autres remises à zéro (créées si besoin), dans l'ordre des id
+        for (int ligne = 0; ligne < CompteurCongesEntreprise.NB_LIGNES; ligne++) {
+            Object[] valeurs = ligne == 0 ? new Object[]{compteurs.getNbSalaries(),
+                    compteurs.getCongesPayesPrisAnneeNMoins1(), compteurs.getCongesPayesAcquisAnneeNMoins1(), ligne}
+                    : new Object[]{0L, 0d, 0d, ligne};
+            if (jdbcTemplate.update(REMPLACE, valeurs) == 0) {
+                try {
+                    jdbcTemplate.update(INSERE, valeurs);
+                } catch (DuplicateKeyException e) {
+                    // insérée entre-temps par une réconciliation concurrente
+                    jdbcTemplate.update(REMPLACE, valeurs);
+                }
+            }
+        }
+        eventPublisher.publishEvent(new CompteurCongesModifieEvent());
+        return compteurs;
+    }
+
+    /**
+     * @return les totaux des lignes des compteurs, null si elles ne sont pas toutes créées
+     */
+    private CompteurCongesEntreprise lisCompteurs() {
+        return jdbcTemplate.queryForObject(SELECTIONNE,
+                (rs, i) -> rs.getInt(1) < CompteurCongesEntreprise.NB_LIGNES ? null
+                        : new CompteurCongesEntreprise(rs.getLong(2), rs.getDouble(3), rs.getDouble(4)));
+    }
+
+    /**
+     * @return les totaux calculés sur la table des salariés
+     */
+    private CompteurCongesEntreprise calculeCompteurs() {
+        return entityManager.createQuery("select new " + CompteurCongesEntreprise.class.getName()
+                + "(count(s), sum(s.congesPayesPrisAnneeNMoins1), sum(s.congesPayesAcquisAnneeNMoins1))"
+                + " from SalarieAideADomicile s", CompteurCongesEntreprise.class)
+                .getSingleResult();
+    }
+
+    @Override
+    @Transactional
+    public int retireCongesPayesPrisAvantClotureAnnee(LocalDate mois, boolean depuisJoursTravailles) {
+        entityManager.flush();
+        int premierJour = Calendrier.premierJourAnneeDeConges((int) mois.plusMonths(1).toEpochDay());
+        String selection = depuisJoursTravailles ? SELECTIONNE_CONGES_PAYES_PRIS + AVEC_JOURS_TRAVAILLES
+                : SELECTIONNE_CONGES_PAYES_PRIS;
+        List<Object[]> lot = new ArrayList<>(TAILLE_LOT);
+        int[] nbModifies = {0};
+        jdbcTemplate.query(connexion -> {
+            PreparedStatement requete = connexion.prepareStatement(selection);
+            requete.setFetchSize(TAILLE_LOT);
+            requete.setObject(1, mois);
+            return requete;
+        }, (ResultSet rs) -> {
+            byte[] donnees = rs.getBytes(2);
+            byte[] restantes = LinkedHashSetBinaryConverter.retireJoursAvant(donnees, premierJour);
+            if (restantes != donnees) {
+                lot.add(new Object[]{restantes, rs.getLong(1)});
+                if (lot.size() == TAILLE_LOT) {
+                    nbModifies[0] += ecrit(lot);
+                }
+            }
+        });
+        nbModifies[0] += ecrit(lot);
+        entityManager.clear();
+        return nbModifies[0];
+    }
+
+    /**
+     * Réécrit un lot de congés pris puis le vide pour le suivant.
+     *
+     * @return nombre de salariés du lot
+     */
+    private int ecrit(List<Object[]> lot) {
+        int taille = lot.size();
+        if (taille > 0) {
+            jdbcTemplate.batchUpdate(REMPLACE_CONGES_PAYES_PRIS, lot);
+            lot.clear();
+        }
+        return taille;
+    }
+
+    @Override
+    public Stream<SalarieAideADomicile> parcourtParMoisEnCours(LocalDate moisEnCours, int tailleLot) {
+        return entityManager.createQuery("select s from SalarieAideADomicile s where s.moisEnCours = :moisEnCours"
+                + " order by s.id", SalarieAideADomicile.class)
+                .setParameter("moisEnCours", moisEnCours)
+                .setHint(QueryHints.HINT_FETCH_SIZE, tailleLot)
+                .getResultStream();
+    }
+
+    @Override
+    public void videContexteDePersistance() {
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Override
+    public long[] bornesIdParMoisEnCours(LocalDate moisEnCours) {
+        Object[] bornes = entityManager.createQuery("select min(s.id), max(s.id) from SalarieAideADomicile s"
+                + " where s.moisEnCours = :moisEnCours" + NON_CLOTURE, Object[].class)
+                .setParameter("moisEnCours", moisEnCours)
+                .getSingleResult();
+        return bornes[0] == null ? null : new long[]{(Long) bornes[0], (Long) bornes[1]};
+    }
+
+    @Override
+    public List<SalarieAideADomicile> chargeLotParMoisEnCours(LocalDate moisEnCours, long idApres, long idMax,
+            int tailleLot) {
+        return entityManager.createQuery("select s from SalarieAideADomicile s where s.moisEnCours = :moisEnCours"
+                + " and s.id > :idApres and s.id <= :idMax" + NON_CLOTURE + " order by s.id",
+                SalarieAideADomicile.class)
+                .setParameter("moisEnCours", moisEnCours)
+                .setParameter("idApres", idApres)
+                .setParameter("idMax", idMax)
+                .setMaxResults(tailleLot)
+                .getResultList();
+    }
+
+    @Override
+    public void marqueClotures(LocalDate moisEnCours, List<Long> idsSalaries) {
+        List<Object[]> cles = new ArrayList<>(idsSalaries.size());
+        for (Long id : idsSalaries) {
+            cles.add(new Object[]{id, moisEnCours});
+        }
+        jdbcTemplate.batchUpdate(INSERE_CLOTURE, cles);
+    }
+
+    @Override
+    public int supprimeClotures(LocalDate moisEnCours) {
+        return jdbcTemplate.update(SUPPRIME_CLOTURES, moisEnCours);
+    }
+
+    @Override
+    @Transactional
+    public void creeEnLot(List<SalarieAideADomicile> salaries) {
+        // écritures déjà en attente comptées comme d'habitude, hors du cumul
+        entityManager.flush();
+        double[] cumul;
+        CompteurCongesListener.demarreCumul();
+        try {
+            for (SalarieAideADomicile salarie : salaries) {
+                entityManager.persist(salarie);
+            }
+            entityManager.flush();
+        } finally {
+            cumul = CompteurCongesListener.termineCumul();
+        }
+        entityManager.clear();
+        if (cumul[0] != 0 || cumul[1] != 0 || cumul[2] != 0) {
+            jdbcTemplate.update(CompteurCongesListener.INCREMENTE, (long) cumul[0], cumul[1], cumul[2],
+                    CompteurCongesListener.ligne());
+            eventPublisher.publishEvent(new CompteurCongesModifieEvent());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.ipi.jva350.repository;
+
+import com.ipi.jva350.model.TrancheClotureMois;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Baux sur les tranches de clôture : chaque écriture est une mise à jour conditionnelle (réservation optimiste, sans
+ * SELECT ... FOR UPDATE SKIP LOCKED que H2 ne connaît pas), qui renvoie 0 si la condition n'est plus vraie.
+ */
+@Repository
+public interface TrancheClotureMoisRepository extends JpaRepository<TrancheClotureMois, Long> {
+
+    /**
+     * @return les tranches à faire du mois sans bail en cours à l'instant donné
+     */
+    @Query("select t.id from TrancheClotureMois t where t.mois = :mois"
+            + " and t.statut = com.ipi.jva350.model.TrancheClotureMois$Statut.A_FAIRE"
+            + " and t.finBailMs < :maintenantMs order by t.id")
+    List<Long> findIdsReservables(@Param("mois") LocalDate mois, @Param("maintenantMs") long maintenantMs,
+            Pageable page);
+
+    long countByMoisAndStatut(LocalDate mois, TrancheClotureMois.Statut statut);
+
+    long countByMois(LocalDate mois);
+
+    /**
+     * @return 1 si la tranche a été réservée, 0 si une autre instance l'a réservée ou terminée entre-temps
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update TrancheClotureMois t set t.proprietaire = :proprietaire, t.finBailMs = :finBailMs,"
+            + " t.jeton = t.jeton + 1 where t.id = :id"
+            + " and t.statut = com.ipi.jva350.model.TrancheClotureMois$Statut.A_FAIRE"
+            + " and t.finBailMs < :maintenantMs")
+    int reserve(@Param("id") Long id, @Param("proprietaire") String proprietaire,
+            @Param("finBailMs") long finBailMs, @Param("maintenantMs") long maintenantMs);
+
+    /**
+     * @return 1 si le bail est prolongé, 0 s'il a été perdu (tranche réservée à nouveau par une autre instance)
+     */
+    @Modifying
+    @Query("update TrancheClotureMois t set t.finBailMs = :finBailMs where t.id = :id and t.jeton = :jeton"
+            + " and t.statut = com.ipi.jva350.model.TrancheClotureMois$Statut.A_FAIRE")
+    int prolonge(@Param("id") Long id, @Param("jeton") long jeton, @Param("finBailMs") long finBailMs);
+
+    @Modifying
+    @Query("update TrancheClotureMois t set t.statut = com.ipi.jva350.model.TrancheClotureMois$Statut.TERMINEE,"
+            + " t.finBailMs = 0 where t.id = :id and t.jeton = :jeton")
+    int termine(@Param("id") Long id, @Param("jeton") long jeton);
+
+    /**
+     * Rend la tranche réservable sans attendre la fin du bail (échec du détenteur).
+     */
+    @Modifying
+    @Query("update TrancheClotureMois t set t.finBailMs = 0 where t.id = :id and t.jeton = :jeton"
+            + " and t.statut = com.ipi.jva350.model.TrancheClotureMois$Statut.A_FAIRE")
+    int libere(@Param("id") Long id, @Param("jeton") long jeton);
+}
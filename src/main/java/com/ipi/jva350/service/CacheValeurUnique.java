@@ -0,0 +1,135 @@
+package com.ipi.jva350.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Cache d'une seule valeur (éventuellement null), servie depuis la mémoire tant qu'elle a été chargée il y a moins
+ * de la durée de vie donnée. Les appelants concurrents qui la demandent pendant un chargement attendent ce chargement
+ * au lieu d'en lancer un autre (single-flight). Compte les valeurs trouvées, chargées et les attentes regroupées.
+ *
+ * @param <T> type de la valeur
+ */
+public class CacheValeurUnique<T> {
+
+    private static final class Entree<T> {
+        private final CompletableFuture<T> valeur = new CompletableFuture<>();
+        /** System.nanoTime() au-delà duquel la valeur est périmée, compté depuis le début du chargement */
+        private final long expiration;
+
+        private Entree(long expiration) {
+            this.expiration = expiration;
+        }
+    }
+
+    private final Supplier<T> chargement;
+    private final AtomicReference<Entree<T>> entree = new AtomicReference<>();
+    private volatile long dureeDeVieNanos;
+
+    private final LongAdder nbTrouves = new LongAdder();
+    private final LongAdder nbChargements = new LongAdder();
+    private final LongAdder nbRegroupes = new LongAdder();
+
+    /**
+     * @param chargement    lecture de la valeur à la source
+     * @param dureeDeVieMs  durée pendant laquelle une valeur chargée est servie, 0 pour ne rien garder (les appels
+     *                      concurrents restent regroupés)
+     */
+    public CacheValeurUnique(Supplier<T> chargement, long dureeDeVieMs) {
+        this.chargement = chargement;
+        setDureeDeVieMs(dureeDeVieMs);
+    }
+
+    public void setDureeDeVieMs(long dureeDeVieMs) {
+        if (dureeDeVieMs < 0) {
+            throw new IllegalArgumentException("La durée de vie du cache ne peut pas être négative : " + dureeDeVieMs);
+        }
+        this.dureeDeVieNanos = TimeUnit.MILLISECONDS.toNanos(dureeDeVieMs);
+    }
+
+    /**
+     * @return la valeur en cache si elle n'est pas périmée, celle du chargement en cours s'il y en a un, sinon une
+     * valeur fraîchement chargée
+     */
+    public T get() {
+        while (true) {
+            Entree<T> courante = entree.get();
+            long maintenant = System.nanoTime();
+            if (courante != null) {
+                if (!courante.valeur.isDone()) {
+                    nbRegroupes.increment();
+                    return attend(courante);
+                }
+                if (maintenant - courante.expiration < 0 && !courante.valeur.isCompletedExceptionally()) {
+                    nbTrouves.increment();
+                    return courante.valeur.join();
+                }
+            }
+            Entree<T> nouvelle = new Entree<>(maintenant + dureeDeVieNanos);
+            if (entree.compareAndSet(courante, nouvelle)) {
+                nbChargements.increment();
+                return charge(nouvelle);
+            }
+        }
+    }
+
+    private T charge(Entree<T> nouvelle) {
+        try {
+            T valeur = chargement.get();
+            nouvelle.valeur.complete(valeur);
+            return valeur;
+        } catch (RuntimeException | Error e) {
+            // l'erreur est transmise aux appelants regroupés mais pas gardée en cache
+            nouvelle.valeur.completeExceptionally(e);
+            entree.compareAndSet(nouvelle, null);
+            throw e;
+        }
+    }
+
+    private static <T> T attend(Entree<T> entree) {
+        try {
+            return entree.valeur.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Oublie la valeur en cache : le prochain appel à {@link #get()} la rechargera. Un chargement déjà en cours
+     * est encore servi à ceux qui l'attendent, mais plus aux appels suivants.
+     */
+    public void invalide() {
+        entree.set(null);
+    }
+
+    /**
+     * @return nombre d'appels servis par la valeur en cache
+     */
+    public long getNbTrouves() {
+        return nbTrouves.sum();
+    }
+
+    /**
+     * @return nombre de chargements à la source
+     */
+    public long getNbChargements() {
+        return nbChargements.sum();
+    }
+
+    /**
+     * @return nombre d'appels qui ont attendu un chargement déjà en cours plutôt que d'en lancer un
+     */
+    public long getNbRegroupes() {
+        return nbRegroupes.sum();
+    }
+}
@@ -0,0 +1,274 @@
+package com.ipi.jva350.service;
+
+import com.ipi.jva350.model.ExecutionClotureMois;
+import com.ipi.jva350.model.SalarieAideADomicile;
+import com.ipi.jva350.model.TrancheClotureMois;
+import com.ipi.jva350.repository.ExecutionClotureMoisRepository;
+import com.ipi.jva350.repository.SalarieAideADomicileRepository;
+import com.ipi.jva350.repository.TrancheClotureMoisRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Clôture du mois partagée entre plusieurs instances de l'application sur la même base : la première instance qui
+ * participe découpe les salariés du mois en {@link TrancheClotureMois}, puis chaque instance réserve une tranche à la
+ * fois pour une durée limitée, la clôture par lots (comme {@link ClotureMoisParallele}, avec les mêmes clés
+ * d'idempotence et la même {@link ExecutionClotureMois}) en prolongeant son bail à chaque lot, et la termine. Les
+ * tranches d'une instance arrêtée sont reprises par les autres à l'expiration de leur bail.
+ * Le bail est prolongé dans la transaction du lot et avant lui : un lot n'est jamais validé par une instance qui a
+ * perdu son bail. Les horloges des instances doivent être synchronisées à bien moins que la durée du bail près.
+ * Comme ceux de {@link ClotureMoisParallele}, les lots ne prennent pas les verrous des salariés
+ * ({@link VerrousSalaries}) et, en cas de conflit, sont clôturés salarié par salarié, le bail prolongé dans chaque
+ * transaction.
+ * Pour utiliser plusieurs cœurs d'une instance, appeler participe() depuis plusieurs threads.
+ */
+@Service
+public class ClotureMoisDistribuee {
+
+    /** durée par défaut d'un bail, à prolonger avant qu'il expire : bien plus longue qu'un lot */
+    public static final long DUREE_BAIL_MS = 60_000;
+    /** nombre par défaut d'id de salariés par tranche */
+    public static final long TAILLE_TRANCHE = 10_000;
+    /** tranches réservables lues à la fois ; essayées dans le désordre pour que les instances se gênent peu */
+    static final int NB_CANDIDATES = 16;
+
+    private final SalarieAideADomicileRepository salarieAideADomicileRepository;
+    private final ExecutionClotureMoisRepository executionClotureMoisRepository;
+    private final TrancheClotureMoisRepository trancheClotureMoisRepository;
+    private final ClotureMoisParallele clotureMoisParallele;
+    private final TransactionTemplate transactionTemplate;
+
+    private String instance = ManagementFactory.getRuntimeMXBean().getName();
+    private long dureeBailMs = DUREE_BAIL_MS;
+    private long tailleTranche = TAILLE_TRANCHE;
+
+    public ClotureMoisDistribuee(SalarieAideADomicileRepository salarieAideADomicileRepository,
+            ExecutionClotureMoisRepository executionClotureMoisRepository,
+            TrancheClotureMoisRepository trancheClotureMoisRepository, ClotureMoisParallele clotureMoisParallele,
+            PlatformTransactionManager transactionManager) {
+        this.salarieAideADomicileRepository = salarieAideADomicileRepository;
+        this.executionClotureMoisRepository = executionClotureMoisRepository;
+        this.trancheClotureMoisRepository = trancheClotureMoisRepository;
+        this.clotureMoisParallele = clotureMoisParallele;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * @param instance nom de cette instance dans les tranches qu'elle réserve ; par défaut pid@hôte
+     */
+    @Value("${jva350.instance:}")
+    public void setInstance(String instance) {
+        if (!instance.isEmpty()) {
+            this.instance = instance;
+        }
+    }
+
+    public String getInstance() {
+        return instance;
+    }
+
+    @Value("${jva350.cloture.duree-bail-ms:" + DUREE_BAIL_MS + "}")
+    public void setDureeBailMs(long dureeBailMs) {
+        if (dureeBailMs <= 0) {
+            throw new IllegalArgumentException("La durée du bail doit être positive : " + dureeBailMs);
+        }
+        this.dureeBailMs = dureeBailMs;
+    }
+
+    /**
+     * @param tailleTranche nombre d'id de salariés par tranche, pour les prochains mois préparés
+     */
+    @Value("${jva350.cloture.taille-tranche:" + TAILLE_TRANCHE + "}")
+    public void setTailleTranche(long tailleTranche) {
+        if (tailleTranche <= 0) {
+            throw new IllegalArgumentException("La taille de tranche doit être positive : " + tailleTranche);
+        }
+        this.tailleTranche = tailleTranche;
+    }
+
+    /**
+     * Clôture des tranches du mois jusqu'à ce qu'elles soient toutes terminées, par cette instance ou par d'autres,
+     * en attendant si besoin la fin ou l'expiration des baux des autres instances.
+     *
+     * @param mois            mois en cours des salariés à clôturer
+     * @param joursTravailles jours travaillés dans ce mois par le salarié donné
+     * @return ce que cette instance a fait
+     */
+    public RapportParticipation participe(LocalDate mois, ToDoubleFunction<SalarieAideADomicile> joursTravailles) {
+        RapportParticipation rapport = new RapportParticipation();
+        ExecutionClotureMois execution = prepare(mois);
+        if (execution.estTerminee()) {
+            return rapport;
+        }
+        while (true) {
+            TrancheClotureMois tranche = reserveTranche(mois);
+            if (tranche != null) {
+                traite(execution.getId(), tranche, joursTravailles, rapport);
+            } else if (trancheClotureMoisRepository.countByMoisAndStatut(mois,
+                    TrancheClotureMois.Statut.A_FAIRE) == 0) {
+                termineExecution(mois);
+                return rapport;
+            } else {
+                // tranches restantes sous bail d'autres instances : attendre qu'elles les terminent ou les perdent
+                attend(Math.max(1, Math.min(1000, dureeBailMs / 4)));
+            }
+        }
+    }
+
+    /**
+     * Crée l'exécution du mois et ses tranches si ce n'est pas déjà fait ; une seule instance à la fois (verrou sur
+     * l'exécution, contrainte d'unicité sur son mois à la création).
+     *
+     * @return l'exécution du mois
+     */
+    public ExecutionClotureMois prepare(LocalDate mois) {
+        try {
+            return transactionTemplate.execute(statut -> prepareDansTransaction(mois));
+        } catch (DataIntegrityViolationException e) {
+            // exécution créée au même moment par une autre instance : verrouillée maintenant qu'elle existe
+            return transactionTemplate.execute(statut -> prepareDansTransaction(mois));
+        }
+    }
+
+    private ExecutionClotureMois prepareDansTransaction(LocalDate mois) {
+        ExecutionClotureMois execution = executionClotureMoisRepository.findByMoisPourMiseAJour(mois);
+        if (execution == null) {
+            execution = executionClotureMoisRepository.saveAndFlush(new ExecutionClotureMois(mois,
+                    LocalDateTime.now()));
+        } else if (execution.estTerminee() || trancheClotureMoisRepository.countByMois(mois) > 0) {
+            return execution;
+        }
+        // exécution nouvelle, ou commencée par ClotureMoisParallele : découpe ce qu'il reste à clôturer
+        long[] bornes = salarieAideADomicileRepository.bornesIdParMoisEnCours(mois);
+        if (bornes != null) {
+            for (long idMin = bornes[0]; idMin <= bornes[1]; idMin += tailleTranche) {
+                trancheClotureMoisRepository.save(new TrancheClotureMois(mois, idMin,
+                        Math.min(idMin + tailleTranche - 1, bornes[1])));
+            }
+        }
+        return execution;
+    }
+
+    /**
+     * Réserve pour cette instance une tranche du mois préparé, ni terminée ni sous un bail en cours.
+     *
+     * @return la tranche réservée (son jeton est celui du bail), null s'il n'y en a pas de libre
+     */
+    public TrancheClotureMois reserveTranche(LocalDate mois) {
+        long maintenant = System.currentTimeMillis();
+        List<Long> candidates = transactionTemplate.execute(statut -> trancheClotureMoisRepository
+                .findIdsReservables(mois, maintenant, PageRequest.of(0, NB_CANDIDATES)));
+        Collections.shuffle(candidates);
+        for (Long id : candidates) {
+            try {
+                TrancheClotureMois tranche = transactionTemplate.execute(statut ->
+                        trancheClotureMoisRepository.reserve(id, instance, maintenant + dureeBailMs, maintenant) == 1
+                                ? trancheClotureMoisRepository.findById(id).orElseThrow(IllegalStateException::new)
+                                : null);
+                if (tranche != null) {
+                    return tranche;
+                }
+            } catch (ConcurrencyFailureException e) {
+                // ligne verrouillée par l'instance qui la traite (prolongation en cours) : pas libre
+            }
+        }
+        return null;
+    }
+
+    private void traite(Long idExecution, TrancheClotureMois tranche,
+            ToDoubleFunction<SalarieAideADomicile> joursTravailles, RapportParticipation rapport) {
+        long dernierId = tranche.getIdMin() - 1;
+        List<SalarieAideADomicile> lot;
+        try {
+            do {
+                lot = clotureMoisParallele.clotureLotOuSalaries(idExecution, tranche.getMois(), joursTravailles,
+                        dernierId, tranche.getIdMax(), () -> trancheClotureMoisRepository.prolonge(tranche.getId(),
+                                tranche.getJeton(), System.currentTimeMillis() + dureeBailMs) == 1);
+                if (lot == null) {
+                    // bail expiré et tranche reprise par une autre instance, qui la finira
+                    rapport.nbBauxPerdus++;
+                    return;
+                }
+                if (!lot.isEmpty()) {
+                    dernierId = lot.get(lot.size() - 1).getId();
+                    rapport.nbClotures += lot.size();
+                }
+            } while (lot.size() == clotureMoisParallele.getTailleLot());
+        } catch (RuntimeException e) {
+            transactionTemplate.execute(statut -> trancheClotureMoisRepository.libere(tranche.getId(),
+                    tranche.getJeton()));
+            throw e;
+        }
+        if (transactionTemplate.execute(statut -> trancheClotureMoisRepository.termine(tranche.getId(),
+                tranche.getJeton())) == 1) {
+            rapport.nbTranches++;
+        } else {
+            rapport.nbBauxPerdus++;
+        }
+    }
+
+    private void termineExecution(LocalDate mois) {
+        transactionTemplate.execute(statut -> {
+            ExecutionClotureMois execution = executionClotureMoisRepository.findByMois(mois);
+            if (!execution.estTerminee()) {
+                execution.termine(LocalDateTime.now());
+                salarieAideADomicileRepository.supprimeClotures(mois);
+            }
+            return execution;
+        });
+    }
+
+    private static void attend(long dureeMs) {
+        try {
+            Thread.sleep(dureeMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Clôture du mois interrompue", e);
+        }
+    }
+
+    /**
+     * Ce qu'une instance a fait pendant participe().
+     */
+    public static final class RapportParticipation {
+
+        private long nbTranches;
+        private long nbClotures;
+        private long nbBauxPerdus;
+
+        /**
+         * @return tranches terminées par cette instance
+         */
+        public long getNbTranches() {
+            return nbTranches;
+        }
+
+        /**
+         * @return salariés clôturés par cette instance
+         */
+        public long getNbClotures() {
+            return nbClotures;
+        }
+
+        /**
+         * @return tranches abandonnées parce que leur bail a expiré et qu'une autre instance les a reprises
+         */
+        public long getNbBauxPerdus() {
+            return nbBauxPerdus;
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package com.ipi.jva350.service;
+
+import com.ipi.jva350.model.ClotureMoisSalarie;
+import com.ipi.jva350.model.ExecutionClotureMois;
+import com.ipi.jva350.model.SalarieAideADomicile;
+import com.ipi.jva350.repository.ExecutionClotureMoisRepository;
+import com.ipi.jva350.repository.SalarieAideADomicileRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Clôture du mois sur plusieurs cœurs : les salariés du mois sont découpés en plages d'id, traitées par un
+ * ForkJoinPool dont les threads se volent les plages restantes quand les leurs sont vides ou peu peuplées. Chaque
+ * plage est parcourue par lots, chacun dans sa propre transaction (donc son propre EntityManager), ce qui garde la
+ * mémoire constante et les verrous courts.
+ * Les lots ne prennent pas les verrous des salariés ({@link VerrousSalaries}), contrairement aux réservations : un
+ * lot de {@link SalarieAideADomicileService#TAILLE_LOT_CLOTURE} salariés couvre presque toutes leurs bandes, les
+ * threads de la clôture s'y attendraient l'un l'autre et bloqueraient toutes les modifications par id de l'instance
+ * pendant chaque lot. Un lot en conflit avec la modification d'un de ses salariés n'est pas rejoué en entier : ses
+ * salariés sont alors clôturés un par un, chacun dans sa propre transaction rejouée à part, de sorte qu'un conflit
+ * persistant ne fait recommencer que son salarié au lieu de faire échouer toute la clôture.
+ * Chaque clôture est enregistrée dans une {@link ExecutionClotureMois}, et chaque salarié clôturé dans une clé
+ * d'idempotence {@link ClotureMoisSalarie}, dans la transaction de son lot. Une clôture interrompue (erreur, arrêt de
+ * la JVM) reprend donc, une fois relancée, après les derniers lots validés sans clôturer deux fois un salarié. Les
+ * clés d'un mois sont supprimées quand son exécution est terminée, qui suffit alors : relancer une clôture terminée
+ * ne fait rien, et pour reclôturer un mois il suffit de supprimer son exécution.
+ */
+@Service
+public class ClotureMoisParallele {
+
+    /** plages par thread, pour que les threads des plages peu peuplées aient de quoi voler */
+    static final int PLAGES_PAR_THREAD = 8;
+
+    private final SalarieAideADomicileRepository salarieAideADomicileRepository;
+    private final SalarieAideADomicileService salarieAideADomicileService;
+    private final ExecutionClotureMoisRepository executionClotureMoisRepository;
+    private final ModificationsConcurrentes modificationsConcurrentes;
+    private final TransactionTemplate transactionTemplate;
+    private final int tailleMaxPoolConnexions;
+
+    private int parallelisme;
+    private int tailleLot = SalarieAideADomicileService.TAILLE_LOT_CLOTURE;
+
+    public ClotureMoisParallele(SalarieAideADomicileRepository salarieAideADomicileRepository,
+            SalarieAideADomicileService salarieAideADomicileService,
+            ExecutionClotureMoisRepository executionClotureMoisRepository,
+            ModificationsConcurrentes modificationsConcurrentes, PlatformTransactionManager transactionManager,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int tailleMaxPoolConnexions) {
+        this.salarieAideADomicileRepository = salarieAideADomicileRepository;
+        this.salarieAideADomicileService = salarieAideADomicileService;
+        this.executionClotureMoisRepository = executionClotureMoisRepository;
+        this.modificationsConcurrentes = modificationsConcurrentes;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.tailleMaxPoolConnexions = tailleMaxPoolConnexions;
+        setParallelisme(0);
+    }
+
+    /**
+     * @param parallelisme nombre de threads, 0 pour un par cœur ; borné par la taille du pool de connexions, chaque
+     *                     thread en tenant une pendant ses lots
+     */
+    @Value("${jva350.cloture.parallelisme:0}")
+    public void setParallelisme(int parallelisme) {
+        if (parallelisme < 0) {
+            throw new IllegalArgumentException("Le parallélisme ne peut pas être négatif : " + parallelisme);
+        }
+        int demande = parallelisme == 0 ? Runtime.getRuntime().availableProcessors() : parallelisme;
+        this.parallelisme = Math.min(demande, tailleMaxPoolConnexions);
+    }
+
+    public int getParallelisme() {
+        return parallelisme;
+    }
+
+    /**
+     * @param tailleLot nombre de salariés clôturés par transaction
+     */
+    @Value("${jva350.cloture.taille-lot:" + SalarieAideADomicileService.TAILLE_LOT_CLOTURE + "}")
+    public void setTailleLot(int tailleLot) {
+        if (tailleLot <= 0) {
+            throw new IllegalArgumentException("La taille de lot doit être positive : " + tailleLot);
+        }
+        this.tailleLot = tailleLot;
+    }
+
+    /**
+     * Applique clotureMois() à tous les salariés dont le mois en cours est celui donné, ou reprend la clôture
+     * interrompue de ce mois, ou ne fait rien si elle est terminée.
+     *
+     * @param mois            mois en cours des salariés à clôturer
+     * @param joursTravailles jours travaillés dans ce mois par le salarié donné ; appelé depuis plusieurs threads
+     * @return le rapport par plage d'id
+     */
+    public RapportCloture clotureMois(LocalDate mois, ToDoubleFunction<SalarieAideADomicile> joursTravailles) {
+        return clotureMois(mois, joursTravailles, avancement -> { });
+    }
+
+    /**
+     * Comme {@link #clotureMois(LocalDate, ToDoubleFunction)}, en signalant l'avancement après chaque lot.
+     *
+     * @param suivi appelé après chaque lot validé avec l'avancement de sa plage ; appelé depuis plusieurs threads
+     */
+    public RapportCloture clotureMois(LocalDate mois, ToDoubleFunction<SalarieAideADomicile> joursTravailles,
+            Consumer<AvancementPlage> suivi) {
+        long debut = System.nanoTime();
+        Queue<AvancementPlage> plages = new ConcurrentLinkedQueue<>();
+        ExecutionClotureMois execution = transactionTemplate.execute(statut -> demarreExecution(mois));
+        if (execution.estTerminee()) {
+            return new RapportCloture(parallelisme, execution, new ArrayList<>(), System.nanoTime() - debut);
+        }
+        Long idExecution = execution.getId();
+        long[] bornes = transactionTemplate.execute(
+                statut -> salarieAideADomicileRepository.bornesIdParMoisEnCours(mois));
+        if (bornes != null) {
+            long taillePlage = Math.max(tailleLot,
+                    (bornes[1] - bornes[0] + 1) / ((long) parallelisme * PLAGES_PAR_THREAD));
+            ForkJoinPool pool = new ForkJoinPool(parallelisme);
+            try {
+                pool.invoke(new Plage(idExecution, mois, joursTravailles, suivi, plages, bornes[0] - 1, bornes[1],
+                        taillePlage));
+            } finally {
+                pool.shutdown();
+            }
+        }
+        execution = transactionTemplate.execute(statut -> {
+            ExecutionClotureMois terminee = executionClotureMoisRepository.findById(idExecution)
+                    .orElseThrow(IllegalStateException::new);
+            terminee.termine(LocalDateTime.now());
+            salarieAideADomicileRepository.supprimeClotures(mois);
+            return terminee;
+        });
+        return new RapportCloture(parallelisme, execution, new ArrayList<>(plages), System.nanoTime() - debut);
+    }
+
+    /**
+     * @return l'exécution de la clôture du mois, créée si c'est la première, comptée comme reprise si elle a été
+     * interrompue
+     */
+    private ExecutionClotureMois demarreExecution(LocalDate mois) {
+        ExecutionClotureMois execution = executionClotureMoisRepository.findByMois(mois);
+        if (execution == null) {
+            return executionClotureMoisRepository.save(new ExecutionClotureMois(mois, LocalDateTime.now()));
+        }
+        if (!execution.estTerminee()) {
+            execution.reprend();
+        }
+        return execution;
+    }
+
+    /**
+     * Clôture le lot suivant d'une plage d'id et l'enregistre (clés d'idempotence, avancement de l'exécution), dans
+     * la transaction en cours.
+     *
+     * @return les salariés clôturés, au plus tailleLot ; moins s'il n'en reste plus dans la plage
+     */
+    List<SalarieAideADomicile> clotureLot(Long idExecution, LocalDate mois,
+            ToDoubleFunction<SalarieAideADomicile> joursTravailles, long idApres, long idMax) {
+        List<SalarieAideADomicile> salaries = salarieAideADomicileRepository.chargeLotParMoisEnCours(mois, idApres,
+                idMax, tailleLot);
+        if (salaries.isEmpty()) {
+            return salaries;
+        }
+        List<Long> ids = new ArrayList<>(salaries.size());
+        for (SalarieAideADomicile salarie : salaries) {
+            salarieAideADomicileService.clotureMois(salarie, joursTravailles.applyAsDouble(salarie));
+            ids.add(salarie.getId());
+        }
+        salarieAideADomicileRepository.marqueClotures(mois, ids);
+        executionClotureMoisRepository.enregistreLot(idExecution, salaries.size(), LocalDateTime.now());
+        return salaries;
+    }
+
+    /**
+     * Clôture le lot suivant d'une plage d'id comme {@link #clotureLot}, dans sa propre transaction. Si un de ses
+     * salariés est modifié en même temps (congé posé), le lot n'est pas rejoué : ses salariés sont relus puis
+     * clôturés un par un ({@link ModificationsConcurrentes#clotureMois(Long, TransactionTemplate,
+     * org.springframework.transaction.support.TransactionCallback)}), chacun enregistré dans sa transaction.
+     *
+     * @param debut appelé au début de chaque transaction, qui ne fait rien s'il renvoie false
+     * @return les salariés du lot, au plus tailleLot ; moins s'il n'en reste plus dans la plage ; null si debut a
+     * renvoyé false
+     * @throws OptimisticLockingFailureException si un salarié est encore modifié par d'autres au dernier essai de
+     *                                           sa propre clôture
+     */
+    List<SalarieAideADomicile> clotureLotOuSalaries(Long idExecution, LocalDate mois,
+            ToDoubleFunction<SalarieAideADomicile> joursTravailles, long idApres, long idMax, BooleanSupplier debut) {
+        try {
+            return transactionTemplate.execute(statut -> debut.getAsBoolean()
+                    ? clotureLot(idExecution, mois, joursTravailles, idApres, idMax) : null);
+        } catch (OptimisticLockingFailureException e) {
+            // rejouer tout le lot referait tous ses salariés pour un seul, jusqu'à faire échouer toute la clôture
+            List<SalarieAideADomicile> lot = transactionTemplate.execute(statut ->
+                    salarieAideADomicileRepository.chargeLotParMoisEnCours(mois, idApres, idMax, tailleLot));
+            for (SalarieAideADomicile salarie : lot) {
+                long id = salarie.getId();
+                List<SalarieAideADomicile> cloture = modificationsConcurrentes.clotureMois(id, transactionTemplate,
+                        statut -> debut.getAsBoolean()
+                                ? clotureLot(idExecution, mois, joursTravailles, id - 1, id) : null);
+                if (cloture == null) {
+                    return null;
+                }
+            }
+            return lot;
+        }
+    }
+
+    int getTailleLot() {
+        return tailleLot;
+    }
+
+    private final class Plage extends RecursiveAction {
+
+        private final Long idExecution;
+        private final LocalDate mois;
+        private final ToDoubleFunction<SalarieAideADomicile> joursTravailles;
+        private final Consumer<AvancementPlage> suivi;
+        private final Queue<AvancementPlage> plages;
+        private final long idApres;
+        private final long idMax;
+        private final long taillePlage;
+
+        private Plage(Long idExecution, LocalDate mois, ToDoubleFunction<SalarieAideADomicile> joursTravailles,
+                Consumer<AvancementPlage> suivi, Queue<AvancementPlage> plages, long idApres, long idMax,
+                long taillePlage) {
+            this.idExecution = idExecution;
+            this.mois = mois;
+            this.joursTravailles = joursTravailles;
+            this.suivi = suivi;
+            this.plages = plages;
+            this.idApres = idApres;
+            this.idMax = idMax;
+            this.taillePlage = taillePlage;
+        }
+
+        @Override
+        protected void compute() {
+            if (idMax - idApres > taillePlage) {
+                long milieu = idApres + (idMax - idApres) / 2;
+                invokeAll(new Plage(idExecution, mois, joursTravailles, suivi, plages, idApres, milieu, taillePlage),
+                        new Plage(idExecution, mois, joursTravailles, suivi, plages, milieu, idMax, taillePlage));
+                return;
+            }
+            AvancementPlage avancement = new AvancementPlage(idApres + 1, idMax, Thread.currentThread().getName());
+            plages.add(avancement);
+            long dernierId = idApres;
+            List<SalarieAideADomicile> lot;
+            do {
+                lot = clotureLotOuSalaries(idExecution, mois, joursTravailles, dernierId, idMax, () -> true);
+                if (!lot.isEmpty()) {
+                    dernierId = lot.get(lot.size() - 1).getId();
+                    avancement.ajouteLot(lot.size());
+                    suivi.accept(avancement);
+                }
+            } while (lot.size() == tailleLot);
+            avancement.termine();
+        }
+    }
+
+    /**
+     * Avancement de la clôture d'une plage d'id, mis à jour par le thread qui la traite.
+     */
+    public static final class AvancementPlage {
+
+        private final long idMin;
+        private final long idMax;
+        private final String thread;
+        private final long debutNanos = System.nanoTime();
+        private volatile long nbClotures;
+        private volatile long dureeNanos = -1;
+
+        private AvancementPlage(long idMin, long idMax, String thread) {
+            this.idMin = idMin;
+            this.idMax = idMax;
+            this.thread = thread;
+        }
+
+        private void ajouteLot(int nbSalaries) {
+            nbClotures += nbSalaries;
+        }
+
+        private void termine() {
+            dureeNanos = System.nanoTime() - debutNanos;
+        }
+
+        public long getIdMin() {
+            return idMin;
+        }
+
+        public long getIdMax() {
+            return idMax;
+        }
+
+        /**
+         * @return nom du thread qui a traité la plage
+         */
+        public String getThread() {
+            return thread;
+        }
+
+        public long getNbClotures() {
+            return nbClotures;
+        }
+
+        public boolean estTerminee() {
+            return dureeNanos >= 0;
+        }
+
+        /**
+         * @return durée du traitement de la plage, jusqu'à maintenant si elle n'est pas terminée
+         */
+        public long getDureeNanos() {
+            long duree = dureeNanos;
+            return duree >= 0 ? duree : System.nanoTime() - debutNanos;
+        }
+
+        /**
+         * @return salariés clôturés par seconde dans cette plage
+         */
+        public double getDebitParSeconde() {
+            return debitParSeconde(getNbClotures(), getDureeNanos());
+        }
+
+        @Override
+        public String toString() {
+            return "[" + idMin + ", " + idMax + "] " + thread + " : " + nbClotures + " salariés, "
+                    + Math.round(getDebitParSeconde()) + "/s";
+        }
+    }
+
+    /**
+     * Bilan d'une clôture parallèle.
+     */
+    public static final class RapportCloture {
+
+        private final int parallelisme;
+        private final ExecutionClotureMois execution;
+        private final List<AvancementPlage> plages;
+        private final long dureeNanos;
+
+        private RapportCloture(int parallelisme, ExecutionClotureMois execution, List<AvancementPlage> plages,
+                long dureeNanos) {
+            this.parallelisme = parallelisme;
+            this.execution = execution;
+            plages.sort(Comparator.comparingLong(AvancementPlage::getIdMin));
+            this.plages = plages;
+            this.dureeNanos = dureeNanos;
+        }
+
+        public int getParallelisme() {
+            return parallelisme;
+        }
+
+        /**
+         * @return l'exécution du mois, terminée ; ses totaux comptent aussi les lots des exécutions interrompues
+         */
+        public ExecutionClotureMois getExecution() {
+            return execution;
+        }
+
+        /**
+         * @return les plages traitées, par id croissant (aucune si la clôture était déjà terminée)
+         */
+        public List<AvancementPlage> getPlages() {
+            return plages;
+        }
+
+        /**
+         * @return salariés clôturés par cet appel (sans ceux des exécutions interrompues)
+         */
+        public long getNbClotures() {
+            return plages.stream().mapToLong(AvancementPlage::getNbClotures).sum();
+        }
+
+        public long getDureeNanos() {
+            return dureeNanos;
+        }
+
+        /**
+         * @return salariés clôturés par seconde, toutes plages confondues
+         */
+        public double getDebitParSeconde() {
+            return debitParSeconde(getNbClotures(), dureeNanos);
+        }
+    }
+
+    private static double debitParSeconde(long nb, long dureeNanos) {
+        return dureeNanos <= 0 ? 0 : nb * 1e9 / dureeNanos;
+    }
+}
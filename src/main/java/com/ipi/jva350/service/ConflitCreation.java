@@ -0,0 +1,41 @@
+package com.ipi.jva350.service;
+
+/**
+ * Salarié refusé par une création en lot (voir
+ * {@link SalarieAideADomicileService#creerSalariesAideADomicile(java.util.List)}), avec la raison du refus.
+ */
+public final class ConflitCreation {
+
+    private final int rang;
+    private final String nom;
+    private final String message;
+
+    ConflitCreation(int rang, String nom, String message) {
+        this.rang = rang;
+        this.nom = nom;
+        this.message = message;
+    }
+
+    /**
+     * @return position du salarié refusé dans le lot, à partir de 0
+     */
+    public int getRang() {
+        return rang;
+    }
+
+    public String getNom() {
+        return nom;
+    }
+
+    /**
+     * @return la raison du refus, comme le message de la SalarieException d'une création unitaire
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "ConflitCreation{rang=" + rang + ", nom='" + nom + "', message='" + message + "'}";
+    }
+}
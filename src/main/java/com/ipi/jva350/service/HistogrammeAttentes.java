@@ -0,0 +1,97 @@
+package com.ipi.jva350.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogramme de durées d'attente en tranches de puissances de 2 : la tranche 0 compte les attentes de moins d'une
+ * microseconde, la tranche i celles de 2^(i-1) à 2^i microsecondes exclues, la dernière toutes les plus longues.
+ * Sans verrou : sûr et peu coûteux depuis plusieurs threads, au prix d'une lecture qui peut mêler deux instants.
+ */
+public final class HistogrammeAttentes {
+
+    public static final int NB_TRANCHES = 32;
+
+    private final AtomicLongArray nbParTranche = new AtomicLongArray(NB_TRANCHES);
+    private final LongAdder nbAttentes = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    void enregistre(long attenteNanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(attenteNanos);
+        nbParTranche.incrementAndGet(Math.min(NB_TRANCHES - 1, 64 - Long.numberOfLeadingZeros(micros)));
+        nbAttentes.increment();
+        totalNanos.add(attenteNanos);
+    }
+
+    /**
+     * @return nombre d'attentes enregistrées
+     */
+    public long getNbAttentes() {
+        return nbAttentes.sum();
+    }
+
+    /**
+     * @return nombre d'attentes de la tranche donnée
+     */
+    public long getNb(int tranche) {
+        return nbParTranche.get(tranche);
+    }
+
+    /**
+     * @return borne supérieure (exclue) de la tranche en microsecondes, Long.MAX_VALUE pour la dernière
+     */
+    public static long borneSuperieureMicros(int tranche) {
+        return tranche == NB_TRANCHES - 1 ? Long.MAX_VALUE : 1L << tranche;
+    }
+
+    /**
+     * @return attente moyenne en nanosecondes, 0 sans attente
+     */
+    public double getAttenteMoyenneNanos() {
+        long nb = nbAttentes.sum();
+        return nb == 0 ? 0 : totalNanos.sum() / (double) nb;
+    }
+
+    /**
+     * @param quantile entre 0 et 1, par exemple 0.99
+     * @return borne supérieure en microsecondes de la tranche où tombe ce quantile, 0 sans attente
+     */
+    public long quantileMicros(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Le quantile doit être entre 0 et 1 : " + quantile);
+        }
+        long[] nbs = new long[NB_TRANCHES];
+        long nb = 0;
+        for (int tranche = 0; tranche < NB_TRANCHES; tranche++) {
+            nbs[tranche] = nbParTranche.get(tranche);
+            nb += nbs[tranche];
+        }
+        long rang = (long) Math.ceil(quantile * nb);
+        long cumul = 0;
+        for (int tranche = 0; tranche < NB_TRANCHES; tranche++) {
+            cumul += nbs[tranche];
+            if (nbs[tranche] > 0 && cumul >= rang) {
+                return borneSuperieureMicros(tranche);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return les tranches non vides, par exemple "<1µs:950 <2µs:30 <1024µs:20"
+     */
+    @Override
+    public String toString() {
+        StringBuilder texte = new StringBuilder();
+        for (int tranche = 0; tranche < NB_TRANCHES; tranche++) {
+            long nb = nbParTranche.get(tranche);
+            if (nb > 0) {
+                texte.append(texte.length() == 0 ? "" : " ")
+                        .append(tranche == NB_TRANCHES - 1 ? ">=" + (1L << (tranche - 1)) : "<" + (1L << tranche))
+                        .append("µs:").append(nb);
+            }
+        }
+        return texte.toString();
+    }
+}
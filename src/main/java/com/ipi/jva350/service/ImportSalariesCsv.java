@@ -0,0 +1,563 @@
+package com.ipi.jva350.service;
+
+import com.ipi.jva350.model.SalarieAideADomicile;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Import de salariés depuis un fichier CSV en UTF-8 (séparateur ';', une ligne d'en-tête {@link #ENTETE}, dates au
+ * format yyyy-MM-dd, nombres avec un point décimal, congés pris séparés par '|'), de taille quelconque.
+ * Le fichier est lu par un FileChannel dans un petit nombre de blocs d'octets réutilisés, coupés aux fins de ligne,
+ * sans passer par une String par ligne. Les blocs sont analysés et validés par plusieurs threads, puis leurs salariés
+ * sont créés dans l'ordre du fichier, un bloc par transaction, par
+ * {@link SalarieAideADomicileService#creerSalariesAideADomicile(List)}. Les blocs en cours sont bornés, donc la
+ * mémoire ne dépend pas de la taille du fichier ; les blocs déjà créés le restent si l'import échoue ensuite.
+ */
+@Service
+public class ImportSalariesCsv {
+
+    public static final String ENTETE = "nom;moisDebutContrat;moisEnCours;joursTravaillesAnneeN;"
+            + "congesPayesAcquisAnneeN;joursTravaillesAnneeNMoins1;congesPayesAcquisAnneeNMoins1;"
+            + "congesPayesPrisAnneeNMoins1;congesPayesPris";
+
+    /** taille par défaut d'un bloc, qui doit contenir au moins une ligne entière */
+    public static final int TAILLE_BLOC_KO = 256;
+    /** lignes rejetées gardées en détail dans le rapport, les suivantes sont seulement comptées */
+    public static final int NB_MAX_REJETS_DETAILLES = 1000;
+    /** blocs analysés d'avance par thread, pendant que les précédents sont créés en base */
+    static final int BLOCS_PAR_THREAD = 2;
+
+    private static final String[] CHAMPS = ENTETE.split(";");
+    /** au-delà, le nombre n'est plus exact en long puis double : la conversion générale s'applique */
+    private static final int NB_MAX_CHIFFRES_RAPIDES = 15;
+    private static final double[] PUISSANCES_DE_10 = new double[NB_MAX_CHIFFRES_RAPIDES + 1];
+
+    static {
+        PUISSANCES_DE_10[0] = 1;
+        for (int i = 1; i <= NB_MAX_CHIFFRES_RAPIDES; i++) {
+            PUISSANCES_DE_10[i] = PUISSANCES_DE_10[i - 1] * 10;
+        }
+    }
+
+    private final SalarieAideADomicileService salarieAideADomicileService;
+
+    private int parallelisme;
+    private int tailleBloc = TAILLE_BLOC_KO * 1024;
+
+    public ImportSalariesCsv(SalarieAideADomicileService salarieAideADomicileService) {
+        this.salarieAideADomicileService = salarieAideADomicileService;
+        setParallelisme(0);
+    }
+
+    /**
+     * @param parallelisme nombre de threads d'analyse, 0 pour un par cœur
+     */
+    @Value("${jva350.import.parallelisme:0}")
+    public void setParallelisme(int parallelisme) {
+        if (parallelisme < 0) {
+            throw new IllegalArgumentException("Le parallélisme ne peut pas être négatif : " + parallelisme);
+        }
+        this.parallelisme = parallelisme == 0 ? Runtime.getRuntime().availableProcessors() : parallelisme;
+    }
+
+    public int getParallelisme() {
+        return parallelisme;
+    }
+
+    /**
+     * @param tailleBlocKo taille des blocs lus dans le fichier, donc aussi longueur maximale d'une ligne
+     */
+    @Value("${jva350.import.taille-bloc-ko:" + TAILLE_BLOC_KO + "}")
+    public void setTailleBlocKo(int tailleBlocKo) {
+        if (tailleBlocKo <= 0) {
+            throw new IllegalArgumentException("La taille de bloc doit être positive : " + tailleBlocKo);
+        }
+        this.tailleBloc = tailleBlocKo * 1024;
+    }
+
+    /**
+     * Crée les salariés du fichier. Les lignes invalides, et celles refusées par creerSalariesAideADomicile() (nom
+     * déjà pris), sont rejetées sans interrompre l'import.
+     *
+     * @return le bilan de l'import
+     * @throws IOException si le fichier ne peut être lu, ou contient une ligne plus longue qu'un bloc
+     */
+    public RapportImport importe(Path fichier) throws IOException {
+        return importe(fichier, rapport -> { });
+    }
+
+    /**
+     * Comme {@link #importe(Path)}, en signalant l'avancement.
+     *
+     * @param suivi appelé après chaque bloc créé avec l'avancement de l'import, depuis le thread appelant
+     */
+    public RapportImport importe(Path fichier, Consumer<RapportImport> suivi) throws IOException {
+        int nbBlocsEnVol = parallelisme * BLOCS_PAR_THREAD;
+        // un bloc de plus que ceux en vol : celui qui reçoit la fin de ligne coupée du précédent
+        BlockingQueue<byte[]> blocsLibres = new ArrayBlockingQueue<>(nbBlocsEnVol + 1);
+        for (int i = 0; i <= nbBlocsEnVol; i++) {
+            blocsLibres.add(new byte[tailleBloc]);
+        }
+        Deque<Future<BlocAnalyse>> enVol = new ArrayDeque<>();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelisme);
+        try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ)) {
+            Import avancement = new Import(canal.size(), suivi);
+            byte[] bloc = prend(blocsLibres);
+            int taille = 0;
+            boolean premierBloc = true;
+            boolean finFichier = false;
+            while (!finFichier) {
+                ByteBuffer tampon = ByteBuffer.wrap(bloc, taille, bloc.length - taille);
+                while (tampon.hasRemaining() && !finFichier) {
+                    finFichier = canal.read(tampon) < 0;
+                }
+                taille = tampon.position();
+                int finLignes = finFichier ? taille : derniereFinDeLigne(bloc, taille) + 1;
+                if (finLignes == 0) {
+                    if (finFichier) {
+                        // fichier vide, ou dont le bloc précédent finissait juste sur une fin de ligne
+                        blocsLibres.add(bloc);
+                        break;
+                    }
+                    throw new IOException("Ligne de plus de " + bloc.length + " octets dans " + fichier
+                            + " (voir jva350.import.taille-bloc-ko)");
+                }
+                if (enVol.size() == nbBlocsEnVol) {
+                    avancement.cree(attend(enVol.removeFirst()));
+                }
+                byte[] suivant = null;
+                if (!finFichier) {
+                    suivant = prend(blocsLibres);
+                    System.arraycopy(bloc, finLignes, suivant, 0, taille - finLignes);
+                }
+                byte[] aAnalyser = bloc;
+                int tailleAAnalyser = finLignes;
+                boolean avecEntete = premierBloc;
+                enVol.addLast(executor.submit(() -> {
+                    try {
+                        return analyse(aAnalyser, tailleAAnalyser, avecEntete);
+                    } finally {
+                        blocsLibres.add(aAnalyser);
+                    }
+                }));
+                premierBloc = false;
+                bloc = suivant;
+                taille -= finLignes;
+            }
+            while (!enVol.isEmpty()) {
+                avancement.cree(attend(enVol.removeFirst()));
+            }
+            return avancement.rapport();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Analyse et valide les lignes entières d'un bloc, dans l'ordre.
+     *
+     * @param avecEntete si la première ligne du bloc est l'en-tête du fichier, ignorée
+     */
+    static BlocAnalyse analyse(byte[] octets, int taille, boolean avecEntete) {
+        BlocAnalyse bloc = new BlocAnalyse(taille);
+        int[] separateurs = new int[CHAMPS.length + 1];
+        List<LocalDate> congesPayesPris = new ArrayList<>();
+        for (int debut = 0; debut < taille; ) {
+            int finLigne = finDeLigne(octets, debut, taille);
+            int fin = finLigne > debut && octets[finLigne - 1] == '\r' ? finLigne - 1 : finLigne;
+            int numero = ++bloc.nbLignes;
+            if (fin > debut && !(avecEntete && numero == 1)) {
+                try {
+                    bloc.ajoute(numero, analyseLigne(octets, debut, fin, separateurs, congesPayesPris));
+                } catch (IllegalArgumentException e) {
+                    bloc.rejets.add(new LigneRejetee(numero, e.getMessage()));
+                }
+            }
+            debut = finLigne + 1;
+        }
+        return bloc;
+    }
+
+    private static SalarieAideADomicile analyseLigne(byte[] octets, int debut, int fin, int[] separateurs,
+            List<LocalDate> congesPayesPris) {
+        int nbChamps = 1;
+        separateurs[0] = debut - 1;
+        for (int i = debut; i < fin; i++) {
+            if (octets[i] == ';') {
+                if (nbChamps == CHAMPS.length) {
+                    throw new IllegalArgumentException("Plus de " + CHAMPS.length + " champs");
+                }
+                separateurs[nbChamps++] = i;
+            }
+        }
+        separateurs[nbChamps] = fin;
+        if (nbChamps != CHAMPS.length) {
+            throw new IllegalArgumentException(nbChamps + " champs au lieu de " + CHAMPS.length);
+        }
+        String nom = new String(octets, debut, separateurs[1] - debut, StandardCharsets.UTF_8).trim();
+        if (nom.isEmpty()) {
+            throw new IllegalArgumentException("Nom vide");
+        }
+        LocalDate moisDebutContrat = date(octets, separateurs[1] + 1, separateurs[2], 1);
+        LocalDate moisEnCours = date(octets, separateurs[2] + 1, separateurs[3], 2);
+        if (moisEnCours.isBefore(moisDebutContrat)) {
+            throw new IllegalArgumentException(CHAMPS[2] + " avant " + CHAMPS[1]);
+        }
+        congesPayesPris.clear();
+        int debutDate = separateurs[8] + 1;
+        for (int i = debutDate; i <= fin; i++) {
+            if (i == fin || octets[i] == '|') {
+                if (i > debutDate) {
+                    congesPayesPris.add(date(octets, debutDate, i, 8));
+                }
+                debutDate = i + 1;
+            }
+        }
+        return new SalarieAideADomicile.Builder(nom, moisDebutContrat, moisEnCours)
+                .joursTravaillesAnneeN(nombre(octets, separateurs[3] + 1, separateurs[4], 3))
+                .congesPayesAcquisAnneeN(nombre(octets, separateurs[4] + 1, separateurs[5], 4))
+                .joursTravaillesAnneeNMoins1(nombre(octets, separateurs[5] + 1, separateurs[6], 5))
+                .congesPayesAcquisAnneeNMoins1(nombre(octets, separateurs[6] + 1, separateurs[7], 6))
+                .congesPayesPrisAnneeNMoins1(nombre(octets, separateurs[7] + 1, separateurs[8], 7))
+                .congesPayesPris(congesPayesPris)
+                .build();
+    }
+
+    /**
+     * @return la date yyyy-MM-dd entre debut et fin
+     * @throws IllegalArgumentException si elle est mal formée ou n'existe pas
+     */
+    static LocalDate date(byte[] octets, int debut, int fin, int champ) {
+        if (fin - debut == 10 && octets[debut + 4] == '-' && octets[debut + 7] == '-') {
+            int annee = entier(octets, debut, debut + 4);
+            int mois = entier(octets, debut + 5, debut + 7);
+            int jour = entier(octets, debut + 8, debut + 10);
+            if (annee >= 0 && mois >= 0 && jour >= 0) {
+                try {
+                    return LocalDate.of(annee, mois, jour);
+                } catch (DateTimeException e) {
+                    // date inexistante, signalée ci-dessous
+                }
+            }
+        }
+        throw invalide(octets, debut, fin, champ);
+    }
+
+    /**
+     * @return le nombre positif ou nul entre debut et fin, 0 si le champ est vide
+     * @throws IllegalArgumentException s'il est mal formé ou négatif
+     */
+    static double nombre(byte[] octets, int debut, int fin, int champ) {
+        long chiffres = 0;
+        int nbChiffres = 0;
+        int nbDecimales = -1;
+        for (int i = debut; i < fin; i++) {
+            byte octet = octets[i];
+            if (octet >= '0' && octet <= '9' && nbChiffres < NB_MAX_CHIFFRES_RAPIDES) {
+                chiffres = chiffres * 10 + (octet - '0');
+                nbChiffres++;
+                if (nbDecimales >= 0) {
+                    nbDecimales++;
+                }
+            } else if (octet == '.' && nbDecimales < 0) {
+                nbDecimales = 0;
+            } else {
+                // signe, exposant, chiffres en trop : conversion générale
+                return nombreGeneral(octets, debut, fin, champ);
+            }
+        }
+        if (debut < fin && nbChiffres == 0) {
+            throw invalide(octets, debut, fin, champ);
+        }
+        // chiffres et 10^nbDecimales exacts en double : une seule division, arrondie comme Double.parseDouble()
+        return nbDecimales <= 0 ? chiffres : chiffres / PUISSANCES_DE_10[nbDecimales];
+    }
+
+    private static double nombreGeneral(byte[] octets, int debut, int fin, int champ) {
+        double nombre;
+        try {
+            nombre = Double.parseDouble(new String(octets, debut, fin - debut, StandardCharsets.UTF_8));
+        } catch (NumberFormatException e) {
+            throw invalide(octets, debut, fin, champ);
+        }
+        if (!(nombre >= 0) || Double.isInfinite(nombre)) {
+            throw invalide(octets, debut, fin, champ);
+        }
+        return nombre;
+    }
+
+    /**
+     * @return l'entier des chiffres entre debut et fin, -1 si un autre caractère s'y trouve
+     */
+    private static int entier(byte[] octets, int debut, int fin) {
+        int entier = 0;
+        for (int i = debut; i < fin; i++) {
+            if (octets[i] < '0' || octets[i] > '9') {
+                return -1;
+            }
+            entier = entier * 10 + (octets[i] - '0');
+        }
+        return entier;
+    }
+
+    private static IllegalArgumentException invalide(byte[] octets, int debut, int fin, int champ) {
+        return new IllegalArgumentException(CHAMPS[champ] + " invalide : '"
+                + new String(octets, debut, fin - debut, StandardCharsets.UTF_8) + "'");
+    }
+
+    private static int finDeLigne(byte[] octets, int debut, int taille) {
+        for (int i = debut; i < taille; i++) {
+            if (octets[i] == '\n') {
+                return i;
+            }
+        }
+        return taille;
+    }
+
+    private static int derniereFinDeLigne(byte[] octets, int taille) {
+        for (int i = taille - 1; i >= 0; i--) {
+            if (octets[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] prend(BlockingQueue<byte[]> blocsLibres) {
+        try {
+            return blocsLibres.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import interrompu", e);
+        }
+    }
+
+    private static BlocAnalyse attend(Future<BlocAnalyse> bloc) {
+        try {
+            return bloc.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import interrompu", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Échec de l'analyse d'un bloc", e.getCause());
+        }
+    }
+
+    /**
+     * Salariés valides et lignes rejetées d'un bloc, numérotées à partir de 1 dans le bloc.
+     */
+    static final class BlocAnalyse {
+
+        private final int nbOctets;
+        private final List<SalarieAideADomicile> salaries = new ArrayList<>();
+        /** numéro de ligne de chaque salarié */
+        private int[] lignes = new int[64];
+        private final List<LigneRejetee> rejets = new ArrayList<>();
+        private int nbLignes;
+
+        private BlocAnalyse(int nbOctets) {
+            this.nbOctets = nbOctets;
+        }
+
+        private void ajoute(int numero, SalarieAideADomicile salarie) {
+            if (salaries.size() == lignes.length) {
+                lignes = Arrays.copyOf(lignes, lignes.length * 2);
+            }
+            lignes[salaries.size()] = numero;
+            salaries.add(salarie);
+        }
+    }
+
+    /**
+     * Avancement d'un import, mis à jour par le thread appelant à chaque bloc créé.
+     */
+    private final class Import {
+
+        private final long debutNanos = System.nanoTime();
+        private final long tailleFichier;
+        private final Consumer<RapportImport> suivi;
+        private final List<LigneRejetee> rejets = new ArrayList<>();
+        private long nbOctets;
+        private long nbLignes;
+        private long nbCrees;
+        private long nbRejets;
+
+        private Import(long tailleFichier, Consumer<RapportImport> suivi) {
+            this.tailleFichier = tailleFichier;
+            this.suivi = suivi;
+        }
+
+        /**
+         * Crée les salariés valides du bloc dans leur propre transaction, et enregistre ses lignes rejetées.
+         */
+        private void cree(BlocAnalyse bloc) {
+            List<LigneRejetee> rejetsDuBloc = new ArrayList<>(bloc.rejets);
+            if (!bloc.salaries.isEmpty()) {
+                List<ConflitCreation> conflits = salarieAideADomicileService.creerSalariesAideADomicile(
+                        bloc.salaries);
+                for (ConflitCreation conflit : conflits) {
+                    rejetsDuBloc.add(new LigneRejetee(bloc.lignes[conflit.getRang()], conflit.getMessage()));
+                }
+                nbCrees += bloc.salaries.size() - conflits.size();
+            }
+            rejetsDuBloc.sort(Comparator.comparingLong(LigneRejetee::getNumero));
+            for (LigneRejetee rejet : rejetsDuBloc) {
+                if (rejets.size() < NB_MAX_REJETS_DETAILLES) {
+                    rejets.add(new LigneRejetee(nbLignes + rejet.getNumero(), rejet.getMessage()));
+                }
+            }
+            nbRejets += rejetsDuBloc.size();
+            nbLignes += bloc.nbLignes;
+            nbOctets += bloc.nbOctets;
+            suivi.accept(rapport());
+        }
+
+        private RapportImport rapport() {
+            return new RapportImport(parallelisme, tailleFichier, nbOctets, nbLignes, nbCrees, nbRejets,
+                    Collections.unmodifiableList(new ArrayList<>(rejets)), System.nanoTime() - debutNanos);
+        }
+    }
+
+    /**
+     * Ligne du fichier rejetée, avec la raison du rejet.
+     */
+    public static final class LigneRejetee {
+
+        private final long numero;
+        private final String message;
+
+        private LigneRejetee(long numero, String message) {
+            this.numero = numero;
+            this.message = message;
+        }
+
+        /**
+         * @return numéro de la ligne dans le fichier, l'en-tête étant la ligne 1
+         */
+        public long getNumero() {
+            return numero;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "Ligne " + numero + " : " + message;
+        }
+    }
+
+    /**
+     * Bilan d'un import, terminé ou en cours.
+     */
+    public static final class RapportImport {
+
+        private final int parallelisme;
+        private final long tailleFichier;
+        private final long nbOctets;
+        private final long nbLignes;
+        private final long nbCrees;
+        private final long nbRejets;
+        private final List<LigneRejetee> rejets;
+        private final long dureeNanos;
+
+        private RapportImport(int parallelisme, long tailleFichier, long nbOctets, long nbLignes, long nbCrees,
+                long nbRejets, List<LigneRejetee> rejets, long dureeNanos) {
+            this.parallelisme = parallelisme;
+            this.tailleFichier = tailleFichier;
+            this.nbOctets = nbOctets;
+            this.nbLignes = nbLignes;
+            this.nbCrees = nbCrees;
+            this.nbRejets = nbRejets;
+            this.rejets = rejets;
+            this.dureeNanos = dureeNanos;
+        }
+
+        public int getParallelisme() {
+            return parallelisme;
+        }
+
+        public long getTailleFichier() {
+            return tailleFichier;
+        }
+
+        /**
+         * @return octets du fichier dont les lignes ont été créées ou rejetées
+         */
+        public long getNbOctets() {
+            return nbOctets;
+        }
+
+        /**
+         * @return lignes traitées, en-tête et lignes vides comprises
+         */
+        public long getNbLignes() {
+            return nbLignes;
+        }
+
+        public long getNbCrees() {
+            return nbCrees;
+        }
+
+        public long getNbRejets() {
+            return nbRejets;
+        }
+
+        /**
+         * @return les {@link #NB_MAX_REJETS_DETAILLES} premières lignes rejetées, dans l'ordre du fichier
+         */
+        public List<LigneRejetee> getRejets() {
+            return rejets;
+        }
+
+        public long getDureeNanos() {
+            return dureeNanos;
+        }
+
+        /**
+         * @return part du fichier traitée, entre 0 et 1
+         */
+        public double getAvancement() {
+            return tailleFichier == 0 ? 1 : nbOctets / (double) tailleFichier;
+        }
+
+        public double getLignesParSeconde() {
+            return dureeNanos <= 0 ? 0 : nbLignes * 1e9 / dureeNanos;
+        }
+
+        public double getMoParSeconde() {
+            return dureeNanos <= 0 ? 0 : nbOctets * 1e9 / dureeNanos / (1024 * 1024);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d %% (%d/%d octets) : %d lignes, %d salariés créés, %d lignes rejetées, "
+                            + "%.0f lignes/s, %.1f Mo/s", Math.round(getAvancement() * 100), nbOctets, tailleFichier,
+                    nbLignes, nbCrees, nbRejets, getLignesParSeconde(), getMoParSeconde());
+        }
+    }
+}
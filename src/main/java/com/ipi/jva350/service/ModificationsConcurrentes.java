@@ -0,0 +1,216 @@
+package com.ipi.jva350.service;
+
+import com.ipi.jva350.exception.SalarieException;
+import com.ipi.jva350.model.SalarieAideADomicile;
+import com.ipi.jva350.repository.SalarieAideADomicileRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Modifications de salariés sûres entre transactions concurrentes, sans verrou : chaque essai relit le salarié dans
+ * sa propre transaction et l'écrit si sa version n'a pas changé entre-temps (voir
+ * {@link SalarieAideADomicile#getVersion()}). Sinon la transaction est annulée et rejouée sur l'état frais, règles
+ * métier revalidées, après une attente aléatoire qui double à chaque conflit jusqu'à
+ * {@link #setAttenteMaxMs(long) attenteMaxMs}, au plus {@link #setNbEssais(int) nbEssais} fois en tout. Des
+ * modifications de salariés différents n'entrent donc jamais en conflit ; elles ne s'attendent qu'à l'écriture des
+ * compteurs de l'entreprise, et seulement si leurs threads en partagent la ligne (voir
+ * {@link com.ipi.jva350.repository.CompteurCongesListener}).
+ * Les opérations par id tiennent en plus le verrou du salarié dans cette instance ({@link VerrousSalaries}) de la
+ * lecture à la validation, les lots ceux de tous leurs salariés : celles d'une même instance sur un même salarié
+ * s'attendent au lieu de se rejouer en boucle, seules celles d'autres instances peuvent encore entrer en conflit.
+ * Compte les opérations, les conflits (essais rejoués) et les abandons.
+ */
+@Service
+public class ModificationsConcurrentes {
+
+    /** nombre maximal par défaut d'essais d'une opération, le premier compris */
+    public static final int NB_ESSAIS = 5;
+    /** attente maximale par défaut avant de rejouer une opération en conflit */
+    public static final long ATTENTE_MAX_MS = 50;
+    /** attente avant le premier rejeu, doublée à chaque conflit suivant */
+    static final long ATTENTE_INITIALE_MS = 1;
+
+    private final SalarieAideADomicileService salarieAideADomicileService;
+    private final SalarieAideADomicileRepository salarieAideADomicileRepository;
+    private final VerrousSalaries verrousSalaries;
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile int nbEssais = NB_ESSAIS;
+    private volatile long attenteMaxMs = ATTENTE_MAX_MS;
+
+    private final LongAdder nbOperations = new LongAdder();
+    private final LongAdder nbConflits = new LongAdder();
+    private final LongAdder nbAbandons = new LongAdder();
+
+    public ModificationsConcurrentes(SalarieAideADomicileService salarieAideADomicileService,
+            SalarieAideADomicileRepository salarieAideADomicileRepository, VerrousSalaries verrousSalaries,
+            PlatformTransactionManager transactionManager) {
+        this.salarieAideADomicileService = salarieAideADomicileService;
+        this.salarieAideADomicileRepository = salarieAideADomicileRepository;
+        this.verrousSalaries = verrousSalaries;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * @param nbEssais nombre maximal d'essais d'une opération, le premier compris
+     */
+    @Value("${jva350.concurrence.nb-essais:" + NB_ESSAIS + "}")
+    public void setNbEssais(int nbEssais) {
+        if (nbEssais <= 0) {
+            throw new IllegalArgumentException("Le nombre d'essais doit être positif : " + nbEssais);
+        }
+        this.nbEssais = nbEssais;
+    }
+
+    /**
+     * @param attenteMaxMs attente maximale avant de rejouer une opération en conflit
+     */
+    @Value("${jva350.concurrence.attente-max-ms:" + ATTENTE_MAX_MS + "}")
+    public void setAttenteMaxMs(long attenteMaxMs) {
+        if (attenteMaxMs < 0) {
+            throw new IllegalArgumentException("L'attente maximale ne peut pas être négative : " + attenteMaxMs);
+        }
+        this.attenteMaxMs = attenteMaxMs;
+    }
+
+    /**
+     * {@link SalarieAideADomicileService#tryAjouteConge} sur le salarié tel qu'il est en base, dans sa propre
+     * transaction, rejouée en cas de modification concurrente du salarié.
+     *
+     * @return la validation de la demande sur l'état du salarié à la validation de la transaction
+     * @throws SalarieException                  si le salarié n'existe pas
+     * @throws OptimisticLockingFailureException si le salarié est encore modifié par d'autres au dernier essai
+     * @throws CannotAcquireLockException        si son verrou reste pris trop longtemps dans cette instance
+     */
+    public ValidationConge tryAjouteConge(Long idSalarie, LocalDate jourDebut, LocalDate jourFin)
+            throws SalarieException {
+        ValidationConge validation = verrousSalaries.execute(idSalarie, () -> execute(transactionTemplate, statut -> {
+            SalarieAideADomicile salarie = salarieAideADomicileRepository.findById(idSalarie).orElse(null);
+            return salarie == null ? null
+                    : salarieAideADomicileService.tryAjouteConge(salarie, jourDebut, jourFin);
+        }));
+        if (validation == null) {
+            throw new SalarieException("Salarié inconnu : " + idSalarie);
+        }
+        return validation;
+    }
+
+    /**
+     * {@link SalarieAideADomicileService#clotureMois(SalarieAideADomicile, double)} sur le salarié tel qu'il est en
+     * base, dans sa propre transaction, rejouée en cas de modification concurrente du salarié.
+     *
+     * @throws SalarieException                  si le salarié n'existe pas
+     * @throws OptimisticLockingFailureException si le salarié est encore modifié par d'autres au dernier essai
+     * @throws CannotAcquireLockException        si son verrou reste pris trop longtemps dans cette instance
+     */
+    public void clotureMois(Long idSalarie, double joursTravailles) throws SalarieException {
+        Boolean cloture = verrousSalaries.execute(idSalarie, () -> execute(transactionTemplate, statut -> {
+            SalarieAideADomicile salarie = salarieAideADomicileRepository.findById(idSalarie).orElse(null);
+            if (salarie == null) {
+                return false;
+            }
+            salarieAideADomicileService.clotureMois(salarie, joursTravailles);
+            return true;
+        }));
+        if (!cloture) {
+            throw new SalarieException("Salarié inconnu : " + idSalarie);
+        }
+    }
+
+    /**
+     * Clôture du mois d'un seul salarié pour une clôture par lots (voir {@link ClotureMoisParallele}), dans une
+     * transaction du modèle donné rejouée en cas de modification concurrente du salarié, en tenant son verrou dans
+     * cette instance. L'action doit relire le salarié, le clôturer et enregistrer sa clôture.
+     *
+     * @return le résultat du dernier essai
+     * @throws OptimisticLockingFailureException si le salarié est encore modifié par d'autres au dernier essai
+     * @throws CannotAcquireLockException        si son verrou reste pris trop longtemps dans cette instance
+     */
+    <T> T clotureMois(Long idSalarie, TransactionTemplate transactionTemplate, TransactionCallback<T> cloture) {
+        return verrousSalaries.execute(idSalarie, () -> execute(transactionTemplate, cloture));
+    }
+
+    /**
+     * Exécute l'action dans une transaction du modèle donné, rejouée tant qu'elle échoue sur une modification
+     * concurrente (dans la limite des essais). L'action doit relire ce qu'elle modifie, et être appelée hors de
+     * toute transaction en cours (sinon c'est celle-ci qui est annulée).
+     *
+     * @return le résultat du dernier essai
+     * @throws OptimisticLockingFailureException celle du dernier essai s'ils ont tous été en conflit
+     */
+    <T> T execute(TransactionTemplate transactionTemplate, TransactionCallback<T> action) {
+        nbOperations.increment();
+        long attenteMs = ATTENTE_INITIALE_MS;
+        for (int essai = 1; ; essai++) {
+            try {
+                return transactionTemplate.execute(action);
+            } catch (OptimisticLockingFailureException e) {
+                if (essai >= nbEssais) {
+                    nbAbandons.increment();
+                    throw e;
+                }
+                nbConflits.increment();
+                long attenteMaxMs = this.attenteMaxMs;
+                attenteMs = Math.min(attenteMs, attenteMaxMs);
+                // au hasard dans la seconde moitié : les transactions en conflit ne se retrouvent pas ensemble
+                attend(attenteMs - ThreadLocalRandom.current().nextLong(attenteMs / 2 + 1));
+                attenteMs = Math.min(attenteMs * 2, attenteMaxMs);
+            }
+        }
+    }
+
+    /**
+     * Comme {@link #execute(TransactionTemplate, TransactionCallback)}, en tenant de la lecture à la validation les
+     * verrous dans cette instance de tous les salariés que l'action modifie (voir
+     * {@link VerrousSalaries#executeTous(Collection, java.util.function.Supplier)}).
+     *
+     * @throws CannotAcquireLockException si leurs verrous restent pris trop longtemps dans cette instance
+     */
+    <T> T execute(Collection<Long> idsSalaries, TransactionTemplate transactionTemplate,
+            TransactionCallback<T> action) {
+        return verrousSalaries.executeTous(idsSalaries, () -> execute(transactionTemplate, action));
+    }
+
+    /**
+     * @return opérations exécutées (chacune comptée une fois, quel que soit son nombre d'essais)
+     */
+    public long getNbOperations() {
+        return nbOperations.sum();
+    }
+
+    /**
+     * @return essais en conflit avec une modification concurrente, puis rejoués
+     */
+    public long getNbConflits() {
+        return nbConflits.sum();
+    }
+
+    /**
+     * @return opérations abandonnées, en conflit à chacun de leurs essais
+     */
+    public long getNbAbandons() {
+        return nbAbandons.sum();
+    }
+
+    private static void attend(long dureeMs) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(dureeMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Modification du salarié interrompue", e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.ipi.jva350.service;
+
+/**
+ * Raisons pour lesquelles une demande de congé est refusée par les règles métier (voir
+ * {@link SalarieAideADomicileService#valideConge}), avec le message de la {@link
+ * com.ipi.jva350.exception.SalarieException} correspondante d'ajouteConge().
+ */
+public enum MotifRejetConge {
+
+    PAS_DE_DROIT_LEGAL("N'a pas légalement droit à des congés payés !"),
+    AUCUN_JOUR_DECOMPTE("Pas besoin de congés !"),
+    AVANT_MOIS_EN_COURS("Pas possible de prendre de congé avant le mois en cours !"),
+    ANNEE_DE_CONGES_SUIVANTE(
+            "Pas possible de prendre de congé dans l'année de congés suivante (hors le premier jour)"),
+    /** les jours décomptés dépassent les congés acquis en N-1 restants, qui sont la limite */
+    DEPASSE_ACQUIS_ANNEE_N_MOINS1(") dépassent les congés acquis en année N-1 : "),
+    /** les jours décomptés dépassent la limite des règles de l'entreprise */
+    DEPASSE_LIMITE_ENTREPRISE(") dépassent la limite des règles de l'entreprise : ");
+
+    private final String message;
+
+    MotifRejetConge(String message) {
+        this.message = message;
+    }
+
+    /**
+     * @return si le refus porte sur le nombre de jours décomptés comparé à une limite
+     */
+    public boolean aUneLimite() {
+        return this == DEPASSE_ACQUIS_ANNEE_N_MOINS1 || this == DEPASSE_LIMITE_ENTREPRISE;
+    }
+
+    /**
+     * @return le message du refus, construit seulement quand on le demande
+     */
+    String message(int nbJoursDecomptes, double limite) {
+        return aUneLimite() ? "Conges Payes Pris Decomptes (" + nbJoursDecomptes + message + limite : message;
+    }
+}
@@ -0,0 +1,100 @@
+package com.ipi.jva350.service;
+
+import com.ipi.jva350.model.Calendrier;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+
+/**
+ * Termes de la limite de congés de l'entreprise d'un salarié (voir
+ * {@link SalarieAideADomicileService#calculeLimiteEntrepriseCongesPermis}) qui ne dépendent pas de la part des congés
+ * pris de l'entreprise, précalculés à la clôture du mois et gardés dans le salarié sous forme compacte
+ * ({@link #TAILLE} octets) avec les valeurs dont ils dépendent : ils servent tant que celles-ci n'ont pas changé.
+ * La part, qui change à chaque congé accepté, n'est appliquée qu'à la lecture, avec les opérations de la formule
+ * dans le même ordre : la limite lue est celle de la formule, au bit près.
+ * Pour un couple (mois du premier jour, mois du dernier jour), le terme de départ est la plus grande des proportions
+ * pondérées des deux mois multipliée par les congés acquis N-1 ; ceux-ci n'étant jamais négatifs, c'est aussi le
+ * plus grand des deux produits : la table 12×12 se réduit donc à un produit par mois.
+ */
+public final class QuotasConges {
+
+    /** taille en octets : en-tête (valeurs dont les termes dépendent) puis un terme sur 8 octets par mois */
+    public static final int TAILLE = 16 + 12 * 8;
+
+    private static final int MOIS_EN_COURS = 0;
+    private static final int ANNEE_DEBUT_CONTRAT = 4;
+    private static final int CONGES_PAYES_ACQUIS_ANNEE_N_MOINS1 = 8;
+    private static final int TERMES = 16;
+
+    private final ByteBuffer octets;
+
+    private QuotasConges(byte[] octets) {
+        this.octets = ByteBuffer.wrap(octets);
+    }
+
+    /**
+     * @param octets ceux de {@link #getOctets()}, null si le salarié n'en a pas encore
+     * @return les termes qu'ils contiennent, null s'il n'y en a pas
+     */
+    public static QuotasConges de(byte[] octets) {
+        return octets == null || octets.length != TAILLE ? null : new QuotasConges(octets);
+    }
+
+    /**
+     * @return les termes de ces valeurs, null si la formule ne se réduit pas à eux (congés acquis négatifs ou non
+     * finis)
+     */
+    static QuotasConges calcule(LocalDate moisEnCours, double congesPayesAcquisAnneeNMoins1,
+            LocalDate moisDebutContrat) {
+        if (!(congesPayesAcquisAnneeNMoins1 >= 0) || Double.isInfinite(congesPayesAcquisAnneeNMoins1)) {
+            return null;
+        }
+        QuotasConges quotas = new QuotasConges(new byte[TAILLE]);
+        quotas.octets.putInt(MOIS_EN_COURS, (int) moisEnCours.toEpochDay())
+                .putInt(ANNEE_DEBUT_CONTRAT, moisDebutContrat.getYear())
+                .putDouble(CONGES_PAYES_ACQUIS_ANNEE_N_MOINS1, congesPayesAcquisAnneeNMoins1);
+        for (int mois = 1; mois <= 12; mois++) {
+            quotas.octets.putDouble(index(mois),
+                    SalarieAideADomicileService.PROPORTIONS_PONDEREES_DES_MOIS[mois] * congesPayesAcquisAnneeNMoins1);
+        }
+        return quotas;
+    }
+
+    /**
+     * @return si ces termes ont été calculés avec ces valeurs (comparées au bit près)
+     */
+    public boolean estAJourPour(LocalDate moisEnCours, double congesPayesAcquisAnneeNMoins1,
+            LocalDate moisDebutContrat) {
+        return octets.getInt(MOIS_EN_COURS) == moisEnCours.toEpochDay()
+                && octets.getInt(ANNEE_DEBUT_CONTRAT) == moisDebutContrat.getYear()
+                && Double.doubleToLongBits(octets.getDouble(CONGES_PAYES_ACQUIS_ANNEE_N_MOINS1))
+                        == Double.doubleToLongBits(congesPayesAcquisAnneeNMoins1);
+    }
+
+    /**
+     * @return la limite de l'entreprise pour ce couple de mois et cette part des congés pris de l'entreprise
+     */
+    public long limite(int moisPremierJour, int moisDernierJour, double partCongesPrisTotauxAnneeNMoins1) {
+        double acquis = octets.getDouble(CONGES_PAYES_ACQUIS_ANNEE_N_MOINS1);
+        int premierJourMoisEnCours = octets.getInt(MOIS_EN_COURS);
+        // la formule de calculeLimiteEntrepriseCongesPermis(), opération par opération dans le même ordre
+        double limiteConges = Math.max(octets.getDouble(index(moisPremierJour)),
+                octets.getDouble(index(moisDernierJour)));
+        double proportionMoisEnCours = ((moisPremierJour - Calendrier.MOIS_DEBUT_ANNEE_DE_CONGES) % 12) / 12d;
+        limiteConges += (proportionMoisEnCours - partCongesPrisTotauxAnneeNMoins1) * 0.2 * acquis;
+        limiteConges += limiteConges * 0.1 * ((moisDernierJour - Calendrier.mois(premierJourMoisEnCours)) % 12) / 12;
+        limiteConges += Math.min(Calendrier.annee(premierJourMoisEnCours) - octets.getInt(ANNEE_DEBUT_CONTRAT), 10);
+        return SalarieAideADomicileService.arrondiLimite(limiteConges);
+    }
+
+    /**
+     * @return la forme compacte à garder dans le salarié
+     */
+    public byte[] getOctets() {
+        return octets.array();
+    }
+
+    private static int index(int mois) {
+        return TERMES + (mois - 1) * 8;
+    }
+}
@@ -0,0 +1,296 @@
+package com.ipi.jva350.service;
+
+import com.ipi.jva350.exception.SalarieException;
+import com.ipi.jva350.model.SalarieAideADomicile;
+import com.ipi.jva350.repository.SalarieAideADomicileRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Réservation de congés regroupée par lots, pour les pics de demandes (ouverture des réservations d'été) : les
+ * demandes arrivées pendant au plus {@link #setLatenceMaxMs(long) latenceMaxMs} après la première d'un lot, ou
+ * jusqu'à {@link #setTailleLot(int) tailleLot} demandes, sont appliquées ensemble dans une seule transaction :
+ * salariés chargés en une requête, part des congés pris de l'entreprise lue une fois, demandes d'un même salarié
+ * appliquées dans leur ordre d'arrivée, écritures en lots JDBC à la validation. Chaque appelant reçoit son résultat
+ * par un {@link CompletableFuture}.
+ * Les lots sont traités l'un après l'autre par un thread dédié, en tenant les verrous de tous leurs salariés
+ * ({@link VerrousSalaries}) comme les modifications par id : dans cette instance, lots et modifications d'un même
+ * salarié s'attendent. Un lot en conflit avec une modification d'un de ses salariés par une autre instance est
+ * rejoué (voir {@link ModificationsConcurrentes}). Une demande dont l'application lève une exception échoue seule
+ * avec celle-ci : la transaction du lot est annulée puis rejouée sans elle. Si la transaction échoue quand même
+ * (conflits jusqu'au dernier essai, verrous pris trop longtemps, base indisponible), toutes les demandes restantes
+ * échouent avec la même exception.
+ * Le thread est démarré avec le contexte Spring et arrêté avec lui ; les demandes faites avant le démarrage
+ * attendent, celles encore en attente à l'arrêt échouent.
+ */
+@Service
+public class ReservationCongesParLots implements SmartLifecycle {
+
+    /** nombre maximal par défaut de demandes par lot */
+    public static final int TAILLE_LOT = 200;
+    /** attente maximale par défaut d'une demande avant que son lot soit traité */
+    public static final long LATENCE_MAX_MS = 5;
+
+    private final SalarieAideADomicileService salarieAideADomicileService;
+    private final SalarieAideADomicileRepository salarieAideADomicileRepository;
+    private final ModificationsConcurrentes modificationsConcurrentes;
+    private final TransactionTemplate transactionTemplate;
+
+    private final BlockingQueue<Demande> demandes = new LinkedBlockingQueue<>();
+    private Thread thread;
+    private volatile boolean arretee;
+
+    private volatile int tailleLot = TAILLE_LOT;
+    private volatile long latenceMaxNanos = TimeUnit.MILLISECONDS.toNanos(LATENCE_MAX_MS);
+
+    private final AtomicLong nbLots = new AtomicLong();
+    private final AtomicLong nbDemandes = new AtomicLong();
+
+    public ReservationCongesParLots(SalarieAideADomicileService salarieAideADomicileService,
+            SalarieAideADomicileRepository salarieAideADomicileRepository,
+            ModificationsConcurrentes modificationsConcurrentes, PlatformTransactionManager transactionManager) {
+        this.salarieAideADomicileService = salarieAideADomicileService;
+        this.salarieAideADomicileRepository = salarieAideADomicileRepository;
+        this.modificationsConcurrentes = modificationsConcurrentes;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * @param tailleLot nombre maximal de demandes appliquées dans une même transaction
+     */
+    @Value("${jva350.reservation.taille-lot:" + TAILLE_LOT + "}")
+    public void setTailleLot(int tailleLot) {
+        if (tailleLot <= 0) {
+            throw new IllegalArgumentException("La taille de lot doit être positive : " + tailleLot);
+        }
+        this.tailleLot = tailleLot;
+    }
+
+    /**
+     * @param latenceMaxMs attente maximale d'une demande avant que son lot soit traité (hors traitement des lots
+     *                     précédents), 0 pour ne regrouper que les demandes déjà en attente
+     */
+    @Value("${jva350.reservation.latence-max-ms:" + LATENCE_MAX_MS + "}")
+    public void setLatenceMaxMs(long latenceMaxMs) {
+        if (latenceMaxMs < 0) {
+            throw new IllegalArgumentException("La latence maximale ne peut pas être négative : " + latenceMaxMs);
+        }
+        this.latenceMaxNanos = TimeUnit.MILLISECONDS.toNanos(latenceMaxMs);
+    }
+
+    /**
+     * Demande l'ajout d'un congé au salarié, comme
+     * {@link SalarieAideADomicileService#tryAjouteConge(SalarieAideADomicile, LocalDate, LocalDate)}.
+     *
+     * @param idSalarie id du salarié
+     * @param jourDebut Date de début des congés
+     * @param jourFin   Date de fin des congés
+     * @return la validation de la demande, décomptée et sauvée si elle est acceptée, une fois son lot validé ; en
+     * échec avec une {@link SalarieException} si le salarié n'existe pas
+     */
+    public CompletableFuture<ValidationConge> ajouteConge(Long idSalarie, LocalDate jourDebut, LocalDate jourFin) {
+        Demande demande = new Demande(idSalarie, jourDebut, jourFin);
+        demandes.add(demande);
+        // arrêt pendant l'ajout : la demande ne sera plus traitée
+        if (arretee && demandes.remove(demande)) {
+            demande.resultat.completeExceptionally(new IllegalStateException("Réservation de congés arrêtée"));
+        }
+        return demande.resultat;
+    }
+
+    /**
+     * @return nombre de lots traités
+     */
+    public long getNbLots() {
+        return nbLots.get();
+    }
+
+    /**
+     * @return nombre de demandes traitées
+     */
+    public long getNbDemandes() {
+        return nbDemandes.get();
+    }
+
+    @Override
+    public synchronized void start() {
+        if (thread == null) {
+            arretee = false;
+            thread = new Thread(this::traiteLots, "reservation-conges-par-lots");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+        arretee = true;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+        List<Demande> restantes = new ArrayList<>();
+        demandes.drainTo(restantes);
+        for (Demande demande : restantes) {
+            demande.resultat.completeExceptionally(new IllegalStateException("Réservation de congés arrêtée"));
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return thread != null;
+    }
+
+    private void traiteLots() {
+        List<Demande> lot = new ArrayList<>();
+        try {
+            while (!arretee) {
+                lot.add(demandes.take());
+                long echeance = System.nanoTime() + latenceMaxNanos;
+                int taille = tailleLot;
+                demandes.drainTo(lot, taille - lot.size());
+                while (lot.size() < taille) {
+                    Demande demande = demandes.poll(echeance - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (demande == null) {
+                        break;
+                    }
+                    lot.add(demande);
+                    demandes.drainTo(lot, taille - lot.size());
+                }
+                traite(lot);
+                lot.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Demande demande : lot) {
+                demande.resultat.completeExceptionally(new IllegalStateException("Réservation de congés arrêtée"));
+            }
+        }
+    }
+
+    private void traite(List<Demande> lot) {
+        List<Demande> restantes = new ArrayList<>(lot);
+        List<ValidationConge> validations = null;
+        try {
+            while (validations == null) {
+                try {
+                    // verrous de tous les salariés du lot dans cette instance ; lot rejoué sur l'état frais si l'un
+                    // d'eux est modifié en même temps par une autre instance
+                    validations = modificationsConcurrentes.execute(idsSalaries(restantes), transactionTemplate,
+                            statut -> appliqueDansTransaction(restantes));
+                } catch (EchecDemande e) {
+                    // transaction annulée : la demande échoue seule, les autres sont rejouées sans elle
+                    e.demande.resultat.completeExceptionally(e.getCause());
+                    restantes.remove(e.demande);
+                }
+            }
+        } catch (RuntimeException e) {
+            for (Demande demande : restantes) {
+                demande.resultat.completeExceptionally(e);
+            }
+            return;
+        } finally {
+            nbLots.incrementAndGet();
+            nbDemandes.addAndGet(lot.size());
+        }
+        // résultats donnés une fois le lot validé seulement
+        for (int i = 0; i < restantes.size(); i++) {
+            Demande demande = restantes.get(i);
+            if (validations.get(i) == null) {
+                demande.resultat.completeExceptionally(new SalarieException("Salarié inconnu : "
+                        + demande.idSalarie));
+            } else {
+                demande.resultat.complete(validations.get(i));
+            }
+        }
+    }
+
+    private static Set<Long> idsSalaries(List<Demande> lot) {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (Demande demande : lot) {
+            ids.add(demande.idSalarie);
+        }
+        return ids;
+    }
+
+    /**
+     * @return la validation de chaque demande du lot, dans l'ordre, null si son salarié n'existe pas
+     * @throws EchecDemande à la première demande dont l'application lève une exception autre qu'un conflit
+     */
+    private List<ValidationConge> appliqueDansTransaction(List<Demande> lot) {
+        Map<Long, SalarieAideADomicile> salaries = new HashMap<>();
+        for (SalarieAideADomicile salarie : salarieAideADomicileRepository.findAllById(idsSalaries(lot))) {
+            salaries.put(salarie.getId(), salarie);
+        }
+        Double[] partCongesPris = new Double[1];
+        List<ValidationConge> validations = new ArrayList<>(lot.size());
+        for (Demande demande : lot) {
+            SalarieAideADomicile salarie = salaries.get(demande.idSalarie);
+            try {
+                validations.add(salarie == null ? null : salarieAideADomicileService.tryAjouteConge(salarie,
+                        demande.jourDebut, demande.jourFin, () -> {
+                            // lue au plus une fois par lot, et seulement si une demande arrive jusqu'à la limite
+                            if (partCongesPris[0] == null) {
+                                partCongesPris[0] = salarieAideADomicileService.partCongesPrisTotauxAnneeNMoins1();
+                            }
+                            return partCongesPris[0];
+                        }));
+            } catch (OptimisticLockingFailureException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                throw new EchecDemande(demande, e);
+            }
+        }
+        return validations;
+    }
+
+    /**
+     * Échec de l'application d'une seule demande du lot, qui annule la transaction du lot.
+     */
+    private static final class EchecDemande extends RuntimeException {
+
+        private final transient Demande demande;
+
+        private EchecDemande(Demande demande, RuntimeException cause) {
+            super(cause);
+            this.demande = demande;
+        }
+    }
+
+    private static final class Demande {
+
+        private final Long idSalarie;
+        private final LocalDate jourDebut;
+        private final LocalDate jourFin;
+        private final CompletableFuture<ValidationConge> resultat = new CompletableFuture<>();
+
+        private Demande(Long idSalarie, LocalDate jourDebut, LocalDate jourFin) {
+            this.idSalarie = idSalarie;
+            this.jourDebut = jourDebut;
+            this.jourFin = jourFin;
+        }
+    }
+}
@@ -1,27 +1,123 @@
 package com.ipi.jva350.service;
 
 import com.ipi.jva350.exception.SalarieException;
+import com.ipi.jva350.model.AnneeDeCongesBitmapSet;
+import com.ipi.jva350.model.Calendrier;
 import com.ipi.jva350.model.Entreprise;
 import com.ipi.jva350.model.SalarieAideADomicile;
+import com.ipi.jva350.repository.CompteurCongesModifieEvent;
 import com.ipi.jva350.repository.SalarieAideADomicileRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.persistence.EntityExistsException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
-import java.util.LinkedHashSet;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.DoubleSupplier;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Stream;
 
 @Service
 public class SalarieAideADomicileService {
 
+    /** durée par défaut pendant laquelle la part des congés pris de l'entreprise est servie depuis la mémoire */
+    public static final long DUREE_CACHE_PART_CONGES_PRIS_MS = 1000;
+
+    /** nombre par défaut de salariés clôturés entre deux vidages du contexte de persistance */
+    public static final int TAILLE_LOT_CLOTURE = 500;
+
+    /** noms vérifiés par requête et salariés insérés à la fois par creerSalariesAideADomicile() */
+    public static final int TAILLE_LOT_CREATION = 1000;
+
+    /** limites calculées à la fois par calculeLimitesEntrepriseCongesPermis() : leurs valeurs restent en cache L1 */
+    static final int TAILLE_BLOC_LIMITES = 1024;
+    /** au-delà, l'arrondi rapide des limites n'est plus assez précis : celui de la formule s'applique */
+    private static final double LIMITE_ARRONDI_RAPIDE = 1e9;
+
+    /** Entreprise.proportionPondereeDuMois() par numéro de mois (l'indice 0 ne sert pas) */
+    static final double[] PROPORTIONS_PONDEREES_DES_MOIS = new double[13];
+
+    static {
+        for (int mois = 1; mois <= 12; mois++) {
+            PROPORTIONS_PONDEREES_DES_MOIS[mois] = Entreprise.proportionPondereeDuMois(LocalDate.of(2000, mois, 1));
+        }
+    }
+
     private final SalarieAideADomicileRepository salarieAideADomicileRepository;
 
+    private final CacheValeurUnique<Double> cachePartCongesPrisTotauxAnneeNMoins1;
+
+    /** transaction propre des lectures de la part des congés pris en cache, null sans base (tests unitaires) */
+    private volatile TransactionTemplate transactionLecture;
+
+    private int tailleLotCloture = TAILLE_LOT_CLOTURE;
+
     public SalarieAideADomicileService(SalarieAideADomicileRepository salarieAideADomicileRepository) {
         this.salarieAideADomicileRepository = salarieAideADomicileRepository;
+        this.cachePartCongesPrisTotauxAnneeNMoins1 = new CacheValeurUnique<>(
+                this::chargePartCongesPrisTotauxAnneeNMoins1, DUREE_CACHE_PART_CONGES_PRIS_MS);
+    }
+
+    /**
+     * La part des congés pris en cache est lue dans sa propre transaction, en lecture seule : servie à tous les
+     * appelants, elle ne doit pas compter les écritures pas encore validées (ni peut-être jamais) de l'un d'eux.
+     */
+    @Autowired
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transactionTemplate.setReadOnly(true);
+        this.transactionLecture = transactionTemplate;
+    }
+
+    /**
+     * @param dureeMs durée maximale pendant laquelle la part des congés pris de l'entreprise est servie depuis la
+     *                mémoire, 0 pour la relire à chaque fois (les lectures simultanées restent regroupées)
+     */
+    @Value("${jva350.cache.part-conges-pris.duree-ms:" + DUREE_CACHE_PART_CONGES_PRIS_MS + "}")
+    public void setDureeCachePartCongesPrisMs(long dureeMs) {
+        cachePartCongesPrisTotauxAnneeNMoins1.setDureeDeVieMs(dureeMs);
+    }
+
+    /**
+     * @param tailleLot nombre de salariés clôturés (et lus à la fois en base) entre deux vidages du contexte de
+     *                  persistance par clotureMoisParLots()
+     */
+    @Value("${jva350.cloture.taille-lot:" + TAILLE_LOT_CLOTURE + "}")
+    public void setTailleLotCloture(int tailleLot) {
+        if (tailleLot <= 0) {
+            throw new IllegalArgumentException("La taille de lot doit être positive : " + tailleLot);
+        }
+        this.tailleLotCloture = tailleLot;
+    }
+
+    /**
+     * @return le cache de la part des congés pris de l'entreprise, et ses compteurs
+     */
+    public CacheValeurUnique<Double> getCachePartCongesPrisTotauxAnneeNMoins1() {
+        return cachePartCongesPrisTotauxAnneeNMoins1;
+    }
+
+    /**
+     * Les totaux N-1 ont changé : la part des congés pris en cache est invalidée une fois la transaction de
+     * l'écriture terminée, validée ou annulée (une valeur chargée pendant celle-ci reste sinon servie).
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void invalidePartCongesPrisTotauxAnneeNMoins1(CompteurCongesModifieEvent event) {
+        cachePartCongesPrisTotauxAnneeNMoins1.invalide();
     }
 
     /**
@@ -42,6 +138,60 @@ public class SalarieAideADomicileService {
         salarieAideADomicileRepository.save(salarieAideADomicile);
     }
 
+    /**
+     * Crée en base de données ceux des salariés donnés qui respectent les règles de creerSalarieAideADomicile(), et
+     * signale les autres au lieu d'échouer. Par lots de {@link #TAILLE_LOT_CREATION} : une seule requête vérifie les
+     * noms du lot (index unique sur le nom), puis les salariés retenus sont insérés en lots JDBC (voir
+     * {@link SalarieAideADomicileRepository#creeEnLot(List)}) et reçoivent leur id.
+     * Un même nom créé en même temps par une autre transaction est rejeté par l'index unique : toute la création
+     * est alors annulée.
+     *
+     * @param salaries à créer, sans id
+     * @return les salariés refusés, dans l'ordre du lot (vide si tous ont été créés)
+     */
+    @Transactional
+    public List<ConflitCreation> creerSalariesAideADomicile(List<SalarieAideADomicile> salaries) {
+        List<ConflitCreation> conflits = new ArrayList<>();
+        // noms des salariés déjà retenus, ceux des lots précédents compris
+        Set<String> nomsDuLot = new HashSet<>();
+        for (int debut = 0; debut < salaries.size(); debut += TAILLE_LOT_CREATION) {
+            List<SalarieAideADomicile> lot = salaries.subList(debut,
+                    Math.min(debut + TAILLE_LOT_CREATION, salaries.size()));
+            Set<String> noms = new HashSet<>();
+            for (SalarieAideADomicile salarie : lot) {
+                if (salarie.getNom() != null) {
+                    noms.add(salarie.getNom());
+                }
+            }
+            Set<String> nomsPris = noms.isEmpty() ? noms
+                    : new HashSet<>(salarieAideADomicileRepository.findNomsPris(noms));
+            List<SalarieAideADomicile> aCreer = new ArrayList<>(lot.size());
+            for (int i = 0; i < lot.size(); i++) {
+                SalarieAideADomicile salarie = lot.get(i);
+                String nom = salarie.getNom();
+                String message = null;
+                if (nomsDuLot.contains(nom)) {
+                    // avant nomsPris, qui contient aussi les noms des lots précédents, déjà créés
+                    message = "Le nom " + nom + " est déjà créé plus haut dans le lot";
+                } else if (nomsPris.contains(nom)) {
+                    message = "Un salarié existe déjà avec le nom " + nom;
+                } else if (salarie.getId() != null) {
+                    message = "L'id ne doit pas être fourni car il est généré";
+                }
+                if (message != null) {
+                    conflits.add(new ConflitCreation(debut + i, nom, message));
+                } else {
+                    if (nom != null) {
+                        nomsDuLot.add(nom);
+                    }
+                    aCreer.add(salarie);
+                }
+            }
+            salarieAideADomicileRepository.creeEnLot(aCreer);
+        }
+        return conflits;
+    }
+
     /**
      * Calcule la limite maximale de congés prenable autorisée selon les règles de
      * l'entreprise, à savoir :
@@ -71,22 +221,30 @@ public class SalarieAideADomicileService {
     public long calculeLimiteEntrepriseCongesPermis(LocalDate moisEnCours, double congesPayesAcquisAnneeNMoins1,
             LocalDate moisDebutContrat,
             LocalDate premierJourDeConge, LocalDate dernierJourDeConge) {
+        return calculeLimiteEntrepriseCongesPermis(moisEnCours, congesPayesAcquisAnneeNMoins1, moisDebutContrat,
+                premierJourDeConge, dernierJourDeConge, partCongesPrisTotauxAnneeNMoins1());
+    }
+
+    /**
+     * Comme calculeLimiteEntrepriseCongesPermis() ci-dessus, avec la part des congés pris de l'entreprise donnée :
+     * pour la lire une seule fois pour plusieurs calculs.
+     */
+    static long calculeLimiteEntrepriseCongesPermis(LocalDate moisEnCours, double congesPayesAcquisAnneeNMoins1,
+            LocalDate moisDebutContrat, LocalDate premierJourDeConge, LocalDate dernierJourDeConge,
+            double partCongesPrisTotauxAnneeNMoins1) {
         // proportion selon l'avancement dans l'année, pondérée avec poids plus gros sur
         // juillet et août (20 vs 8) :
         double proportionPondereeDuConge = Math.max(Entreprise.proportionPondereeDuMois(premierJourDeConge),
                 Entreprise.proportionPondereeDuMois(dernierJourDeConge));
         double limiteConges = proportionPondereeDuConge * congesPayesAcquisAnneeNMoins1;
 
-        // moyenne annuelle des congés pris :
-        Double partCongesPrisTotauxAnneeNMoins1 = salarieAideADomicileRepository.partCongesPrisTotauxAnneeNMoins1();
-
         // si la moyenne actuelle des congés pris diffère de 20% de la la proportion
         // selon l'avancement dans l'année
         // pondérée avec poids plus gros sur juillet et août (20 vs 8),
         // bonus ou malus de 20% de la différence pour aider à équilibrer la moyenne
         // actuelle des congés pris :
         double proportionMoisEnCours = ((premierJourDeConge.getMonthValue()
-                - Entreprise.getPremierJourAnneeDeConges(moisEnCours).getMonthValue()) % 12) / 12d;
+                - Calendrier.MOIS_DEBUT_ANNEE_DE_CONGES) % 12) / 12d;
         double proportionTotauxEnRetardSurLAnnee = proportionMoisEnCours - partCongesPrisTotauxAnneeNMoins1;
         limiteConges += proportionTotauxEnRetardSurLAnnee * 0.2 * congesPayesAcquisAnneeNMoins1;
 
@@ -105,6 +263,91 @@ public class SalarieAideADomicileService {
         return Math.round(limiteCongesBd.doubleValue());
     }
 
+    /**
+     * Calcule en lot calculeLimiteEntrepriseCongesPermis() (mêmes résultats, au bit près), sur des tableaux de même
+     * taille : la limite de la demande i est écrite dans limites[i]. La part des congés pris de l'entreprise est lue
+     * une fois pour tout le lot.
+     *
+     * @param anneeMoisEnCours              mois en cours de chaque salarié, en année-mois compactée
+     *                                      ({@link Calendrier#anneeMois(int, int)}, année positive)
+     * @param congesPayesAcquisAnneeNMoins1 congés acquis en année N-1 de chaque salarié
+     * @param anneeDebutContrat             année de début de contrat de chaque salarié
+     * @param moisPremierJour               mois (1 à 12) du premier jour de chaque congé demandé
+     * @param moisDernierJour               mois (1 à 12) du dernier jour de chaque congé demandé
+     * @param limites                       reçoit les limites
+     */
+    public void calculeLimitesEntrepriseCongesPermis(int[] anneeMoisEnCours, double[] congesPayesAcquisAnneeNMoins1,
+            int[] anneeDebutContrat, int[] moisPremierJour, int[] moisDernierJour, long[] limites) {
+        calculeLimitesEntrepriseCongesPermis(anneeMoisEnCours, congesPayesAcquisAnneeNMoins1, anneeDebutContrat,
+                moisPremierJour, moisDernierJour, limites, partCongesPrisTotauxAnneeNMoins1());
+    }
+
+    static void calculeLimitesEntrepriseCongesPermis(int[] anneeMoisEnCours, double[] congesPayesAcquisAnneeNMoins1,
+            int[] anneeDebutContrat, int[] moisPremierJour, int[] moisDernierJour, long[] limites,
+            double partCongesPrisTotauxAnneeNMoins1) {
+        int nbLimites = limites.length;
+        if (anneeMoisEnCours.length != nbLimites || congesPayesAcquisAnneeNMoins1.length != nbLimites
+                || anneeDebutContrat.length != nbLimites || moisPremierJour.length != nbLimites
+                || moisDernierJour.length != nbLimites) {
+            throw new IllegalArgumentException("Les tableaux doivent avoir la même taille que les limites : "
+                    + nbLimites);
+        }
+        double[] valeurs = new double[Math.min(nbLimites, TAILLE_BLOC_LIMITES)];
+        for (int debut = 0; debut < nbLimites; debut += TAILLE_BLOC_LIMITES) {
+            int taille = Math.min(TAILLE_BLOC_LIMITES, nbLimites - debut);
+            // la formule de calculeLimiteEntrepriseCongesPermis(), opération par opération dans le même ordre, sans
+            // branche ni appel pour que le JIT puisse la vectoriser
+            for (int i = 0; i < taille; i++) {
+                int j = debut + i;
+                int moisEnCours = anneeMoisEnCours[j] % 12 + 1;
+                int premier = moisPremierJour[j];
+                int dernier = moisDernierJour[j];
+                double acquis = congesPayesAcquisAnneeNMoins1[j];
+                double limiteConges = Math.max(PROPORTIONS_PONDEREES_DES_MOIS[premier],
+                        PROPORTIONS_PONDEREES_DES_MOIS[dernier]) * acquis;
+                double proportionMoisEnCours = ((premier - Calendrier.MOIS_DEBUT_ANNEE_DE_CONGES) % 12) / 12d;
+                limiteConges += (proportionMoisEnCours - partCongesPrisTotauxAnneeNMoins1) * 0.2 * acquis;
+                limiteConges += limiteConges * 0.1 * ((dernier - moisEnCours) % 12) / 12;
+                limiteConges += Math.min(anneeMoisEnCours[j] / 12 - anneeDebutContrat[j], 10);
+                valeurs[i] = limiteConges;
+            }
+            for (int i = 0; i < taille; i++) {
+                limites[debut + i] = arrondiLimite(valeurs[i]);
+            }
+        }
+    }
+
+    /**
+     * L'arrondi de calculeLimiteEntrepriseCongesPermis() (à 3 décimales en décimal, puis à l'entier) sans BigDecimal
+     * : il ne diffère de Math.round() qu'à moins de 0.0005 d'une demi-unité, où l'on se rabat sur celui de la
+     * formule (comme pour NaN, l'infini et les valeurs trop grandes).
+     */
+    static long arrondiLimite(double limiteConges) {
+        if (Math.abs(limiteConges - Math.floor(limiteConges) - 0.5) > 0.001
+                && Math.abs(limiteConges) < LIMITE_ARRONDI_RAPIDE) {
+            return Math.round(limiteConges);
+        }
+        BigDecimal limiteCongesBd = new BigDecimal(Double.toString(limiteConges));
+        limiteCongesBd = limiteCongesBd.setScale(3, RoundingMode.HALF_UP);
+        return Math.round(limiteCongesBd.doubleValue());
+    }
+
+    /**
+     * @return la moyenne annuelle des congés pris de l'entreprise, depuis le cache
+     */
+    double partCongesPrisTotauxAnneeNMoins1() {
+        return cachePartCongesPrisTotauxAnneeNMoins1.get();
+    }
+
+    private Double chargePartCongesPrisTotauxAnneeNMoins1() {
+        TransactionTemplate transactionTemplate = transactionLecture;
+        if (transactionTemplate == null) {
+            return salarieAideADomicileRepository.partCongesPrisTotauxAnneeNMoins1EnLecture();
+        }
+        return transactionTemplate.execute(
+                statut -> salarieAideADomicileRepository.partCongesPrisTotauxAnneeNMoins1EnLecture());
+    }
+
     /**
      * Calcule les jours de congés à décompter, et si valide (voir plus bas) les
      * décompte au salarié
@@ -123,53 +366,108 @@ public class SalarieAideADomicileService {
      */
     public void ajouteConge(SalarieAideADomicile salarieAideADomicile, LocalDate jourDebut, LocalDate jourFin)
             throws SalarieException {
+        ValidationConge validation = tryAjouteConge(salarieAideADomicile, jourDebut, jourFin);
+        if (!validation.estAcceptee()) {
+            throw new SalarieException(validation.getMessage());
+        }
+    }
+
+    /**
+     * Comme ajouteConge(), mais un refus des règles métier est renvoyé au lieu d'être levé en exception : pour les
+     * demandes spéculatives, souvent refusées, sans le coût d'une exception (message, pile d'appel).
+     *
+     * @return la validation de la demande ; si elle est acceptée, les jours ont été décomptés et le salarié sauvé
+     */
+    public ValidationConge tryAjouteConge(SalarieAideADomicile salarieAideADomicile, LocalDate jourDebut,
+            LocalDate jourFin) {
+        return tryAjouteConge(salarieAideADomicile, jourDebut, jourFin, this::partCongesPrisTotauxAnneeNMoins1);
+    }
+
+    /**
+     * Comme {@link #tryAjouteConge(SalarieAideADomicile, LocalDate, LocalDate)}, avec la part des congés pris de
+     * l'entreprise donnée (lue seulement si la demande arrive jusqu'à la limite de l'entreprise).
+     */
+    ValidationConge tryAjouteConge(SalarieAideADomicile salarieAideADomicile, LocalDate jourDebut,
+            LocalDate jourFin, DoubleSupplier partCongesPrisTotauxAnneeNMoins1) {
+        ValidationConge validation = valideConge(salarieAideADomicile, jourDebut, jourFin,
+                partCongesPrisTotauxAnneeNMoins1);
+        if (validation.estAcceptee()) {
+            salarieAideADomicile.getCongesPayesPris().addAll(validation.getJoursDecomptes());
+            salarieAideADomicile.setCongesPayesPrisAnneeNMoins1(validation.getNbJoursDecomptes());
+
+            salarieAideADomicileRepository.save(salarieAideADomicile);
+        }
+        return validation;
+    }
+
+    /**
+     * Applique à une demande de congé les règles d'ajouteConge(), sans rien modifier ni sauver.
+     *
+     * @return acceptée avec les jours à décompter, ou refusée avec son motif (sans limite : instance partagée)
+     */
+    public ValidationConge valideConge(SalarieAideADomicile salarieAideADomicile, LocalDate jourDebut,
+            LocalDate jourFin) {
+        return valideConge(salarieAideADomicile, jourDebut, jourFin, this::partCongesPrisTotauxAnneeNMoins1);
+    }
+
+    private ValidationConge valideConge(SalarieAideADomicile salarieAideADomicile, LocalDate jourDebut,
+            LocalDate jourFin, DoubleSupplier partCongesPrisTotauxAnneeNMoins1) {
         if (!salarieAideADomicile.aLegalementDroitADesCongesPayes()) {
-            throw new SalarieException("N'a pas légalement droit à des congés payés !");
+            return ValidationConge.refus(MotifRejetConge.PAS_DE_DROIT_LEGAL);
         }
 
         Set<LocalDate> joursDecomptes = salarieAideADomicile
                 .calculeJoursDeCongeDecomptesPourPlage(jourDebut, jourFin);
 
         if (joursDecomptes.isEmpty()) {
-            throw new SalarieException("Pas besoin de congés !");
+            return ValidationConge.refus(MotifRejetConge.AUCUN_JOUR_DECOMPTE);
         }
 
-        Optional<LocalDate> premierJourDecompte = joursDecomptes.stream().findFirst();
-        if (premierJourDecompte.isPresent()
-                && premierJourDecompte.get().isBefore(salarieAideADomicile.getMoisEnCours())) {
-            throw new SalarieException("Pas possible de prendre de congé avant le mois en cours !");
+        LocalDate premierJourDecompte = joursDecomptes.iterator().next();
+        if (premierJourDecompte.isBefore(salarieAideADomicile.getMoisEnCours())) {
+            return ValidationConge.refus(MotifRejetConge.AVANT_MOIS_EN_COURS);
+        }
+        int dernierJourAnneeDeConges = Calendrier.dernierJourAnneeDeConges(
+                (int) salarieAideADomicile.getMoisEnCours().toEpochDay());
+        int nbCongesPayesPrisDecomptesAnneeN = 0;
+        for (LocalDate jourDecompte : joursDecomptes) {
+            if (jourDecompte.toEpochDay() <= dernierJourAnneeDeConges) {
+                nbCongesPayesPrisDecomptesAnneeN++;
+            }
         }
-        Set<LocalDate> congesPayesPrisDecomptesAnneeN = new LinkedHashSet<>(joursDecomptes.stream()
-                .filter(d -> !d.isAfter(LocalDate.of(Entreprise.getPremierJourAnneeDeConges(
-                        salarieAideADomicile.getMoisEnCours()).getYear() + 1, 5, 31)))
-                .collect(Collectors.toList()));
-        int nbCongesPayesPrisDecomptesAnneeN = congesPayesPrisDecomptesAnneeN.size();
         if (joursDecomptes.size() > nbCongesPayesPrisDecomptesAnneeN + 1) {
             // NB. 1 jour dans la nouvelle année est toujours toléré, pour résoudre le cas d'un congé devant se finir un
             // samedi le premier jour de la nouvelle année de congés...
-            throw new SalarieException("Pas possible de prendre de congé dans l'année de congés suivante (hors le premier jour)");
+            return ValidationConge.refus(MotifRejetConge.ANNEE_DE_CONGES_SUIVANTE);
         }
 
         if (nbCongesPayesPrisDecomptesAnneeN > salarieAideADomicile.getCongesPayesRestantAnneeNMoins1()) {
-            throw new SalarieException("Conges Payes Pris Decomptes (" + nbCongesPayesPrisDecomptesAnneeN
-                    + ") dépassent les congés acquis en année N-1 : "
-                    + salarieAideADomicile.getCongesPayesRestantAnneeNMoins1());
+            return ValidationConge.refus(MotifRejetConge.DEPASSE_ACQUIS_ANNEE_N_MOINS1,
+                    nbCongesPayesPrisDecomptesAnneeN, salarieAideADomicile.getCongesPayesRestantAnneeNMoins1());
         }
 
-        double limiteEntreprise = this.calculeLimiteEntrepriseCongesPermis(
-                salarieAideADomicile.getMoisEnCours(),
-                salarieAideADomicile.getCongesPayesAcquisAnneeNMoins1(),
-                salarieAideADomicile.getMoisDebutContrat(),
-                jourDebut, jourFin);
+        double limiteEntreprise = limiteEntrepriseCongesPermis(salarieAideADomicile, jourDebut, jourFin,
+                partCongesPrisTotauxAnneeNMoins1.getAsDouble());
         if (nbCongesPayesPrisDecomptesAnneeN > limiteEntreprise) {
-            throw new SalarieException("Conges Payes Pris Decomptes (" + nbCongesPayesPrisDecomptesAnneeN
-                    + ") dépassent la limite des règles de l'entreprise : " + limiteEntreprise);
+            return ValidationConge.refus(MotifRejetConge.DEPASSE_LIMITE_ENTREPRISE, nbCongesPayesPrisDecomptesAnneeN,
+                    limiteEntreprise);
         }
+        return ValidationConge.acceptee(joursDecomptes, nbCongesPayesPrisDecomptesAnneeN, limiteEntreprise);
+    }
 
-        salarieAideADomicile.getCongesPayesPris().addAll(joursDecomptes);
-        salarieAideADomicile.setCongesPayesPrisAnneeNMoins1(nbCongesPayesPrisDecomptesAnneeN);
-
-        salarieAideADomicileRepository.save(salarieAideADomicile);
+    /**
+     * @return calculeLimiteEntrepriseCongesPermis() pour ce salarié, depuis ses {@link QuotasConges} s'ils sont à jour
+     */
+    private static long limiteEntrepriseCongesPermis(SalarieAideADomicile salarieAideADomicile, LocalDate jourDebut,
+            LocalDate jourFin, double partCongesPrisTotauxAnneeNMoins1) {
+        QuotasConges quotas = QuotasConges.de(salarieAideADomicile.getQuotasConges());
+        if (quotas != null && quotas.estAJourPour(salarieAideADomicile.getMoisEnCours(),
+                salarieAideADomicile.getCongesPayesAcquisAnneeNMoins1(), salarieAideADomicile.getMoisDebutContrat())) {
+            return quotas.limite(jourDebut.getMonthValue(), jourFin.getMonthValue(), partCongesPrisTotauxAnneeNMoins1);
+        }
+        return calculeLimiteEntrepriseCongesPermis(salarieAideADomicile.getMoisEnCours(),
+                salarieAideADomicile.getCongesPayesAcquisAnneeNMoins1(), salarieAideADomicile.getMoisDebutContrat(),
+                jourDebut, jourFin, partCongesPrisTotauxAnneeNMoins1);
     }
 
     /**
@@ -185,6 +483,8 @@ public class SalarieAideADomicileService {
      * vacances, pour savoir combien de jours de congés payés sont consommés, même
      * si ladite absence dure seulement une demi-journée.
      * Si dernier mois de l'année, clôture aussi l'année
+     * Précalcule enfin les termes de ses limites de congés de l'entreprise pour le nouveau mois en cours
+     * ({@link QuotasConges}).
      * 
      * @param salarieAideADomicile salarié
      * @param joursTravailles      jours travaillés dans le mois en cours du salarié
@@ -201,12 +501,98 @@ public class SalarieAideADomicileService {
         salarieAideADomicile.setMoisEnCours(salarieAideADomicile.getMoisEnCours().plusMonths(1));
 
         if (salarieAideADomicile.getMoisEnCours().getMonth().getValue() == 6) {
-            clotureAnnee(salarieAideADomicile);
+            // sauvé une seule fois, plus bas : un salarié détaché sauvé deux fois aurait une version périmée
+            basculeAnnee(salarieAideADomicile);
         }
 
+        // sans début de contrat, la formule elle-même ne s'applique pas
+        QuotasConges quotas = salarieAideADomicile.getMoisDebutContrat() == null ? null
+                : QuotasConges.calcule(salarieAideADomicile.getMoisEnCours(),
+                        salarieAideADomicile.getCongesPayesAcquisAnneeNMoins1(),
+                        salarieAideADomicile.getMoisDebutContrat());
+        salarieAideADomicile.setQuotasConges(quotas == null ? null : quotas.getOctets());
+
         salarieAideADomicileRepository.save(salarieAideADomicile);
     }
 
+    /**
+     * Applique clotureMois() à tous les salariés dont le mois en cours est celui donné, avec des jours travaillés
+     * propres à chacun, sans les charger tous en mémoire : ils sont lus sur un curseur, et le contexte de
+     * persistance est écrit en lots JDBC puis vidé tous les {@link #setTailleLotCloture(int) tailleLotCloture}
+     * salariés. La mémoire utilisée ne dépend donc pas du nombre de salariés.
+     *
+     * @param mois            mois en cours des salariés à clôturer
+     * @param joursTravailles jours travaillés dans ce mois par le salarié donné
+     * @return nombre de salariés clôturés
+     */
+    @Transactional
+    public int clotureMoisParLots(LocalDate mois, ToDoubleFunction<SalarieAideADomicile> joursTravailles) {
+        int nbClotures = 0;
+        try (Stream<SalarieAideADomicile> salaries = salarieAideADomicileRepository.parcourtParMoisEnCours(mois,
+                tailleLotCloture)) {
+            Iterator<SalarieAideADomicile> iterator = salaries.iterator();
+            while (iterator.hasNext()) {
+                SalarieAideADomicile salarie = iterator.next();
+                clotureMois(salarie, joursTravailles.applyAsDouble(salarie));
+                if (++nbClotures % tailleLotCloture == 0) {
+                    salarieAideADomicileRepository.videContexteDePersistance();
+                }
+            }
+        }
+        salarieAideADomicileRepository.videContexteDePersistance();
+        return nbClotures;
+    }
+
+    /**
+     * Clôture en masse le mois donné de tous les salariés dont c'est le mois en cours, avec les mêmes jours
+     * travaillés pour tous : même résultat que clotureMois() appelé sur chacun (y compris la clôture de l'année en
+     * juin), mais en quelques requêtes UPDATE au lieu d'un chargement et d'une ou deux sauvegardes par salarié.
+     *
+     * @param mois            mois en cours des salariés à clôturer
+     * @param joursTravailles jours travaillés par chacun dans ce mois
+     * @return nombre de salariés clôturés
+     */
+    @Transactional
+    public int clotureMoisEnMasse(LocalDate mois, double joursTravailles) {
+        LocalDate moisSuivant = mois.plusMonths(1);
+        int nbClotures;
+        if (moisSuivant.getMonthValue() == Calendrier.MOIS_DEBUT_ANNEE_DE_CONGES) {
+            salarieAideADomicileRepository.retireCongesPayesPrisAvantClotureAnnee(mois, false);
+            nbClotures = salarieAideADomicileRepository.clotureMoisEtAnnee(mois, moisSuivant, joursTravailles,
+                    SalarieAideADomicile.CONGES_PAYES_ACQUIS_PAR_MOIS);
+            // les requêtes en masse ne passent pas par JPA, donc pas par les compteurs de l'entreprise
+            salarieAideADomicileRepository.reconcilieCompteurConges();
+        } else {
+            nbClotures = salarieAideADomicileRepository.clotureMois(mois, moisSuivant, joursTravailles,
+                    SalarieAideADomicile.CONGES_PAYES_ACQUIS_PAR_MOIS);
+        }
+        return nbClotures;
+    }
+
+    /**
+     * Comme {@link #clotureMoisEnMasse(LocalDate, double)}, avec les jours travaillés de chaque salarié déposés au
+     * préalable dans JoursTravaillesDuMois pour ce mois. Les salariés sans jours déposés ne sont pas clôturés.
+     *
+     * @param mois mois en cours des salariés à clôturer
+     * @return nombre de salariés clôturés
+     */
+    @Transactional
+    public int clotureMoisEnMasseDepuisJoursTravailles(LocalDate mois) {
+        LocalDate moisSuivant = mois.plusMonths(1);
+        int nbClotures;
+        if (moisSuivant.getMonthValue() == Calendrier.MOIS_DEBUT_ANNEE_DE_CONGES) {
+            salarieAideADomicileRepository.retireCongesPayesPrisAvantClotureAnnee(mois, true);
+            nbClotures = salarieAideADomicileRepository.clotureMoisEtAnneeDepuisJoursTravailles(mois, moisSuivant,
+                    SalarieAideADomicile.CONGES_PAYES_ACQUIS_PAR_MOIS);
+            // les requêtes en masse ne passent pas par JPA, donc pas par les compteurs de l'entreprise
+            salarieAideADomicileRepository.reconcilieCompteurConges();
+        } else {
+            nbClotures = salarieAideADomicileRepository.clotureMoisDepuisJoursTravailles(mois, moisSuivant,
+                    SalarieAideADomicile.CONGES_PAYES_ACQUIS_PAR_MOIS);
+        }
+        return nbClotures;
+    }
+
     /**
      * Clôture l'année donnée. Il s'agit d'une année DE CONGES donc du 1er juin au
      * 31 mai.
@@ -215,6 +601,14 @@ public class SalarieAideADomicileService {
      * @param salarieAideADomicile
      */
     void clotureAnnee(SalarieAideADomicile salarieAideADomicile) {
+        basculeAnnee(salarieAideADomicile);
+        salarieAideADomicileRepository.save(salarieAideADomicile);
+    }
+
+    /**
+     * clotureAnnee() sans sauver le salarié.
+     */
+    private static void basculeAnnee(SalarieAideADomicile salarieAideADomicile) {
         salarieAideADomicile.setJoursTravaillesAnneeNMoins1(salarieAideADomicile.getJoursTravaillesAnneeN());
         salarieAideADomicile.setCongesPayesAcquisAnneeNMoins1(salarieAideADomicile.getCongesPayesAcquisAnneeN());
         salarieAideADomicile.setCongesPayesPrisAnneeNMoins1(0);
@@ -223,12 +617,15 @@ public class SalarieAideADomicileService {
 
         // on ne garde que les jours de congés pris sur la nouvelle année (voir
         // ajouteCongés()) :
-        salarieAideADomicile.setCongesPayesPris(new LinkedHashSet<>(salarieAideADomicile.getCongesPayesPris().stream()
-                .filter(d -> d.isAfter(LocalDate.of(Entreprise.getPremierJourAnneeDeConges(
-                        salarieAideADomicile.getMoisEnCours()).getYear(), 5, 31)))
-                .collect(Collectors.toList())));
-
-        salarieAideADomicileRepository.save(salarieAideADomicile);
+        int premierJourAnneeDeConges = Calendrier.premierJourAnneeDeConges(
+                (int) salarieAideADomicile.getMoisEnCours().toEpochDay());
+        Set<LocalDate> congesPayesPrisAnneeN = new AnneeDeCongesBitmapSet();
+        for (LocalDate jour : salarieAideADomicile.getCongesPayesPris()) {
+            if (jour.toEpochDay() >= premierJourAnneeDeConges) {
+                congesPayesPrisAnneeN.add(jour);
+            }
+        }
+        salarieAideADomicile.setCongesPayesPris(congesPayesPrisAnneeN);
     }
 
 }
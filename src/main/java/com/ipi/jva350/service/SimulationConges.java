@@ -0,0 +1,191 @@
+package com.ipi.jva350.service;
+
+import com.ipi.jva350.model.Calendrier;
+import com.ipi.jva350.model.SalarieAideADomicile;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Simulation de demandes de congé, pour essayer plusieurs plages avant d'en poser une : applique les règles
+ * d'ajouteConge() (voir {@link SalarieAideADomicileService#valideConge}) sans jamais modifier le salarié ni écrire en
+ * base. Pour un lot de plages, la part des congés pris de l'entreprise est lue une fois et la limite de l'entreprise
+ * calculée une fois par couple (mois du premier jour, mois du dernier jour) : elle ne dépend que d'eux pour un salarié.
+ */
+@Service
+public class SimulationConges {
+
+    private final SalarieAideADomicileService salarieAideADomicileService;
+
+    public SimulationConges(SalarieAideADomicileService salarieAideADomicileService) {
+        this.salarieAideADomicileService = salarieAideADomicileService;
+    }
+
+    /**
+     * @param salarie le salarié tel qu'il est (non modifié)
+     * @param plages  les plages de congé candidates
+     * @return pour chaque plage dans l'ordre, les jours décomptés, la limite de l'entreprise et le motif de refus
+     */
+    public List<Simulation> simule(SalarieAideADomicile salarie, List<Plage> plages) {
+        List<Simulation> simulations = new ArrayList<>(plages.size());
+        if (plages.isEmpty()) {
+            return simulations;
+        }
+        Contexte contexte = new Contexte(salarie, salarieAideADomicileService.partCongesPrisTotauxAnneeNMoins1());
+        for (Plage plage : plages) {
+            simulations.add(contexte.simule(plage));
+        }
+        return simulations;
+    }
+
+    /**
+     * Ce qui ne dépend que du salarié, calculé une fois par lot.
+     */
+    private static final class Contexte {
+
+        private final SalarieAideADomicile salarie;
+        private final double partCongesPrisTotauxAnneeNMoins1;
+        private final boolean aDroitAuxConges;
+        private final int premierJourMoisEnCours;
+        private final int dernierJourAnneeDeConges;
+        private final double congesPayesRestantAnneeNMoins1;
+        /** limites déjà calculées, indexées par (mois du premier jour - 1) * 12 + mois du dernier jour - 1 */
+        private final long[] limites = new long[12 * 12];
+        private final boolean[] limitesCalculees = new boolean[12 * 12];
+
+        Contexte(SalarieAideADomicile salarie, double partCongesPrisTotauxAnneeNMoins1) {
+            this.salarie = salarie;
+            this.partCongesPrisTotauxAnneeNMoins1 = partCongesPrisTotauxAnneeNMoins1;
+            this.aDroitAuxConges = salarie.aLegalementDroitADesCongesPayes();
+            this.premierJourMoisEnCours = (int) salarie.getMoisEnCours().toEpochDay();
+            this.dernierJourAnneeDeConges = Calendrier.dernierJourAnneeDeConges(premierJourMoisEnCours);
+            this.congesPayesRestantAnneeNMoins1 = salarie.getCongesPayesRestantAnneeNMoins1();
+        }
+
+        Simulation simule(Plage plage) {
+            int[] joursDecomptes = salarie.calculeJoursEpochDeCongeDecomptesPourPlage(plage.getJourDebut(),
+                    plage.getJourFin());
+            int nbJoursDecomptesAnneeN = 0;
+            for (int jourDecompte : joursDecomptes) {
+                if (jourDecompte <= dernierJourAnneeDeConges) {
+                    nbJoursDecomptesAnneeN++;
+                }
+            }
+            long limite = limite(plage.getJourDebut(), plage.getJourFin());
+
+            // mêmes règles, dans le même ordre, que valideConge()
+            MotifRejetConge motif = null;
+            if (!aDroitAuxConges) {
+                motif = MotifRejetConge.PAS_DE_DROIT_LEGAL;
+            } else if (joursDecomptes.length == 0) {
+                motif = MotifRejetConge.AUCUN_JOUR_DECOMPTE;
+            } else if (joursDecomptes[0] < premierJourMoisEnCours) {
+                motif = MotifRejetConge.AVANT_MOIS_EN_COURS;
+            } else if (joursDecomptes.length > nbJoursDecomptesAnneeN + 1) {
+                motif = MotifRejetConge.ANNEE_DE_CONGES_SUIVANTE;
+            } else if (nbJoursDecomptesAnneeN > congesPayesRestantAnneeNMoins1) {
+                motif = MotifRejetConge.DEPASSE_ACQUIS_ANNEE_N_MOINS1;
+            } else if (nbJoursDecomptesAnneeN > limite) {
+                motif = MotifRejetConge.DEPASSE_LIMITE_ENTREPRISE;
+            }
+            return new Simulation(plage, nbJoursDecomptesAnneeN, limite, motif);
+        }
+
+        private long limite(LocalDate jourDebut, LocalDate jourFin) {
+            int index = (jourDebut.getMonthValue() - 1) * 12 + jourFin.getMonthValue() - 1;
+            if (!limitesCalculees[index]) {
+                limitesCalculees[index] = true;
+                limites[index] = SalarieAideADomicileService.calculeLimiteEntrepriseCongesPermis(
+                        salarie.getMoisEnCours(), salarie.getCongesPayesAcquisAnneeNMoins1(),
+                        salarie.getMoisDebutContrat(), jourDebut, jourFin, partCongesPrisTotauxAnneeNMoins1);
+            }
+            return limites[index];
+        }
+    }
+
+    /**
+     * Une plage de congé candidate.
+     */
+    public static final class Plage {
+
+        private final LocalDate jourDebut;
+        private final LocalDate jourFin;
+
+        /**
+         * @param jourDebut Date de début des congés
+         * @param jourFin   Date de fin des congés
+         */
+        public Plage(LocalDate jourDebut, LocalDate jourFin) {
+            this.jourDebut = jourDebut;
+            this.jourFin = jourFin;
+        }
+
+        public LocalDate getJourDebut() {
+            return jourDebut;
+        }
+
+        public LocalDate getJourFin() {
+            return jourFin;
+        }
+
+        @Override
+        public String toString() {
+            return jourDebut + " - " + jourFin;
+        }
+    }
+
+    /**
+     * Résultat de la simulation d'une plage.
+     */
+    public static final class Simulation {
+
+        private final Plage plage;
+        private final int nbJoursDecomptes;
+        private final long limite;
+        private final MotifRejetConge motif;
+
+        Simulation(Plage plage, int nbJoursDecomptes, long limite, MotifRejetConge motif) {
+            this.plage = plage;
+            this.nbJoursDecomptes = nbJoursDecomptes;
+            this.limite = limite;
+            this.motif = motif;
+        }
+
+        public Plage getPlage() {
+            return plage;
+        }
+
+        /**
+         * @return les jours de congé qui seraient décomptés sur l'année de congés en cours
+         */
+        public int getNbJoursDecomptes() {
+            return nbJoursDecomptes;
+        }
+
+        /**
+         * @return la limite de l'entreprise pour cette plage, même si la demande serait refusée pour un autre motif
+         */
+        public long getLimite() {
+            return limite;
+        }
+
+        /**
+         * @return pourquoi ajouteConge() refuserait cette plage, null si elle l'accepterait
+         */
+        public MotifRejetConge getMotif() {
+            return motif;
+        }
+
+        public boolean estAcceptee() {
+            return motif == null;
+        }
+
+        @Override
+        public String toString() {
+            return plage + " : " + nbJoursDecomptes + " jours, limite " + limite
+                    + (motif == null ? "" : ", refusée (" + motif + ")");
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.ipi.jva350.service;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Résultat de la validation d'une demande de congé par les règles métier, sans exception : acceptée avec les jours à
+ * décompter, ou refusée avec son {@link MotifRejetConge}. Les refus sans valeur associée sont des instances
+ * partagées ; aucun message n'est construit tant qu'on ne le demande pas.
+ */
+public final class ValidationConge {
+
+    private static final Map<MotifRejetConge, ValidationConge> REFUS_SANS_LIMITE = new EnumMap<>(
+            MotifRejetConge.class);
+
+    static {
+        for (MotifRejetConge motif : MotifRejetConge.values()) {
+            if (!motif.aUneLimite()) {
+                REFUS_SANS_LIMITE.put(motif, new ValidationConge(motif, 0, Double.NaN, Collections.emptySet()));
+            }
+        }
+    }
+
+    private final MotifRejetConge motif;
+    private final int nbJoursDecomptes;
+    private final double limite;
+    private final Set<LocalDate> joursDecomptes;
+
+    private ValidationConge(MotifRejetConge motif, int nbJoursDecomptes, double limite,
+            Set<LocalDate> joursDecomptes) {
+        this.motif = motif;
+        this.nbJoursDecomptes = nbJoursDecomptes;
+        this.limite = limite;
+        this.joursDecomptes = joursDecomptes;
+    }
+
+    /**
+     * @param motif un motif sans limite (voir {@link MotifRejetConge#aUneLimite()})
+     * @return le refus partagé de ce motif
+     */
+    static ValidationConge refus(MotifRejetConge motif) {
+        return REFUS_SANS_LIMITE.get(motif);
+    }
+
+    static ValidationConge refus(MotifRejetConge motif, int nbJoursDecomptes, double limite) {
+        return new ValidationConge(motif, nbJoursDecomptes, limite, Collections.emptySet());
+    }
+
+    static ValidationConge acceptee(Set<LocalDate> joursDecomptes, int nbJoursDecomptes, double limite) {
+        return new ValidationConge(null, nbJoursDecomptes, limite, joursDecomptes);
+    }
+
+    public boolean estAcceptee() {
+        return motif == null;
+    }
+
+    /**
+     * @return la raison du refus, null si la demande est acceptée
+     */
+    public MotifRejetConge getMotif() {
+        return motif;
+    }
+
+    /**
+     * @return les jours de congé décomptés sur l'année de congés en cours si la demande a été évaluée jusque-là
+     * (acceptée, ou refusée pour un dépassement), sinon 0
+     */
+    public int getNbJoursDecomptes() {
+        return nbJoursDecomptes;
+    }
+
+    /**
+     * @return la limite de l'entreprise si la demande est acceptée, celle qui est dépassée si elle est refusée pour
+     * un dépassement, sinon NaN
+     */
+    public double getLimite() {
+        return limite;
+    }
+
+    /**
+     * @return les jours à ajouter aux congés pris si la demande est acceptée, sinon vide
+     */
+    public Set<LocalDate> getJoursDecomptes() {
+        return Collections.unmodifiableSet(joursDecomptes);
+    }
+
+    /**
+     * @return le message du refus (celui de l'exception d'ajouteConge()), null si la demande est acceptée
+     */
+    public String getMessage() {
+        return motif == null ? null : motif.message(nbJoursDecomptes, limite);
+    }
+
+    @Override
+    public String toString() {
+        return estAcceptee() ? "Acceptée (" + nbJoursDecomptes + " jours, limite " + limite + ")" : getMessage();
+    }
+}
@@ -0,0 +1,157 @@
+package com.ipi.jva350.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Verrous par salarié dans cette instance, répartis en un nombre fixe de bandes (un salarié tombe toujours dans la
+ * même bande, plusieurs salariés peuvent la partager) : les modifications d'un même salarié s'y attendent au lieu
+ * d'entrer en conflit en base (voir {@link ModificationsConcurrentes}), celles de salariés de bandes différentes ne
+ * se gênent pas. Ne remplace pas le verrouillage optimiste, qui reste nécessaire entre instances.
+ * Un traitement de plusieurs salariés prend leurs bandes par ordre croissant ({@link #executeTous}) : deux
+ * traitements ne peuvent pas s'interbloquer en les prenant dans des ordres différents.
+ * L'attente de chaque verrou est bornée, et enregistrée dans un {@link HistogrammeAttentes}.
+ */
+@Service
+public class VerrousSalaries {
+
+    /** nombre par défaut de bandes : au-delà du nombre de threads, deux salariés partagent rarement un verrou */
+    public static final int NB_BANDES = 256;
+    /** attente maximale par défaut d'un verrou */
+    public static final long ATTENTE_MAX_MS = 5000;
+
+    private final ReentrantLock[] bandes;
+    private volatile long attenteMaxNanos = TimeUnit.MILLISECONDS.toNanos(ATTENTE_MAX_MS);
+
+    private final HistogrammeAttentes histogramme = new HistogrammeAttentes();
+    private final LongAdder nbExpirations = new LongAdder();
+
+    /**
+     * @param nbBandes   nombre de verrous
+     * @param equitables si les verrous sont donnés dans l'ordre des demandes (plus lent, mais sans famine)
+     */
+    public VerrousSalaries(@Value("${jva350.verrous.nb-bandes:" + NB_BANDES + "}") int nbBandes,
+            @Value("${jva350.verrous.equitables:false}") boolean equitables) {
+        if (nbBandes <= 0) {
+            throw new IllegalArgumentException("Le nombre de bandes doit être positif : " + nbBandes);
+        }
+        bandes = new ReentrantLock[nbBandes];
+        for (int i = 0; i < nbBandes; i++) {
+            bandes[i] = new ReentrantLock(equitables);
+        }
+    }
+
+    /**
+     * @param attenteMaxMs attente maximale d'un verrou avant d'abandonner
+     */
+    @Value("${jva350.verrous.attente-max-ms:" + ATTENTE_MAX_MS + "}")
+    public void setAttenteMaxMs(long attenteMaxMs) {
+        if (attenteMaxMs < 0) {
+            throw new IllegalArgumentException("L'attente maximale ne peut pas être négative : " + attenteMaxMs);
+        }
+        this.attenteMaxNanos = TimeUnit.MILLISECONDS.toNanos(attenteMaxMs);
+    }
+
+    /**
+     * Exécute l'action en tenant le verrou du salarié (réentrant : l'action peut en reprendre un).
+     *
+     * @return le résultat de l'action
+     * @throws CannotAcquireLockException si le verrou n'est pas obtenu dans l'attente maximale
+     */
+    public <T> T execute(Long idSalarie, Supplier<T> action) {
+        ReentrantLock verrou = bandes[bande(idSalarie)];
+        long debut = System.nanoTime();
+        verrouille(verrou, debut + attenteMaxNanos, "du salarié " + idSalarie);
+        try {
+            histogramme.enregistre(System.nanoTime() - debut);
+            return action.get();
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    /**
+     * Exécute l'action en tenant les verrous de tous les salariés donnés, pris par bande croissante ; ni l'appelant
+     * ni l'action ne doivent en tenir d'autres. L'attente maximale porte sur l'ensemble des verrous.
+     *
+     * @return le résultat de l'action
+     * @throws CannotAcquireLockException si les verrous ne sont pas tous obtenus dans l'attente maximale ; ceux déjà
+     *                                    pris sont rendus
+     */
+    public <T> T executeTous(Collection<Long> idsSalaries, Supplier<T> action) {
+        int[] indices = idsSalaries.stream().mapToInt(this::bande).distinct().sorted().toArray();
+        long debut = System.nanoTime();
+        int nbPris = 0;
+        try {
+            for (int indice : indices) {
+                verrouille(bandes[indice], debut + attenteMaxNanos, "d'un des " + idsSalaries.size() + " salariés");
+                nbPris++;
+            }
+            histogramme.enregistre(System.nanoTime() - debut);
+            return action.get();
+        } finally {
+            for (int i = nbPris - 1; i >= 0; i--) {
+                bandes[indices[i]].unlock();
+            }
+        }
+    }
+
+    /**
+     * @param salaries fin des messages d'erreur : "du salarié 1"...
+     */
+    private void verrouille(ReentrantLock verrou, long echeanceNanos, String salaries) {
+        if (verrou.tryLock()) {
+            return;
+        }
+        boolean obtenu;
+        try {
+            obtenu = verrou.tryLock(echeanceNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Attente du verrou " + salaries + " interrompue", e);
+        }
+        if (!obtenu) {
+            nbExpirations.increment();
+            throw new CannotAcquireLockException("Verrou " + salaries + " toujours pris après "
+                    + TimeUnit.NANOSECONDS.toMillis(attenteMaxNanos) + " ms");
+        }
+    }
+
+    /**
+     * @return la bande du salarié, entre 0 et nbBandes exclu
+     */
+    int bande(Long idSalarie) {
+        // id consécutifs répartis sur toutes les bandes quel que soit leur nombre (Fibonacci hashing)
+        long h = idSalarie * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(h ^ (h >>> 32), (long) bandes.length);
+    }
+
+    public int getNbBandes() {
+        return bandes.length;
+    }
+
+    public boolean isEquitables() {
+        return bandes[0].isFair();
+    }
+
+    /**
+     * @return attentes des verrous obtenus (y compris nulles, sans concurrence)
+     */
+    public HistogrammeAttentes getHistogramme() {
+        return histogramme;
+    }
+
+    /**
+     * @return verrous abandonnés après l'attente maximale
+     */
+    public long getNbExpirations() {
+        return nbExpirations.sum();
+    }
+}
@@ -0,0 +1,179 @@
+package com.ipi.jva350.model.unit_test;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.ipi.jva350.model.AnneeDeCongesBitmapSet;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnneeDeCongesBitmapSetTest {
+
+    @Test
+    @DisplayName("Se comporte comme un TreeSet sur des opérations aléatoires dans une année de congés")
+    void testCommeUnTreeSet() {
+        Random random = new Random(9);
+        for (int essai = 0; essai < 200; essai++) {
+            // GIVEN (Arrange) : Une année de congés, bissextile ou non, et son premier jour suivant
+            LocalDate premierJour = LocalDate.of(2000 + random.nextInt(40), 6, 1);
+            int nbJours = (int) (premierJour.plusYears(1).toEpochDay() - premierJour.toEpochDay()) + 1;
+            AnneeDeCongesBitmapSet set = new AnneeDeCongesBitmapSet();
+            TreeSet<LocalDate> reference = new TreeSet<>();
+
+            for (int operation = 0; operation < 300; operation++) {
+                // WHEN (Act) : Ajouts, retraits et tests au hasard
+                LocalDate jour = premierJour.plusDays(random.nextInt(nbJours));
+                switch (random.nextInt(4)) {
+                    case 0:
+                    case 1:
+                        assertEquals(reference.add(jour), set.add(jour));
+                        break;
+                    case 2:
+                        assertEquals(reference.remove(jour), set.remove(jour));
+                        break;
+                    default:
+                        assertEquals(reference.contains(jour), set.contains(jour));
+                }
+
+                // THEN (Assert) : Même taille, même dernier jour
+                assertEquals(reference.size(), set.size());
+                assertEquals(reference.isEmpty() ? null : reference.last(), set.dernier());
+                assertEquals(reference.isEmpty() ? Long.MIN_VALUE : reference.last().toEpochDay(),
+                        set.dernierJourEpoch());
+            }
+            // THEN (Assert) : Même contenu dans le même ordre, égalité dans les deux sens
+            assertEquals(new ArrayList<>(reference), new ArrayList<>(set));
+            assertEquals(reference, set);
+            assertEquals(set, reference);
+            assertEquals(reference.hashCode(), set.hashCode());
+        }
+    }
+
+    @Test
+    @DisplayName("Retrait pendant l'itération")
+    void testRetraitParIterateur() {
+        // GIVEN (Arrange) : Tout juillet 2023
+        AnneeDeCongesBitmapSet set = new AnneeDeCongesBitmapSet();
+        for (int jour = 1; jour <= 31; jour++) {
+            set.add(LocalDate.of(2023, 7, jour));
+        }
+
+        // WHEN (Act) : On retire les jours pairs en itérant
+        for (Iterator<LocalDate> it = set.iterator(); it.hasNext(); ) {
+            if (it.next().getDayOfMonth() % 2 == 0) {
+                it.remove();
+            }
+        }
+
+        // THEN (Assert) : Restent les 16 jours impairs
+        assertEquals(16, set.size());
+        assertEquals(LocalDate.of(2023, 7, 31), set.dernier());
+        assertFalse(set.contains(LocalDate.of(2023, 7, 30)));
+    }
+
+    @Test
+    @DisplayName("Les jours hors de l'année de congés du bitmap sont gardés à part, dans l'ordre chronologique")
+    void testBornesDeLAnnee() {
+        // GIVEN (Arrange) : Un jour de l'année de congés 2023 (du 1er juin 2023 au 31 mai 2024, bissextile)
+        AnneeDeCongesBitmapSet set = new AnneeDeCongesBitmapSet();
+        set.add(LocalDate.of(2023, 6, 1));
+
+        // WHEN (Act) : Le premier jour de l'année suivante, le deuxième, et un jour de l'année précédente
+        assertEquals(LocalDate.of(2023, 6, 1), set.getPremierJourAnneeDeConges());
+        assertTrue(set.add(LocalDate.of(2024, 5, 31)));
+        assertTrue(set.add(LocalDate.of(2024, 6, 1)));
+        assertTrue(set.add(LocalDate.of(2024, 6, 2)));
+        assertFalse(set.add(LocalDate.of(2024, 6, 2)));
+        assertTrue(set.add(LocalDate.of(2023, 5, 31)));
+
+        // THEN (Assert) : Tous présents, le bitmap reste sur l'année du premier jour ajouté
+        assertEquals(LocalDate.of(2023, 6, 1), set.getPremierJourAnneeDeConges());
+        assertTrue(set.contains(LocalDate.of(2023, 5, 31)));
+        assertTrue(set.contains(LocalDate.of(2024, 6, 2)));
+        assertFalse(set.contains("2023-06-01"));
+        assertEquals(5, set.size());
+        assertEquals(LocalDate.of(2024, 6, 2), set.dernier());
+        assertEquals(LocalDate.of(2023, 5, 31), set.iterator().next());
+    }
+
+    @Test
+    @DisplayName("Se comporte comme un TreeSet sur des opérations aléatoires sur plusieurs années de congés")
+    void testCommeUnTreeSetSurPlusieursAnnees() {
+        Random random = new Random(25);
+        for (int essai = 0; essai < 100; essai++) {
+            // GIVEN (Arrange) : Trois années de congés consécutives
+            LocalDate premierJour = LocalDate.of(2000 + random.nextInt(40), 6, 1);
+            AnneeDeCongesBitmapSet set = new AnneeDeCongesBitmapSet();
+            TreeSet<LocalDate> reference = new TreeSet<>();
+
+            for (int operation = 0; operation < 300; operation++) {
+                // WHEN (Act) : Ajouts, retraits, retraits par itérateur et tests au hasard
+                LocalDate jour = premierJour.plusDays(random.nextInt(3 * 366));
+                switch (random.nextInt(5)) {
+                    case 0:
+                    case 1:
+                        assertEquals(reference.add(jour), set.add(jour));
+                        break;
+                    case 2:
+                        assertEquals(reference.remove(jour), set.remove(jour));
+                        break;
+                    case 3:
+                        set.removeIf(date -> date.isAfter(jour) && date.isBefore(jour.plusDays(20)));
+                        reference.removeIf(date -> date.isAfter(jour) && date.isBefore(jour.plusDays(20)));
+                        break;
+                    default:
+                        assertEquals(reference.contains(jour), set.contains(jour));
+                }
+
+                // THEN (Assert) : Même taille, même dernier jour, même contenu dans le même ordre
+                assertEquals(reference.size(), set.size());
+                assertEquals(reference.isEmpty() ? null : reference.last(), set.dernier());
+                assertEquals(reference.isEmpty() ? Long.MIN_VALUE : reference.last().toEpochDay(),
+                        set.dernierJourEpoch());
+                assertEquals(new ArrayList<>(reference), new ArrayList<>(set));
+            }
+            assertEquals(reference, set);
+            assertEquals(set, reference);
+            assertEquals(reference.hashCode(), set.hashCode());
+        }
+    }
+
+    @Test
+    @DisplayName("Un jour plus ancien ramène le set à son année de congés si possible")
+    void testRebase() {
+        // GIVEN (Arrange) : Le jour toléré de l'année de congés 2022 ajouté en premier
+        AnneeDeCongesBitmapSet set = new AnneeDeCongesBitmapSet();
+        set.add(LocalDate.of(2023, 6, 1));
+
+        // WHEN (Act) : On ajoute les jours qui le précèdent
+        set.add(LocalDate.of(2023, 5, 31));
+        set.add(LocalDate.of(2023, 5, 30));
+
+        // THEN (Assert) : Le set est sur l'année de congés 2022, dans l'ordre chronologique
+        assertEquals(LocalDate.of(2022, 6, 1), set.getPremierJourAnneeDeConges());
+        assertEquals(LocalDate.of(2023, 6, 1), set.dernier());
+        LinkedHashSet<LocalDate> attendu = new LinkedHashSet<>();
+        attendu.add(LocalDate.of(2023, 5, 30));
+        attendu.add(LocalDate.of(2023, 5, 31));
+        attendu.add(LocalDate.of(2023, 6, 1));
+        assertEquals(new ArrayList<>(attendu), new ArrayList<>(set));
+    }
+
+    @Test
+    @DisplayName("Vidé, le set accepte une autre année de congés")
+    void testClear() {
+        AnneeDeCongesBitmapSet set = new AnneeDeCongesBitmapSet();
+        set.add(LocalDate.of(2023, 7, 3));
+        set.clear();
+        assertNull(set.dernier());
+        assertTrue(set.add(LocalDate.of(2030, 1, 2)));
+        assertEquals(LocalDate.of(2029, 6, 1), set.getPremierJourAnneeDeConges());
+    }
+}
@@ -0,0 +1,65 @@
+package com.ipi.jva350.model.unit_test;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.ipi.jva350.model.CalendrierJoursFeries;
+import com.ipi.jva350.model.Entreprise;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CalendrierJoursFeriesTest {
+
+    @Test
+    @DisplayName("Le calendrier précalculé donne les mêmes réponses que la liste des jours fériés")
+    void testMemesReponsesQueJoursFeries() {
+        for (int annee = 2012; annee <= 2035; annee++) {
+            List<LocalDate> joursFeries = Entreprise.joursFeries(LocalDate.of(annee, 1, 1));
+            for (LocalDate jour = LocalDate.of(annee, 1, 1); jour.getYear() == annee; jour = jour.plusDays(1)) {
+                // WHEN (Act) : Test du jour via le calendrier
+                boolean estFerie = CalendrierJoursFeries.estJourFerie(jour);
+
+                // THEN (Assert) : Même réponse que la recherche dans la liste
+                assertEquals(joursFeries.contains(jour), estFerie, "Jour " + jour);
+                assertEquals(estFerie, Entreprise.estJourFerie(jour), "Jour " + jour);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Lectures concurrentes pendant la construction paresseuse des années")
+    void testLecturesConcurrentes() throws Exception {
+        // GIVEN (Arrange) : Plusieurs threads interrogeant les mêmes années en même temps
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<Integer>> taches = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            taches.add(() -> {
+                int nbFeries = 0;
+                for (int annee = 2012; annee <= 2035; annee++) {
+                    for (int jour = 1; jour <= 365; jour++) {
+                        nbFeries += CalendrierJoursFeries.estJourFerie(annee, jour) ? 1 : 0;
+                    }
+                }
+                return nbFeries;
+            });
+        }
+
+        // WHEN (Act) : Exécution concurrente
+        List<Future<Integer>> resultats = executor.invokeAll(taches);
+        executor.shutdown();
+
+        // THEN (Assert) : Tous les threads voient le même nombre de jours fériés
+        int attendu = resultats.get(0).get();
+        for (Future<Integer> resultat : resultats) {
+            assertEquals(attendu, resultat.get());
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.ipi.jva350.model.unit_test;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.ipi.jva350.model.Calendrier;
+import com.ipi.jva350.model.Entreprise;
+import com.ipi.jva350.model.SalarieAideADomicile;
+
+import java.lang.management.ManagementFactory;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class CalendrierTest {
+
+    @Test
+    @DisplayName("Le noyau calendaire correspond à java.time jour par jour de 1583 à 2600")
+    void testCorrespondanceAvecJavaTime() {
+        for (LocalDate date = LocalDate.of(1583, 1, 1); date.getYear() <= 2600; date = date.plusDays(1)) {
+            int jourEpoch = (int) date.toEpochDay();
+            // THEN (Assert) : Mêmes composantes et même jour de la semaine
+            assertEquals(jourEpoch, Calendrier.jourEpoch(date.getYear(), date.getMonthValue(), date.getDayOfMonth()));
+            assertEquals(date.getYear(), Calendrier.annee(jourEpoch));
+            assertEquals(date.getMonthValue(), Calendrier.mois(jourEpoch));
+            assertEquals(date.getDayOfMonth(), Calendrier.jourDuMois(jourEpoch));
+            assertEquals(date.getDayOfYear(), Calendrier.jourDeLAnnee(jourEpoch));
+            assertEquals(date.getDayOfWeek().getValue(), Calendrier.jourDeLaSemaine(jourEpoch));
+            assertEquals(date.getDayOfWeek().getValue() <= DayOfWeek.FRIDAY.getValue(),
+                    Calendrier.estHabituellementTravaille(jourEpoch));
+            assertEquals(Entreprise.getPremierJourAnneeDeConges(date).toEpochDay(),
+                    Calendrier.premierJourAnneeDeConges(jourEpoch));
+            assertEquals(Entreprise.getPremierJourAnneeDeConges(date).plusYears(1).minusDays(1).toEpochDay(),
+                    Calendrier.dernierJourAnneeDeConges(jourEpoch));
+            int anneeMois = Calendrier.anneeMois(jourEpoch);
+            assertEquals(date.getYear(), Calendrier.anneeDeLAnneeMois(anneeMois));
+            assertEquals(date.getMonthValue(), Calendrier.moisDeLAnneeMois(anneeMois));
+        }
+    }
+
+    @Test
+    @DisplayName("Années bissextiles du calendrier grégorien")
+    void testEstBissextile() {
+        for (int annee = 1583; annee <= 9999; annee++) {
+            assertEquals(Year.isLeap(annee), Calendrier.estBissextile(annee), "Année " + annee);
+            assertEquals(Year.isLeap(annee), Entreprise.bissextile(annee), "Année " + annee);
+        }
+    }
+
+    @Test
+    @DisplayName("Les chemins chauds du calendrier n'allouent aucun objet")
+    void testAucuneAllocation() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+
+        // GIVEN (Arrange) : Un salarié et des dates préparés, calendriers préchauffés
+        SalarieAideADomicile salarie = new SalarieAideADomicile();
+        salarie.setMoisEnCours(LocalDate.of(2023, 6, 1));
+        LocalDate debut = LocalDate.of(2023, 7, 10);
+        LocalDate fin = LocalDate.of(2023, 7, 21);
+        long somme = appelleCheminsChauds(salarie, debut, fin, 20_000);
+
+        // WHEN (Act) : Nouvelle série d'appels, en mesurant les octets alloués par le thread
+        long threadId = Thread.currentThread().getId();
+        long avant = threadMXBean.getThreadAllocatedBytes(threadId);
+        somme += appelleCheminsChauds(salarie, debut, fin, 100_000);
+        long alloue = threadMXBean.getThreadAllocatedBytes(threadId) - avant;
+
+        // THEN (Assert) : Seul le bruit de la mesure (compilation, TLAB) est toléré,
+        // un seul objet par appel représenterait déjà plus de 1,6 Mo
+        assertTrue(somme > 0);
+        assertTrue(alloue < 16 * 1024, alloue + " octets alloués pour 100000 appels");
+    }
+
+    @Test
+    @DisplayName("Avec des congés déjà pris, le décompte n'alloue rien et le calcul des jours que son résultat")
+    void testAllocationAvecCongesPris() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+
+        // GIVEN (Arrange) : Un salarié ayant déjà posé du 10 au 14 juillet, une plage qui chevauche son dernier
+        // jour de congé (premier jour décalé) et une qui le suit, calendriers préchauffés.
+        // calculeJoursDeCongeDecomptesPourPlage et valideConge renvoient des LocalDate : exclus de la mesure
+        SalarieAideADomicile salarie = new SalarieAideADomicile.Builder("Salarie", LocalDate.of(2020, 1, 1),
+                LocalDate.of(2023, 6, 1)).build();
+        salarie.getCongesPayesPris().addAll(Arrays.asList(LocalDate.of(2023, 7, 10), LocalDate.of(2023, 7, 11),
+                LocalDate.of(2023, 7, 12), LocalDate.of(2023, 7, 13)));
+        LocalDate chevauche = LocalDate.of(2023, 7, 13);
+        LocalDate suit = LocalDate.of(2023, 7, 17);
+        LocalDate fin = LocalDate.of(2023, 7, 28);
+        int nbJours = salarie.calculeJoursEpochDeCongeDecomptesPourPlage(chevauche, fin).length
+                + salarie.calculeJoursEpochDeCongeDecomptesPourPlage(suit, fin).length;
+        assertEquals(salarie.calculeJoursDeCongeDecomptesPourPlage(chevauche, fin).size()
+                + salarie.calculeJoursDeCongeDecomptesPourPlage(suit, fin).size(), nbJours);
+        long somme = decompteConges(salarie, chevauche, suit, fin, 20_000)
+                + calculeConges(salarie, chevauche, suit, fin, 20_000);
+
+        // WHEN (Act) : Nouvelles séries d'appels, en mesurant les octets alloués par le thread
+        long threadId = Thread.currentThread().getId();
+        long avant = threadMXBean.getThreadAllocatedBytes(threadId);
+        somme += decompteConges(salarie, chevauche, suit, fin, 100_000);
+        long alloueDecompte = threadMXBean.getThreadAllocatedBytes(threadId) - avant;
+        avant = threadMXBean.getThreadAllocatedBytes(threadId);
+        somme += calculeConges(salarie, chevauche, suit, fin, 100_000);
+        long alloueCalcul = threadMXBean.getThreadAllocatedBytes(threadId) - avant;
+
+        // THEN (Assert) : Rien pour le décompte, au plus les deux tableaux renvoyés (en-tête de 24 octets au plus)
+        // par appel pour le calcul, au bruit de la mesure près
+        assertTrue(somme > 0);
+        assertTrue(alloueDecompte < 16 * 1024, alloueDecompte + " octets alloués pour 100000 décomptes");
+        long tableaux = 100_000L * (2 * 24 + 4 * nbJours);
+        assertTrue(alloueCalcul < tableaux + 16 * 1024,
+                alloueCalcul + " octets alloués pour 100000 calculs, " + tableaux + " pour leurs résultats");
+    }
+
+    private static long decompteConges(SalarieAideADomicile salarie, LocalDate chevauche, LocalDate suit,
+            LocalDate fin, int nbAppels) {
+        long somme = 0;
+        for (int i = 0; i < nbAppels; i++) {
+            somme += salarie.compteJoursDeCongeDecomptesPourPlage(chevauche, fin)
+                    + salarie.compteJoursDeCongeDecomptesPourPlage(suit, fin);
+        }
+        return somme;
+    }
+
+    private static long calculeConges(SalarieAideADomicile salarie, LocalDate chevauche, LocalDate suit,
+            LocalDate fin, int nbAppels) {
+        long somme = 0;
+        for (int i = 0; i < nbAppels; i++) {
+            somme += salarie.calculeJoursEpochDeCongeDecomptesPourPlage(chevauche, fin).length
+                    + salarie.calculeJoursEpochDeCongeDecomptesPourPlage(suit, fin).length;
+        }
+        return somme;
+    }
+
+    private static long appelleCheminsChauds(SalarieAideADomicile salarie, LocalDate debut, LocalDate fin,
+            int nbAppels) {
+        long somme = 0;
+        for (int i = 0; i < nbAppels; i++) {
+            int jourEpoch = 19000 + (i % 3650);
+            somme += Calendrier.annee(jourEpoch) + Calendrier.anneeMois(jourEpoch)
+                    + Calendrier.jourDeLaSemaine(jourEpoch);
+            somme += Calendrier.estBissextile(1900 + i % 500) ? 1 : 0;
+            somme += Calendrier.premierJourAnneeDeConges(jourEpoch) - Calendrier.dernierJourAnneeDeConges(jourEpoch);
+            somme += Calendrier.estJourFerie(jourEpoch) ? 1 : 0;
+            somme += Calendrier.estJourOuvrable(jourEpoch) && Calendrier.estHabituellementTravaille(jourEpoch) ? 1 : 0;
+            somme += Entreprise.estJourFerie(debut) ? 1 : 0;
+            somme += salarie.estDansPlage(fin) ? 1 : 0;
+            somme += salarie.compteJoursDeCongeDecomptesPourPlage(debut, fin);
+        }
+        return somme;
+    }
+}
@@ -0,0 +1,85 @@
+package com.ipi.jva350.model.unit_test;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import com.ipi.jva350.model.Entreprise;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EntrepriseDatePaqueTest {
+
+    // Ancienne table en dur des dates de Pâques, servant de référence
+    static Stream<Arguments> datesPaqueProvider() {
+        return Stream.of(
+            Arguments.of(LocalDate.of(2012, 4, 8)),
+            Arguments.of(LocalDate.of(2013, 3, 31)),
+            Arguments.of(LocalDate.of(2014, 4, 20)),
+            Arguments.of(LocalDate.of(2015, 4, 5)),
+            Arguments.of(LocalDate.of(2016, 3, 27)),
+            Arguments.of(LocalDate.of(2017, 4, 16)),
+            Arguments.of(LocalDate.of(2018, 4, 1)),
+            Arguments.of(LocalDate.of(2019, 4, 21)),
+            Arguments.of(LocalDate.of(2020, 4, 12)),
+            Arguments.of(LocalDate.of(2021, 4, 4)),
+            Arguments.of(LocalDate.of(2022, 4, 17)),
+            Arguments.of(LocalDate.of(2023, 4, 9)),
+            Arguments.of(LocalDate.of(2024, 3, 31)),
+            Arguments.of(LocalDate.of(2025, 4, 20)),
+            Arguments.of(LocalDate.of(2026, 4, 5)),
+            Arguments.of(LocalDate.of(2027, 3, 28)),
+            Arguments.of(LocalDate.of(2028, 4, 16)),
+            Arguments.of(LocalDate.of(2029, 4, 1)),
+            Arguments.of(LocalDate.of(2030, 4, 21)),
+            Arguments.of(LocalDate.of(2031, 4, 13)),
+            Arguments.of(LocalDate.of(2032, 3, 28)),
+            Arguments.of(LocalDate.of(2033, 4, 17)),
+            Arguments.of(LocalDate.of(2034, 4, 9)),
+            Arguments.of(LocalDate.of(2035, 3, 25))
+        );
+    }
+
+    @ParameterizedTest(name = "Pâques {0}")
+    @MethodSource("datesPaqueProvider")
+    @DisplayName("La date de Pâques calculée correspond à l'ancienne table")
+    void testDatePaqueCommeLaTable(LocalDate datePaqueAttendue) {
+        // WHEN (Act) : Calcul de la date de Pâques de l'année
+        LocalDate datePaque = Entreprise.datePaque(datePaqueAttendue.getYear());
+
+        // THEN (Assert) : Même date que dans la table
+        assertEquals(datePaqueAttendue, datePaque);
+    }
+
+    @Test
+    @DisplayName("Pâques est toujours un dimanche entre le 22 mars et le 25 avril, et reste en cache")
+    void testDatePaqueToutesAnnees() {
+        for (int annee = 1583; annee <= 4099; annee++) {
+            // WHEN (Act) : Calcul de la date de Pâques
+            LocalDate datePaque = Entreprise.datePaque(annee);
+
+            // THEN (Assert) : Bornes du comput grégorien
+            assertEquals(DayOfWeek.SUNDAY, datePaque.getDayOfWeek(), "Pâques " + annee);
+            assertTrue(!datePaque.isBefore(LocalDate.of(annee, 3, 22))
+                    && !datePaque.isAfter(LocalDate.of(annee, 4, 25)), "Pâques " + annee);
+            assertSame(datePaque, Entreprise.datePaque(annee), "Pâques " + annee + " devrait être en cache");
+        }
+    }
+
+    @Test
+    @DisplayName("Les jours fériés sont disponibles hors de l'ancienne table")
+    void testJoursFeriesHorsTable() {
+        // WHEN & THEN (Act & Assert) : Lundi de Pâques 1990 (16 avril) et 2100 (29 mars)
+        assertTrue(Entreprise.estJourFerie(LocalDate.of(1990, 4, 16)));
+        assertTrue(Entreprise.estJourFerie(LocalDate.of(2100, 3, 29)));
+        assertEquals(11, Entreprise.joursFeries(LocalDate.of(2050, 1, 1)).size());
+    }
+}
@@ -0,0 +1,106 @@
+package com.ipi.jva350.model.unit_test;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.ipi.jva350.model.Entreprise;
+import com.ipi.jva350.model.IndexJoursOuvrables;
+import com.ipi.jva350.model.SalarieAideADomicile;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IndexJoursOuvrablesTest {
+
+    @Test
+    @DisplayName("Le nombre de jours ouvrables correspond au parcours jour par jour")
+    void testCompteJoursOuvrables() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            // GIVEN (Arrange) : Une plage aléatoire pouvant couvrir plusieurs années
+            LocalDate debut = LocalDate.of(1990, 1, 1).plusDays(random.nextInt(70 * 365));
+            LocalDate fin = debut.plusDays(random.nextInt(3 * 366));
+            int attendu = 0;
+            for (LocalDate jour = debut; !jour.isAfter(fin); jour = jour.plusDays(1)) {
+                if (jour.getDayOfWeek() != DayOfWeek.SUNDAY && !Entreprise.estJourFerie(jour)) {
+                    attendu++;
+                }
+            }
+
+            // WHEN (Act) : Comptage via l'index
+            int nb = IndexJoursOuvrables.compteJoursOuvrables((int) debut.toEpochDay(), (int) fin.toEpochDay());
+
+            // THEN (Assert) : Même nombre
+            assertEquals(attendu, nb, "Plage " + debut + " - " + fin);
+        }
+    }
+
+    /**
+     * Implémentation de référence, jour par jour sur des LocalDate, de
+     * SalarieAideADomicile.calculeJoursDeCongeDecomptesPourPlage avant son passage sur l'index.
+     */
+    private static Set<LocalDate> calculeJoursDeCongeDecomptesReference(Set<LocalDate> congesPayesPris,
+            LocalDate dateDebut, LocalDate dateFin) {
+        LinkedHashSet<LocalDate> joursDeCongeDecomptes = new LinkedHashSet<>();
+        if (dateDebut.isAfter(dateFin)) {
+            return joursDeCongeDecomptes;
+        }
+        LocalDate dernierJourDeCongePris = congesPayesPris.isEmpty() ? null
+                : congesPayesPris.stream().reduce((first, second) -> second).get();
+        dateDebut = (dernierJourDeCongePris == null || dernierJourDeCongePris.isAfter(dateDebut)) ? dateDebut
+                : dateDebut.plusDays(1);
+        if (dateDebut.getDayOfWeek() != DayOfWeek.SUNDAY && !Entreprise.estJourFerie(dateDebut)
+                && estHabituellementTravaille(dateDebut)) {
+            joursDeCongeDecomptes.add(dateDebut);
+        }
+        for (LocalDate jour = dateDebut.plusDays(1); jour.minusDays(1).isBefore(dateFin)
+                || (!estHabituellementTravaille(jour) && jour.getDayOfWeek() != DayOfWeek.SUNDAY
+                        && !Entreprise.estJourFerie(jour)); jour = jour.plusDays(1)) {
+            if (jour.getDayOfWeek() != DayOfWeek.SUNDAY && !Entreprise.estJourFerie(jour)) {
+                joursDeCongeDecomptes.add(jour);
+            }
+        }
+        return joursDeCongeDecomptes;
+    }
+
+    private static boolean estHabituellementTravaille(LocalDate jour) {
+        return jour.getDayOfWeek().getValue() <= DayOfWeek.FRIDAY.getValue();
+    }
+
+    @Test
+    @DisplayName("Comparaison avec l'implémentation jour par jour sur plusieurs décennies de plages aléatoires")
+    void testDifferentielJoursDeCongeDecomptes() {
+        Random random = new Random(350);
+        for (int i = 0; i < 20000; i++) {
+            // GIVEN (Arrange) : Une plage aléatoire entre 1990 et 2060, éventuellement inversée,
+            // et un éventuel dernier jour de congé déjà pris autour de son début
+            LocalDate debut = LocalDate.of(1990, 1, 1).plusDays(random.nextInt(70 * 365));
+            LocalDate fin = debut.plusDays(random.nextInt(60) - 5L);
+            SalarieAideADomicile salarie = new SalarieAideADomicile();
+            Set<LocalDate> congesPayesPris = new LinkedHashSet<>();
+            if (random.nextBoolean()) {
+                congesPayesPris.add(debut.minusDays(20));
+                congesPayesPris.add(debut.plusDays(random.nextInt(7) - 3L));
+            }
+            salarie.setCongesPayesPris(congesPayesPris);
+
+            // WHEN (Act) : Calcul par l'implémentation de référence et par l'index
+            Set<LocalDate> joursDecomptes = calculeJoursDeCongeDecomptesReference(congesPayesPris, debut, fin);
+            int nbJoursDecomptes = salarie.compteJoursDeCongeDecomptesPourPlage(debut, fin);
+            int[] joursEpochDecomptes = salarie.calculeJoursEpochDeCongeDecomptesPourPlage(debut, fin);
+
+            // THEN (Assert) : Mêmes jours, dans le même ordre
+            String plage = "Plage " + debut + " - " + fin + " congés pris " + congesPayesPris;
+            assertEquals(joursDecomptes.size(), nbJoursDecomptes, plage);
+            assertArrayEquals(joursDecomptes.stream().mapToInt(d -> (int) d.toEpochDay()).toArray(),
+                    joursEpochDecomptes, plage);
+            assertEquals(joursDecomptes, salarie.calculeJoursDeCongeDecomptesPourPlage(debut, fin), plage);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.ipi.jva350.model.unit_test;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.ipi.jva350.model.LazyLocalDateSet;
+import com.ipi.jva350.model.LinkedHashSetBinaryConverter;
+import com.ipi.jva350.model.LinkedHashSetStringConverter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LinkedHashSetBinaryConverterTest {
+
+    private final LinkedHashSetBinaryConverter converter = new LinkedHashSetBinaryConverter();
+
+    @Test
+    @DisplayName("Aller-retour de sets de dates quelconques")
+    void testAllerRetour() {
+        Random random = new Random(7);
+        for (int essai = 0; essai < 2000; essai++) {
+            // GIVEN (Arrange) : Des dates dans le désordre, parfois très éloignées
+            LinkedHashSet<LocalDate> dates = new LinkedHashSet<>();
+            for (int i = random.nextInt(60); i > 0; i--) {
+                dates.add(LocalDate.ofEpochDay(random.nextInt(3) == 0
+                        ? random.nextInt(2_000_000) - 1_000_000 : 19000 + random.nextInt(400)));
+            }
+
+            // WHEN (Act) : On encode puis décode
+            Set<LocalDate> relues = converter.convertToEntityAttribute(converter.convertToDatabaseColumn(dates));
+
+            // THEN (Assert) : Mêmes dates, dans l'ordre chronologique si elles tiennent dans une année de congés,
+            // sinon dans leur ordre d'origine
+            List<LocalDate> ordreAttendu = new ArrayList<>(dates);
+            if (!dates.isEmpty()) {
+                LocalDate min = Collections.min(dates);
+                LocalDate premierJourAnneeDeConges = LocalDate.of(min.getMonthValue() >= 6
+                        ? min.getYear() : min.getYear() - 1, 6, 1);
+                // bitmap de 367 jours depuis le 1er juin
+                if (Collections.max(dates).toEpochDay() - premierJourAnneeDeConges.toEpochDay() < 367) {
+                    Collections.sort(ordreAttendu);
+                }
+            }
+            assertEquals(dates, relues);
+            assertEquals(ordreAttendu, new ArrayList<>(relues));
+        }
+    }
+
+    @Test
+    @DisplayName("Set vide et null")
+    void testVideEtNull() {
+        assertTrue(converter.convertToEntityAttribute(converter.convertToDatabaseColumn(new LinkedHashSet<>())).isEmpty());
+        assertNull(converter.convertToDatabaseColumn(null));
+        assertNull(converter.convertToEntityAttribute(null));
+    }
+
+    @Test
+    @DisplayName("Relit l'ancien format texte")
+    void testRelitFormatTexte() {
+        // GIVEN (Arrange) : Des données écrites par l'ancien converter
+        LinkedHashSet<LocalDate> dates = new LinkedHashSet<>();
+        dates.add(LocalDate.of(2023, 7, 3));
+        dates.add(LocalDate.of(2023, 7, 4));
+        dates.add(LocalDate.of(2023, 6, 26));
+        byte[] texte = new LinkedHashSetStringConverter().convertToDatabaseColumn(dates)
+                .getBytes(StandardCharsets.US_ASCII);
+
+        // WHEN (Act) : On les relit
+        Set<LocalDate> relues = converter.convertToEntityAttribute(texte);
+
+        // THEN (Assert) : Mêmes dates dans l'ordre chronologique, vide si texte vide
+        assertEquals(Arrays.asList(LocalDate.of(2023, 6, 26), LocalDate.of(2023, 7, 3), LocalDate.of(2023, 7, 4)),
+                new ArrayList<>(relues));
+        assertTrue(converter.convertToEntityAttribute(new byte[0]).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Une année de congés tient en un ordre de grandeur de moins que le texte")
+    void testTaille() {
+        // GIVEN (Arrange) : 25 jours ouvrés de congés
+        LinkedHashSet<LocalDate> dates = new LinkedHashSet<>();
+        for (LocalDate jour = LocalDate.of(2023, 7, 3); dates.size() < 25; jour = jour.plusDays(1)) {
+            if (jour.getDayOfWeek().getValue() < 6) {
+                dates.add(jour);
+            }
+        }
+
+        // WHEN (Act) : On encode dans les deux formats
+        int tailleBinaire = converter.convertToDatabaseColumn(dates).length;
+        int tailleTexte = new LinkedHashSetStringConverter().convertToDatabaseColumn(dates).length();
+
+        // THEN (Assert) : Un octet par jour, plus l'entête
+        assertEquals(1 + 1 + 3 + 24, tailleBinaire);
+        assertTrue(tailleBinaire * 9 < tailleTexte, tailleBinaire + " vs " + tailleTexte);
+    }
+
+    @Test
+    @DisplayName("Données tronquées ou de version inconnue")
+    void testDonneesInvalides() {
+        LinkedHashSet<LocalDate> dates = new LinkedHashSet<>();
+        dates.add(LocalDate.of(2023, 7, 3));
+        byte[] donnees = converter.convertToDatabaseColumn(dates);
+        List<byte[]> invalides = new ArrayList<>();
+        invalides.add(Arrays.copyOf(donnees, donnees.length - 1));
+        invalides.add(new byte[]{2, 0});
+        for (byte[] invalide : invalides) {
+            Set<LocalDate> relues = converter.convertToEntityAttribute(invalide);
+            assertThrows(IllegalArgumentException.class, () -> relues.contains(LocalDate.of(2023, 7, 3)));
+        }
+    }
+
+    @Test
+    @DisplayName("Le set chargé n'est décodé qu'au premier accès à son contenu")
+    void testDecodageParesseux() {
+        // GIVEN (Arrange) : Un set persisté puis rechargé deux fois (entité et instantané Hibernate)
+        LinkedHashSet<LocalDate> dates = new LinkedHashSet<>();
+        dates.add(LocalDate.of(2023, 7, 3));
+        dates.add(LocalDate.of(2023, 7, 4));
+        byte[] donnees = converter.convertToDatabaseColumn(dates);
+        LazyLocalDateSet charge = (LazyLocalDateSet) converter.convertToEntityAttribute(donnees);
+        LazyLocalDateSet instantane = (LazyLocalDateSet) converter.convertToEntityAttribute(donnees);
+
+        // WHEN (Act) : On n'en lit que la taille, on le compare et on le réécrit
+        int taille = charge.size();
+        boolean egaux = charge.equals(instantane);
+        byte[] reecrites = converter.convertToDatabaseColumn(charge);
+
+        // THEN (Assert) : Rien n'est décodé et les mêmes octets sont réécrits
+        assertEquals(2, taille);
+        assertTrue(egaux);
+        assertSame(donnees, reecrites);
+        assertTrue(charge.estNonDecode());
+        assertTrue(instantane.estNonDecode());
+
+        // WHEN (Act) : On modifie le set
+        charge.add(LocalDate.of(2023, 7, 5));
+
+        // THEN (Assert) : Il est décodé, différent de l'instantané et réencodé avec la nouvelle date
+        assertFalse(charge.estNonDecode());
+        assertNotEquals(instantane, charge);
+        assertEquals(Arrays.asList(LocalDate.of(2023, 7, 3), LocalDate.of(2023, 7, 4), LocalDate.of(2023, 7, 5)),
+                new ArrayList<>(converter.convertToEntityAttribute(converter.convertToDatabaseColumn(charge))));
+    }
+
+    @Test
+    @DisplayName("Un set non décodé de l'ancien format texte est réécrit en binaire")
+    void testMigrationSansAcces() {
+        byte[] texte = "2023-07-03;2023-07-04".getBytes(StandardCharsets.US_ASCII);
+        byte[] reecrites = converter.convertToDatabaseColumn(converter.convertToEntityAttribute(texte));
+        assertEquals(LinkedHashSetBinaryConverter.VERSION, reecrites[0]);
+        assertEquals(Arrays.asList(LocalDate.of(2023, 7, 3), LocalDate.of(2023, 7, 4)),
+                new ArrayList<>(converter.convertToEntityAttribute(reecrites)));
+    }
+}
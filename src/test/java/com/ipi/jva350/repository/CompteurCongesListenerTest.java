@@ -0,0 +1,104 @@
+package com.ipi.jva350.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ipi.jva350.model.SalarieAideADomicile;
+
+@SpringBootTest
+class CompteurCongesListenerTest {
+
+    @Autowired
+    private SalarieAideADomicileRepository salarieRepo;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        // Nettoyer la base de données avant chaque test
+        salarieRepo.deleteAll();
+        salarieRepo.reconcilieCompteurConges();
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Deux transactions qui écrivent des salariés différents ne s'attendent pas aux compteurs")
+    void testEcrituresConcurrentesSansAttente() throws Exception {
+        // GIVEN (Arrange) : Deux salariés, et une transaction qui a écrit le premier (donc incrémenté sa ligne des
+        // compteurs) sans être encore validée
+        Long id1 = salarieRepo.save(salarie("Salarie1")).getId();
+        Long id2 = salarieRepo.save(salarie("Salarie2")).getId();
+        CountDownLatch ecrit = new CountDownLatch(1);
+        CountDownLatch valide = new CountDownLatch(1);
+        Future<Integer> premiere = executor.submit(() -> transactionTemplate.execute(statut -> {
+            modifieCongesPayesPris(id1, 3);
+            ecrit.countDown();
+            attend(valide);
+            return CompteurCongesListener.ligne();
+        }));
+        assertTrue(ecrit.await(10, TimeUnit.SECONDS));
+
+        // WHEN (Act) : Une autre transaction écrit le second pendant ce temps
+        Future<Integer> seconde = executor.submit(() -> transactionTemplate.execute(statut -> {
+            modifieCongesPayesPris(id2, 4);
+            return CompteurCongesListener.ligne();
+        }));
+
+        // THEN (Assert) : Elle est validée sans attendre la première (sur une autre ligne), les deux sont comptées
+        int ligneSeconde = seconde.get(10, TimeUnit.SECONDS);
+        assertFalse(premiere.isDone());
+        valide.countDown();
+        assertNotEquals(premiere.get(10, TimeUnit.SECONDS), ligneSeconde);
+        assertEquals(7d / 50, salarieRepo.partCongesPrisTotauxAnneeNMoins1());
+        assertEquals(salarieRepo.reconcilieCompteurConges().getPartCongesPrisTotauxAnneeNMoins1(),
+                salarieRepo.partCongesPrisTotauxAnneeNMoins1());
+    }
+
+    private void modifieCongesPayesPris(Long id, double congesPayesPris) {
+        SalarieAideADomicile salarie = salarieRepo.findById(id).orElseThrow(IllegalStateException::new);
+        salarie.setCongesPayesPrisAnneeNMoins1(congesPayesPris);
+        // écrit tout de suite, pour incrémenter les compteurs avant la suite de la transaction
+        salarieRepo.saveAndFlush(salarie);
+    }
+
+    private static void attend(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static SalarieAideADomicile salarie(String nom) {
+        return new SalarieAideADomicile.Builder(nom, LocalDate.of(2015, 1, 1), LocalDate.of(2022, 12, 1))
+                .joursTravaillesAnneeNMoins1(220)
+                .congesPayesAcquisAnneeNMoins1(25)
+                .build();
+    }
+}
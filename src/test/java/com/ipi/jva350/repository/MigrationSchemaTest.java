@@ -0,0 +1,148 @@
+package com.ipi.jva350.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.ipi.jva350.model.SalarieAideADomicile;
+
+@SpringBootTest
+class MigrationSchemaTest {
+
+    @Autowired
+    private MigrationSchema migrationSchema;
+
+    @Autowired
+    private SalarieAideADomicileRepository salarieRepo;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        salarieRepo.deleteAll();
+        salarieRepo.reconcilieCompteurConges();
+    }
+
+    @Test
+    @DisplayName("La séquence des id est avancée au-delà des id déjà en base, une seule fois")
+    void testAvanceSequencesApresIdsExistants() {
+        // GIVEN (Arrange) : Un salarié dont l'id a été donné par l'ancienne séquence, bien plus loin que la nouvelle
+        SalarieAideADomicile salarie = new SalarieAideADomicile();
+        salarie.setNom("Ancien");
+        salarie.setMoisDebutContrat(LocalDate.of(2022, 1, 1));
+        salarie.setMoisEnCours(LocalDate.of(2022, 5, 1));
+        salarie = salarieRepo.save(salarie);
+        jdbcTemplate.update("update " + SalarieAideADomicile.TABLE + " set id = 100000 where id = ?", salarie.getId());
+
+        // WHEN (Act)
+        int nbAvancees = migrationSchema.avanceSequences();
+
+        // THEN (Assert) : Le prochain bloc d'id commence après l'id existant, et rien ne bouge au démarrage suivant
+        assertEquals(1, nbAvancees);
+        Long prochaine = jdbcTemplate.queryForObject("select base_value from information_schema.sequences"
+                + " where lower(sequence_name) = 'salarie_aideadomicile_seq'", Long.class);
+        assertEquals(100000L + SalarieAideADomicile.TAILLE_BLOC_ID, prochaine);
+        assertTrue(prochaine - SalarieAideADomicile.TAILLE_BLOC_ID + 1 > 100000L,
+                "Le premier id du bloc suivant devrait dépasser l'id existant");
+        assertEquals(0, migrationSchema.avanceSequences());
+    }
+
+    @Test
+    @DisplayName("Les salariés sans version, d'avant la colonne, passent à la version 0 et redeviennent modifiables")
+    void testInitialiseVersionsNull() {
+        // GIVEN (Arrange) : Un salarié de version null, dans une colonne encore nullable comme sur une base existante
+        SalarieAideADomicile salarie = new SalarieAideADomicile();
+        salarie.setNom("Sans version");
+        salarie.setMoisDebutContrat(LocalDate.of(2022, 1, 1));
+        salarie.setMoisEnCours(LocalDate.of(2022, 5, 1));
+        Long id = salarieRepo.save(salarie).getId();
+        jdbcTemplate.execute("alter table " + SalarieAideADomicile.TABLE + " alter column version set null");
+        try {
+            jdbcTemplate.update("update " + SalarieAideADomicile.TABLE + " set version = null where id = ?", id);
+
+            // WHEN (Act)
+            int nbInitialisees = migrationSchema.initialiseVersions();
+
+            // THEN (Assert) : Version 0, puis incrémentée par une modification
+            assertEquals(1, nbInitialisees);
+            SalarieAideADomicile migre = salarieRepo.findById(id).orElseThrow(IllegalStateException::new);
+            assertEquals(0L, migre.getVersion());
+            migre.setMoisEnCours(LocalDate.of(2022, 6, 1));
+            assertEquals(1L, salarieRepo.save(migre).getVersion());
+            assertEquals(0, migrationSchema.initialiseVersions());
+        } finally {
+            jdbcTemplate.update("update " + SalarieAideADomicile.TABLE + " set version = 0 where version is null");
+            jdbcTemplate.execute("alter table " + SalarieAideADomicile.TABLE + " alter column version set not null");
+        }
+    }
+
+    @Test
+    @DisplayName("Des noms en double, qui empêchent l'index unique, font échouer la migration en les listant")
+    void testVerifieUniciteNomsAvecDoublons() {
+        // GIVEN (Arrange) : Deux salariés de même nom, dans une base sans l'index unique (création échouée)
+        Long id1 = salarieRepo.save(salarie("Salarie1")).getId();
+        Long id2 = salarieRepo.save(salarie("Salarie2")).getId();
+        supprimeContraintesUniques();
+        try {
+            jdbcTemplate.update("update " + SalarieAideADomicile.TABLE + " set nom = 'Doublon' where id in (?, ?)",
+                    id1, id2);
+
+            // WHEN (Act)
+            IllegalStateException erreur = assertThrows(IllegalStateException.class,
+                    () -> migrationSchema.verifieUniciteNoms());
+
+            // THEN (Assert) : Le doublon est cité, l'index n'est pas créé
+            assertTrue(erreur.getMessage().contains("[Doublon]"), erreur.getMessage());
+            assertFalse(migrationSchema.indexUniqueNomExiste());
+        } finally {
+            jdbcTemplate.update("update " + SalarieAideADomicile.TABLE + " set nom = 'Salarie2' where id = ?", id2);
+            migrationSchema.verifieUniciteNoms();
+        }
+    }
+
+    @Test
+    @DisplayName("Sans doublon, l'index unique manquant sur le nom est créé, une seule fois")
+    void testVerifieUniciteNomsCreeLIndex() {
+        // GIVEN (Arrange) : Une base sans l'index unique, sans doublon
+        salarieRepo.save(salarie("Salarie1"));
+        supprimeContraintesUniques();
+        assertFalse(migrationSchema.indexUniqueNomExiste());
+
+        // WHEN (Act)
+        boolean cree = migrationSchema.verifieUniciteNoms();
+
+        // THEN (Assert) : Créé, puis rien à faire au démarrage suivant, et les doublons sont refusés
+        assertTrue(cree);
+        assertTrue(migrationSchema.indexUniqueNomExiste());
+        assertFalse(migrationSchema.verifieUniciteNoms());
+        assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update("update "
+                + SalarieAideADomicile.TABLE + " set nom = 'Salarie1' where id = ?",
+                salarieRepo.save(salarie("Salarie2")).getId()));
+    }
+
+    private void supprimeContraintesUniques() {
+        List<String> contraintes = jdbcTemplate.queryForList("select constraint_name from"
+                + " information_schema.table_constraints where constraint_type = 'UNIQUE'"
+                + " and lower(table_name) = ?", String.class, SalarieAideADomicile.TABLE);
+        for (String contrainte : contraintes) {
+            jdbcTemplate.execute("alter table " + SalarieAideADomicile.TABLE + " drop constraint " + contrainte);
+        }
+    }
+
+    private static SalarieAideADomicile salarie(String nom) {
+        return new SalarieAideADomicile.Builder(nom, LocalDate.of(2015, 1, 1), LocalDate.of(2022, 12, 1))
+                .joursTravaillesAnneeNMoins1(220)
+                .congesPayesAcquisAnneeNMoins1(25)
+                .build();
+    }
+}
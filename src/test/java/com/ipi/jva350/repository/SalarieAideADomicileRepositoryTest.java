@@ -2,12 +2,17 @@ package com.ipi.jva350.repository;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 
+import com.ipi.jva350.model.LazyLocalDateSet;
 import com.ipi.jva350.model.SalarieAideADomicile;
 
 @DataJpaTest
@@ -16,6 +21,9 @@ class SalarieAideADomicileRepositoryTest {
     @Autowired
     private SalarieAideADomicileRepository salarieRepo;
 
+    @Autowired
+    private TestEntityManager entityManager;
+
     @Test
     void testFindByNom() {
         // Arrange
@@ -74,4 +82,85 @@ class SalarieAideADomicileRepositoryTest {
         assertEquals(nomSalarie1, trouveDupont.getNom(), "Le nom du salarié trouvé devrait être Dupont");
         assertEquals(nomSalarie2, trouveMartin.getNom(), "Le nom du salarié trouvé devrait être Martin");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testCongesPayesPrisRelusDansLOrdreChronologique() {
+        // Arrange
+        SalarieAideADomicile salarie = new SalarieAideADomicile();
+        salarie.setNom("Durand");
+        salarie.setMoisEnCours(LocalDate.of(2023, 6, 1));
+        salarie.getCongesPayesPris().addAll(Arrays.asList(
+            LocalDate.of(2023, 7, 3), LocalDate.of(2023, 7, 4), LocalDate.of(2023, 6, 30)));
+        Long id = salarieRepo.save(salarie).getId();
+        entityManager.flush();
+        entityManager.clear();
+
+        // Act
+        SalarieAideADomicile relu = salarieRepo.findById(id).orElseThrow(AssertionError::new);
+
+        // Assert
+        assertEquals(Arrays.asList(LocalDate.of(2023, 6, 30), LocalDate.of(2023, 7, 3), LocalDate.of(2023, 7, 4)),
+            new ArrayList<>(relu.getCongesPayesPris()),
+            "Les congés payés pris devraient être relus dans l'ordre chronologique");
+    }
+
+    @Test
+    void testCongesPayesPrisAncienFormatTexte() {
+        // Arrange : une ligne écrite avant le passage au format binaire
+        SalarieAideADomicile salarie = new SalarieAideADomicile();
+        salarie.setNom("Petit");
+        salarie.setMoisEnCours(LocalDate.of(2023, 6, 1));
+        Long id = salarieRepo.save(salarie).getId();
+        entityManager.flush();
+        entityManager.getEntityManager()
+            .createNativeQuery("update salarie_aideadomicile set conges_payes_pris = ? where id = ?")
+            .setParameter(1, "2023-07-03;2023-07-04".getBytes(StandardCharsets.US_ASCII))
+            .setParameter(2, id)
+            .executeUpdate();
+        entityManager.clear();
+
+        // Act
+        SalarieAideADomicile relu = salarieRepo.findById(id).orElseThrow(AssertionError::new);
+        relu.getCongesPayesPris().add(LocalDate.of(2023, 7, 5));
+        salarieRepo.save(relu);
+        entityManager.flush();
+        entityManager.clear();
+
+        // Assert : relu puis réécrit au format binaire
+        byte[] colonne = (byte[]) entityManager.getEntityManager()
+            .createNativeQuery("select conges_payes_pris from salarie_aideadomicile where id = ?")
+            .setParameter(1, id)
+            .getSingleResult();
+        assertEquals(1, colonne[0], "La ligne devrait avoir été réécrite au format binaire");
+        assertEquals(Arrays.asList(LocalDate.of(2023, 7, 3), LocalDate.of(2023, 7, 4), LocalDate.of(2023, 7, 5)),
+            new ArrayList<>(salarieRepo.findById(id).orElseThrow(AssertionError::new).getCongesPayesPris()));
+    }
+
+    @Test
+    void testCongesPayesPrisNonDecodesSiSeulsLesCompteursChangent() {
+        // Arrange
+        SalarieAideADomicile salarie = new SalarieAideADomicile();
+        salarie.setNom("Leroy");
+        salarie.setMoisEnCours(LocalDate.of(2023, 6, 1));
+        salarie.getCongesPayesPris().addAll(Arrays.asList(LocalDate.of(2023, 7, 3), LocalDate.of(2023, 7, 4)));
+        Long id = salarieRepo.save(salarie).getId();
+        entityManager.flush();
+        entityManager.clear();
+
+        // Act : comme clotureMois() hors juin
+        SalarieAideADomicile relu = salarieRepo.findById(id).orElseThrow(AssertionError::new);
+        relu.setJoursTravaillesAnneeN(relu.getJoursTravaillesAnneeN() + 20);
+        relu.setMoisEnCours(relu.getMoisEnCours().plusMonths(1));
+        salarieRepo.save(relu);
+        entityManager.flush();
+
+        // Assert
+        assertTrue(((LazyLocalDateSet) relu.getCongesPayesPris()).estNonDecode(),
+            "Les congés payés pris ne devraient pas avoir été décodés");
+        entityManager.clear();
+        SalarieAideADomicile reluApres = salarieRepo.findById(id).orElseThrow(AssertionError::new);
+        assertEquals(20, reluApres.getJoursTravaillesAnneeN());
+        assertEquals(Arrays.asList(LocalDate.of(2023, 7, 3), LocalDate.of(2023, 7, 4)),
+            new ArrayList<>(reluApres.getCongesPayesPris()));
+    }
+}
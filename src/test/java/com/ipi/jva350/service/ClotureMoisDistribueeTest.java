@@ -0,0 +1,143 @@
+package com.ipi.jva350.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.ServerSocket;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.tools.Server;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.ipi.jva350.Jva350Application;
+import com.ipi.jva350.model.ClotureMoisSalarie;
+import com.ipi.jva350.model.ExecutionClotureMois;
+import com.ipi.jva350.model.SalarieAideADomicile;
+import com.ipi.jva350.model.TrancheClotureMois;
+import com.ipi.jva350.repository.ExecutionClotureMoisRepository;
+import com.ipi.jva350.repository.SalarieAideADomicileRepository;
+import com.ipi.jva350.repository.TrancheClotureMoisRepository;
+import com.ipi.jva350.service.ClotureMoisDistribuee.RapportParticipation;
+
+/**
+ * Trois instances de l'application (trois contextes Spring) partagent une base H2 en mode serveur.
+ */
+class ClotureMoisDistribueeTest {
+
+    private static final long DUREE_BAIL_MS = 1000;
+
+    private static Server serveur;
+    private static final List<ConfigurableApplicationContext> instances = new ArrayList<>();
+
+    @BeforeAll
+    static void demarre() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        serveur = Server.createTcpServer("-tcpPort", String.valueOf(port), "-ifNotExists").start();
+        String url = "jdbc:h2:tcp://localhost:" + port + "/mem:cloture-distribuee;DB_CLOSE_DELAY=-1";
+        for (String instance : new String[]{"A", "B", "C"}) {
+            instances.add(new SpringApplicationBuilder(Jva350Application.class)
+                    .web(WebApplicationType.NONE)
+                    .properties("spring.datasource.url=" + url,
+                            // seule la première instance crée le schéma
+                            "spring.jpa.hibernate.ddl-auto=" + (instances.isEmpty() ? "create" : "none"),
+                            "spring.main.banner-mode=off",
+                            "logging.level.root=WARN",
+                            "jva350.instance=" + instance,
+                            "jva350.cloture.duree-bail-ms=" + DUREE_BAIL_MS,
+                            "jva350.cloture.taille-tranche=20",
+                            "jva350.cloture.taille-lot=5")
+                    .run());
+        }
+    }
+
+    @AfterAll
+    static void arrete() {
+        instances.forEach(ConfigurableApplicationContext::close);
+        serveur.stop();
+    }
+
+    @Test
+    @DisplayName("Les instances se partagent les tranches, et reprennent celle d'une instance arrêtée")
+    void testClotureMoisDistribuee() throws Exception {
+        // GIVEN (Arrange) : 300 salariés du mois ; l'instance C réserve une tranche puis s'arrête sans la traiter
+        LocalDate mois = LocalDate.of(2023, 11, 1);
+        ConfigurableApplicationContext a = instances.get(0);
+        List<SalarieAideADomicile> salaries = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            salaries.add(new SalarieAideADomicile.Builder("Salarie" + i, LocalDate.of(2018, 1, 1),
+                    i % 3 == 0 ? mois.plusMonths(1) : mois)
+                    .congesPayesAcquisAnneeN(10)
+                    .build());
+        }
+        a.getBean(SalarieAideADomicileRepository.class).saveAll(salaries);
+        ClotureMoisDistribuee c = instances.get(2).getBean(ClotureMoisDistribuee.class);
+        c.prepare(mois);
+        TrancheClotureMois abandonnee = c.reserveTranche(mois);
+        assertNotNull(abandonnee);
+        assertEquals("C", abandonnee.getProprietaire());
+
+        // WHEN (Act) : A et B participent en même temps, chacune sur deux threads
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<RapportParticipation>> rapports = new ArrayList<>();
+        try {
+            for (int i = 0; i < 4; i++) {
+                ClotureMoisDistribuee instance = instances.get(i % 2).getBean(ClotureMoisDistribuee.class);
+                rapports.add(executor.submit(() -> instance.participe(mois, s -> 20)));
+            }
+            long nbClotures = 0;
+            long nbTranches = 0;
+            long[] nbCloturesParInstance = new long[2];
+            for (int i = 0; i < rapports.size(); i++) {
+                RapportParticipation rapport = rapports.get(i).get(60, TimeUnit.SECONDS);
+                nbClotures += rapport.getNbClotures();
+                nbTranches += rapport.getNbTranches();
+                nbCloturesParInstance[i % 2] += rapport.getNbClotures();
+            }
+
+            // THEN (Assert) : Tous clôturés une fois, par les deux instances, la tranche de C reprise
+            TrancheClotureMoisRepository tranches = a.getBean(TrancheClotureMoisRepository.class);
+            assertEquals(200, nbClotures);
+            assertEquals(tranches.countByMois(mois), nbTranches);
+            assertEquals(0, tranches.countByMoisAndStatut(mois, TrancheClotureMois.Statut.A_FAIRE));
+            assertTrue(nbCloturesParInstance[0] > 0 && nbCloturesParInstance[1] > 0);
+            TrancheClotureMois reprise = tranches.findById(abandonnee.getId()).orElseThrow(IllegalStateException::new);
+            assertNotEquals("C", reprise.getProprietaire());
+            assertEquals(abandonnee.getJeton() + 1, reprise.getJeton());
+            ExecutionClotureMois execution = a.getBean(ExecutionClotureMoisRepository.class).findByMois(mois);
+            assertEquals(ExecutionClotureMois.Statut.TERMINEE, execution.getStatut());
+            assertEquals(200, execution.getNbClotures());
+            // clés d'idempotence supprimées une fois l'exécution terminée
+            assertEquals(0, a.getBean(JdbcTemplate.class).queryForObject(
+                    "select count(*) from " + ClotureMoisSalarie.TABLE, Integer.class));
+            for (SalarieAideADomicile salarie : a.getBean(SalarieAideADomicileRepository.class).findAll()) {
+                // ceux du mois clôturés une fois, les autres (déjà au mois suivant) inchangés
+                boolean cloture = Integer.parseInt(salarie.getNom().substring("Salarie".length())) % 3 != 0;
+                assertEquals(mois.plusMonths(1), salarie.getMoisEnCours());
+                assertEquals(cloture ? 20 : 0, salarie.getJoursTravaillesAnneeN());
+                assertEquals(cloture ? 10 + SalarieAideADomicile.CONGES_PAYES_ACQUIS_PAR_MOIS : 10,
+                        salarie.getCongesPayesAcquisAnneeN());
+            }
+            // C revenue : plus rien à faire, son ancien jeton ne permet plus de valider la tranche
+            assertEquals(0, tranches.count() - tranches.countByMoisAndStatut(mois,
+                    TrancheClotureMois.Statut.TERMINEE));
+            assertEquals(0, c.participe(mois, s -> 20).getNbClotures());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.ipi.jva350.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ipi.jva350.model.ClotureMoisSalarie;
+import com.ipi.jva350.model.ExecutionClotureMois;
+import com.ipi.jva350.model.SalarieAideADomicile;
+import com.ipi.jva350.repository.ExecutionClotureMoisRepository;
+import com.ipi.jva350.repository.SalarieAideADomicileRepository;
+import com.ipi.jva350.service.ClotureMoisParallele.AvancementPlage;
+import com.ipi.jva350.service.ClotureMoisParallele.RapportCloture;
+
+@SpringBootTest
+class ClotureMoisParalleleTest {
+
+    @Autowired
+    private ClotureMoisParallele clotureMoisParallele;
+
+    @Autowired
+    private SalarieAideADomicileRepository salarieRepo;
+
+    @Autowired
+    private ExecutionClotureMoisRepository executionRepo;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        // Nettoyer la base de données avant chaque test
+        salarieRepo.deleteAll();
+        executionRepo.deleteAll();
+        jdbcTemplate.update("delete from " + ClotureMoisSalarie.TABLE);
+        clotureMoisParallele.setParallelisme(4);
+        clotureMoisParallele.setTailleLot(5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        clotureMoisParallele.setParallelisme(0);
+        clotureMoisParallele.setTailleLot(SalarieAideADomicileService.TAILLE_LOT_CLOTURE);
+    }
+
+    @ParameterizedTest(name = "Mois clôturé : {0}")
+    @ValueSource(strings = {"2023-05-01", "2023-11-01"})
+    @DisplayName("La clôture parallèle clôture une fois chaque salarié du mois, même sur des plages déséquilibrées")
+    void testClotureMoisParallele(String moisCloture) {
+        // GIVEN (Arrange) : 300 salariés dont la moitié dans le mois, un trou dans les id pour déséquilibrer les
+        // plages
+        LocalDate mois = LocalDate.parse(moisCloture);
+        Random random = new Random(14);
+        List<SalarieAideADomicile> salaries = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            salaries.add(new SalarieAideADomicile.Builder("Salarie" + i, LocalDate.of(2018, 1, 1),
+                    i % 2 == 0 ? mois : mois.plusMonths(1))
+                    .joursTravaillesAnneeN(random.nextInt(200))
+                    .congesPayesAcquisAnneeN(random.nextInt(25))
+                    .congesPayesAcquisAnneeNMoins1(25)
+                    .congesPayesPrisAnneeNMoins1(random.nextInt(20))
+                    .build());
+        }
+        salaries = salarieRepo.saveAll(salaries);
+        salarieRepo.deleteAll(salaries.subList(40, 200));
+        salaries = salarieRepo.findAll();
+        Map<Long, SalarieAideADomicile> avant = new HashMap<>();
+        for (SalarieAideADomicile salarie : salaries) {
+            avant.put(salarie.getId(), salarie);
+        }
+        long nbDansLeMois = salaries.stream().filter(s -> s.getMoisEnCours().equals(mois)).count();
+        ToDoubleFunction<SalarieAideADomicile> joursTravailles = s -> s.getId() % 20;
+        AtomicInteger nbSuivis = new AtomicInteger();
+
+        // WHEN (Act) : Clôture sur 4 threads, par lots de 5
+        RapportCloture rapport = clotureMoisParallele.clotureMois(mois, joursTravailles,
+                avancement -> nbSuivis.incrementAndGet());
+
+        // THEN (Assert) : Chaque salarié du mois clôturé une fois, les autres inchangés, plages disjointes
+        assertEquals(nbDansLeMois, rapport.getNbClotures());
+        assertTrue(rapport.getPlages().size() > 1);
+        assertTrue(nbSuivis.get() >= rapport.getPlages().stream().filter(p -> p.getNbClotures() > 0).count());
+        long idPrecedent = Long.MIN_VALUE;
+        for (AvancementPlage plage : rapport.getPlages()) {
+            assertTrue(plage.getIdMin() > idPrecedent);
+            assertTrue(plage.estTerminee());
+            idPrecedent = plage.getIdMax();
+        }
+        for (SalarieAideADomicile apres : salarieRepo.findAll()) {
+            SalarieAideADomicile salarie = avant.get(apres.getId());
+            if (!salarie.getMoisEnCours().equals(mois)) {
+                assertEquals(salarie.getMoisEnCours(), apres.getMoisEnCours());
+            } else if (mois.getMonthValue() == 5) {
+                assertEquals(mois.plusMonths(1), apres.getMoisEnCours());
+                assertEquals(salarie.getJoursTravaillesAnneeN() + salarie.getId() % 20,
+                        apres.getJoursTravaillesAnneeNMoins1());
+                assertEquals(0, apres.getJoursTravaillesAnneeN());
+                assertEquals(0, apres.getCongesPayesPrisAnneeNMoins1());
+            } else {
+                assertEquals(mois.plusMonths(1), apres.getMoisEnCours());
+                assertEquals(salarie.getJoursTravaillesAnneeN() + salarie.getId() % 20,
+                        apres.getJoursTravaillesAnneeN());
+                assertEquals(salarie.getCongesPayesAcquisAnneeN()
+                        + SalarieAideADomicile.CONGES_PAYES_ACQUIS_PAR_MOIS, apres.getCongesPayesAcquisAnneeN());
+            }
+        }
+        Double part = salarieRepo.partCongesPrisTotauxAnneeNMoins1();
+        assertEquals(salarieRepo.reconcilieCompteurConges().getPartCongesPrisTotauxAnneeNMoins1(), part);
+    }
+
+    @Test
+    @DisplayName("Une clôture interrompue reprend après ses derniers lots validés, sans reclôturer personne")
+    void testClotureMoisRepriseApresInterruption() {
+        // GIVEN (Arrange) : 100 salariés du mois, une clôture qui s'arrête brutalement au 43e salarié
+        LocalDate mois = LocalDate.of(2023, 11, 1);
+        List<SalarieAideADomicile> salaries = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            salaries.add(new SalarieAideADomicile.Builder("Salarie" + i, LocalDate.of(2018, 1, 1), mois)
+                    .congesPayesAcquisAnneeN(10)
+                    .build());
+        }
+        salarieRepo.saveAll(salaries);
+        clotureMoisParallele.setParallelisme(1);
+        AtomicInteger nbAppels = new AtomicInteger();
+        assertThrows(IllegalStateException.class, () -> clotureMoisParallele.clotureMois(mois, s -> {
+            if (nbAppels.incrementAndGet() == 43) {
+                throw new IllegalStateException("arrêt de la JVM");
+            }
+            return 20;
+        }));
+        ExecutionClotureMois interrompue = executionRepo.findByMois(mois);
+        assertEquals(ExecutionClotureMois.Statut.EN_COURS, interrompue.getStatut());
+        long nbValides = interrompue.getNbClotures();
+        assertTrue(nbValides > 0 && nbValides < 43);
+        assertNotNull(interrompue.getDerniereValidation());
+        long nbClesAvantReprise = jdbcTemplate.queryForObject("select count(*) from " + ClotureMoisSalarie.TABLE,
+                Long.class);
+        // un salarié validé remis dans le mois (correction manuelle) ne doit pas être reclôturé pour autant
+        SalarieAideADomicile remisDansLeMois = salarieRepo.findByNom("Salarie0");
+        remisDansLeMois.setMoisEnCours(mois);
+        salarieRepo.save(remisDansLeMois);
+
+        // WHEN (Act) : Reprise, puis nouvelle relance une fois terminée
+        RapportCloture reprise = clotureMoisParallele.clotureMois(mois, s -> 20);
+        RapportCloture relance = clotureMoisParallele.clotureMois(mois, s -> {
+            throw new IllegalStateException("ne doit clôturer personne");
+        });
+
+        // THEN (Assert) : Seuls les non validés clôturés à la reprise, chaque salarié une seule fois en tout
+        assertEquals(100 - nbValides, reprise.getNbClotures());
+        assertEquals(ExecutionClotureMois.Statut.TERMINEE, reprise.getExecution().getStatut());
+        assertEquals(100, reprise.getExecution().getNbClotures());
+        assertEquals(1, reprise.getExecution().getNbReprises());
+        assertEquals(0, relance.getNbClotures());
+        assertTrue(relance.getPlages().isEmpty());
+        // clés d'idempotence des lots validés gardées pour la reprise, supprimées une fois l'exécution terminée
+        assertEquals(nbValides, nbClesAvantReprise);
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from " + ClotureMoisSalarie.TABLE,
+                Integer.class));
+        for (SalarieAideADomicile salarie : salarieRepo.findAll()) {
+            assertEquals(10 + SalarieAideADomicile.CONGES_PAYES_ACQUIS_PAR_MOIS, salarie.getCongesPayesAcquisAnneeN());
+            assertEquals(20, salarie.getJoursTravaillesAnneeN());
+        }
+    }
+
+    @Test
+    @DisplayName("Un lot en conflit est clôturé salarié par salarié au lieu de faire échouer toute la clôture")
+    void testClotureMoisLotEnConflit() {
+        // GIVEN (Arrange) : 12 salariés du mois en un seul lot, dont un modifié par une autre transaction à chacune
+        // de ses clôtures jusqu'au nombre d'essais : rejouer son lot en entier abandonnerait toute la clôture
+        LocalDate mois = LocalDate.of(2023, 11, 1);
+        List<SalarieAideADomicile> salaries = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            salaries.add(new SalarieAideADomicile.Builder("Salarie" + i, LocalDate.of(2018, 1, 1), mois)
+                    .congesPayesAcquisAnneeN(10)
+                    .build());
+        }
+        salarieRepo.saveAll(salaries);
+        clotureMoisParallele.setParallelisme(1);
+        clotureMoisParallele.setTailleLot(20);
+        TransactionTemplate autreTransaction = new TransactionTemplate(transactionManager);
+        autreTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        AtomicInteger nbModifications = new AtomicInteger();
+        Map<String, Integer> nbAppels = new ConcurrentHashMap<>();
+
+        // WHEN (Act) : Clôture
+        RapportCloture rapport = clotureMoisParallele.clotureMois(mois, s -> {
+            nbAppels.merge(s.getNom(), 1, Integer::sum);
+            if (s.getNom().equals("Salarie7") && nbModifications.get() < ModificationsConcurrentes.NB_ESSAIS) {
+                autreTransaction.execute(statut -> {
+                    SalarieAideADomicile modifie = salarieRepo.findByNom("Salarie7");
+                    modifie.setJoursTravaillesAnneeNMoins1(modifie.getJoursTravaillesAnneeNMoins1() + 1);
+                    return salarieRepo.save(modifie);
+                });
+                nbModifications.incrementAndGet();
+            }
+            return 20;
+        });
+
+        // THEN (Assert) : Tous clôturés une fois, modifications concurrentes gardées ; après le lot annulé, chaque
+        // salarié repris seul une fois, celui en conflit jusqu'à ce qu'il passe
+        assertEquals(ExecutionClotureMois.Statut.TERMINEE, rapport.getExecution().getStatut());
+        assertEquals(12, rapport.getExecution().getNbClotures());
+        assertEquals(12, rapport.getNbClotures());
+        for (SalarieAideADomicile salarie : salarieRepo.findAll()) {
+            assertEquals(mois.plusMonths(1), salarie.getMoisEnCours());
+            assertEquals(10 + SalarieAideADomicile.CONGES_PAYES_ACQUIS_PAR_MOIS, salarie.getCongesPayesAcquisAnneeN());
+            assertEquals(20, salarie.getJoursTravaillesAnneeN());
+        }
+        assertEquals(ModificationsConcurrentes.NB_ESSAIS,
+                salarieRepo.findByNom("Salarie7").getJoursTravaillesAnneeNMoins1());
+        assertEquals(ModificationsConcurrentes.NB_ESSAIS + 1, nbAppels.get("Salarie7"));
+        for (int i = 0; i < 12; i++) {
+            if (i != 7) {
+                assertEquals(2, nbAppels.get("Salarie" + i), "Salarie" + i);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Sans salarié dans le mois, la clôture parallèle ne fait rien")
+    void testClotureMoisParalleleSansSalarie() {
+        RapportCloture rapport = clotureMoisParallele.clotureMois(LocalDate.of(2023, 3, 1), s -> 20);
+        assertEquals(0, rapport.getNbClotures());
+        assertTrue(rapport.getPlages().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Le parallélisme est borné par la taille du pool de connexions")
+    void testParallelismeBorneParPoolDeConnexions() {
+        clotureMoisParallele.setParallelisme(1000);
+        assertEquals(10, clotureMoisParallele.getParallelisme());
+        assertThrows(IllegalArgumentException.class, () -> clotureMoisParallele.setParallelisme(-1));
+        assertThrows(IllegalArgumentException.class, () -> clotureMoisParallele.setTailleLot(0));
+    }
+}
@@ -0,0 +1,156 @@
+package com.ipi.jva350.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.ipi.jva350.model.SalarieAideADomicile;
+import com.ipi.jva350.repository.SalarieAideADomicileRepository;
+
+@SpringBootTest
+class ImportSalariesCsvTest {
+
+    @Autowired
+    private ImportSalariesCsv importSalariesCsv;
+
+    @Autowired
+    private SalarieAideADomicileRepository salarieRepo;
+
+    @TempDir
+    Path repertoire;
+
+    @BeforeEach
+    void setUp() {
+        // Nettoyer la base de données avant chaque test
+        salarieRepo.deleteAll();
+        salarieRepo.reconcilieCompteurConges();
+        // blocs de 1 Ko : beaucoup de lignes coupées entre deux blocs
+        importSalariesCsv.setTailleBlocKo(1);
+        importSalariesCsv.setParallelisme(3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        importSalariesCsv.setTailleBlocKo(ImportSalariesCsv.TAILLE_BLOC_KO);
+        importSalariesCsv.setParallelisme(0);
+    }
+
+    @Test
+    @DisplayName("L'import crée les salariés valides du fichier et rejette les autres avec leur numéro de ligne")
+    void testImport() throws IOException {
+        // GIVEN (Arrange) : 500 salariés sur une vingtaine de blocs, dont 3 lignes invalides et un nom déjà pris
+        salarieRepo.save(new SalarieAideADomicile.Builder("Déjà là", LocalDate.of(2015, 1, 1),
+                LocalDate.of(2022, 12, 1)).build());
+        List<String> lignes = new ArrayList<>();
+        lignes.add(ImportSalariesCsv.ENTETE);
+        for (int i = 0; i < 500; i++) {
+            lignes.add("Salarié " + i + ";2015-01-01;2022-12-01;" + (i % 20) + ".5;2.25;220;25;" + (i % 10)
+                    + ";2022-06-0" + (1 + i % 9) + "|2022-11-21");
+        }
+        lignes.set(11, "Salarié 10;2015-01-01;2022-12-01;1;2;3");
+        lignes.set(101, "Salarié 100;2015-01-01;2022-02-30;1;2;3;4;5;");
+        lignes.set(201, "Salarié 200;2015-01-01;2022-12-01;1;-2;3;4;5;");
+        lignes.set(301, "Salarié 300;2015-01-01;2022-12-01;1;2;3;4;5;2021-06-01|2022-09-01");
+        lignes.set(401, "Déjà là;2015-01-01;2022-12-01;1;2;3;4;5;");
+        lignes.add("");
+        Path fichier = ecrit(lignes);
+        List<ImportSalariesCsv.RapportImport> avancements = new ArrayList<>();
+
+        // WHEN (Act)
+        ImportSalariesCsv.RapportImport rapport = importSalariesCsv.importe(fichier, avancements::add);
+
+        // THEN (Assert)
+        assertEquals(496, rapport.getNbCrees());
+        assertEquals(4, rapport.getNbRejets());
+        assertEquals(Arrays.asList(12L, 102L, 202L, 402L), rapport.getRejets().stream()
+                .map(ImportSalariesCsv.LigneRejetee::getNumero).collect(Collectors.toList()));
+        assertEquals("6 champs au lieu de 9", rapport.getRejets().get(0).getMessage());
+        assertEquals("moisEnCours invalide : '2022-02-30'", rapport.getRejets().get(1).getMessage());
+        assertEquals("congesPayesAcquisAnneeN invalide : '-2'", rapport.getRejets().get(2).getMessage());
+        assertEquals("Un salarié existe déjà avec le nom Déjà là", rapport.getRejets().get(3).getMessage());
+        assertEquals(502, rapport.getNbLignes());
+        assertEquals(Files.size(fichier), rapport.getNbOctets());
+        assertEquals(1, rapport.getAvancement());
+        assertTrue(avancements.size() > 10, "un avancement par bloc");
+        assertEquals(497, salarieRepo.count());
+
+        SalarieAideADomicile salarie = salarieRepo.findByNom("Salarié 123");
+        assertEquals(LocalDate.of(2022, 12, 1), salarie.getMoisEnCours());
+        assertEquals(3.5, salarie.getJoursTravaillesAnneeN());
+        assertEquals(2.25, salarie.getCongesPayesAcquisAnneeN());
+        assertEquals(3, salarie.getCongesPayesPrisAnneeNMoins1());
+        assertEquals(Arrays.asList(LocalDate.of(2022, 6, 7), LocalDate.of(2022, 11, 21)),
+                new ArrayList<>(salarie.getCongesPayesPris()));
+        assertEquals(Arrays.asList(LocalDate.of(2021, 6, 1), LocalDate.of(2022, 9, 1)),
+                new ArrayList<>(salarieRepo.findByNom("Salarié 300").getCongesPayesPris()),
+                "un historique sur plusieurs années de congés est importé en entier");
+        assertEquals(salarieRepo.reconcilieCompteurConges().getPartCongesPrisTotauxAnneeNMoins1(),
+                salarieRepo.partCongesPrisTotauxAnneeNMoins1());
+    }
+
+    @Test
+    @DisplayName("Une ligne plus longue qu'un bloc fait échouer l'import")
+    void testLigneTropLongue() throws IOException {
+        // GIVEN (Arrange)
+        char[] nom = new char[2000];
+        Arrays.fill(nom, 'a');
+        Path fichier = ecrit(Arrays.asList(ImportSalariesCsv.ENTETE,
+                new String(nom) + ";2015-01-01;2022-12-01;1;2;3;4;5;"));
+
+        // WHEN (Act) / THEN (Assert)
+        assertThrows(IOException.class, () -> importSalariesCsv.importe(fichier));
+    }
+
+    @Test
+    @DisplayName("Un fichier qui finit juste sur une fin de bloc, ou vide, est importé sans erreur")
+    void testFichierAligneSurLesBlocs() throws IOException {
+        // GIVEN (Arrange) : Exactement 1 Ko (un bloc) terminé par une fin de ligne, et un fichier vide
+        String fin = ";2015-01-01;2022-12-01;1;2;3;4;5;";
+        List<String> lignes = new ArrayList<>();
+        lignes.add(ImportSalariesCsv.ENTETE);
+        int taille = ImportSalariesCsv.ENTETE.length() + 1;
+        while (1024 - taille > 200) {
+            String ligne = "Aligne " + lignes.size() + fin;
+            lignes.add(ligne);
+            taille += ligne.length() + 1;
+        }
+        char[] nom = new char[1024 - taille - fin.length() - 1];
+        Arrays.fill(nom, 'a');
+        lignes.add(new String(nom) + fin);
+        Path fichier = ecrit(lignes);
+        assertEquals(1024, Files.size(fichier));
+        Path vide = Files.write(repertoire.resolve("vide.csv"), new byte[0]);
+
+        // WHEN (Act)
+        ImportSalariesCsv.RapportImport rapport = importSalariesCsv.importe(fichier);
+        ImportSalariesCsv.RapportImport rapportVide = importSalariesCsv.importe(vide);
+
+        // THEN (Assert)
+        assertEquals(lignes.size() - 1, rapport.getNbCrees());
+        assertEquals(0, rapport.getNbRejets());
+        assertEquals(lignes.size(), rapport.getNbLignes());
+        assertEquals(1024, rapport.getNbOctets());
+        assertEquals(0, rapportVide.getNbCrees());
+        assertEquals(0, rapportVide.getNbLignes());
+    }
+
+    private Path ecrit(List<String> lignes) throws IOException {
+        return Files.write(repertoire.resolve("salaries.csv"), lignes, StandardCharsets.UTF_8);
+    }
+}
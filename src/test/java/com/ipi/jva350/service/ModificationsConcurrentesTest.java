@@ -0,0 +1,226 @@
+package com.ipi.jva350.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ipi.jva350.exception.SalarieException;
+import com.ipi.jva350.model.SalarieAideADomicile;
+import com.ipi.jva350.repository.SalarieAideADomicileRepository;
+
+@SpringBootTest
+class ModificationsConcurrentesTest {
+
+    @Autowired
+    private ModificationsConcurrentes modificationsConcurrentes;
+
+    @Autowired
+    private SalarieAideADomicileRepository salarieRepo;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private VerrousSalaries verrousSalaries;
+
+    private TransactionTemplate transactionTemplate;
+    private Long id;
+
+    @BeforeEach
+    void setUp() {
+        // Nettoyer la base de données avant chaque test
+        salarieRepo.deleteAll();
+        // lignes des compteurs créées avant les threads : leur création ne voit pas les écritures en cours
+        salarieRepo.reconcilieCompteurConges();
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        id = salarieRepo.save(new SalarieAideADomicile.Builder("Salarie", LocalDate.of(2015, 1, 1),
+                LocalDate.of(2022, 12, 1))
+                .joursTravaillesAnneeNMoins1(220)
+                .congesPayesAcquisAnneeNMoins1(1000)
+                .build()).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        modificationsConcurrentes.setNbEssais(ModificationsConcurrentes.NB_ESSAIS);
+        modificationsConcurrentes.setAttenteMaxMs(ModificationsConcurrentes.ATTENTE_MAX_MS);
+    }
+
+    @Test
+    @DisplayName("Une écriture sur un état périmé est rejouée sur l'état frais au lieu d'écraser l'autre")
+    void testRejoueApresConflit() {
+        // GIVEN (Arrange) : Au premier essai, une autre transaction modifie le salarié après qu'il a été lu
+        AtomicInteger nbEssais = new AtomicInteger();
+        long nbConflitsAvant = modificationsConcurrentes.getNbConflits();
+
+        // WHEN (Act)
+        modificationsConcurrentes.execute(transactionTemplate, statut -> {
+            SalarieAideADomicile salarie = salarieRepo.findById(id).orElseThrow(IllegalStateException::new);
+            if (nbEssais.incrementAndGet() == 1) {
+                modifieJoursTravaillesAnneeN(1);
+            }
+            salarie.setCongesPayesAcquisAnneeN(salarie.getCongesPayesAcquisAnneeN() + 2.5);
+            return salarie;
+        });
+
+        // THEN (Assert) : Rejouée une fois, les deux modifications gardées, version incrémentée par chacune
+        assertEquals(2, nbEssais.get());
+        assertEquals(1, modificationsConcurrentes.getNbConflits() - nbConflitsAvant);
+        SalarieAideADomicile salarie = salarieRepo.findById(id).orElseThrow(IllegalStateException::new);
+        assertEquals(1, salarie.getJoursTravaillesAnneeN());
+        assertEquals(2.5, salarie.getCongesPayesAcquisAnneeN());
+        assertEquals(2, salarie.getVersion());
+    }
+
+    @Test
+    @DisplayName("Une opération en conflit à chaque essai est abandonnée après le nombre maximal d'essais")
+    void testAbandonApresNbEssais() {
+        // GIVEN (Arrange)
+        modificationsConcurrentes.setNbEssais(3);
+        modificationsConcurrentes.setAttenteMaxMs(0);
+        AtomicInteger nbEssais = new AtomicInteger();
+        long nbAbandonsAvant = modificationsConcurrentes.getNbAbandons();
+
+        // WHEN (Act)
+        assertThrows(OptimisticLockingFailureException.class, () -> modificationsConcurrentes.execute(
+                transactionTemplate, statut -> {
+                    SalarieAideADomicile salarie = salarieRepo.findById(id).orElseThrow(IllegalStateException::new);
+                    nbEssais.incrementAndGet();
+                    modifieJoursTravaillesAnneeN(1);
+                    salarie.setCongesPayesAcquisAnneeN(salarie.getCongesPayesAcquisAnneeN() + 2.5);
+                    return salarie;
+                }));
+
+        // THEN (Assert) : Seules les modifications concurrentes ont été écrites
+        assertEquals(3, nbEssais.get());
+        assertEquals(1, modificationsConcurrentes.getNbAbandons() - nbAbandonsAvant);
+        SalarieAideADomicile salarie = salarieRepo.findById(id).orElseThrow(IllegalStateException::new);
+        assertEquals(3, salarie.getJoursTravaillesAnneeN());
+        assertEquals(0, salarie.getCongesPayesAcquisAnneeN());
+    }
+
+    @Test
+    @DisplayName("Des congés posés en même temps pour un même salarié sont tous gardés")
+    void testAjouteCongeConcurrents() throws Exception {
+        // GIVEN (Arrange) : 4 threads posent chacun 5 semaines différentes
+        modificationsConcurrentes.setNbEssais(100);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Integer>> nbJoursParThread = new ArrayList<>();
+
+        // WHEN (Act)
+        try {
+            for (int thread = 0; thread < 4; thread++) {
+                int premiereSemaine = thread * 5;
+                nbJoursParThread.add(executor.submit(() -> {
+                    int nbJours = 0;
+                    for (int semaine = premiereSemaine; semaine < premiereSemaine + 5; semaine++) {
+                        LocalDate lundi = LocalDate.of(2022, 12, 5).plusWeeks(semaine);
+                        ValidationConge validation = modificationsConcurrentes.tryAjouteConge(id, lundi,
+                                lundi.plusDays(4));
+                        assertTrue(validation.estAcceptee(), validation::getMessage);
+                        nbJours += validation.getNbJoursDecomptes();
+                    }
+                    return nbJours;
+                }));
+            }
+            int nbJours = 0;
+            for (Future<Integer> future : nbJoursParThread) {
+                nbJours += future.get(60, TimeUnit.SECONDS);
+            }
+
+            // THEN (Assert) : Aucun jour perdu
+            assertEquals(nbJours, salarieRepo.findById(id).orElseThrow(IllegalStateException::new)
+                    .getCongesPayesPris().size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Avec les verrous par salarié, les threads de l'instance ne sont jamais en conflit")
+    void testAjouteCongeSansConflitAvecVerrous() throws Exception {
+        // GIVEN (Arrange) : 8 threads, 4 sur le même salarié et 4 sur un salarié chacun
+        List<Long> ids = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            ids.add(thread < 4 ? id : salarieRepo.save(new SalarieAideADomicile.Builder("Salarie" + thread,
+                    LocalDate.of(2015, 1, 1), LocalDate.of(2022, 12, 1))
+                    .joursTravaillesAnneeNMoins1(220)
+                    .congesPayesAcquisAnneeNMoins1(1000)
+                    .build()).getId());
+        }
+        long nbConflitsAvant = modificationsConcurrentes.getNbConflits();
+        long nbAttentesAvant = verrousSalaries.getHistogramme().getNbAttentes();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> nbJoursParThread = new ArrayList<>();
+
+        // WHEN (Act) : Chacun pose 5 semaines différentes
+        try {
+            for (int thread = 0; thread < 8; thread++) {
+                Long idSalarie = ids.get(thread);
+                int premiereSemaine = (thread % 4) * 5;
+                nbJoursParThread.add(executor.submit(() -> {
+                    int nbJours = 0;
+                    for (int semaine = premiereSemaine; semaine < premiereSemaine + 5; semaine++) {
+                        LocalDate lundi = LocalDate.of(2022, 12, 5).plusWeeks(semaine);
+                        nbJours += modificationsConcurrentes.tryAjouteConge(idSalarie, lundi, lundi.plusDays(4))
+                                .getNbJoursDecomptes();
+                    }
+                    return nbJours;
+                }));
+            }
+            int nbJoursSalarieCommun = 0;
+            for (int thread = 0; thread < 8; thread++) {
+                int nbJours = nbJoursParThread.get(thread).get(60, TimeUnit.SECONDS);
+                if (thread < 4) {
+                    nbJoursSalarieCommun += nbJours;
+                } else {
+                    assertEquals(nbJours, salarieRepo.findById(ids.get(thread))
+                            .orElseThrow(IllegalStateException::new).getCongesPayesPris().size());
+                }
+            }
+
+            // THEN (Assert) : Aucun jour perdu, aucun essai rejoué, chaque verrou obtenu compté
+            assertEquals(nbJoursSalarieCommun, salarieRepo.findById(id).orElseThrow(IllegalStateException::new)
+                    .getCongesPayesPris().size());
+            assertEquals(0, modificationsConcurrentes.getNbConflits() - nbConflitsAvant);
+            assertEquals(40, verrousSalaries.getHistogramme().getNbAttentes() - nbAttentesAvant);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Un salarié inconnu est signalé par une SalarieException")
+    void testSalarieInconnu() {
+        assertThrows(SalarieException.class, () -> modificationsConcurrentes.tryAjouteConge(-1L,
+                LocalDate.of(2022, 12, 5), LocalDate.of(2022, 12, 9)));
+        assertThrows(SalarieException.class, () -> modificationsConcurrentes.clotureMois(-1L, 20));
+    }
+
+    private void modifieJoursTravaillesAnneeN(double joursTravailles) {
+        transactionTemplate.execute(statut -> {
+            SalarieAideADomicile autre = salarieRepo.findById(id).orElseThrow(IllegalStateException::new);
+            autre.setJoursTravaillesAnneeN(autre.getJoursTravaillesAnneeN() + joursTravailles);
+            return autre;
+        });
+    }
+}
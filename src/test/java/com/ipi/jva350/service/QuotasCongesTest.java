@@ -0,0 +1,120 @@
+package com.ipi.jva350.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.ipi.jva350.model.SalarieAideADomicile;
+import com.ipi.jva350.repository.SalarieAideADomicileRepository;
+
+@ExtendWith(MockitoExtension.class)
+class QuotasCongesTest {
+
+    private static final double[] CONGES_PAYES_ACQUIS_ANNEE_N_MOINS1 = {0, 0.5, 2.5, 7.5, 12.5, 17.5, 25, 27.5, 30,
+            31.25, 50};
+    private static final double[] PARTS_CONGES_PRIS = {0, 0.1234, 0.5, 0.87, 1, -0.25, 1.5};
+
+    @Mock
+    private SalarieAideADomicileRepository salarieAideADomicileRepository;
+
+    @Test
+    @DisplayName("Les limites lues dans les quotas sont celles de la formule pour tous les couples de mois")
+    void testQuotasCommeLaFormule() {
+        // GIVEN (Arrange) : Chaque mois en cours de l'année de congés, acquis N-1, ancienneté, et des parts des
+        // congés pris fixes puis tirées au hasard (avec une graine, pour rejouer un échec)
+        Random random = new Random(19);
+        int nbLimites = 0;
+        for (int m = 0; m < 12; m++) {
+            LocalDate moisEnCours = LocalDate.of(2022, 6, 1).plusMonths(m);
+            for (double acquis : CONGES_PAYES_ACQUIS_ANNEE_N_MOINS1) {
+                for (int anneeDebutContrat = 2010; anneeDebutContrat <= 2023; anneeDebutContrat++) {
+                    LocalDate moisDebutContrat = LocalDate.of(anneeDebutContrat, 3, 1);
+
+                    // WHEN (Act)
+                    QuotasConges quotas = QuotasConges.de(QuotasConges.calcule(moisEnCours, acquis,
+                            moisDebutContrat).getOctets());
+
+                    // THEN (Assert) : Pour chaque couple et chaque part, la limite de la formule
+                    assertTrue(quotas.estAJourPour(moisEnCours, acquis, moisDebutContrat));
+                    for (int p = 0; p < PARTS_CONGES_PRIS.length + 3; p++) {
+                        double part = p < PARTS_CONGES_PRIS.length ? PARTS_CONGES_PRIS[p] : random.nextDouble();
+                        for (int premier = 1; premier <= 12; premier++) {
+                            for (int dernier = 1; dernier <= 12; dernier++) {
+                                assertEquals(SalarieAideADomicileService.calculeLimiteEntrepriseCongesPermis(
+                                        moisEnCours, acquis, moisDebutContrat,
+                                        LocalDate.of(2022 + (premier < 6 ? 1 : 0), premier, 15),
+                                        LocalDate.of(2022 + (dernier <= 6 ? 1 : 0), dernier, 28), part),
+                                        quotas.limite(premier, dernier, part),
+                                        moisEnCours + " " + acquis + " " + anneeDebutContrat + " " + part + " "
+                                                + premier + "-" + dernier);
+                                nbLimites++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        assertEquals(12 * 11 * 14 * (PARTS_CONGES_PRIS.length + 3) * 144, nbLimites);
+    }
+
+    @Test
+    @DisplayName("Les quotas ne sont plus à jour dès qu'une valeur dont ils dépendent change, hors part des congés")
+    void testQuotasPlusAJour() {
+        LocalDate moisEnCours = LocalDate.of(2022, 12, 1);
+        LocalDate moisDebutContrat = LocalDate.of(2015, 1, 1);
+        QuotasConges quotas = QuotasConges.calcule(moisEnCours, 25, moisDebutContrat);
+
+        assertEquals(QuotasConges.TAILLE, quotas.getOctets().length);
+        assertTrue(quotas.estAJourPour(moisEnCours, 25, moisDebutContrat));
+        assertFalse(quotas.estAJourPour(moisEnCours.plusMonths(1), 25, moisDebutContrat));
+        assertFalse(quotas.estAJourPour(moisEnCours, 25.5, moisDebutContrat));
+        assertFalse(quotas.estAJourPour(moisEnCours, 25, LocalDate.of(2016, 1, 1)));
+        assertNull(QuotasConges.calcule(moisEnCours, -2.5, moisDebutContrat));
+        assertNull(QuotasConges.calcule(moisEnCours, Double.NaN, moisDebutContrat));
+        assertNull(QuotasConges.de(null));
+        assertNull(QuotasConges.de(new byte[12]));
+    }
+
+    @Test
+    @DisplayName("La clôture du mois précalcule les quotas, que la validation d'un congé lit quelle que soit la part")
+    void testQuotasCalculesALaClotureEtLus() {
+        // GIVEN (Arrange) : Un salarié clôturé en novembre, donc précalculé pour décembre, et une part des congés
+        // pris de l'entreprise qui change entre deux demandes
+        when(salarieAideADomicileRepository.partCongesPrisTotauxAnneeNMoins1EnLecture()).thenReturn(0.5, 0.25);
+        SalarieAideADomicileService salarieService = new SalarieAideADomicileService(salarieAideADomicileRepository);
+        salarieService.setDureeCachePartCongesPrisMs(0);
+        SalarieAideADomicile salarie = new SalarieAideADomicile.Builder("Salarie", LocalDate.of(2015, 1, 1),
+                LocalDate.of(2022, 11, 1))
+                .joursTravaillesAnneeNMoins1(200)
+                .congesPayesAcquisAnneeNMoins1(25)
+                .build();
+        salarieService.clotureMois(salarie, 20);
+        assertTrue(QuotasConges.de(salarie.getQuotasConges()).estAJourPour(LocalDate.of(2022, 12, 1), 25,
+                salarie.getMoisDebutContrat()));
+        // terme de décembre mis à -100 dans la forme compacte, pour voir d'où vient la limite
+        byte[] octets = salarie.getQuotasConges().clone();
+        ByteBuffer.wrap(octets).putDouble(QuotasConges.TAILLE - 8, -100);
+        salarie.setQuotasConges(octets);
+
+        // WHEN (Act) : Même congé, avec deux parts différentes
+        ValidationConge avecPart = salarieService.valideConge(salarie, LocalDate.of(2022, 12, 5),
+                LocalDate.of(2022, 12, 7));
+        ValidationConge avecAutrePart = salarieService.valideConge(salarie, LocalDate.of(2022, 12, 5),
+                LocalDate.of(2022, 12, 7));
+
+        // THEN (Assert) : Quotas lus les deux fois, la part appliquée à la lecture
+        assertEquals(MotifRejetConge.DEPASSE_LIMITE_ENTREPRISE, avecPart.getMotif());
+        assertEquals(QuotasConges.de(octets).limite(12, 12, 0.5), avecPart.getLimite());
+        assertEquals(QuotasConges.de(octets).limite(12, 12, 0.25), avecAutrePart.getLimite());
+        assertNotEquals(avecPart.getLimite(), avecAutrePart.getLimite());
+    }
+}
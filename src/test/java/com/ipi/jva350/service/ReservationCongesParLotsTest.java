@@ -0,0 +1,232 @@
+package com.ipi.jva350.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.ipi.jva350.exception.SalarieException;
+import com.ipi.jva350.model.SalarieAideADomicile;
+import com.ipi.jva350.repository.SalarieAideADomicileRepository;
+
+@SpringBootTest
+class ReservationCongesParLotsTest {
+
+    @Autowired
+    private ReservationCongesParLots reservationCongesParLots;
+
+    @Autowired
+    private SalarieAideADomicileRepository salarieRepo;
+
+    @Autowired
+    private VerrousSalaries verrousSalaries;
+
+    @BeforeEach
+    void setUp() {
+        // Nettoyer la base de données avant chaque test
+        salarieRepo.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reservationCongesParLots.setTailleLot(ReservationCongesParLots.TAILLE_LOT);
+        reservationCongesParLots.setLatenceMaxMs(ReservationCongesParLots.LATENCE_MAX_MS);
+    }
+
+    @Test
+    @DisplayName("Les demandes regroupées sont appliquées dans leur ordre d'arrivée, chacune avec son résultat")
+    void testAjouteCongeParLots() throws Exception {
+        // GIVEN (Arrange) : 10 salariés avec 8 jours acquis en N-1, des demandes regroupées par lots de 100 au plus
+        reservationCongesParLots.setTailleLot(100);
+        reservationCongesParLots.setLatenceMaxMs(200);
+        List<SalarieAideADomicile> salaries = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            salaries.add(new SalarieAideADomicile.Builder("Salarie" + i, LocalDate.of(2015, 1, 1),
+                    LocalDate.of(2022, 12, 1))
+                    .joursTravaillesAnneeNMoins1(200)
+                    .congesPayesAcquisAnneeNMoins1(8)
+                    .build());
+        }
+        salaries = salarieRepo.saveAll(salaries);
+        long nbLotsAvant = reservationCongesParLots.getNbLots();
+
+        // WHEN (Act) : Pour chaque salarié, une semaine en décembre puis une en janvier (au-delà des 8 jours),
+        // plus une demande pour un salarié inconnu
+        List<CompletableFuture<ValidationConge>> decembre = new ArrayList<>();
+        List<CompletableFuture<ValidationConge>> janvier = new ArrayList<>();
+        for (SalarieAideADomicile salarie : salaries) {
+            decembre.add(reservationCongesParLots.ajouteConge(salarie.getId(), LocalDate.of(2022, 12, 5),
+                    LocalDate.of(2022, 12, 10)));
+        }
+        CompletableFuture<ValidationConge> inconnu = reservationCongesParLots.ajouteConge(-1L,
+                LocalDate.of(2022, 12, 5), LocalDate.of(2022, 12, 10));
+        for (SalarieAideADomicile salarie : salaries) {
+            janvier.add(reservationCongesParLots.ajouteConge(salarie.getId(), LocalDate.of(2023, 1, 9),
+                    LocalDate.of(2023, 1, 14)));
+        }
+
+        // THEN (Assert) : Décembre accepté, janvier refusé après lui, l'inconnu seul en échec, moins de lots que
+        // de demandes
+        for (int i = 0; i < salaries.size(); i++) {
+            ValidationConge accepte = decembre.get(i).get(10, TimeUnit.SECONDS);
+            ValidationConge refuse = janvier.get(i).get(10, TimeUnit.SECONDS);
+            assertTrue(accepte.estAcceptee());
+            assertEquals(6, accepte.getNbJoursDecomptes());
+            assertEquals(MotifRejetConge.DEPASSE_ACQUIS_ANNEE_N_MOINS1, refuse.getMotif());
+            assertEquals(2, refuse.getLimite());
+        }
+        ExecutionException echec = assertThrows(ExecutionException.class, () -> inconnu.get(10, TimeUnit.SECONDS));
+        assertTrue(echec.getCause() instanceof SalarieException);
+        assertTrue(reservationCongesParLots.getNbLots() - nbLotsAvant < 21);
+        for (SalarieAideADomicile salarie : salarieRepo.findAll()) {
+            assertEquals(6, salarie.getCongesPayesPris().size());
+            assertEquals(6, salarie.getCongesPayesPrisAnneeNMoins1());
+        }
+    }
+
+    @Test
+    @DisplayName("Une demande en erreur échoue seule, les autres demandes de son lot sont appliquées une fois")
+    void testAjouteCongeParLotsAvecDemandeEnErreur() throws Exception {
+        // GIVEN (Arrange) : 3 salariés, des demandes regroupées dans un même lot
+        reservationCongesParLots.setTailleLot(100);
+        reservationCongesParLots.setLatenceMaxMs(200);
+        List<SalarieAideADomicile> salaries = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            salaries.add(new SalarieAideADomicile.Builder("Salarie" + i, LocalDate.of(2015, 1, 1),
+                    LocalDate.of(2022, 12, 1))
+                    .joursTravaillesAnneeNMoins1(200)
+                    .congesPayesAcquisAnneeNMoins1(25)
+                    .build());
+        }
+        salaries = salarieRepo.saveAll(salaries);
+
+        // WHEN (Act) : La demande du milieu lève une exception à son application (pas de premier jour)
+        CompletableFuture<ValidationConge> avant = reservationCongesParLots.ajouteConge(salaries.get(0).getId(),
+                LocalDate.of(2022, 12, 5), LocalDate.of(2022, 12, 10));
+        CompletableFuture<ValidationConge> enErreur = reservationCongesParLots.ajouteConge(salaries.get(1).getId(),
+                null, LocalDate.of(2022, 12, 10));
+        CompletableFuture<ValidationConge> apres = reservationCongesParLots.ajouteConge(salaries.get(2).getId(),
+                LocalDate.of(2022, 12, 5), LocalDate.of(2022, 12, 10));
+
+        // THEN (Assert) : Seule la demande en erreur échoue, avec son exception ; les autres sont sauvées une fois
+        assertTrue(avant.get(10, TimeUnit.SECONDS).estAcceptee());
+        assertTrue(apres.get(10, TimeUnit.SECONDS).estAcceptee());
+        ExecutionException echec = assertThrows(ExecutionException.class, () -> enErreur.get(10, TimeUnit.SECONDS));
+        assertTrue(echec.getCause() instanceof NullPointerException);
+        assertEquals(6, salarieRepo.findByNom("Salarie0").getCongesPayesPris().size());
+        assertEquals(0, salarieRepo.findByNom("Salarie1").getCongesPayesPris().size());
+        assertEquals(6, salarieRepo.findByNom("Salarie2").getCongesPayesPris().size());
+    }
+
+    @Test
+    @DisplayName("Un lot attend le verrou d'un de ses salariés tenu par une modification de la même instance")
+    void testAjouteCongeParLotsAttendLeVerrouDuSalarie() throws Exception {
+        // GIVEN (Arrange) : Un autre thread tient le verrou du salarié
+        SalarieAideADomicile salarie = salarieRepo.save(new SalarieAideADomicile.Builder("Salarie",
+                LocalDate.of(2015, 1, 1), LocalDate.of(2022, 12, 1))
+                .joursTravaillesAnneeNMoins1(200)
+                .congesPayesAcquisAnneeNMoins1(25)
+                .build());
+        CountDownLatch tenu = new CountDownLatch(1);
+        CountDownLatch rendu = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> autre = executor.submit(() -> verrousSalaries.execute(salarie.getId(), () -> {
+                tenu.countDown();
+                try {
+                    rendu.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }));
+            assertTrue(tenu.await(10, TimeUnit.SECONDS));
+
+            // WHEN (Act) : Une demande pour ce salarié
+            CompletableFuture<ValidationConge> demande = reservationCongesParLots.ajouteConge(salarie.getId(),
+                    LocalDate.of(2022, 12, 5), LocalDate.of(2022, 12, 6));
+
+            // THEN (Assert) : Son lot attend que le verrou soit rendu, puis l'applique
+            Thread.sleep(200);
+            assertFalse(demande.isDone());
+            rendu.countDown();
+            autre.get(10, TimeUnit.SECONDS);
+            assertTrue(demande.get(10, TimeUnit.SECONDS).estAcceptee());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Avec des lots d'une demande, chaque demande a sa propre transaction")
+    void testAjouteCongeLotsDeUneDemande() throws Exception {
+        reservationCongesParLots.setTailleLot(1);
+        SalarieAideADomicile salarie = salarieRepo.save(new SalarieAideADomicile.Builder("Salarie",
+                LocalDate.of(2015, 1, 1), LocalDate.of(2022, 12, 1))
+                .joursTravaillesAnneeNMoins1(200)
+                .congesPayesAcquisAnneeNMoins1(25)
+                .build());
+        long nbLotsAvant = reservationCongesParLots.getNbLots();
+
+        CompletableFuture<ValidationConge> premiere = reservationCongesParLots.ajouteConge(salarie.getId(),
+                LocalDate.of(2022, 12, 5), LocalDate.of(2022, 12, 6));
+        CompletableFuture<ValidationConge> seconde = reservationCongesParLots.ajouteConge(salarie.getId(),
+                LocalDate.of(2022, 12, 12), LocalDate.of(2022, 12, 13));
+
+        ValidationConge validationPremiere = premiere.get(10, TimeUnit.SECONDS);
+        ValidationConge validationSeconde = seconde.get(10, TimeUnit.SECONDS);
+        assertTrue(validationPremiere.estAcceptee());
+        assertTrue(validationSeconde.estAcceptee());
+        assertEquals(2, reservationCongesParLots.getNbLots() - nbLotsAvant);
+        assertEquals(validationPremiere.getNbJoursDecomptes() + validationSeconde.getNbJoursDecomptes(),
+                salarieRepo.findByNom("Salarie").getCongesPayesPris().size());
+        assertThrows(IllegalArgumentException.class, () -> reservationCongesParLots.setTailleLot(0));
+        assertThrows(IllegalArgumentException.class, () -> reservationCongesParLots.setLatenceMaxMs(-1));
+    }
+
+    @Test
+    @DisplayName("Arrêtée avec le contexte, la réservation refuse les demandes, puis les traite une fois redémarrée")
+    void testArretEtRedemarrage() throws Exception {
+        // GIVEN (Arrange) : Un salarié, la réservation démarrée par le contexte Spring
+        SalarieAideADomicile salarie = salarieRepo.save(new SalarieAideADomicile.Builder("Salarie",
+                LocalDate.of(2015, 1, 1), LocalDate.of(2022, 12, 1))
+                .joursTravaillesAnneeNMoins1(200)
+                .congesPayesAcquisAnneeNMoins1(25)
+                .build());
+        assertTrue(reservationCongesParLots.isRunning());
+
+        try {
+            // WHEN (Act) : Arrêt puis demande
+            reservationCongesParLots.stop();
+            CompletableFuture<ValidationConge> pendantArret = reservationCongesParLots.ajouteConge(salarie.getId(),
+                    LocalDate.of(2022, 12, 5), LocalDate.of(2022, 12, 6));
+
+            // THEN (Assert) : La demande échoue sans attendre
+            assertFalse(reservationCongesParLots.isRunning());
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> pendantArret.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+        } finally {
+            reservationCongesParLots.start();
+        }
+
+        // THEN (Assert) : Redémarrée, elle traite de nouveau les demandes
+        assertTrue(reservationCongesParLots.ajouteConge(salarie.getId(), LocalDate.of(2022, 12, 5),
+                LocalDate.of(2022, 12, 6)).get(10, TimeUnit.SECONDS).estAcceptee());
+    }
+}
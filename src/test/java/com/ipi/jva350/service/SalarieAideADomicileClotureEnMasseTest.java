@@ -0,0 +1,218 @@
+package com.ipi.jva350.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.ToDoubleFunction;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.ipi.jva350.model.JoursTravaillesDuMois;
+import com.ipi.jva350.model.SalarieAideADomicile;
+import com.ipi.jva350.repository.JoursTravaillesDuMoisRepository;
+import com.ipi.jva350.repository.SalarieAideADomicileRepository;
+
+/**
+ * Compare la clôture en masse et par lots à clotureMois() appelé salarié par salarié, sur les mêmes salariés
+ * aléatoires.
+ */
+@SpringBootTest
+class SalarieAideADomicileClotureEnMasseTest {
+
+    private static final int NB_SALARIES = 60;
+
+    @Autowired
+    private SalarieAideADomicileService salarieService;
+
+    @Autowired
+    private SalarieAideADomicileRepository salarieRepo;
+
+    @Autowired
+    private JoursTravaillesDuMoisRepository joursTravaillesRepo;
+
+    @BeforeEach
+    void setUp() {
+        // Nettoyer la base de données avant chaque test
+        salarieRepo.deleteAll();
+        joursTravaillesRepo.deleteAll();
+    }
+
+    @ParameterizedTest(name = "Mois clôturé : {0}")
+    @ValueSource(strings = {"2023-05-01", "2023-11-01"})
+    @DisplayName("La clôture en masse donne le même résultat que clotureMois() sur chaque salarié")
+    void testClotureMoisEnMasse(String moisCloture) {
+        // GIVEN (Arrange) : Des salariés aléatoires, dont une partie seulement dans le mois clôturé
+        LocalDate mois = LocalDate.parse(moisCloture);
+        double joursTravailles = 19.5;
+        List<SalarieAideADomicile> salaries = creeSalaries(mois, 42);
+        salarieRepo.saveAll(salaries);
+        salarieRepo.reconcilieCompteurConges();
+        for (SalarieAideADomicile salarie : salarieRepo.findAll()) {
+            if (salarie.getMoisEnCours().equals(mois)) {
+                salarieService.clotureMois(salarie, joursTravailles);
+            }
+        }
+        Map<String, String> attendu = photographie();
+        Double partAttendue = salarieRepo.partCongesPrisTotauxAnneeNMoins1();
+
+        salarieRepo.deleteAll();
+        salarieRepo.saveAll(creeSalaries(mois, 42));
+
+        // WHEN (Act) : Clôture en masse
+        int nbClotures = salarieService.clotureMoisEnMasse(mois, joursTravailles);
+
+        // THEN (Assert) : Mêmes salariés, même part des congés pris de l'entreprise
+        assertEquals(nbDansLeMois(salaries, mois), nbClotures);
+        assertEquals(attendu, photographie());
+        assertEquals(partAttendue, salarieRepo.partCongesPrisTotauxAnneeNMoins1());
+    }
+
+    @ParameterizedTest(name = "Mois clôturé : {0}")
+    @ValueSource(strings = {"2023-05-01", "2023-11-01"})
+    @DisplayName("La clôture en masse depuis les jours travaillés déposés donne le même résultat que clotureMois()")
+    void testClotureMoisEnMasseDepuisJoursTravailles(String moisCloture) {
+        // GIVEN (Arrange) : Des jours travaillés différents par salarié, un salarié du mois sans jours déposés
+        LocalDate mois = LocalDate.parse(moisCloture);
+        Random random = new Random(7);
+        List<SalarieAideADomicile> salaries = creeSalaries(mois, 43);
+        Map<String, Double> joursTravailles = new TreeMap<>();
+        String sansJoursDeposes = null;
+        for (SalarieAideADomicile salarie : salaries) {
+            if (!salarie.getMoisEnCours().equals(mois)) {
+                continue;
+            }
+            if (sansJoursDeposes == null) {
+                sansJoursDeposes = salarie.getNom();
+            } else {
+                joursTravailles.put(salarie.getNom(), random.nextInt(45) / 2d);
+            }
+        }
+        salarieRepo.saveAll(salaries);
+        salarieRepo.reconcilieCompteurConges();
+        for (SalarieAideADomicile salarie : salarieRepo.findAll()) {
+            Double jours = joursTravailles.get(salarie.getNom());
+            if (jours != null) {
+                salarieService.clotureMois(salarie, jours);
+            }
+        }
+        Map<String, String> attendu = photographie();
+        Double partAttendue = salarieRepo.partCongesPrisTotauxAnneeNMoins1();
+
+        salarieRepo.deleteAll();
+        for (SalarieAideADomicile salarie : salarieRepo.saveAll(creeSalaries(mois, 43))) {
+            Double jours = joursTravailles.get(salarie.getNom());
+            if (jours != null) {
+                joursTravaillesRepo.save(new JoursTravaillesDuMois(salarie.getId(), mois, jours));
+            }
+        }
+
+        // WHEN (Act) : Clôture en masse depuis les jours déposés
+        int nbClotures = salarieService.clotureMoisEnMasseDepuisJoursTravailles(mois);
+
+        // THEN (Assert) : Seuls les salariés avec des jours déposés sont clôturés, comme un par un
+        assertEquals(joursTravailles.size(), nbClotures);
+        assertEquals(attendu, photographie());
+        assertEquals(partAttendue, salarieRepo.partCongesPrisTotauxAnneeNMoins1());
+        assertEquals(mois, salarieRepo.findByNom(sansJoursDeposes).getMoisEnCours());
+    }
+
+    @ParameterizedTest(name = "Mois clôturé : {0}")
+    @ValueSource(strings = {"2023-05-01", "2023-11-01"})
+    @DisplayName("La clôture par lots donne le même résultat que clotureMois() sur chaque salarié")
+    void testClotureMoisParLots(String moisCloture) {
+        // GIVEN (Arrange) : Des jours travaillés propres à chaque salarié, des lots plus petits que le nombre de
+        // salariés et qui ne le divisent pas
+        LocalDate mois = LocalDate.parse(moisCloture);
+        ToDoubleFunction<SalarieAideADomicile> joursTravailles = s -> (s.getNom().hashCode() & 31) / 2d;
+        List<SalarieAideADomicile> salaries = creeSalaries(mois, 44);
+        salarieRepo.saveAll(salaries);
+        salarieRepo.reconcilieCompteurConges();
+        for (SalarieAideADomicile salarie : salarieRepo.findAll()) {
+            if (salarie.getMoisEnCours().equals(mois)) {
+                salarieService.clotureMois(salarie, joursTravailles.applyAsDouble(salarie));
+            }
+        }
+        Map<String, String> attendu = photographie();
+        Double partAttendue = salarieRepo.partCongesPrisTotauxAnneeNMoins1();
+
+        salarieRepo.deleteAll();
+        salarieRepo.saveAll(creeSalaries(mois, 44));
+        salarieRepo.reconcilieCompteurConges();
+        salarieService.setTailleLotCloture(7);
+        int nbClotures;
+        try {
+            // WHEN (Act) : Clôture par lots
+            nbClotures = salarieService.clotureMoisParLots(mois, joursTravailles);
+        } finally {
+            salarieService.setTailleLotCloture(SalarieAideADomicileService.TAILLE_LOT_CLOTURE);
+        }
+
+        // THEN (Assert) : Aucune modification perdue au vidage des lots
+        assertEquals(nbDansLeMois(salaries, mois), nbClotures);
+        assertEquals(attendu, photographie());
+        assertEquals(partAttendue, salarieRepo.partCongesPrisTotauxAnneeNMoins1());
+        assertThrows(IllegalArgumentException.class, () -> salarieService.setTailleLotCloture(0));
+    }
+
+    /**
+     * Salariés reproductibles pour une graine donnée : un sur deux dans le mois clôturé, les autres un mois avant ou
+     * après, avec des congés pris sur l'année de congés passée et l'actuelle. Ceux hors du mois clôturé ont aussi un
+     * jour pris avant leur année de congés, que la clôture ne doit pas leur retirer : en mai, ceux déjà en juin sont
+     * comme des salariés créés directement sur ce mois.
+     */
+    private static List<SalarieAideADomicile> creeSalaries(LocalDate mois, long graine) {
+        Random random = new Random(graine);
+        List<SalarieAideADomicile> salaries = new ArrayList<>();
+        for (int i = 0; i < NB_SALARIES; i++) {
+            LocalDate moisEnCours = i % 2 == 0 ? mois : mois.plusMonths(i % 4 == 1 ? -1 : 1);
+            SalarieAideADomicile salarie = new SalarieAideADomicile.Builder(String.format("Salarie%03d", i),
+                    LocalDate.of(2015 + random.nextInt(8), 1 + random.nextInt(12), 1), moisEnCours)
+                    .joursTravaillesAnneeN(random.nextInt(200))
+                    .congesPayesAcquisAnneeN(random.nextInt(25))
+                    .joursTravaillesAnneeNMoins1(random.nextInt(250))
+                    .congesPayesAcquisAnneeNMoins1(20 + random.nextInt(11))
+                    .congesPayesPrisAnneeNMoins1(random.nextInt(20))
+                    .build();
+            LocalDate premierJourAnneeDeConges = SalarieAideADomicile.getPremierJourAnneeDeConges(moisEnCours);
+            int nbJoursPris = random.nextInt(15);
+            for (int j = 0; j < nbJoursPris; j++) {
+                salarie.getCongesPayesPris().add(premierJourAnneeDeConges.plusDays(random.nextInt(365)));
+            }
+            if (!moisEnCours.equals(mois)) {
+                salarie.getCongesPayesPris().add(premierJourAnneeDeConges.minusDays(1 + random.nextInt(28)));
+            }
+            salaries.add(salarie);
+        }
+        return salaries;
+    }
+
+    private static long nbDansLeMois(List<SalarieAideADomicile> salaries, LocalDate mois) {
+        return salaries.stream().filter(s -> s.getMoisEnCours().equals(mois)).count();
+    }
+
+    /**
+     * @return l'état persisté de chaque salarié, par nom (les id diffèrent d'une création à l'autre)
+     */
+    private Map<String, String> photographie() {
+        Map<String, String> salaries = new TreeMap<>();
+        for (SalarieAideADomicile s : salarieRepo.findAll()) {
+            salaries.put(s.getNom(), s.getMoisEnCours() + " " + s.getMoisDebutContrat()
+                    + " N=" + s.getJoursTravaillesAnneeN() + "/" + s.getCongesPayesAcquisAnneeN()
+                    + " N-1=" + s.getJoursTravaillesAnneeNMoins1() + "/" + s.getCongesPayesAcquisAnneeNMoins1()
+                    + "/" + s.getCongesPayesPrisAnneeNMoins1()
+                    + " pris=" + new TreeSet<>(s.getCongesPayesPris()));
+        }
+        return salaries;
+    }
+}
@@ -0,0 +1,91 @@
+package com.ipi.jva350.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import com.ipi.jva350.model.SalarieAideADomicile;
+import com.ipi.jva350.repository.SalarieAideADomicileRepository;
+
+@SpringBootTest
+class SalarieAideADomicileCreationEnLotTest {
+
+    @Autowired
+    private SalarieAideADomicileService salarieService;
+
+    @Autowired
+    private SalarieAideADomicileRepository salarieRepo;
+
+    @BeforeEach
+    void setUp() {
+        // Nettoyer la base de données avant chaque test
+        salarieRepo.deleteAll();
+        salarieRepo.reconcilieCompteurConges();
+    }
+
+    @Test
+    @DisplayName("La création en lot crée les salariés valides et signale chaque salarié refusé")
+    void testCreationEnLotAvecConflits() {
+        // GIVEN (Arrange) : Un salarié existant, et un lot plus grand qu'une requête de vérification des noms
+        salarieRepo.save(salarie("Existant"));
+        List<SalarieAideADomicile> lot = new ArrayList<>();
+        for (int i = 0; i < SalarieAideADomicileService.TAILLE_LOT_CREATION + 10; i++) {
+            lot.add(salarie("Salarie" + i, i % 7));
+        }
+        lot.set(3, salarie("Existant"));
+        lot.set(1005, salarie("Salarie2"));
+        SalarieAideADomicile avecId = salarie("AvecId");
+        avecId.setId(123456L);
+        lot.set(7, avecId);
+
+        // WHEN (Act)
+        List<ConflitCreation> conflits = salarieService.creerSalariesAideADomicile(lot);
+
+        // THEN (Assert) : Trois refus dans l'ordre du lot, les autres créés avec leur id et comptés dans les compteurs
+        assertEquals(Arrays.asList(3, 7, 1005), Arrays.asList(conflits.get(0).getRang(), conflits.get(1).getRang(),
+                conflits.get(2).getRang()));
+        assertEquals(3, conflits.size());
+        assertEquals("Un salarié existe déjà avec le nom Existant", conflits.get(0).getMessage());
+        assertEquals("L'id ne doit pas être fourni car il est généré", conflits.get(1).getMessage());
+        assertEquals("Le nom Salarie2 est déjà créé plus haut dans le lot", conflits.get(2).getMessage());
+        assertEquals(1 + lot.size() - 3, salarieRepo.count());
+        assertNotNull(lot.get(1009).getId());
+        assertEquals("Salarie1009", salarieRepo.findById(lot.get(1009).getId())
+                .orElseThrow(IllegalStateException::new).getNom());
+        Double part = salarieRepo.partCongesPrisTotauxAnneeNMoins1();
+        assertEquals(salarieRepo.reconcilieCompteurConges().getPartCongesPrisTotauxAnneeNMoins1(), part);
+    }
+
+    @Test
+    @DisplayName("L'index unique sur le nom rejette un doublon qui a échappé aux vérifications")
+    void testIndexUniqueSurLeNom() {
+        // GIVEN (Arrange)
+        salarieRepo.save(salarie("Doublon"));
+
+        // WHEN (Act) / THEN (Assert)
+        assertThrows(DataIntegrityViolationException.class, () -> salarieRepo.save(salarie("Doublon")));
+        assertEquals(1, salarieRepo.count());
+    }
+
+    private static SalarieAideADomicile salarie(String nom) {
+        return salarie(nom, 10);
+    }
+
+    private static SalarieAideADomicile salarie(String nom, double congesPayesPrisAnneeNMoins1) {
+        return new SalarieAideADomicile.Builder(nom, LocalDate.of(2015, 1, 1), LocalDate.of(2022, 12, 1))
+                .joursTravaillesAnneeNMoins1(220)
+                .congesPayesAcquisAnneeNMoins1(25)
+                .congesPayesPrisAnneeNMoins1(congesPayesPrisAnneeNMoins1)
+                .build();
+    }
+}
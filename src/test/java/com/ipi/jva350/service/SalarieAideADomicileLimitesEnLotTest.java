@@ -0,0 +1,83 @@
+package com.ipi.jva350.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.ipi.jva350.model.Calendrier;
+
+class SalarieAideADomicileLimitesEnLotTest {
+
+    @Test
+    @DisplayName("Les limites calculées en lot sont celles de calculeLimiteEntrepriseCongesPermis, au bit près")
+    void testLimitesEnLotCommeLaFormule() {
+        // GIVEN (Arrange) : Des demandes au hasard, plus d'un bloc, acquis ronds ou quelconques
+        Random random = new Random(20);
+        int nbDemandes = 3 * SalarieAideADomicileService.TAILLE_BLOC_LIMITES + 17;
+        for (double part : new double[]{0, 0.5, 1, random.nextDouble()}) {
+            int[] anneeMoisEnCours = new int[nbDemandes];
+            double[] acquis = new double[nbDemandes];
+            int[] anneeDebutContrat = new int[nbDemandes];
+            int[] moisPremierJour = new int[nbDemandes];
+            int[] moisDernierJour = new int[nbDemandes];
+            for (int i = 0; i < nbDemandes; i++) {
+                anneeMoisEnCours[i] = Calendrier.anneeMois(2000 + random.nextInt(30), 1 + random.nextInt(12));
+                acquis[i] = i % 3 == 0 ? random.nextInt(61) / 2d
+                        : i % 3 == 1 ? random.nextInt(400) / 12d : random.nextDouble() * 40;
+                anneeDebutContrat[i] = 1990 + random.nextInt(40);
+                moisPremierJour[i] = 1 + random.nextInt(12);
+                moisDernierJour[i] = 1 + random.nextInt(12);
+            }
+            long[] limites = new long[nbDemandes];
+
+            // WHEN (Act)
+            SalarieAideADomicileService.calculeLimitesEntrepriseCongesPermis(anneeMoisEnCours, acquis,
+                    anneeDebutContrat, moisPremierJour, moisDernierJour, limites, part);
+
+            // THEN (Assert)
+            for (int i = 0; i < nbDemandes; i++) {
+                LocalDate moisEnCours = LocalDate.of(Calendrier.anneeDeLAnneeMois(anneeMoisEnCours[i]),
+                        Calendrier.moisDeLAnneeMois(anneeMoisEnCours[i]), 1);
+                assertEquals(SalarieAideADomicileService.calculeLimiteEntrepriseCongesPermis(moisEnCours,
+                        acquis[i], LocalDate.of(anneeDebutContrat[i], 1, 1),
+                        LocalDate.of(2023, moisPremierJour[i], 10), LocalDate.of(2023, moisDernierJour[i], 20), part),
+                        limites[i], "demande " + i);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("L'arrondi rapide est celui de la formule, y compris tout près d'une demi-unité")
+    void testArrondiLimiteCommeLaFormule() {
+        for (int entier = -30; entier <= 30; entier++) {
+            for (int dixMilliemes = -30; dixMilliemes <= 30; dixMilliemes++) {
+                double valeur = entier + 0.5 + dixMilliemes / 10_000d;
+                for (double limite : new double[]{valeur, Math.nextUp(valeur), Math.nextDown(valeur),
+                        entier + dixMilliemes / 10_000d, entier + 0.4995, entier - 0.4995, entier + 0.5005}) {
+                    assertEquals(arrondiDeLaFormule(limite), SalarieAideADomicileService.arrondiLimite(limite),
+                            Double.toString(limite));
+                }
+            }
+        }
+        assertEquals(arrondiDeLaFormule(3e12 + 0.4996), SalarieAideADomicileService.arrondiLimite(3e12 + 0.4996));
+        assertThrows(NumberFormatException.class, () -> SalarieAideADomicileService.arrondiLimite(Double.NaN));
+    }
+
+    @Test
+    @DisplayName("Des tableaux de tailles différentes sont refusés")
+    void testLimitesEnLotTaillesDifferentes() {
+        assertThrows(IllegalArgumentException.class, () -> SalarieAideADomicileService
+                .calculeLimitesEntrepriseCongesPermis(new int[2], new double[2], new int[2], new int[1], new int[2],
+                        new long[2], 0.5));
+    }
+
+    private static long arrondiDeLaFormule(double limite) {
+        return Math.round(new BigDecimal(Double.toString(limite)).setScale(3, RoundingMode.HALF_UP).doubleValue());
+    }
+}
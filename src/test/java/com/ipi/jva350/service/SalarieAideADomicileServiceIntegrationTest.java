@@ -9,13 +9,11 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.transaction.annotation.Transactional;
 
 import com.ipi.jva350.model.SalarieAideADomicile;
 import com.ipi.jva350.repository.SalarieAideADomicileRepository;
 
 @SpringBootTest
-@Transactional
 class SalarieAideADomicileServiceIntegrationTest {
 
     @Autowired
@@ -26,7 +24,8 @@ class SalarieAideADomicileServiceIntegrationTest {
     
     @BeforeEach
     void setUp() {
-        // Nettoyer la base de données avant chaque test
+        // Nettoyer la base de données avant chaque test ; pas de transaction autour des tests : la part des congés
+        // pris de l'entreprise n'est lue que dans les écritures validées
         salarieRepo.deleteAll();
     }
     
@@ -112,4 +111,43 @@ class SalarieAideADomicileServiceIntegrationTest {
         assertTrue(differenceLimite >= 9 && differenceLimite <= 10, 
             "La différence de limite due à l'ancienneté devrait être d'environ 9 jours");
     }
-}
\ No newline at end of file
+    @Test
+    @DisplayName("Un congé qui finit après le 1er juin férié (lundi de Pentecôte) est ajouté en entier")
+    void testAjouteCongeApresPentecoteLe1erJuin() throws Exception {
+        // GIVEN (Arrange) : Le 1er juin 2020 est le lundi de Pentecôte, le jour ouvré toléré est donc le 2 juin
+        SalarieAideADomicile salarie = salarieRepo.save(new SalarieAideADomicile.Builder("Pentecote",
+                LocalDate.of(2015, 1, 1), LocalDate.of(2020, 5, 1))
+                .joursTravaillesAnneeNMoins1(220)
+                .congesPayesAcquisAnneeNMoins1(1000)
+                .build());
+
+        // WHEN (Act)
+        salarieService.ajouteConge(salarie, LocalDate.of(2020, 5, 29), LocalDate.of(2020, 6, 2));
+
+        // THEN (Assert) : Les jours des deux années de congés sont gardés
+        SalarieAideADomicile relu = salarieRepo.findById(salarie.getId()).orElseThrow(IllegalStateException::new);
+        assertTrue(relu.getCongesPayesPris().contains(LocalDate.of(2020, 5, 30)));
+        assertTrue(relu.getCongesPayesPris().contains(LocalDate.of(2020, 6, 2)));
+    }
+
+    @Test
+    @DisplayName("Un congé de la nouvelle année de congés s'ajoute aux jours gardés d'une année précédente")
+    void testAjouteCongeAvecJourDUneAnneePrecedente() throws Exception {
+        // GIVEN (Arrange) : Un salarié qui garde un jour de l'année de congés 2022
+        SalarieAideADomicile historique = new SalarieAideADomicile.Builder("Historique",
+                LocalDate.of(2015, 1, 1), LocalDate.of(2023, 9, 1))
+                .joursTravaillesAnneeNMoins1(220)
+                .congesPayesAcquisAnneeNMoins1(1000)
+                .build();
+        historique.getCongesPayesPris().add(LocalDate.of(2022, 7, 4));
+        SalarieAideADomicile salarie = salarieRepo.save(historique);
+
+        // WHEN (Act) : Il pose des jours de l'année de congés 2023
+        salarieService.ajouteConge(salarie, LocalDate.of(2023, 9, 4), LocalDate.of(2023, 9, 5));
+
+        // THEN (Assert) : Les deux jours sont gardés
+        SalarieAideADomicile relu = salarieRepo.findById(salarie.getId()).orElseThrow(IllegalStateException::new);
+        assertTrue(relu.getCongesPayesPris().contains(LocalDate.of(2022, 7, 4)));
+        assertTrue(relu.getCongesPayesPris().contains(LocalDate.of(2023, 9, 5)));
+    }
+}
@@ -0,0 +1,119 @@
+package com.ipi.jva350.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.ipi.jva350.model.SalarieAideADomicile;
+import com.ipi.jva350.repository.SalarieAideADomicileRepository;
+import com.ipi.jva350.service.SimulationConges.Plage;
+import com.ipi.jva350.service.SimulationConges.Simulation;
+
+@ExtendWith(MockitoExtension.class)
+class SimulationCongesTest {
+
+    @Mock
+    private SalarieAideADomicileRepository salarieAideADomicileRepository;
+
+    private SalarieAideADomicileService salarieService;
+    private SimulationConges simulationConges;
+
+    @BeforeEach
+    void setUp() {
+        salarieService = new SalarieAideADomicileService(salarieAideADomicileRepository);
+        // relue à chaque demande : seule la simulation la partage
+        salarieService.setDureeCachePartCongesPrisMs(0);
+        simulationConges = new SimulationConges(salarieService);
+    }
+
+    @Test
+    @DisplayName("La simulation d'un lot de plages donne les mêmes décisions que valideConge, sans rien modifier")
+    void testSimuleCommeValideConge() {
+        // GIVEN (Arrange) : Des salariés variés, des plages au hasard autour de leur mois en cours
+        when(salarieAideADomicileRepository.partCongesPrisTotauxAnneeNMoins1EnLecture()).thenReturn(0.4);
+        Random random = new Random(18);
+        for (int s = 0; s < 20; s++) {
+            LocalDate moisEnCours = LocalDate.of(2022, 6, 1).plusMonths(random.nextInt(12));
+            SalarieAideADomicile salarie = new SalarieAideADomicile.Builder("Salarie" + s,
+                    LocalDate.of(2010 + random.nextInt(13), 1, 1), moisEnCours)
+                    .joursTravaillesAnneeNMoins1(s % 7 == 0 ? 5 : 200)
+                    .congesPayesAcquisAnneeNMoins1(random.nextInt(30))
+                    .congesPayesPrisAnneeNMoins1(random.nextInt(5))
+                    .build();
+            LinkedHashSet<LocalDate> congesPayesPris = new LinkedHashSet<>();
+            congesPayesPris.add(moisEnCours.plusDays(random.nextInt(20)));
+            salarie.setCongesPayesPris(congesPayesPris);
+            List<Plage> plages = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                LocalDate jourDebut = moisEnCours.plusDays(random.nextInt(400) - 40);
+                plages.add(new Plage(jourDebut, jourDebut.plusDays(random.nextInt(30))));
+            }
+
+            // WHEN (Act)
+            List<Simulation> simulations = simulationConges.simule(salarie, plages);
+
+            // THEN (Assert) : Même motif, et mêmes jours décomptés et limite quand valideConge les donne
+            assertEquals(plages.size(), simulations.size());
+            for (int i = 0; i < plages.size(); i++) {
+                Plage plage = plages.get(i);
+                Simulation simulation = simulations.get(i);
+                ValidationConge validation = salarieService.valideConge(salarie, plage.getJourDebut(),
+                        plage.getJourFin());
+                assertSame(plage, simulation.getPlage());
+                assertEquals(validation.getMotif(), simulation.getMotif(), plage.toString());
+                if (validation.estAcceptee()
+                        || validation.getMotif() == MotifRejetConge.DEPASSE_LIMITE_ENTREPRISE) {
+                    assertEquals(validation.getNbJoursDecomptes(), simulation.getNbJoursDecomptes());
+                    assertEquals(validation.getLimite(), simulation.getLimite());
+                }
+                assertEquals(salarieService.calculeLimiteEntrepriseCongesPermis(moisEnCours,
+                        salarie.getCongesPayesAcquisAnneeNMoins1(), salarie.getMoisDebutContrat(),
+                        plage.getJourDebut(), plage.getJourFin()), simulation.getLimite());
+            }
+            assertEquals(congesPayesPris, salarie.getCongesPayesPris());
+        }
+        verify(salarieAideADomicileRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Un lot de plages ne lit qu'une fois la part des congés pris de l'entreprise")
+    void testSimuleLitLaPartUneFois() {
+        // GIVEN (Arrange) : 100 plages de décembre à avril
+        when(salarieAideADomicileRepository.partCongesPrisTotauxAnneeNMoins1EnLecture()).thenReturn(0.5);
+        SalarieAideADomicile salarie = new SalarieAideADomicile.Builder("Salarie", LocalDate.of(2015, 1, 1),
+                LocalDate.of(2022, 12, 1))
+                .joursTravaillesAnneeNMoins1(200)
+                .congesPayesAcquisAnneeNMoins1(25)
+                .build();
+        List<Plage> plages = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            LocalDate jourDebut = LocalDate.of(2022, 12, 5).plusDays(i);
+            plages.add(new Plage(jourDebut, jourDebut.plusDays(i % 4)));
+        }
+
+        // WHEN (Act)
+        List<Simulation> simulations = simulationConges.simule(salarie, plages);
+
+        // THEN (Assert) : Une seule lecture, aucune écriture, le salarié inchangé
+        verify(salarieAideADomicileRepository, times(1)).partCongesPrisTotauxAnneeNMoins1EnLecture();
+        verifyNoMoreInteractions(salarieAideADomicileRepository);
+        assertTrue(simulations.get(0).estAcceptee());
+        assertEquals(1, simulations.get(0).getNbJoursDecomptes());
+        assertTrue(salarie.getCongesPayesPris().isEmpty());
+        assertEquals(0, salarie.getCongesPayesPrisAnneeNMoins1());
+        assertTrue(simulationConges.simule(salarie, new ArrayList<>()).isEmpty());
+        verifyNoMoreInteractions(salarieAideADomicileRepository);
+    }
+}
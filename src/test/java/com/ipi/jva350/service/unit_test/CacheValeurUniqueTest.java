@@ -0,0 +1,117 @@
+package com.ipi.jva350.service.unit_test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.ipi.jva350.service.CacheValeurUnique;
+
+class CacheValeurUniqueTest {
+
+    @Test
+    @DisplayName("La valeur est servie depuis la mémoire jusqu'à son invalidation")
+    void testServieJusquALInvalidation() {
+        // GIVEN (Arrange) : Une source qui compte ses lectures, une durée de vie longue
+        AtomicInteger nbLectures = new AtomicInteger();
+        CacheValeurUnique<Double> cache = new CacheValeurUnique<>(() -> nbLectures.incrementAndGet() / 10d, 60_000);
+
+        // WHEN (Act) : Trois lectures, une invalidation, une lecture
+        double premiere = cache.get();
+        cache.get();
+        cache.get();
+        cache.invalide();
+        double apresInvalidation = cache.get();
+
+        // THEN (Assert) : Deux lectures à la source
+        assertEquals(0.1, premiere);
+        assertEquals(0.2, apresInvalidation);
+        assertEquals(2, cache.getNbChargements());
+        assertEquals(2, cache.getNbTrouves());
+        assertEquals(0, cache.getNbRegroupes());
+    }
+
+    @Test
+    @DisplayName("Sans durée de vie, chaque lecture va à la source, y compris une valeur null")
+    void testSansDureeDeVie() {
+        AtomicInteger nbLectures = new AtomicInteger();
+        CacheValeurUnique<Double> cache = new CacheValeurUnique<>(() -> {
+            nbLectures.incrementAndGet();
+            return null;
+        }, 0);
+        assertNull(cache.get());
+        assertNull(cache.get());
+        assertEquals(2, nbLectures.get());
+        assertThrows(IllegalArgumentException.class, () -> cache.setDureeDeVieMs(-1));
+    }
+
+    @Test
+    @DisplayName("Une erreur de la source n'est pas gardée en cache")
+    void testErreurNonGardee() {
+        AtomicInteger nbLectures = new AtomicInteger();
+        CacheValeurUnique<Integer> cache = new CacheValeurUnique<>(() -> {
+            if (nbLectures.incrementAndGet() == 1) {
+                throw new IllegalStateException("base indisponible");
+            }
+            return 42;
+        }, 60_000);
+        assertThrows(IllegalStateException.class, cache::get);
+        assertEquals(42, cache.get());
+        assertEquals(42, cache.get());
+        assertEquals(2, nbLectures.get());
+    }
+
+    @Test
+    @DisplayName("Les lectures simultanées pendant un chargement sont regroupées en une seule")
+    void testLecturesSimultaneesRegroupees() throws Exception {
+        // GIVEN (Arrange) : Une source lente, bloquée jusqu'à ce que tous les appelants attendent
+        int nbAppelants = 16;
+        CountDownLatch chargementCommence = new CountDownLatch(1);
+        CountDownLatch libereChargement = new CountDownLatch(1);
+        AtomicInteger nbLectures = new AtomicInteger();
+        CacheValeurUnique<Double> cache = new CacheValeurUnique<>(() -> {
+            nbLectures.incrementAndGet();
+            chargementCommence.countDown();
+            try {
+                libereChargement.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 0.7;
+        }, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(nbAppelants);
+        try {
+            // WHEN (Act) : Tous les appelants demandent la valeur pendant le chargement
+            List<Future<Double>> valeurs = new ArrayList<>();
+            valeurs.add(executor.submit(cache::get));
+            assertTrue(chargementCommence.await(10, TimeUnit.SECONDS));
+            for (int i = 1; i < nbAppelants; i++) {
+                valeurs.add(executor.submit(cache::get));
+            }
+            long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (cache.getNbRegroupes() < nbAppelants - 1 && System.nanoTime() < limite) {
+                Thread.sleep(1);
+            }
+            libereChargement.countDown();
+
+            // THEN (Assert) : Une seule lecture à la source, même valeur pour tous
+            for (Future<Double> valeur : valeurs) {
+                assertEquals(0.7, valeur.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, nbLectures.get());
+            assertEquals(1, cache.getNbChargements());
+            assertEquals(nbAppelants - 1, cache.getNbRegroupes());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -3,20 +3,35 @@ package com.ipi.jva350.service.unit_test;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.ipi.jva350.model.SalarieAideADomicile;
 import com.ipi.jva350.repository.SalarieAideADomicileRepository;
+import com.ipi.jva350.service.SalarieAideADomicileService;
 
 @SpringBootTest
 class SalarieAideADomicileRepositoryPartCongesTest {
 
     @Autowired
     private SalarieAideADomicileRepository salarieRepo;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SalarieAideADomicileService salarieService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
     
     @BeforeEach
     void setUp() {
@@ -87,4 +102,117 @@ class SalarieAideADomicileRepositoryPartCongesTest {
         // THEN (Assert) : Vérification que la méthode renvoie null si aucun salarié
         assertNull(partCongesPris, "La part des congés pris devrait être null sans salariés");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testPartCongesPrisTotauxAnneeNMoins1TenueAJourParLesEcritures() {
+        // GIVEN (Arrange) : Des compteurs initialisés
+        salarieRepo.reconcilieCompteurConges();
+        Random random = new Random(10);
+
+        // WHEN (Act) : Créations, modifications de salariés détachés et suppressions au hasard
+        for (int i = 0; i < 60; i++) {
+            List<SalarieAideADomicile> salaries = salarieRepo.findAll();
+            int operation = random.nextInt(4);
+            if (salaries.isEmpty() || operation == 0) {
+                salarieRepo.save(new SalarieAideADomicile.Builder("Salarie" + i,
+                    LocalDate.of(2020, 1, 1), LocalDate.of(2023, 5, 1))
+                    .congesPayesAcquisAnneeNMoins1(20 + random.nextInt(10))
+                    .congesPayesPrisAnneeNMoins1(random.nextInt(10))
+                    .build());
+            } else if (operation == 1 && salaries.size() > 1) {
+                salarieRepo.delete(salaries.get(random.nextInt(salaries.size())));
+            } else {
+                SalarieAideADomicile salarie = salaries.get(random.nextInt(salaries.size()));
+                salarie.setCongesPayesPrisAnneeNMoins1(random.nextInt(10));
+                salarie.setCongesPayesAcquisAnneeNMoins1(20 + random.nextInt(10));
+                salarieRepo.save(salarie);
+            }
+
+            // THEN (Assert) : La part lue dans les compteurs est celle calculée sur toute la table
+            double pris = 0;
+            double acquis = 0;
+            for (SalarieAideADomicile salarie : salarieRepo.findAll()) {
+                pris += salarie.getCongesPayesPrisAnneeNMoins1();
+                acquis += salarie.getCongesPayesAcquisAnneeNMoins1();
+            }
+            assertEquals(pris / acquis, salarieRepo.partCongesPrisTotauxAnneeNMoins1(), 1e-9);
+        }
+    }
+
+    @Test
+    void testReconcilieCompteurCongesApresEcritureHorsJPA() {
+        // GIVEN (Arrange) : Un salarié, puis une écriture qui contourne JPA
+        salarieRepo.save(new SalarieAideADomicile.Builder("Dupont",
+            LocalDate.of(2020, 1, 1), LocalDate.of(2023, 5, 1))
+            .congesPayesAcquisAnneeNMoins1(25.0)
+            .congesPayesPrisAnneeNMoins1(10.0)
+            .build());
+        assertEquals(0.4, salarieRepo.partCongesPrisTotauxAnneeNMoins1(), 0.001);
+        jdbcTemplate.update("update salarie_aideadomicile set conges_payes_pris_anneenmoins1 = 5");
+
+        // WHEN (Act) : Lecture avant et après réconciliation
+        Double partAvant = salarieRepo.partCongesPrisTotauxAnneeNMoins1();
+        salarieRepo.reconcilieCompteurConges();
+        Double partApres = salarieRepo.partCongesPrisTotauxAnneeNMoins1();
+
+        // THEN (Assert) : Les compteurs ne voient pas l'écriture tant qu'ils ne sont pas recalculés
+        assertEquals(0.4, partAvant, 0.001, "La part devrait être lue dans les compteurs, sans parcourir la table");
+        assertEquals(0.2, partApres, 0.001, "La réconciliation devrait recalculer les compteurs depuis la table");
+    }
+
+    @Test
+    void testCachePartCongesPrisInvalideParUneSauvegarde() {
+        // GIVEN (Arrange) : Une part des congés pris en cache, d'une durée de vie longue
+        salarieService.setDureeCachePartCongesPrisMs(60_000);
+        try {
+            SalarieAideADomicile salarie = salarieRepo.save(new SalarieAideADomicile.Builder("Dupont",
+                LocalDate.of(2020, 1, 1), LocalDate.of(2023, 5, 1))
+                .congesPayesAcquisAnneeNMoins1(25.0)
+                .congesPayesPrisAnneeNMoins1(10.0)
+                .build());
+            assertEquals(0.4, salarieService.getCachePartCongesPrisTotauxAnneeNMoins1().get(), 0.001);
+            assertEquals(0.4, salarieService.getCachePartCongesPrisTotauxAnneeNMoins1().get(), 0.001);
+
+            // WHEN (Act) : Une sauvegarde change les congés pris N-1
+            salarie.setCongesPayesPrisAnneeNMoins1(20.0);
+            salarieRepo.save(salarie);
+
+            // THEN (Assert) : La nouvelle part est servie sans attendre la fin de la durée de vie
+            assertEquals(0.8, salarieService.getCachePartCongesPrisTotauxAnneeNMoins1().get(), 0.001);
+        } finally {
+            salarieService.setDureeCachePartCongesPrisMs(SalarieAideADomicileService.DUREE_CACHE_PART_CONGES_PRIS_MS);
+        }
+    }
+
+    @Test
+    void testCachePartCongesPrisSansEcrituresNonValidees() {
+        // GIVEN (Arrange) : Une part des congés pris en cache, d'une durée de vie longue
+        salarieService.setDureeCachePartCongesPrisMs(60_000);
+        try {
+            SalarieAideADomicile salarie = salarieRepo.save(new SalarieAideADomicile.Builder("Dupont",
+                LocalDate.of(2020, 1, 1), LocalDate.of(2023, 5, 1))
+                .congesPayesAcquisAnneeNMoins1(25.0)
+                .congesPayesPrisAnneeNMoins1(10.0)
+                .build());
+            Long id = salarie.getId();
+
+            // WHEN (Act) : La part est rechargée dans une transaction qui a écrit d'autres congés pris, puis annulée
+            Double partPendant = new TransactionTemplate(transactionManager).execute(statut -> {
+                SalarieAideADomicile modifie = salarieRepo.findById(id).orElseThrow(IllegalStateException::new);
+                modifie.setCongesPayesPrisAnneeNMoins1(20.0);
+                salarieRepo.saveAndFlush(modifie);
+                salarieService.getCachePartCongesPrisTotauxAnneeNMoins1().invalide();
+                Double part = salarieService.getCachePartCongesPrisTotauxAnneeNMoins1().get();
+                statut.setRollbackOnly();
+                return part;
+            });
+
+            // THEN (Assert) : Ni cette transaction ni les suivantes ne voient l'écriture annulée
+            assertEquals(0.4, partPendant, 0.001);
+            assertEquals(0.4, salarieService.getCachePartCongesPrisTotauxAnneeNMoins1().get(), 0.001);
+            assertEquals(0.4, salarieRepo.partCongesPrisTotauxAnneeNMoins1(), 0.001);
+        } finally {
+            salarieService.setDureeCachePartCongesPrisMs(SalarieAideADomicileService.DUREE_CACHE_PART_CONGES_PRIS_MS);
+        }
+    }
+}
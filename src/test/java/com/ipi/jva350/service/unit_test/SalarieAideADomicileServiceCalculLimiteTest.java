@@ -13,6 +13,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import com.ipi.jva350.repository.CompteurCongesModifieEvent;
 import com.ipi.jva350.repository.SalarieAideADomicileRepository;
 import com.ipi.jva350.service.SalarieAideADomicileService;
 
@@ -28,7 +29,7 @@ class SalarieAideADomicileServiceCalculLimiteTest {
     @BeforeEach
     void setUp() {
         // Configurer le mock pour renvoyer une valeur par défaut pour partCongesPrisTotauxAnneeNMoins1
-        when(salarieAideADomicileRepository.partCongesPrisTotauxAnneeNMoins1()).thenReturn(0.5);
+        when(salarieAideADomicileRepository.partCongesPrisTotauxAnneeNMoins1EnLecture()).thenReturn(0.5);
     }
     
     @Test
@@ -45,7 +46,7 @@ class SalarieAideADomicileServiceCalculLimiteTest {
                 moisEnCours, congesPayesAcquisAnneeNMoins1, moisDebutContrat, premierJourDeConge, dernierJourDeConge);
         
         // THEN (Assert) : Vérification que la limite est calculée correctement
-        verify(salarieAideADomicileRepository).partCongesPrisTotauxAnneeNMoins1();
+        verify(salarieAideADomicileRepository).partCongesPrisTotauxAnneeNMoins1EnLecture();
     }
     
     @Test
@@ -73,4 +74,26 @@ class SalarieAideADomicileServiceCalculLimiteTest {
         assertTrue(limiteSenior > limiteJunior, 
             "Un salarié avec plus d'ancienneté devrait avoir une limite de congés plus élevée");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Une rafale de calculs de limite ne lit qu'une fois la part des congés pris de l'entreprise")
+    void testRafaleDeCalculsUneSeuleLecture() {
+        // GIVEN (Arrange) : Une demande de congé en juillet
+        LocalDate moisEnCours = LocalDate.of(2023, 6, 1);
+        LocalDate moisDebutContrat = LocalDate.of(2020, 1, 1);
+
+        // WHEN (Act) : 50 calculs de limite à la suite, puis une modification des totaux et un dernier calcul
+        for (int i = 0; i < 50; i++) {
+            salarieService.calculeLimiteEntrepriseCongesPermis(moisEnCours, 25.0, moisDebutContrat,
+                    LocalDate.of(2023, 7, 10), LocalDate.of(2023, 7, 14));
+        }
+        salarieService.invalidePartCongesPrisTotauxAnneeNMoins1(new CompteurCongesModifieEvent());
+        salarieService.calculeLimiteEntrepriseCongesPermis(moisEnCours, 25.0, moisDebutContrat,
+                LocalDate.of(2023, 7, 10), LocalDate.of(2023, 7, 14));
+
+        // THEN (Assert) : Une lecture pour la rafale, une après l'invalidation
+        verify(salarieAideADomicileRepository, times(2)).partCongesPrisTotauxAnneeNMoins1EnLecture();
+        assertEquals(2, salarieService.getCachePartCongesPrisTotauxAnneeNMoins1().getNbChargements());
+        assertEquals(49, salarieService.getCachePartCongesPrisTotauxAnneeNMoins1().getNbTrouves());
+    }
+}
@@ -0,0 +1,142 @@
+package com.ipi.jva350.service.unit_test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.ipi.jva350.exception.SalarieException;
+import com.ipi.jva350.model.SalarieAideADomicile;
+import com.ipi.jva350.repository.SalarieAideADomicileRepository;
+import com.ipi.jva350.service.MotifRejetConge;
+import com.ipi.jva350.service.SalarieAideADomicileService;
+import com.ipi.jva350.service.ValidationConge;
+
+@ExtendWith(MockitoExtension.class)
+class SalarieAideADomicileValideCongeTest {
+
+    @Mock
+    private SalarieAideADomicileRepository salarieAideADomicileRepository;
+
+    @InjectMocks
+    private SalarieAideADomicileService salarieService;
+
+    private static SalarieAideADomicile salarie(LocalDate moisEnCours, double joursTravaillesAnneeNMoins1,
+            double congesPayesAcquisAnneeNMoins1) {
+        return new SalarieAideADomicile.Builder("Salarie", LocalDate.of(2022, 1, 1), moisEnCours)
+                .joursTravaillesAnneeNMoins1(joursTravaillesAnneeNMoins1)
+                .congesPayesAcquisAnneeNMoins1(congesPayesAcquisAnneeNMoins1)
+                .build();
+    }
+
+    @Test
+    @DisplayName("Les refus sans limite sont des instances partagées, sans rien sauver")
+    void testValideCongeRefusPartages() {
+        // GIVEN (Arrange) : Un salarié de décembre 2022, avec droit aux congés
+        SalarieAideADomicile salarie = salarie(LocalDate.of(2022, 12, 1), 200, 25);
+        SalarieAideADomicile sansDroit = salarie(LocalDate.of(2022, 12, 1), 5, 25);
+
+        // WHEN (Act) : Demandes refusées pour chaque motif sans limite, deux fois chacune
+        ValidationConge pasDeDroit = salarieService.valideConge(sansDroit, LocalDate.of(2022, 12, 5),
+                LocalDate.of(2022, 12, 6));
+        ValidationConge aucunJour = salarieService.valideConge(salarie, LocalDate.of(2022, 12, 25),
+                LocalDate.of(2022, 12, 25));
+        ValidationConge avantMois = salarieService.valideConge(salarie, LocalDate.of(2022, 11, 14),
+                LocalDate.of(2022, 11, 18));
+        ValidationConge anneeSuivante = salarieService.valideConge(salarie, LocalDate.of(2023, 5, 29),
+                LocalDate.of(2023, 6, 10));
+
+        // THEN (Assert) : Le bon motif, la même instance à chaque refus, aucune sauvegarde
+        assertEquals(MotifRejetConge.PAS_DE_DROIT_LEGAL, pasDeDroit.getMotif());
+        assertEquals(MotifRejetConge.AUCUN_JOUR_DECOMPTE, aucunJour.getMotif());
+        assertEquals(MotifRejetConge.AVANT_MOIS_EN_COURS, avantMois.getMotif());
+        assertEquals(MotifRejetConge.ANNEE_DE_CONGES_SUIVANTE, anneeSuivante.getMotif());
+        assertSame(avantMois, salarieService.valideConge(salarie, LocalDate.of(2022, 11, 21),
+                LocalDate.of(2022, 11, 22)));
+        assertSame(pasDeDroit, salarieService.valideConge(sansDroit, LocalDate.of(2023, 1, 2),
+                LocalDate.of(2023, 1, 3)));
+        assertFalse(anneeSuivante.estAcceptee());
+        assertTrue(anneeSuivante.getJoursDecomptes().isEmpty());
+        assertTrue(Double.isNaN(anneeSuivante.getLimite()));
+        assertEquals("Pas besoin de congés !", aucunJour.getMessage());
+        assertTrue(salarie.getCongesPayesPris().isEmpty());
+        verifyNoInteractions(salarieAideADomicileRepository);
+    }
+
+    @Test
+    @DisplayName("Un dépassement des congés acquis en N-1 est refusé avec le nombre décompté et la limite")
+    void testValideCongeDepasseAcquisAnneeNMoins1() {
+        // GIVEN (Arrange) : 2 jours acquis en N-1, une semaine demandée
+        SalarieAideADomicile salarie = salarie(LocalDate.of(2022, 12, 1), 200, 2);
+
+        // WHEN (Act)
+        ValidationConge validation = salarieService.tryAjouteConge(salarie, LocalDate.of(2022, 12, 5),
+                LocalDate.of(2022, 12, 10));
+
+        // THEN (Assert) : Même message que l'exception d'ajouteConge(), rien décompté ni sauvé
+        assertEquals(MotifRejetConge.DEPASSE_ACQUIS_ANNEE_N_MOINS1, validation.getMotif());
+        assertEquals(6, validation.getNbJoursDecomptes());
+        assertEquals(2, validation.getLimite());
+        SalarieException exception = assertThrows(SalarieException.class,
+                () -> salarieService.ajouteConge(salarie, LocalDate.of(2022, 12, 5), LocalDate.of(2022, 12, 10)));
+        assertEquals(exception.getMessage(), validation.getMessage());
+        assertTrue(salarie.getCongesPayesPris().isEmpty());
+        assertEquals(0, salarie.getCongesPayesPrisAnneeNMoins1());
+        verify(salarieAideADomicileRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Un dépassement de la limite de l'entreprise est refusé avec cette limite")
+    void testValideCongeDepasseLimiteEntreprise() {
+        // GIVEN (Arrange) : Deux semaines demandées en juin, au début de l'année de congés
+        when(salarieAideADomicileRepository.partCongesPrisTotauxAnneeNMoins1EnLecture()).thenReturn(0.5);
+        SalarieAideADomicile salarie = salarie(LocalDate.of(2022, 6, 1), 200, 25);
+
+        // WHEN (Act)
+        ValidationConge validation = salarieService.valideConge(salarie, LocalDate.of(2022, 6, 6),
+                LocalDate.of(2022, 6, 18));
+
+        // THEN (Assert)
+        assertEquals(MotifRejetConge.DEPASSE_LIMITE_ENTREPRISE, validation.getMotif());
+        assertEquals(11, validation.getNbJoursDecomptes()); // lundi de Pentecôte férié
+        assertEquals(salarieService.calculeLimiteEntrepriseCongesPermis(salarie.getMoisEnCours(), 25,
+                salarie.getMoisDebutContrat(), LocalDate.of(2022, 6, 6), LocalDate.of(2022, 6, 18)),
+                validation.getLimite());
+        assertTrue(validation.getMessage().startsWith("Conges Payes Pris Decomptes (11) dépassent la limite"));
+        verify(salarieAideADomicileRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Une demande acceptée n'est décomptée et sauvée que par tryAjouteConge")
+    void testTryAjouteCongeAcceptee() {
+        // GIVEN (Arrange) : Trois jours demandés en décembre
+        when(salarieAideADomicileRepository.partCongesPrisTotauxAnneeNMoins1EnLecture()).thenReturn(0.5);
+        SalarieAideADomicile salarie = salarie(LocalDate.of(2022, 12, 1), 200, 25);
+        LocalDate jourDebut = LocalDate.of(2022, 12, 5);
+        LocalDate jourFin = LocalDate.of(2022, 12, 7);
+
+        // WHEN (Act) : Validation seule, puis ajout
+        ValidationConge simulee = salarieService.valideConge(salarie, jourDebut, jourFin);
+        assertTrue(salarie.getCongesPayesPris().isEmpty());
+        ValidationConge validation = salarieService.tryAjouteConge(salarie, jourDebut, jourFin);
+
+        // THEN (Assert) : Les jours décomptés, la limite, une seule sauvegarde
+        assertTrue(simulee.estAcceptee());
+        assertTrue(validation.estAcceptee());
+        assertNull(validation.getMotif());
+        assertNull(validation.getMessage());
+        assertEquals(3, validation.getNbJoursDecomptes());
+        assertTrue(validation.getLimite() >= 3);
+        assertEquals(validation.getJoursDecomptes(), salarie.getCongesPayesPris());
+        assertTrue(salarie.getCongesPayesPris().contains(LocalDate.of(2022, 12, 6)));
+        assertEquals(3, salarie.getCongesPayesPrisAnneeNMoins1());
+        verify(salarieAideADomicileRepository, times(1)).save(salarie);
+    }
+}
@@ -0,0 +1,203 @@
+package com.ipi.jva350.service.unit_test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+
+import com.ipi.jva350.service.HistogrammeAttentes;
+import com.ipi.jva350.service.VerrousSalaries;
+
+class VerrousSalariesTest {
+
+    @Test
+    @DisplayName("Les modifications d'un même salarié depuis plusieurs threads ne se perdent pas")
+    void testExclusionParSalarie() throws Exception {
+        // GIVEN (Arrange) : 8 threads, 2 par salarié, moins de bandes que de threads
+        VerrousSalaries verrous = new VerrousSalaries(3, false);
+        long[] compteurs = new long[4];
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // WHEN (Act) : Chaque thread incrémente 10000 fois le compteur (non atomique) de son salarié
+        try {
+            for (int thread = 0; thread < 8; thread++) {
+                int salarie = thread % 4;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        verrous.execute((long) salarie, () -> compteurs[salarie]++);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // THEN (Assert) : Aucun incrément perdu, chaque verrou obtenu compté
+        assertArrayEquals(new long[]{20_000, 20_000, 20_000, 20_000}, compteurs);
+        assertEquals(80_000, verrous.getHistogramme().getNbAttentes());
+        assertEquals(0, verrous.getNbExpirations());
+    }
+
+    @Test
+    @DisplayName("Un verrou tenu trop longtemps par un autre thread fait abandonner, l'attente est enregistrée")
+    void testAttenteMaximale() throws Exception {
+        // GIVEN (Arrange) : Un autre thread tient le verrou du salarié 1 pendant 300 ms
+        VerrousSalaries verrous = new VerrousSalaries(16, true);
+        verrous.setAttenteMaxMs(20);
+        CountDownLatch tenu = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> autre = executor.submit(() -> verrous.execute(1L, () -> {
+                tenu.countDown();
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }));
+            assertTrue(tenu.await(10, TimeUnit.SECONDS));
+
+            // WHEN (Act) : Le verrou est demandé avec 20 ms d'attente maximale, puis avec 5 s
+            assertThrows(CannotAcquireLockException.class, () -> verrous.execute(1L, () -> 1));
+            verrous.setAttenteMaxMs(5000);
+            int resultat = verrous.execute(1L, () -> verrous.execute(1L, () -> 2));
+            autre.get(10, TimeUnit.SECONDS);
+
+            // THEN (Assert) : Une expiration, puis une attente longue (et une réentrance sans attente)
+            assertEquals(2, resultat);
+            assertEquals(1, verrous.getNbExpirations());
+            assertEquals(3, verrous.getHistogramme().getNbAttentes());
+            assertTrue(verrous.getHistogramme().quantileMicros(1) >= TimeUnit.MILLISECONDS.toMicros(100),
+                    verrous.getHistogramme()::toString);
+            assertTrue(verrous.getHistogramme().quantileMicros(0.5) < 1000, verrous.getHistogramme()::toString);
+            assertTrue(verrous.isEquitables());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Des lots de salariés pris dans des ordres opposés ne s'interbloquent pas et excluent les autres")
+    void testExecuteTousSansInterblocage() throws Exception {
+        // GIVEN (Arrange) : 4 threads, deux qui prennent les salariés 0 à 7 dans un sens, deux dans l'autre, plus
+        // un thread par salarié seul
+        VerrousSalaries verrous = new VerrousSalaries(16, false);
+        verrous.setAttenteMaxMs(10_000);
+        long[] compteurs = new long[8];
+        List<Long> ids = new ArrayList<>();
+        for (long id = 0; id < 8; id++) {
+            ids.add(id);
+        }
+        List<Long> idsInverses = new ArrayList<>(ids);
+        Collections.reverse(idsInverses);
+        ExecutorService executor = Executors.newFixedThreadPool(12);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // WHEN (Act) : Chaque lot incrémente 2000 fois tous les compteurs, chaque thread seul 2000 fois le sien
+        try {
+            for (List<Long> lot : Arrays.asList(ids, idsInverses, ids, idsInverses)) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        verrous.executeTous(lot, () -> {
+                            for (Long id : lot) {
+                                compteurs[id.intValue()]++;
+                            }
+                            return null;
+                        });
+                    }
+                }));
+            }
+            for (int salarie = 0; salarie < 8; salarie++) {
+                int id = salarie;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        verrous.execute((long) id, () -> compteurs[id]++);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // THEN (Assert) : Aucun interblocage ni incrément perdu
+        for (long compteur : compteurs) {
+            assertEquals(10_000, compteur);
+        }
+        assertEquals(0, verrous.getNbExpirations());
+    }
+
+    @Test
+    @DisplayName("Un lot qui n'obtient pas tous ses verrous rend ceux qu'il a déjà pris")
+    void testExecuteTousRendLesVerrousPris() throws Exception {
+        // GIVEN (Arrange) : Un autre thread tient le verrou du salarié 5, de plus grande bande que les salariés 0 à 7
+        // (tous dans des bandes différentes sur 64), pris donc en dernier
+        VerrousSalaries verrous = new VerrousSalaries(64, false);
+        verrous.setAttenteMaxMs(20);
+        List<Long> ids = Arrays.asList(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L);
+        CountDownLatch tenu = new CountDownLatch(1);
+        CountDownLatch rendu = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> autre = executor.submit(() -> verrous.execute(5L, () -> {
+                tenu.countDown();
+                try {
+                    rendu.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }));
+            assertTrue(tenu.await(10, TimeUnit.SECONDS));
+
+            // WHEN (Act)
+            assertThrows(CannotAcquireLockException.class, () -> verrous.executeTous(ids, () -> 1));
+
+            // THEN (Assert) : Les autres salariés du lot sont libres pour un autre thread
+            ExecutorService autreThread = Executors.newSingleThreadExecutor();
+            try {
+                Future<Integer> libres = autreThread.submit(() -> verrous.executeTous(
+                        Arrays.asList(0L, 1L, 2L, 3L, 4L, 6L, 7L), () -> 2));
+                assertEquals(2, libres.get(10, TimeUnit.SECONDS));
+            } finally {
+                autreThread.shutdownNow();
+            }
+            rendu.countDown();
+            autre.get(10, TimeUnit.SECONDS);
+            assertEquals(1, verrous.getNbExpirations());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Les paramètres invalides sont refusés")
+    void testParametres() {
+        VerrousSalaries verrous = new VerrousSalaries(8, false);
+        assertEquals(8, verrous.getNbBandes());
+        assertFalse(verrous.isEquitables());
+        assertThrows(IllegalArgumentException.class, () -> new VerrousSalaries(0, false));
+        assertThrows(IllegalArgumentException.class, () -> verrous.setAttenteMaxMs(-1));
+        assertEquals(0, verrous.getHistogramme().quantileMicros(0.99));
+        assertThrows(IllegalArgumentException.class, () -> verrous.getHistogramme().quantileMicros(2));
+        assertEquals(Long.MAX_VALUE, HistogrammeAttentes.borneSuperieureMicros(HistogrammeAttentes.NB_TRANCHES - 1));
+    }
+}